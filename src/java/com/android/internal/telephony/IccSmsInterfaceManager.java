@@ -44,6 +44,8 @@ import com.android.internal.telephony.SmsNumberUtils;
 import com.android.internal.telephony.uicc.IccRecords;
 import com.android.internal.util.HexDump;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -173,6 +175,10 @@ public class IccSmsInterfaceManager {
         mDispatcher.updatePhoneObject(phone);
     }
 
+    public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        mDispatcher.dump(fd, pw, args);
+    }
+
     protected void enforceReceiveAndSend(String message) {
         mContext.enforceCallingOrSelfPermission(
                 Manifest.permission.RECEIVE_SMS, message);
@@ -31,6 +31,8 @@ import com.android.internal.telephony.cdma.CdmaSMSDispatcher;
 import com.android.internal.telephony.gsm.GsmInboundSmsHandler;
 import com.android.internal.telephony.gsm.GsmSMSDispatcher;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -99,6 +101,22 @@ public final class ImsSMSDispatcher extends SMSDispatcher {
         mCdmaInboundSmsHandler.dispose();
     }
 
+    /**
+     * Messages are sent and their status reports handled by mGsmDispatcher and
+     * mCdmaDispatcher, which keep their own journals.
+     */
+    @Override
+    protected boolean hasDeliveryPendingJournal() {
+        return false;
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        super.dump(fd, pw, args);
+        mGsmInboundSmsHandler.dump(fd, pw, args);
+        mCdmaInboundSmsHandler.dump(fd, pw, args);
+    }
+
     /**
      * Handles events coming from the phone stack. Overridden from handler.
      *
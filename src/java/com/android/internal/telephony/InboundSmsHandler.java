@@ -78,6 +78,8 @@ import com.android.internal.util.State;
 import com.android.internal.util.StateMachine;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ArrayList;
@@ -169,6 +171,9 @@ public abstract class InboundSmsHandler extends StateMachine {
     protected final Context mContext;
     private final ContentResolver mResolver;
 
+    /** Segments of multi-part messages in the raw table, to avoid querying it. */
+    private final SmsReassemblyIndex mReassemblyIndex = SmsReassemblyIndex.getInstance();
+
     /** Special handler for WAP push messages. */
     private final WapPushOverSms mWapPush;
 
@@ -253,6 +258,14 @@ public abstract class InboundSmsHandler extends StateMachine {
         quit();
     }
 
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        super.dump(fd, pw, args);
+        if (mCellBroadcastHandler != null) {
+            mCellBroadcastHandler.dump(fd, pw, args);
+        }
+    }
+
     /**
      * Update the phone object when it changes.
      */
@@ -804,6 +817,22 @@ public abstract class InboundSmsHandler extends StateMachine {
         if (messageCount == 1) {
             // single-part message
             pdus = new byte[][]{tracker.getPdu()};
+        } else if (mReassemblyIndex.isLoaded()) {
+            // multi-part message, all segments in the raw table are in the index
+            InboundSmsTracker[] segments = mReassemblyIndex.getCompleteMessage(tracker);
+            if (segments == null) {
+                // Wait for the other message parts to arrive, see below.
+                return false;
+            }
+
+            pdus = new byte[messageCount][];
+            for (int i = 0; i < messageCount; i++) {
+                pdus[i] = segments[i].getPdu();
+            }
+            // Prefer the destination port from the first segment, as below.
+            if (segments[0].getDestPort() != -1) {
+                destPort = segments[0].getDestPort();
+            }
         } else {
             // multi-part message
             Cursor cursor = null;
@@ -1005,6 +1034,9 @@ public abstract class InboundSmsHandler extends StateMachine {
      * Helper for {@link SmsBroadcastUndelivered} to delete an old message in the raw table.
      */
     void deleteFromRawTable(String deleteWhere, String[] deleteWhereArgs) {
+        if (SELECT_BY_REFERENCE.equals(deleteWhere)) {
+            mReassemblyIndex.remove(deleteWhereArgs);
+        }
         int rows = mResolver.delete(sRawUri, deleteWhere, deleteWhereArgs);
         if (rows == 0) {
             loge("No rows were deleted from raw table!");
@@ -1114,24 +1146,33 @@ public abstract class InboundSmsHandler extends StateMachine {
                 tracker.setDeleteWhere(SELECT_BY_REFERENCE, deleteWhereArgs);
 
                 // Check for duplicate message segments
-                cursor = mResolver.query(sRawUri, PDU_PROJECTION,
-                        "address=? AND reference_number=? AND count=? AND sequence=?",
-                        new String[] {address, refNumber, count, seqNumber}, null);
+                byte[] oldPdu = null;
+                if (mReassemblyIndex.isLoaded()) {
+                    InboundSmsTracker duplicate = mReassemblyIndex.getDuplicate(tracker);
+                    if (duplicate != null) {
+                        oldPdu = duplicate.getPdu();
+                    }
+                } else {
+                    cursor = mResolver.query(sRawUri, PDU_PROJECTION,
+                            "address=? AND reference_number=? AND count=? AND sequence=?",
+                            new String[] {address, refNumber, count, seqNumber}, null);
+
+                    // moveToNext() returns false if no duplicates were found
+                    if (cursor.moveToNext()) {
+                        oldPdu = HexDump.hexStringToByteArray(cursor.getString(PDU_COLUMN));
+                    }
+                }
 
-                // moveToNext() returns false if no duplicates were found
-                if (cursor.moveToNext()) {
+                if (oldPdu != null) {
                     loge("Discarding duplicate message segment, refNumber=" + refNumber
                             + " seqNumber=" + seqNumber);
-                    String oldPduString = cursor.getString(PDU_COLUMN);
                     byte[] pdu = tracker.getPdu();
-                    byte[] oldPdu = HexDump.hexStringToByteArray(oldPduString);
                     if (!Arrays.equals(oldPdu, tracker.getPdu())) {
                         loge("Warning: dup message segment PDU of length " + pdu.length
                                 + " is different from existing PDU of length " + oldPdu.length);
                     }
                     return Intents.RESULT_SMS_DUPLICATED;   // reject message
                 }
-                cursor.close();
             } catch (SQLException e) {
                 loge("Can't access multipart SMS database", e);
                 return Intents.RESULT_SMS_GENERIC_ERROR;    // reject message
@@ -1153,6 +1194,8 @@ public abstract class InboundSmsHandler extends StateMachine {
             if (tracker.getMessageCount() == 1) {
                 // set the delete selection args for single-part message
                 tracker.setDeleteWhere(SELECT_BY_ID, new String[]{Long.toString(rowId)});
+            } else {
+                mReassemblyIndex.add(tracker);
             }
             return Intents.RESULT_SMS_HANDLED;
         } catch (Exception e) {
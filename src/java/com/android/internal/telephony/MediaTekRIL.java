@@ -46,6 +46,7 @@ import android.telephony.ServiceState;
 import android.telephony.SignalStrength;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
+import android.util.SparseArray;
 import android.view.Display;
 
 import java.io.UnsupportedEncodingException;
@@ -172,6 +173,10 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     private dtmfQueueHandler mDtmfReqQueue = new dtmfQueueHandler();
+
+    // MTK and AOSP unsolicited responses that processUnsolicited handles itself. Assigned
+    // by onRegisterDecoders() during the RIL constructor, so it must have no initializer.
+    private SparseArray<ResponseDecoder> mMtkUnsolicitedDecoders;
     /// @}
 
     public MediaTekRIL(Context context, int networkMode, int cdmaSubscription) {
@@ -182,7 +187,442 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
             super(context, networkMode, cdmaSubscription, instanceId);
     }
 
-    // all that C&P just for responseOperator overriding?
+    @Override
+    protected void onRegisterDecoders() {
+        registerMtkResponseDecoders();
+        registerMtkUnsolicitedDecoders();
+    }
+
+    /**
+     * Registers decoders for MTK solicited responses and for the AOSP
+     * requests whose MTK responses are laid out differently.
+     */
+    private void registerMtkResponseDecoders() {
+        final ResponseDecoder operatorDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseOperator(p); }
+        };
+        final ResponseDecoder voidDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseVoid(p); }
+        };
+        final ResponseDecoder setPreferredNetworkTypeDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSetPreferredNetworkType(p); }
+        };
+        final ResponseDecoder stringsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseStrings(p); }
+        };
+        final ResponseDecoder intsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseInts(p); }
+        };
+        final ResponseDecoder iccIoDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseICC_IO(p); }
+        };
+        final ResponseDecoder iccCardStatusDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseIccCardStatus(p); }
+        };
+        final ResponseDecoder phbEntriesDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responsePhbEntries(p); }
+        };
+        final ResponseDecoder getPhbMemStorageDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseGetPhbMemStorage(p); }
+        };
+        final ResponseDecoder readPhbEntryExtDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseReadPhbEntryExt(p); }
+        };
+        final ResponseDecoder networkInfoWithActsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseNetworkInfoWithActs(p); }
+        };
+        final ResponseDecoder operatorInfosWithActDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseOperatorInfosWithAct(p); }
+        };
+        final ResponseDecoder femtoCellInfosDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseFemtoCellInfos(p); }
+        };
+        final ResponseDecoder smsParamsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSmsParams(p); }
+        };
+        final ResponseDecoder simSmsMemoryStatusDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSimSmsMemoryStatus(p); }
+        };
+        final ResponseDecoder cbConfigDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCbConfig(p); }
+        };
+        final ResponseDecoder stringDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseString(p); }
+        };
+        final ResponseDecoder getNitzTimeDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseGetNitzTime(p); }
+        };
+        final ResponseDecoder isimAuthDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) {
+                if (SystemProperties.get("ro.mtk_tc1_feature").equals("1")) {
+                    return responseStringEncodeBase64(p);
+                }
+                return responseString(p);
+            }
+        };
+        // The string payload of the IMS conference requests is consumed but not returned
+        final ResponseDecoder imsConferenceDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) {
+                responseString(p);
+                return null;
+            }
+        };
+
+        SparseArray<ResponseDecoder> d = new SparseArray<ResponseDecoder>();
+        d.put(RIL_REQUEST_OPERATOR, operatorDecoder);
+        d.put(RIL_REQUEST_ABORT_QUERY_AVAILABLE_NETWORKS, voidDecoder);
+        d.put(RIL_REQUEST_SET_PREFERRED_NETWORK_TYPE, setPreferredNetworkTypeDecoder);
+        d.put(RIL_REQUEST_CDMA_WRITE_SMS_TO_RUIM, stringsDecoder);
+        d.put(RIL_REQUEST_ISIM_AUTHENTICATION, isimAuthDecoder);
+        /// M: CC010: Add RIL interface @{
+        d.put(RIL_REQUEST_HANGUP_ALL, voidDecoder);
+        d.put(RIL_REQUEST_FORCE_RELEASE_CALL, voidDecoder);
+        d.put(RIL_REQUEST_SET_CALL_INDICATION, voidDecoder);
+        d.put(RIL_REQUEST_EMERGENCY_DIAL, voidDecoder);
+        d.put(RIL_REQUEST_SET_ECC_SERVICE_CATEGORY, voidDecoder);
+        d.put(RIL_REQUEST_SET_ECC_LIST, voidDecoder);
+        /// @}
+        /// M: CC077: 2/3G CAPABILITY_HIGH_DEF_AUDIO @{
+        d.put(RIL_REQUEST_SET_SPEECH_CODEC_INFO, voidDecoder);
+        /// @}
+        /// M: For 3G VT only @{
+        d.put(RIL_REQUEST_VT_DIAL, voidDecoder);
+        d.put(RIL_REQUEST_VOICE_ACCEPT, voidDecoder);
+        d.put(RIL_REQUEST_REPLACE_VT_CALL, voidDecoder);
+        /// @}
+        /// M: IMS feature. @{
+        d.put(RIL_REQUEST_ADD_IMS_CONFERENCE_CALL_MEMBER, imsConferenceDecoder);
+        d.put(RIL_REQUEST_REMOVE_IMS_CONFERENCE_CALL_MEMBER, imsConferenceDecoder);
+        d.put(RIL_REQUEST_DIAL_WITH_SIP_URI, voidDecoder);
+        d.put(RIL_REQUEST_RESUME_CALL, voidDecoder);
+        d.put(RIL_REQUEST_HOLD_CALL, voidDecoder);
+        /// @}
+        //MTK-START SS
+        d.put(RIL_REQUEST_GET_COLP, intsDecoder);
+        d.put(RIL_REQUEST_SET_COLP, voidDecoder);
+        d.put(RIL_REQUEST_GET_COLR, intsDecoder);
+        //MTK-START SIM ME lock
+        d.put(RIL_REQUEST_QUERY_SIM_NETWORK_LOCK, intsDecoder);
+        d.put(RIL_REQUEST_SET_SIM_NETWORK_LOCK, intsDecoder);
+        //MTK-START multiple application support
+        d.put(RIL_REQUEST_GENERAL_SIM_AUTH, iccIoDecoder);
+        d.put(RIL_REQUEST_OPEN_ICC_APPLICATION, intsDecoder);
+        d.put(RIL_REQUEST_GET_ICC_APPLICATION_STATUS, iccCardStatusDecoder);
+        //MTK-END multiple application support
+        d.put(RIL_REQUEST_SIM_IO_EX, iccIoDecoder);
+        // PHB Start
+        d.put(RIL_REQUEST_QUERY_PHB_STORAGE_INFO, intsDecoder);
+        d.put(RIL_REQUEST_WRITE_PHB_ENTRY, voidDecoder);
+        d.put(RIL_REQUEST_READ_PHB_ENTRY, phbEntriesDecoder);
+        d.put(RIL_REQUEST_QUERY_UPB_CAPABILITY, intsDecoder);
+        d.put(RIL_REQUEST_READ_UPB_GRP, intsDecoder);
+        d.put(RIL_REQUEST_WRITE_UPB_GRP, voidDecoder);
+        d.put(RIL_REQUEST_EDIT_UPB_ENTRY, voidDecoder);
+        d.put(RIL_REQUEST_DELETE_UPB_ENTRY, voidDecoder);
+        d.put(RIL_REQUEST_READ_UPB_GAS_LIST, stringsDecoder);
+        d.put(RIL_REQUEST_GET_PHB_STRING_LENGTH, intsDecoder);
+        d.put(RIL_REQUEST_GET_PHB_MEM_STORAGE, getPhbMemStorageDecoder);
+        d.put(RIL_REQUEST_SET_PHB_MEM_STORAGE, voidDecoder);
+        d.put(RIL_REQUEST_READ_PHB_ENTRY_EXT, readPhbEntryExtDecoder);
+        d.put(RIL_REQUEST_WRITE_PHB_ENTRY_EXT, voidDecoder);
+        // PHB End
+        d.put(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL_WITH_ACT, voidDecoder);
+        d.put(RIL_REQUEST_GET_POL_CAPABILITY, intsDecoder);
+        d.put(RIL_REQUEST_GET_POL_LIST, networkInfoWithActsDecoder);
+        d.put(RIL_REQUEST_SET_POL_ENTRY, voidDecoder);
+        d.put(RIL_REQUEST_SET_TRM, intsDecoder);
+        d.put(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS_WITH_ACT, operatorInfosWithActDecoder);
+        d.put(RIL_REQUEST_STK_EVDL_CALL_BY_AP, voidDecoder);
+        //Femtocell (CSG) feature START
+        d.put(RIL_REQUEST_GET_FEMTOCELL_LIST, femtoCellInfosDecoder);
+        d.put(RIL_REQUEST_ABORT_FEMTOCELL_LIST, voidDecoder);
+        d.put(RIL_REQUEST_SELECT_FEMTOCELL, voidDecoder);
+        //Femtocell (CSG) feature END
+        d.put(RIL_REQUEST_QUERY_MODEM_TYPE, intsDecoder);
+        d.put(RIL_REQUEST_STORE_MODEM_TYPE, voidDecoder);
+        // IMS
+        d.put(RIL_REQUEST_SET_IMS_ENABLE, voidDecoder);
+        // M: Fast Dormancy
+        d.put(RIL_REQUEST_SET_SCRI, voidDecoder);
+        d.put(RIL_REQUEST_SET_FD_MODE, intsDecoder);
+        // MTK-START, SMS part
+        d.put(RIL_REQUEST_GET_SMS_PARAMS, smsParamsDecoder);
+        d.put(RIL_REQUEST_SET_SMS_PARAMS, voidDecoder);
+        d.put(RIL_REQUEST_GET_SMS_SIM_MEM_STATUS, simSmsMemoryStatusDecoder);
+        d.put(RIL_REQUEST_SET_ETWS, voidDecoder);
+        d.put(RIL_REQUEST_SET_CB_CHANNEL_CONFIG_INFO, voidDecoder);
+        d.put(RIL_REQUEST_SET_CB_LANGUAGE_CONFIG_INFO, voidDecoder);
+        d.put(RIL_REQUEST_GET_CB_CONFIG_INFO, cbConfigDecoder);
+        d.put(RIL_REQUEST_REMOVE_CB_MESSAGE, voidDecoder);
+        // MTK-END, SMS part
+        d.put(RIL_REQUEST_SET_DATA_CENTRIC, voidDecoder);
+        /// M: SVLTE Remove access feature
+        d.put(RIL_REQUEST_CONFIG_MODEM_STATUS, voidDecoder);
+        // M: CC33 LTE.
+        d.put(RIL_REQUEST_SET_DATA_ON_TO_MD, voidDecoder);
+        d.put(RIL_REQUEST_SET_REMOVE_RESTRICT_EUTRAN_MODE, voidDecoder);
+        d.put(RIL_REQUEST_BTSIM_CONNECT, stringDecoder);
+        d.put(RIL_REQUEST_BTSIM_DISCONNECT_OR_POWEROFF, voidDecoder);
+        d.put(RIL_REQUEST_BTSIM_POWERON_OR_RESETSIM, stringDecoder);
+        d.put(RIL_REQUEST_BTSIM_TRANSFERAPDU, stringDecoder);
+        /// M: IMS VoLTE conference dial feature. @{
+        d.put(RIL_REQUEST_CONFERENCE_DIAL, voidDecoder);
+        /// @}
+        d.put(RIL_REQUEST_RELOAD_MODEM_TYPE, voidDecoder);
+        /// M: CC010: Add RIL interface @{
+        d.put(RIL_REQUEST_SET_IMS_CALL_STATUS, voidDecoder);
+        /// @}
+        /// M: CC072: Add Customer proprietary-IMS RIL interface. @{
+        d.put(RIL_REQUEST_SET_SRVCC_CALL_CONTEXT_TRANSFER, voidDecoder);
+        d.put(RIL_REQUEST_UPDATE_IMS_REGISTRATION_STATUS, voidDecoder);
+        /// @}
+        d.put(RIL_REQUEST_GET_NITZ_TIME, getNitzTimeDecoder);
+        d.put(RIL_REQUEST_QUERY_UIM_INSERTED, intsDecoder);
+        d.put(RIL_REQUEST_SWITCH_HPF, voidDecoder);
+        d.put(RIL_REQUEST_SET_AVOID_SYS, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_AVOID_SYS, intsDecoder);
+        d.put(RIL_REQUEST_QUERY_CDMA_NETWORK_INFO, stringsDecoder);
+        d.put(RIL_REQUEST_GET_LOCAL_INFO, intsDecoder);
+        d.put(RIL_REQUEST_UTK_REFRESH, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_SMS_AND_PHONEBOOK_STATUS, intsDecoder);
+        d.put(RIL_REQUEST_QUERY_NETWORK_REGISTRATION, intsDecoder);
+        d.put(RIL_REQUEST_AGPS_TCP_CONNIND, voidDecoder);
+        d.put(RIL_REQUEST_AGPS_SET_MPC_IPPORT, voidDecoder);
+        d.put(RIL_REQUEST_AGPS_GET_MPC_IPPORT, stringsDecoder);
+        d.put(RIL_REQUEST_SET_MEID, voidDecoder);
+        d.put(RIL_REQUEST_SET_ETS_DEV, voidDecoder);
+        d.put(RIL_REQUEST_WRITE_MDN, voidDecoder);
+        d.put(RIL_REQUEST_SET_VIA_TRM, voidDecoder);
+        d.put(RIL_REQUEST_SET_ARSI_THRESHOLD, voidDecoder);
+        d.put(RIL_REQUEST_SET_ACTIVE_PS_SLOT, voidDecoder);
+        d.put(RIL_REQUEST_CONFIRM_INTER_3GPP_IRAT_CHANGE, voidDecoder);
+        d.put(RIL_REQUEST_CONFIG_EVDO_MODE, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_UTK_MENU_FROM_MD, stringDecoder);
+        d.put(RIL_REQUEST_QUERY_STK_MENU_FROM_MD, stringDecoder);
+        d.put(RIL_REQUEST_DEACTIVATE_LINK_DOWN_PDN, voidDecoder);
+        d.put(RIL_REQUEST_MODEM_POWERON, voidDecoder);
+        d.put(RIL_REQUEST_MODEM_POWEROFF, voidDecoder);
+        /// M: [C2K][SVLTE] Set the SVLTE RAT mode. @{
+        d.put(RIL_REQUEST_SET_SVLTE_RAT_MODE, voidDecoder);
+        /// M: [C2K][IR] Support SVLTE IR feature. @{
+        d.put(RIL_REQUEST_SET_REG_SUSPEND_ENABLED, voidDecoder);
+        d.put(RIL_REQUEST_RESUME_REGISTRATION, voidDecoder);
+        d.put(RIL_REQUEST_SET_REG_SUSPEND_ENABLED_CDMA, voidDecoder);
+        d.put(RIL_REQUEST_RESUME_REGISTRATION_CDMA, voidDecoder);
+        /// M: [C2K][IR] Support SVLTE IR feature. @}
+        d.put(RIL_REQUEST_SET_STK_UTK_MODE, voidDecoder);
+        d.put(RIL_REQUEST_SWITCH_ANTENNA, voidDecoder);
+        d.put(RIL_REQUEST_SWITCH_CARD_TYPE, voidDecoder);
+        d.put(RIL_REQUEST_ENABLE_MD3_SLEEP, voidDecoder);
+        // M: [LTE][Low Power][UL traffic shaping] Start
+        d.put(RIL_REQUEST_SET_LTE_ACCESS_STRATUM_REPORT, voidDecoder);
+        d.put(RIL_REQUEST_SET_LTE_UPLINK_DATA_TRANSFER, voidDecoder);
+        registerSolicitedDecoders(d);
+    }
+
+    /**
+     * Registers decoders for MTK unsolicited responses and for the AOSP
+     * unsolicited responses that MTK handles itself. processUnsolicited
+     * forwards every other response to RIL.
+     */
+    private void registerMtkUnsolicitedDecoders() {
+        final ResponseDecoder voidDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseVoid(p); }
+        };
+        final ResponseDecoder intsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseInts(p); }
+        };
+        final ResponseDecoder stringDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseString(p); }
+        };
+        final ResponseDecoder stringsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseStrings(p); }
+        };
+        final ResponseDecoder hardwareConfigDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseHardwareConfig(p); }
+        };
+        final ResponseDecoder radioCapabilityDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseRadioCapability(p); }
+        };
+        final ResponseDecoder ssDataDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSsData(p); }
+        };
+        final ResponseDecoder lceDataDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseLceData(p); }
+        };
+        final ResponseDecoder crssNotificationDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCrssNotification(p); }
+        };
+        final ResponseDecoder etwsNotificationDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseEtwsNotification(p); }
+        };
+        final ResponseDecoder engModeNetworkInfoDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) {
+                Object ret = responseStrings(p);
+                unsljLog(RIL_UNSOL_ENG_MODE_NETWORK_INFO);
+                return ret;
+            }
+        };
+        final ResponseDecoder iratStateChangeDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) {
+                riljLog(" RIL_UNSOL_INTER_3GPP_IRAT_STATE_CHANGE...");
+                return responseIratStateChange(p);
+            }
+        };
+
+        SparseArray<ResponseDecoder> d = new SparseArray<ResponseDecoder>();
+        // select AOSP unsols to process differently
+        d.put(RIL_UNSOL_SIM_SMS_STORAGE_FULL, voidDecoder);
+        d.put(RIL_UNSOL_RIL_CONNECTED, intsDecoder);
+        // MTK unsols
+        d.put(RIL_UNSOL_NEIGHBORING_CELL_INFO, stringsDecoder);
+        d.put(RIL_UNSOL_NETWORK_INFO, stringsDecoder);
+        d.put(RIL_UNSOL_NETWORK_EXIST, intsDecoder);
+        d.put(RIL_UNSOL_FEMTOCELL_INFO, stringsDecoder);
+        d.put(RIL_UNSOL_RESPONSE_PS_NETWORK_STATE_CHANGED, intsDecoder);
+        d.put(RIL_UNSOL_INVALID_SIM, stringsDecoder);
+        d.put(RIL_UNSOL_RESPONSE_ACMT, intsDecoder);
+        d.put(RIL_UNSOL_IMEI_LOCK, voidDecoder);
+        d.put(RIL_UNSOL_RESPONSE_MMRR_STATUS_CHANGED, intsDecoder);
+        d.put(RIL_UNSOL_STK_EVDL_CALL, intsDecoder);
+        d.put(RIL_UNSOL_STK_CALL_CTRL, stringsDecoder);
+
+        d.put(RIL_UNSOL_UICC_SUBSCRIPTION_STATUS_CHANGED, intsDecoder);
+        d.put(RIL_UNSOL_SRVCC_STATE_NOTIFY, intsDecoder);
+        d.put(RIL_UNSOL_HARDWARE_CONFIG_CHANGED, hardwareConfigDecoder);
+        d.put(RIL_UNSOL_RADIO_CAPABILITY, radioCapabilityDecoder);
+        d.put(RIL_UNSOL_ON_SS, ssDataDecoder);
+        d.put(RIL_UNSOL_STK_CC_ALPHA_NOTIFY, stringsDecoder);
+        d.put(RIL_UNSOL_LCEDATA_RECV, lceDataDecoder);
+        /// M: CC010: Add RIL interface @{
+        d.put(RIL_UNSOL_CALL_FORWARDING, intsDecoder);
+        d.put(RIL_UNSOL_CRSS_NOTIFICATION, crssNotificationDecoder);
+        d.put(RIL_UNSOL_INCOMING_CALL_INDICATION, stringsDecoder);
+        d.put(RIL_UNSOL_CIPHER_INDICATION, stringsDecoder);
+        //d.put(RIL_UNSOL_CNAP, stringsDecoder); //obsolete
+        /// @}
+        /// M: CC077: 2/3G CAPABILITY_HIGH_DEF_AUDIO @{
+        d.put(RIL_UNSOL_SPEECH_CODEC_INFO, intsDecoder);
+        /// @}
+        //MTK-START multiple application support
+        d.put(RIL_UNSOL_APPLICATION_SESSION_ID_CHANGED, intsDecoder);
+        //MTK-END multiple application support
+        d.put(RIL_UNSOL_SIM_MISSING, intsDecoder);
+        d.put(RIL_UNSOL_SIM_RECOVERY, intsDecoder);
+        d.put(RIL_UNSOL_VIRTUAL_SIM_ON, intsDecoder);
+        d.put(RIL_UNSOL_VIRTUAL_SIM_OFF, intsDecoder);
+        d.put(RIL_UNSOL_SIM_PLUG_OUT, voidDecoder);
+        d.put(RIL_UNSOL_SIM_PLUG_IN, voidDecoder);
+        d.put(RIL_UNSOL_TRAY_PLUG_IN, voidDecoder);
+        d.put(RIL_UNSOL_SIM_COMMON_SLOT_NO_CHANGED, voidDecoder);
+        d.put(RIL_UNSOL_DATA_ALLOWED, voidDecoder);
+        d.put(RIL_UNSOL_PHB_READY_NOTIFICATION, intsDecoder);
+        d.put(RIL_UNSOL_STK_SETUP_MENU_RESET, voidDecoder);
+        // IMS
+        d.put(RIL_UNSOL_IMS_ENABLE_DONE, voidDecoder);
+        d.put(RIL_UNSOL_IMS_DISABLE_DONE, voidDecoder);
+        d.put(RIL_UNSOL_IMS_REGISTRATION_INFO, intsDecoder);
+        // M: Fast Dormancy
+        d.put(RIL_UNSOL_SCRI_RESULT, intsDecoder);
+
+        d.put(RIL_UNSOL_RESPONSE_PLMN_CHANGED, stringsDecoder);
+        d.put(RIL_UNSOL_RESPONSE_REGISTRATION_SUSPENDED, intsDecoder);
+        //Remote SIM ME lock related APIs [Start]
+        d.put(RIL_UNSOL_MELOCK_NOTIFICATION, intsDecoder);
+        //Remote SIM ME lock related APIs [End]
+        d.put(RIL_UNSOL_VOLTE_EPS_NETWORK_FEATURE_SUPPORT, intsDecoder);
+
+        /// M: IMS feature. @{
+        //For updating call ids for conference call after SRVCC is done.
+        d.put(RIL_UNSOL_ECONF_SRVCC_INDICATION, intsDecoder);
+        //For updating conference call merged/added result.
+        d.put(RIL_UNSOL_ECONF_RESULT_INDICATION, stringsDecoder);
+        //For updating call mode and pau information.
+        d.put(RIL_UNSOL_CALL_INFO_INDICATION, stringsDecoder);
+        /// @}
+
+        d.put(RIL_UNSOL_VOLTE_EPS_NETWORK_FEATURE_INFO, intsDecoder);
+        d.put(RIL_UNSOL_SRVCC_HANDOVER_INFO_INDICATION, intsDecoder);
+        // M: CC33 LTE.
+        d.put(RIL_UNSOL_RAC_UPDATE, voidDecoder);
+        d.put(RIL_UNSOL_REMOVE_RESTRICT_EUTRAN, voidDecoder);
+
+        //MTK-START for MD state change
+        d.put(RIL_UNSOL_MD_STATE_CHANGE, intsDecoder);
+        //MTK-END for MD state change
+
+        d.put(RIL_UNSOL_MO_DATA_BARRING_INFO, intsDecoder);
+        d.put(RIL_UNSOL_SSAC_BARRING_INFO, intsDecoder);
+
+        /// M: CC071: Add Customer proprietary-IMS RIL interface. @{
+        d.put(RIL_UNSOL_EMERGENCY_BEARER_SUPPORT_NOTIFY, intsDecoder);
+        /// @}
+
+        /* M: C2K part start*/
+        d.put(RIL_UNSOL_CDMA_CALL_ACCEPTED, voidDecoder);
+        d.put(RIL_UNSOL_UTK_SESSION_END, voidDecoder);
+        d.put(RIL_UNSOL_UTK_PROACTIVE_COMMAND, stringDecoder);
+        d.put(RIL_UNSOL_UTK_EVENT_NOTIFY, stringDecoder);
+        d.put(RIL_UNSOL_VIA_GPS_EVENT, intsDecoder);
+        d.put(RIL_UNSOL_VIA_NETWORK_TYPE_CHANGE, intsDecoder);
+        d.put(RIL_UNSOL_VIA_INVALID_SIM_DETECTED, voidDecoder);
+        /* M: C2K part end*/
+        d.put(RIL_UNSOL_ABNORMAL_EVENT, stringsDecoder);
+        d.put(RIL_UNSOL_CDMA_CARD_TYPE, intsDecoder);
+        /// M: [C2K] for eng mode start
+        d.put(RIL_UNSOL_ENG_MODE_NETWORK_INFO, engModeNetworkInfoDecoder);
+        /// M: [C2K] for eng mode end
+
+        /// M: [C2K][IR] Support SVLTE IR feature. @{
+        d.put(RIL_UNSOL_CDMA_PLMN_CHANGED, stringsDecoder);
+        /// M: [C2K][IR] Support SVLTE IR feature. @}
+
+        /// M: [C2K][IR][MD-IRAT] URC for GMSS RAT changed. @{
+        d.put(RIL_UNSOL_GMSS_RAT_CHANGED, intsDecoder);
+        /// M: [C2K][IR][MD-IRAT] URC for GMSS RAT changed. @}
+
+        d.put(RIL_UNSOL_SET_ATTACH_APN, voidDecoder);
+
+        // MTK-START, SMS part
+        // SMS ready
+        d.put(RIL_UNSOL_SMS_READY_NOTIFICATION, voidDecoder);
+        // New SMS but phone storage is full
+        d.put(RIL_UNSOL_ME_SMS_STORAGE_FULL, voidDecoder);
+        // ETWS primary notification
+        d.put(RIL_UNSOL_RESPONSE_ETWS_NOTIFICATION, etwsNotificationDecoder);
+        // MTK-END, SMS part
+
+        /// M: [C2K] For ps type changed.
+        d.put(RIL_UNSOL_RESPONSE_DATA_NETWORK_TYPE_CHANGED, intsDecoder);
+
+        ///M: [C2K][MD IRAT] start @{
+        d.put(RIL_UNSOL_INTER_3GPP_IRAT_STATE_CHANGE, iratStateChangeDecoder);
+        /// }@ [C2K][MD IRAT] end
+        d.put(RIL_UNSOL_IMSI_REFRESH_DONE, voidDecoder);
+        d.put(RIL_UNSOL_CDMA_IMSI_READY, voidDecoder);
+        // M: Notify RILJ that the AT+EUSIM was received
+        d.put(RIL_UNSOL_EUSIM_READY, voidDecoder);
+        // M: Notify RILJ that call fade happened
+        d.put(RIL_UNSOL_CDMA_SIGNAL_FADE, intsDecoder);
+        // M: Notify RILJ that the AT+EFNM was received
+        d.put(RIL_UNSOL_CDMA_TONE_SIGNALS, intsDecoder);
+        /// M: BIP {
+        d.put(RIL_UNSOL_STK_BIP_PROACTIVE_COMMAND, stringDecoder);
+        /// M: BIP }
+        //WorldMode
+        d.put(RIL_UNSOL_WORLD_MODE_CHANGED, intsDecoder);
+        /// M: For 3G VT only @{
+        d.put(RIL_UNSOL_VT_STATUS_INFO, intsDecoder);
+        d.put(RIL_UNSOL_VT_RING_INFO, voidDecoder);
+        /// @}
+
+        // M: [LTE][Low Power][UL traffic shaping] Start
+        d.put(RIL_UNSOL_LTE_ACCESS_STRATUM_STATE_CHANGE, intsDecoder);
+        // M: [LTE][Low Power][UL traffic shaping] End
+        registerUnsolicitedDecoders(d);
+        mMtkUnsolicitedDecoders = d;
+    }
+
     @Override
     protected RILRequest
     processSolicited (Parcel p) {
@@ -260,336 +700,9 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
             }
 
             // either command succeeds or command fails but with data payload
-            try {switch (rr.mRequest) {
-            /*
- cat libs/telephony/ril_commands.h \
- | egrep "^ *{RIL_" \
- | sed -re 's/\{([^,]+),[^,]+,([^}]+).+/case \1: ret = \2(p); break;/'
-             */
-            case RIL_REQUEST_GET_SIM_STATUS: ret =  responseIccCardStatus(p); break;
-            case RIL_REQUEST_ENTER_SIM_PIN: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_SIM_PUK: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_SIM_PIN2: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_SIM_PUK2: ret =  responseInts(p); break;
-            case RIL_REQUEST_CHANGE_SIM_PIN: ret =  responseInts(p); break;
-            case RIL_REQUEST_CHANGE_SIM_PIN2: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_NETWORK_DEPERSONALIZATION: ret =  responseInts(p); break;
-            case RIL_REQUEST_GET_CURRENT_CALLS: ret =  responseCallList(p); break;
-            case RIL_REQUEST_DIAL: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_IMSI: ret =  responseString(p); break;
-            case RIL_REQUEST_HANGUP: ret =  responseVoid(p); break;
-            case RIL_REQUEST_HANGUP_WAITING_OR_BACKGROUND: ret =  responseVoid(p); break;
-            case RIL_REQUEST_HANGUP_FOREGROUND_RESUME_BACKGROUND: {
-                if (mTestingEmergencyCall.getAndSet(false)) {
-                    if (mEmergencyCallbackModeRegistrant != null) {
-                        riljLog("testing emergency call, notify ECM Registrants");
-                        mEmergencyCallbackModeRegistrant.notifyRegistrant();
-                    }
-                }
-                ret =  responseVoid(p);
-                break;
-            }
-            case RIL_REQUEST_SWITCH_WAITING_OR_HOLDING_AND_ACTIVE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CONFERENCE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_UDUB: ret =  responseVoid(p); break;
-            case RIL_REQUEST_LAST_CALL_FAIL_CAUSE: ret =  responseFailCause(p); break;
-            case RIL_REQUEST_SIGNAL_STRENGTH: ret =  responseSignalStrength(p); break;
-            case RIL_REQUEST_VOICE_REGISTRATION_STATE: ret =  responseStrings(p); break;
-            case RIL_REQUEST_DATA_REGISTRATION_STATE: ret =  responseStrings(p); break;
-            case RIL_REQUEST_OPERATOR: ret =  responseOperator(p); break;
-            case RIL_REQUEST_RADIO_POWER: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DTMF: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SEND_SMS: ret =  responseSMS(p); break;
-            case RIL_REQUEST_SEND_SMS_EXPECT_MORE: ret =  responseSMS(p); break;
-            case RIL_REQUEST_SETUP_DATA_CALL: ret =  responseSetupDataCall(p); break;
-            case RIL_REQUEST_SIM_IO: ret =  responseICC_IO(p); break;
-            case RIL_REQUEST_SEND_USSD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CANCEL_USSD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_CLIR: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_CLIR: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_CALL_FORWARD_STATUS: ret =  responseCallForward(p); break;
-            case RIL_REQUEST_SET_CALL_FORWARD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_CALL_WAITING: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_CALL_WAITING: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SMS_ACKNOWLEDGE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_IMEI: ret =  responseString(p); break;
-            case RIL_REQUEST_GET_IMEISV: ret =  responseString(p); break;
-            case RIL_REQUEST_ANSWER: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DEACTIVATE_DATA_CALL: ret = responseVoid(p); break; //VoLTE
-            case RIL_REQUEST_QUERY_FACILITY_LOCK: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_FACILITY_LOCK: ret =  responseInts(p); break;
-            case RIL_REQUEST_CHANGE_BARRING_PASSWORD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_NETWORK_SELECTION_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_NETWORK_SELECTION_AUTOMATIC: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_AVAILABLE_NETWORKS : ret =  responseOperatorInfos(p); break;
-            case RIL_REQUEST_ABORT_QUERY_AVAILABLE_NETWORKS: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DTMF_START: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DTMF_STOP: ret =  responseVoid(p); break;
-            case RIL_REQUEST_BASEBAND_VERSION: ret =  responseString(p); break;
-            case RIL_REQUEST_SEPARATE_CONNECTION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_MUTE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_MUTE: ret =  responseInts(p); break;
-            case RIL_REQUEST_QUERY_CLIP: ret =  responseInts(p); break;
-            case RIL_REQUEST_LAST_DATA_CALL_FAIL_CAUSE: ret =  responseInts(p); break;
-            case RIL_REQUEST_DATA_CALL_LIST: ret =  responseDataCallList(p); break;
-            case RIL_REQUEST_RESET_RADIO: ret =  responseVoid(p); break;
-            case RIL_REQUEST_OEM_HOOK_RAW: ret =  responseRaw(p); break;
-            case RIL_REQUEST_OEM_HOOK_STRINGS: ret =  responseStrings(p); break;
-            case RIL_REQUEST_SCREEN_STATE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_SUPP_SVC_NOTIFICATION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_WRITE_SMS_TO_SIM: ret =  responseInts(p); break;
-            case RIL_REQUEST_DELETE_SMS_ON_SIM: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_BAND_MODE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_AVAILABLE_BAND_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_STK_GET_PROFILE: ret =  responseString(p); break;
-            case RIL_REQUEST_STK_SET_PROFILE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_STK_SEND_ENVELOPE_COMMAND: ret =  responseString(p); break;
-            case RIL_REQUEST_STK_SEND_TERMINAL_RESPONSE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_STK_HANDLE_CALL_SETUP_REQUESTED_FROM_SIM: ret =  responseInts(p); break;
-            case RIL_REQUEST_EXPLICIT_CALL_TRANSFER: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_PREFERRED_NETWORK_TYPE: ret = responseSetPreferredNetworkType(p); break;
-            case RIL_REQUEST_GET_PREFERRED_NETWORK_TYPE: ret = responseGetPreferredNetworkType(p); break;
-            case RIL_REQUEST_GET_NEIGHBORING_CELL_IDS: ret = responseCellList(p); break;
-            case RIL_REQUEST_SET_LOCATION_UPDATES: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SET_SUBSCRIPTION_SOURCE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SET_ROAMING_PREFERENCE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_QUERY_ROAMING_PREFERENCE: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_TTY_MODE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_TTY_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_CDMA_SET_PREFERRED_VOICE_PRIVACY_MODE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_QUERY_PREFERRED_VOICE_PRIVACY_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_CDMA_FLASH: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_BURST_DTMF: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SEND_SMS: ret =  responseSMS(p); break;
-            case RIL_REQUEST_CDMA_SMS_ACKNOWLEDGE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GSM_GET_BROADCAST_CONFIG: ret =  responseGmsBroadcastConfig(p); break;
-            case RIL_REQUEST_GSM_SET_BROADCAST_CONFIG: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GSM_BROADCAST_ACTIVATION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_GET_BROADCAST_CONFIG: ret =  responseCdmaBroadcastConfig(p); break;
-            case RIL_REQUEST_CDMA_SET_BROADCAST_CONFIG: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_BROADCAST_ACTIVATION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_VALIDATE_AND_WRITE_AKEY: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SUBSCRIPTION: ret =  responseStrings(p); break;
-            /*ret = responseInts(p);RIL_REQUEST_CDMA_WRITE_SMS_TO_RUIM modify for UIM sms cache*/
-            case RIL_REQUEST_CDMA_WRITE_SMS_TO_RUIM: ret =  responseStrings(p); break;
-            case RIL_REQUEST_CDMA_DELETE_SMS_ON_RUIM: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DEVICE_IDENTITY: ret =  responseStrings(p); break;
-            case RIL_REQUEST_GET_SMSC_ADDRESS: ret = responseString(p); break;
-            case RIL_REQUEST_SET_SMSC_ADDRESS: ret = responseVoid(p); break;
-            case RIL_REQUEST_EXIT_EMERGENCY_CALLBACK_MODE: ret = responseVoid(p); break;
-            case RIL_REQUEST_REPORT_SMS_MEMORY_STATUS: ret = responseVoid(p); break;
-            case RIL_REQUEST_REPORT_STK_SERVICE_IS_RUNNING: ret = responseVoid(p); break;
-            case RIL_REQUEST_CDMA_GET_SUBSCRIPTION_SOURCE: ret =  responseInts(p); break;
-            case RIL_REQUEST_ISIM_AUTHENTICATION:
-                if (SystemProperties.get("ro.mtk_tc1_feature").equals("1"))
-                    ret =  responseStringEncodeBase64(p);
-                else
-                    ret =  responseString(p);
-                break;
-            case RIL_REQUEST_ACKNOWLEDGE_INCOMING_GSM_SMS_WITH_PDU: ret = responseVoid(p); break;
-            case RIL_REQUEST_STK_SEND_ENVELOPE_WITH_STATUS: ret = responseICC_IO(p); break;
-            case RIL_REQUEST_VOICE_RADIO_TECH: ret = responseInts(p); break;
-            case RIL_REQUEST_GET_CELL_INFO_LIST: ret = responseCellInfoList(p); break;
-            case RIL_REQUEST_SET_UNSOL_CELL_INFO_LIST_RATE: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_INITIAL_ATTACH_APN: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_DATA_PROFILE: ret = responseVoid(p); break;
-            case RIL_REQUEST_IMS_REGISTRATION_STATE: ret = responseInts(p); break;
-            case RIL_REQUEST_IMS_SEND_SMS: ret =  responseSMS(p); break;
-            case RIL_REQUEST_SIM_TRANSMIT_APDU_BASIC: ret =  responseICC_IO(p); break;
-            case RIL_REQUEST_SIM_OPEN_CHANNEL: ret  = responseInts(p); break;
-            case RIL_REQUEST_SIM_CLOSE_CHANNEL: ret  = responseVoid(p); break;
-            case RIL_REQUEST_SIM_TRANSMIT_APDU_CHANNEL: ret = responseICC_IO(p); break;
-            case RIL_REQUEST_NV_READ_ITEM: ret = responseString(p); break;
-            case RIL_REQUEST_NV_WRITE_ITEM: ret = responseVoid(p); break;
-            case RIL_REQUEST_NV_WRITE_CDMA_PRL: ret = responseVoid(p); break;
-            case RIL_REQUEST_NV_RESET_CONFIG: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_UICC_SUBSCRIPTION: ret = responseVoid(p); break;
-            case RIL_REQUEST_ALLOW_DATA: ret = responseVoid(p); break;
-            case RIL_REQUEST_GET_HARDWARE_CONFIG: ret = responseHardwareConfig(p); break;
-            case RIL_REQUEST_SIM_AUTHENTICATION: ret =  responseICC_IOBase64(p); break;
-            case RIL_REQUEST_SHUTDOWN: ret = responseVoid(p); break;
-            case RIL_REQUEST_GET_RADIO_CAPABILITY: ret =  responseRadioCapability(p); break;
-            case RIL_REQUEST_SET_RADIO_CAPABILITY: ret =  responseRadioCapability(p); break;
-            /// M: CC010: Add RIL interface @{
-            case RIL_REQUEST_HANGUP_ALL: ret =  responseVoid(p); break;
-            case RIL_REQUEST_FORCE_RELEASE_CALL: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_CALL_INDICATION: ret = responseVoid(p); break;
-            case RIL_REQUEST_EMERGENCY_DIAL: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_ECC_SERVICE_CATEGORY: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_ECC_LIST: ret = responseVoid(p); break;
-            /// @}
-            /// M: CC077: 2/3G CAPABILITY_HIGH_DEF_AUDIO @{
-            case RIL_REQUEST_SET_SPEECH_CODEC_INFO: ret = responseVoid(p); break;
-            /// @}
-            /// M: For 3G VT only @{
-            case RIL_REQUEST_VT_DIAL: ret = responseVoid(p); break;
-            case RIL_REQUEST_VOICE_ACCEPT: ret = responseVoid(p); break;
-            case RIL_REQUEST_REPLACE_VT_CALL: ret = responseVoid(p); break;
-            /// @}
-            /// M: IMS feature. @{
-            case RIL_REQUEST_ADD_IMS_CONFERENCE_CALL_MEMBER: responseString(p); break;
-            case RIL_REQUEST_REMOVE_IMS_CONFERENCE_CALL_MEMBER: responseString(p); break;
-            case RIL_REQUEST_DIAL_WITH_SIP_URI: ret = responseVoid(p); break;
-            case RIL_REQUEST_RESUME_CALL: ret = responseVoid(p); break;
-            case RIL_REQUEST_HOLD_CALL: ret = responseVoid(p); break;
-            /// @}
-
-            //MTK-START SS
-            case RIL_REQUEST_GET_COLP: ret = responseInts(p); break;
-            case RIL_REQUEST_SET_COLP: ret = responseVoid(p); break;
-            case RIL_REQUEST_GET_COLR: ret = responseInts(p); break;
-            //MTK-END SS
-
-            //MTK-START SIM ME lock
-            case RIL_REQUEST_QUERY_SIM_NETWORK_LOCK: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_SIM_NETWORK_LOCK: ret =  responseInts(p); break;
-            //MTK-END SIM ME lock
-            //MTK-START multiple application support
-            case RIL_REQUEST_GENERAL_SIM_AUTH: ret =  responseICC_IO(p); break;
-            case RIL_REQUEST_OPEN_ICC_APPLICATION: ret = responseInts(p); break;
-            case RIL_REQUEST_GET_ICC_APPLICATION_STATUS: ret = responseIccCardStatus(p); break;
-            //MTK-END multiple application support
-            case RIL_REQUEST_SIM_IO_EX: ret =  responseICC_IO(p); break;
-            // PHB Start
-            case RIL_REQUEST_QUERY_PHB_STORAGE_INFO: ret = responseInts(p); break;
-            case RIL_REQUEST_WRITE_PHB_ENTRY: ret = responseVoid(p); break;
-            case RIL_REQUEST_READ_PHB_ENTRY: ret = responsePhbEntries(p); break;
-            case RIL_REQUEST_QUERY_UPB_CAPABILITY: ret = responseInts(p); break;
-            case RIL_REQUEST_READ_UPB_GRP: ret = responseInts(p); break;
-            case RIL_REQUEST_WRITE_UPB_GRP: ret = responseVoid(p); break;
-            case RIL_REQUEST_EDIT_UPB_ENTRY: ret = responseVoid(p); break;
-            case RIL_REQUEST_DELETE_UPB_ENTRY: ret = responseVoid(p); break;
-            case RIL_REQUEST_READ_UPB_GAS_LIST: ret = responseStrings(p); break;
-            case RIL_REQUEST_GET_PHB_STRING_LENGTH: ret = responseInts(p); break;
-            case RIL_REQUEST_GET_PHB_MEM_STORAGE : ret = responseGetPhbMemStorage(p); break;
-            case RIL_REQUEST_SET_PHB_MEM_STORAGE : responseVoid(p); break;
-            case RIL_REQUEST_READ_PHB_ENTRY_EXT: ret = responseReadPhbEntryExt(p); break;
-            case RIL_REQUEST_WRITE_PHB_ENTRY_EXT: ret = responseVoid(p); break;
-            // PHB End
-
-
-            /* M: network part start */
-            case RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL_WITH_ACT: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_POL_CAPABILITY: ret = responseInts(p); break;
-            case RIL_REQUEST_GET_POL_LIST: ret = responseNetworkInfoWithActs(p); break;
-            case RIL_REQUEST_SET_POL_ENTRY: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_TRM: ret = responseInts(p); break;
-            case RIL_REQUEST_QUERY_AVAILABLE_NETWORKS_WITH_ACT : ret =  responseOperatorInfosWithAct(p); break;
-            case RIL_REQUEST_STK_EVDL_CALL_BY_AP: ret = responseVoid(p); break;
-
-            //Femtocell (CSG) feature START
-            case RIL_REQUEST_GET_FEMTOCELL_LIST: ret = responseFemtoCellInfos(p); break;
-            case RIL_REQUEST_ABORT_FEMTOCELL_LIST: ret = responseVoid(p); break;
-            case RIL_REQUEST_SELECT_FEMTOCELL: ret = responseVoid(p); break;
-            //Femtocell (CSG) feature END
-            /* M: network part end */
-
-            case RIL_REQUEST_QUERY_MODEM_TYPE: ret = responseInts(p); break;
-            case RIL_REQUEST_STORE_MODEM_TYPE: ret = responseVoid(p); break;
-
-            // IMS
-            case RIL_REQUEST_SET_IMS_ENABLE: ret = responseVoid(p); break;
-            case RIL_REQUEST_SIM_GET_ATR: ret = responseString(p); break;
-            // M: Fast Dormancy
-            case RIL_REQUEST_SET_SCRI: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_FD_MODE: ret = responseInts(p); break;
-
-            // MTK-START, SMS part
-            case RIL_REQUEST_GET_SMS_PARAMS: ret = responseSmsParams(p); break;
-            case RIL_REQUEST_SET_SMS_PARAMS: ret = responseVoid(p); break;
-            case RIL_REQUEST_GET_SMS_SIM_MEM_STATUS: ret = responseSimSmsMemoryStatus(p); break;
-            case RIL_REQUEST_SET_ETWS: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_CB_CHANNEL_CONFIG_INFO: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_CB_LANGUAGE_CONFIG_INFO: ret = responseVoid(p); break;
-            case RIL_REQUEST_GET_CB_CONFIG_INFO: ret = responseCbConfig(p); break;
-            case RIL_REQUEST_REMOVE_CB_MESSAGE: ret = responseVoid(p); break;
-            // MTK-END, SMS part
-            case RIL_REQUEST_SET_DATA_CENTRIC: ret = responseVoid(p); break;
-
-            /// M: SVLTE Remove access feature
-            case RIL_REQUEST_CONFIG_MODEM_STATUS: ret = responseVoid(p); break;
-
-            // M: CC33 LTE.
-            case RIL_REQUEST_SET_DATA_ON_TO_MD: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_REMOVE_RESTRICT_EUTRAN_MODE: ret = responseVoid(p); break;
-
-            case RIL_REQUEST_BTSIM_CONNECT: ret = responseString(p); break;
-            case RIL_REQUEST_BTSIM_DISCONNECT_OR_POWEROFF: ret = responseVoid(p); break;
-            case RIL_REQUEST_BTSIM_POWERON_OR_RESETSIM: ret = responseString(p); break;
-            case RIL_REQUEST_BTSIM_TRANSFERAPDU: ret = responseString(p); break;
-
-            /// M: IMS VoLTE conference dial feature. @{
-            case RIL_REQUEST_CONFERENCE_DIAL: ret =  responseVoid(p); break;
-            /// @}
-            case RIL_REQUEST_RELOAD_MODEM_TYPE: ret =  responseVoid(p); break;
-            /// M: CC010: Add RIL interface @{
-            case RIL_REQUEST_SET_IMS_CALL_STATUS: ret = responseVoid(p); break;
-            /// @}
-
-            /// M: CC072: Add Customer proprietary-IMS RIL interface. @{
-            case RIL_REQUEST_SET_SRVCC_CALL_CONTEXT_TRANSFER: ret = responseVoid(p); break;
-            case RIL_REQUEST_UPDATE_IMS_REGISTRATION_STATUS: ret = responseVoid(p); break;
-            /// @}
-
-            /* M: C2K part start */
-            case RIL_REQUEST_GET_NITZ_TIME: ret = responseGetNitzTime(p); break;
-            case RIL_REQUEST_QUERY_UIM_INSERTED: ret = responseInts(p); break;
-            case RIL_REQUEST_SWITCH_HPF: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_AVOID_SYS: ret = responseVoid(p); break;
-            case RIL_REQUEST_QUERY_AVOID_SYS: ret = responseInts(p); break;
-            case RIL_REQUEST_QUERY_CDMA_NETWORK_INFO: ret = responseStrings(p); break;
-            case RIL_REQUEST_GET_LOCAL_INFO: ret =  responseInts(p); break;
-            case RIL_REQUEST_UTK_REFRESH: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_SMS_AND_PHONEBOOK_STATUS: ret = responseInts(p); break;
-            case RIL_REQUEST_QUERY_NETWORK_REGISTRATION: ret = responseInts(p); break;
-            case RIL_REQUEST_AGPS_TCP_CONNIND: ret = responseVoid(p); break;
-            case RIL_REQUEST_AGPS_SET_MPC_IPPORT: ret = responseVoid(p); break;
-            case RIL_REQUEST_AGPS_GET_MPC_IPPORT: ret = responseStrings(p); break;
-            case RIL_REQUEST_SET_MEID: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_ETS_DEV: ret =  responseVoid(p); break;
-            case RIL_REQUEST_WRITE_MDN: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_VIA_TRM: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_ARSI_THRESHOLD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_ACTIVE_PS_SLOT: ret = responseVoid(p); break;
-            case RIL_REQUEST_CONFIRM_INTER_3GPP_IRAT_CHANGE: ret = responseVoid(p); break;
-            case RIL_REQUEST_CONFIG_EVDO_MODE: ret = responseVoid(p); break;
-            case RIL_REQUEST_QUERY_UTK_MENU_FROM_MD: ret =  responseString(p); break;
-            case RIL_REQUEST_QUERY_STK_MENU_FROM_MD: ret =  responseString(p); break;
-            case RIL_REQUEST_DEACTIVATE_LINK_DOWN_PDN: ret = responseVoid(p); break;
-            /* M: C2K part end */
-
-            case RIL_REQUEST_MODEM_POWERON: ret =  responseVoid(p); break;
-            case RIL_REQUEST_MODEM_POWEROFF: ret =  responseVoid(p); break;
-
-            /// M: [C2K][SVLTE] Set the SVLTE RAT mode. @{
-            case RIL_REQUEST_SET_SVLTE_RAT_MODE: ret =  responseVoid(p); break;
-            /// M: [C2K][SVLTE] Set the SVLTE RAT mode. @}
-
-            /// M: [C2K][IR] Support SVLTE IR feature. @{
-            case RIL_REQUEST_SET_REG_SUSPEND_ENABLED: ret = responseVoid(p); break;
-            case RIL_REQUEST_RESUME_REGISTRATION: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_REG_SUSPEND_ENABLED_CDMA: ret =  responseVoid(p); break;
-            case RIL_REQUEST_RESUME_REGISTRATION_CDMA: ret =  responseVoid(p); break;
-            /// M: [C2K][IR] Support SVLTE IR feature. @}
-            case RIL_REQUEST_SET_STK_UTK_MODE: ret = responseVoid(p); break;
-
-            case RIL_REQUEST_SWITCH_ANTENNA: ret = responseVoid(p); break;
-            case RIL_REQUEST_START_LCE: ret = responseLceStatus(p); break;
-            case RIL_REQUEST_STOP_LCE: ret = responseLceStatus(p); break;
-            case RIL_REQUEST_PULL_LCEDATA: ret = responseLceData(p); break;
-            case RIL_REQUEST_GET_ACTIVITY_INFO: ret = responseActivityData(p); break;
-            case RIL_REQUEST_SWITCH_CARD_TYPE: ret = responseVoid(p); break;
-            case RIL_REQUEST_ENABLE_MD3_SLEEP: ret = responseVoid(p); break;
-
-            // M: [LTE][Low Power][UL traffic shaping] Start
-            case RIL_REQUEST_SET_LTE_ACCESS_STRATUM_REPORT: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_LTE_UPLINK_DATA_TRANSFER: ret = responseVoid(p); break;
-            // M: [LTE][Low Power][UL traffic shaping] End
-            default:
-                throw new RuntimeException("Unrecognized solicited response: " + rr.mRequest);
-            //break;
-            }} catch (Throwable tr) {
+            try {
+                ret = decodeSolicitedResponse(rr.mRequest, p);
+            } catch (Throwable tr) {
                 // Exceptions here usually mean invalid RIL responses
 
                 Rlog.w(RILJ_LOG_TAG, rr.serialString() + "< "
@@ -685,173 +798,21 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
         int dataPosition = p.dataPosition(); // save off position within the Parcel
         int response = p.readInt();
 
-        switch(response) {
-            // select AOSP unsols to process differently
-            /*
-            case RIL_UNSOL_STK_SESSION_END: ret = responseVoid(p); break;
-            case RIL_UNSOL_STK_PROACTIVE_COMMAND: ret = responseString(p); break;
-            */
-            case RIL_UNSOL_SIM_SMS_STORAGE_FULL: ret =  responseVoid(p); break;
-            case RIL_UNSOL_RIL_CONNECTED: ret = responseInts(p); break;
-            // MTK unsols
-            case RIL_UNSOL_NEIGHBORING_CELL_INFO: ret = responseStrings(p); break;
-            case RIL_UNSOL_NETWORK_INFO: ret = responseStrings(p); break;
-            case RIL_UNSOL_NETWORK_EXIST: ret = responseInts(p); break;
-            case RIL_UNSOL_FEMTOCELL_INFO: ret = responseStrings(p); break;
-            case RIL_UNSOL_RESPONSE_PS_NETWORK_STATE_CHANGED: ret =  responseInts(p); break;
-            case RIL_UNSOL_INVALID_SIM:  ret = responseStrings(p); break;
-            case RIL_UNSOL_RESPONSE_ACMT: ret = responseInts(p); break;
-            case RIL_UNSOL_IMEI_LOCK: ret = responseVoid(p); break;
-            case RIL_UNSOL_RESPONSE_MMRR_STATUS_CHANGED: ret = responseInts(p); break;
-            case RIL_UNSOL_STK_EVDL_CALL: ret = responseInts(p); break;
-            case RIL_UNSOL_STK_CALL_CTRL: ret = responseStrings(p); break;
-
-            case RIL_UNSOL_UICC_SUBSCRIPTION_STATUS_CHANGED: ret =  responseInts(p); break;
-            case RIL_UNSOL_SRVCC_STATE_NOTIFY: ret = responseInts(p); break;
-            case RIL_UNSOL_HARDWARE_CONFIG_CHANGED: ret = responseHardwareConfig(p); break;
-            case RIL_UNSOL_RADIO_CAPABILITY:
-                    ret = responseRadioCapability(p); break;
-            case RIL_UNSOL_ON_SS: ret =  responseSsData(p); break;
-            case RIL_UNSOL_STK_CC_ALPHA_NOTIFY: ret =  responseStrings(p); break;
-            case RIL_UNSOL_LCEDATA_RECV: ret = responseLceData(p); break;
-            /// M: CC010: Add RIL interface @{
-            case RIL_UNSOL_CALL_FORWARDING: ret = responseInts(p); break;
-            case RIL_UNSOL_CRSS_NOTIFICATION: ret = responseCrssNotification(p); break;
-            case RIL_UNSOL_INCOMING_CALL_INDICATION: ret = responseStrings(p); break;
-            case RIL_UNSOL_CIPHER_INDICATION: ret = responseStrings(p); break;
-            //case RIL_UNSOL_CNAP: ret = responseStrings(p); break; //obsolete
-            /// @}
-            /// M: CC077: 2/3G CAPABILITY_HIGH_DEF_AUDIO @{
-            case RIL_UNSOL_SPEECH_CODEC_INFO: ret =  responseInts(p); break;
-            /// @}
-            //MTK-START multiple application support
-            case RIL_UNSOL_APPLICATION_SESSION_ID_CHANGED: ret = responseInts(p); break;
-            //MTK-END multiple application support
-            case RIL_UNSOL_SIM_MISSING: ret = responseInts(p); break;
-            case RIL_UNSOL_SIM_RECOVERY: ret = responseInts(p); break;
-            case RIL_UNSOL_VIRTUAL_SIM_ON: ret = responseInts(p); break;
-            case RIL_UNSOL_VIRTUAL_SIM_OFF: ret = responseInts(p); break;
-            case RIL_UNSOL_SIM_PLUG_OUT: ret = responseVoid(p); break;
-            case RIL_UNSOL_SIM_PLUG_IN: ret = responseVoid(p); break;
-            case RIL_UNSOL_TRAY_PLUG_IN: ret = responseVoid(p); break;
-            case RIL_UNSOL_SIM_COMMON_SLOT_NO_CHANGED: ret = responseVoid(p); break;
-            case RIL_UNSOL_DATA_ALLOWED: ret = responseVoid(p); break;
-            case RIL_UNSOL_PHB_READY_NOTIFICATION: ret = responseInts(p); break;
-            case RIL_UNSOL_STK_SETUP_MENU_RESET: ret = responseVoid(p); break;
-            // IMS
-            case RIL_UNSOL_IMS_ENABLE_DONE: ret = responseVoid(p); break;
-            case RIL_UNSOL_IMS_DISABLE_DONE: ret = responseVoid(p); break;
-            case RIL_UNSOL_IMS_REGISTRATION_INFO: ret = responseInts(p); break;
-            // M: Fast Dormancy
-            case RIL_UNSOL_SCRI_RESULT: ret = responseInts(p); break;
-
-            case RIL_UNSOL_RESPONSE_PLMN_CHANGED: ret = responseStrings(p); break;
-            case RIL_UNSOL_RESPONSE_REGISTRATION_SUSPENDED: ret = responseInts(p); break;
-            //Remote SIM ME lock related APIs [Start]
-            case RIL_UNSOL_MELOCK_NOTIFICATION: ret = responseInts(p); break;
-            //Remote SIM ME lock related APIs [End]
-            case RIL_UNSOL_VOLTE_EPS_NETWORK_FEATURE_SUPPORT: ret = responseInts(p); break;
-
-            /// M: IMS feature. @{
-            //For updating call ids for conference call after SRVCC is done.
-            case RIL_UNSOL_ECONF_SRVCC_INDICATION: ret = responseInts(p); break;
-            //For updating conference call merged/added result.
-            case RIL_UNSOL_ECONF_RESULT_INDICATION: ret = responseStrings(p); break;
-            //For updating call mode and pau information.
-            case RIL_UNSOL_CALL_INFO_INDICATION : ret = responseStrings(p); break;
-            /// @}
-
-            case RIL_UNSOL_VOLTE_EPS_NETWORK_FEATURE_INFO: ret = responseInts(p); break;
-            case RIL_UNSOL_SRVCC_HANDOVER_INFO_INDICATION:ret = responseInts(p); break;
-            // M: CC33 LTE.
-            case RIL_UNSOL_RAC_UPDATE: ret = responseVoid(p); break;
-            case RIL_UNSOL_REMOVE_RESTRICT_EUTRAN: ret = responseVoid(p); break;
-
-            //MTK-START for MD state change
-            case RIL_UNSOL_MD_STATE_CHANGE: ret = responseInts(p); break;
-            //MTK-END for MD state change
-
-            case RIL_UNSOL_MO_DATA_BARRING_INFO: ret = responseInts(p); break;
-            case RIL_UNSOL_SSAC_BARRING_INFO: ret = responseInts(p); break;
-
-            /// M: CC071: Add Customer proprietary-IMS RIL interface. @{
-            case RIL_UNSOL_EMERGENCY_BEARER_SUPPORT_NOTIFY: ret = responseInts(p); break;
-            /// @}
-
-            /* M: C2K part start*/
-            case RIL_UNSOL_CDMA_CALL_ACCEPTED: ret = responseVoid(p); break;
-            case RIL_UNSOL_UTK_SESSION_END: ret = responseVoid(p); break;
-            case RIL_UNSOL_UTK_PROACTIVE_COMMAND: ret = responseString(p); break;
-            case RIL_UNSOL_UTK_EVENT_NOTIFY: ret = responseString(p); break;
-            case RIL_UNSOL_VIA_GPS_EVENT: ret = responseInts(p); break;
-            case RIL_UNSOL_VIA_NETWORK_TYPE_CHANGE: ret = responseInts(p); break;
-            case RIL_UNSOL_VIA_INVALID_SIM_DETECTED: ret = responseVoid(p); break;
-            /* M: C2K part end*/
-            case RIL_UNSOL_ABNORMAL_EVENT: ret = responseStrings(p); break;
-            case RIL_UNSOL_CDMA_CARD_TYPE: ret = responseInts(p); break;
-            /// M: [C2K] for eng mode start
-            case RIL_UNSOL_ENG_MODE_NETWORK_INFO:
-                ret = responseStrings(p);
-                unsljLog(response);
-                break;
-            /// M: [C2K] for eng mode end
-
-            /// M: [C2K][IR] Support SVLTE IR feature. @{
-            case RIL_UNSOL_CDMA_PLMN_CHANGED: ret = responseStrings(p); break;
-            /// M: [C2K][IR] Support SVLTE IR feature. @}
-
-            /// M: [C2K][IR][MD-IRAT] URC for GMSS RAT changed. @{
-            case RIL_UNSOL_GMSS_RAT_CHANGED: ret = responseInts(p); break;
-            /// M: [C2K][IR][MD-IRAT] URC for GMSS RAT changed. @}
-
-            case RIL_UNSOL_SET_ATTACH_APN: ret = responseVoid(p); break;
-
-            // MTK-START, SMS part
-            // SMS ready
-            case RIL_UNSOL_SMS_READY_NOTIFICATION: ret = responseVoid(p); break;
-            // New SMS but phone storage is full
-            case RIL_UNSOL_ME_SMS_STORAGE_FULL: ret = responseVoid(p); break;
-            // ETWS primary notification
-            case RIL_UNSOL_RESPONSE_ETWS_NOTIFICATION: ret = responseEtwsNotification(p); break;
-            // MTK-END, SMS part
-
-            /// M: [C2K] For ps type changed.
-            case RIL_UNSOL_RESPONSE_DATA_NETWORK_TYPE_CHANGED: ret = responseInts(p); break;
-
-            ///M: [C2K][MD IRAT] start @{
-            case RIL_UNSOL_INTER_3GPP_IRAT_STATE_CHANGE:
-                riljLog(" RIL_UNSOL_INTER_3GPP_IRAT_STATE_CHANGE...");
-                ret = responseIratStateChange(p);
-                break;
-            /// }@ [C2K][MD IRAT] end
-            case RIL_UNSOL_IMSI_REFRESH_DONE: ret = responseVoid(p); break;
-            case RIL_UNSOL_CDMA_IMSI_READY: ret = responseVoid(p); break;
-            // M: Notify RILJ that the AT+EUSIM was received
-            case RIL_UNSOL_EUSIM_READY: ret = responseVoid(p); break;
-            // M: Notify RILJ that call fade happened
-            case RIL_UNSOL_CDMA_SIGNAL_FADE: ret = responseInts(p); break;
-            // M: Notify RILJ that the AT+EFNM was received
-            case RIL_UNSOL_CDMA_TONE_SIGNALS: ret = responseInts(p); break;
-            /// M: BIP {
-            case RIL_UNSOL_STK_BIP_PROACTIVE_COMMAND: ret = responseString(p); break;
-            /// M: BIP }
-            //WorldMode
-            case RIL_UNSOL_WORLD_MODE_CHANGED: ret = responseInts(p); break;
-            /// M: For 3G VT only @{
-            case RIL_UNSOL_VT_STATUS_INFO: ret = responseInts(p); break;
-            case RIL_UNSOL_VT_RING_INFO: ret = responseVoid(p); break;
-            /// @}
+        if (mMtkUnsolicitedDecoders.get(response) == null) {
+            // Rewind the Parcel
+            p.setDataPosition(dataPosition);
 
-            // M: [LTE][Low Power][UL traffic shaping] Start
-            case RIL_UNSOL_LTE_ACCESS_STRATUM_STATE_CHANGE: ret = responseInts(p); break;
-            // M: [LTE][Low Power][UL traffic shaping] End
-            default:
-                // Rewind the Parcel
-                p.setDataPosition(dataPosition);
+            // Forward responses that we are not overriding to the super class
+            super.processUnsolicited(p);
+            return;
+        }
 
-                // Forward responses that we are not overriding to the super class
-                super.processUnsolicited(p);
-                return;
+        try {
+            ret = decodeUnsolicitedResponse(response, p);
+        } catch (Throwable tr) {
+            Rlog.e(RILJ_LOG_TAG, "Exception processing MTK unsol response: " + response +
+                "Exception:" + tr.toString());
+            return;
         }
 
         // To avoid duplicating code from RIL.java, we rewrite some response codes to fit
@@ -1825,7 +1786,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
                     }
                     if (RILJ_LOGD) riljLog("queue size  after " + mDtmfReqQueue.size());
                     if (mDtmfReqQueue.size() == 1) { // only start command, we need to add stop command
-                        RILRequest rr3 = RILRequest.obtain(RIL_REQUEST_DTMF_STOP, null);
+                        RILRequest rr3 = obtainRequest(RIL_REQUEST_DTMF_STOP, null);
                         if (RILJ_LOGD) riljLog("add dummy stop dtmf request");
                         mDtmfReqQueue.stop();
                         mDtmfReqQueue.add(rr3);
@@ -1848,61 +1809,12 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
         }
     }
 
-    private static int readRilMessage(InputStream is, byte[] buffer)
-            throws IOException {
-        int countRead;
-        int offset;
-        int remaining;
-        int messageLength;
-
-        // First, read in the length of the message
-        offset = 0;
-        remaining = 4;
-        do {
-            countRead = is.read(buffer, offset, remaining);
-
-            if (countRead < 0 ) {
-                Rlog.e(RILJ_LOG_TAG, "Hit EOS reading message length");
-                return -1;
-            }
-
-            offset += countRead;
-            remaining -= countRead;
-        } while (remaining > 0);
-
-        messageLength = ((buffer[0] & 0xff) << 24)
-                | ((buffer[1] & 0xff) << 16)
-                | ((buffer[2] & 0xff) << 8)
-                | (buffer[3] & 0xff);
-
-        // Then, re-use the buffer and read in the message itself
-        offset = 0;
-        remaining = messageLength;
-        do {
-            countRead = is.read(buffer, offset, remaining);
-
-            if (countRead < 0 ) {
-                Rlog.e(RILJ_LOG_TAG, "Hit EOS reading message.  messageLength=" + messageLength
-                        + " remaining=" + remaining);
-                return -1;
-            }
-
-            offset += countRead;
-            remaining -= countRead;
-        } while (remaining > 0);
-
-        return messageLength;
-    }
-
         protected RILReceiver createRILReceiver() {
         return new MTKRILReceiver();
     }
 
         protected class MTKRILReceiver extends RILReceiver {
-        byte[] buffer;
-
         protected MTKRILReceiver() {
-            buffer = new byte[RIL_MAX_COMMAND_BYTES];
         }
 
         /// M: For SVLTE to disconnect socket in C2K only mode.
@@ -1999,17 +1911,19 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
                         + rilSocket + "' socket");
 
                 int length = 0;
+                RilFramer.Reader reader = null;
                 try {
                     InputStream is = mSocket.getInputStream();
+                    reader = mFramer.newReader(is);
                     for (;;) {
                         Parcel p;
-                        length = readRilMessage(is, buffer);
+                        length = reader.next();
                         if (length < 0) {
                             // End-of-stream reached
                             break;
                         }
                         p = Parcel.obtain();
-                        p.unmarshall(buffer, 0, length);
+                        p.unmarshall(reader.array(), reader.offset(), length);
                         p.setDataPosition(0);
 
                         //Rlog.v(RILJ_LOG_TAG, "Read packet: " + length + " bytes");
@@ -2023,6 +1937,10 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
                 } catch (Throwable tr) {
                     Rlog.e(RILJ_LOG_TAG, "Uncaught exception read length=" + length +
                         "Exception:" + tr.toString());
+                } finally {
+                    if (reader != null) {
+                        reader.close();
+                    }
                 }
 
                 Rlog.i(RILJ_LOG_TAG, "(" + mInstanceId + ") Disconnected from '" + rilSocket
@@ -2058,7 +1976,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
         if(!(simId==newsim)) {
             int prop = SystemProperties.getInt("gsm.3gswitch", 0);
             if (RILJ_LOGD) riljLog("Setting data subscription on SIM" + (simId + 1) + " mInstanceid=" + mInstanceId + " gsm.3gswitch=" + prop);
-            RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_3G_CAPABILITY, null);
+            RILRequest rr = obtainRequest(RIL_REQUEST_SET_3G_CAPABILITY, null);
             rr.mParcel.writeInt(1);
             int realsim = simId + 1;
             rr.mParcel.writeInt(realsim);
@@ -2082,7 +2000,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void setDataAllowed(boolean allowed, Message result) {
         handle3GSwitch();
 
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ALLOW_DATA, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ALLOW_DATA, result);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                 + " " + allowed);
 
@@ -2170,7 +2088,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void setUiccSubscription(int slotId, int appIndex, int subId,
             int subStatus, Message result) {
         //Note: This RIL request is also valid for SIM and RUIM (ICC card)
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_UICC_SUBSCRIPTION, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_UICC_SUBSCRIPTION, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                 + " slot: " + slotId + " appIndex: " + appIndex
@@ -2194,7 +2112,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void
     supplyNetworkDepersonalization(String netpin, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ENTER_NETWORK_DEPERSONALIZATION, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ENTER_NETWORK_DEPERSONALIZATION, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2209,7 +2127,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     dial(String address, int clirMode, UUSInfo uusInfo, Message result) {
         if (PhoneNumberUtils.isUriNumber(address)) {
-           RILRequest rr = RILRequest.obtain(RIL_REQUEST_DIAL_WITH_SIP_URI, result);
+           RILRequest rr = obtainRequest(RIL_REQUEST_DIAL_WITH_SIP_URI, result);
 
            rr.mParcel.writeString(address);
            if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2224,7 +2142,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     switchWaitingOrHoldingAndActive (Message result) {
         RILRequest rr
-                = RILRequest.obtain(
+                = obtainRequest(
                         RIL_REQUEST_SWITCH_WAITING_OR_HOLDING_AND_ACTIVE,
                                         result);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2250,7 +2168,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
         /// @}
 
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_CONFERENCE, result);
+                = obtainRequest(RIL_REQUEST_CONFERENCE, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2263,7 +2181,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     separateConnection (int gsmIndex, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SEPARATE_CONNECTION, result);
+                = obtainRequest(RIL_REQUEST_SEPARATE_CONNECTION, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                             + " " + gsmIndex);
@@ -2280,7 +2198,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     explicitCallTransfer (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_EXPLICIT_CALL_TRANSFER, result);
+                = obtainRequest(RIL_REQUEST_EXPLICIT_CALL_TRANSFER, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2297,7 +2215,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
         synchronized (mDtmfReqQueue) {
             if (!mDtmfReqQueue.hasSendChldRequest() && mDtmfReqQueue.size() < mDtmfReqQueue.MAXIMUM_DTMF_REQUEST) {
                 if (!mDtmfReqQueue.isStart()) {
-                    RILRequest rr = RILRequest.obtain(RIL_REQUEST_DTMF_START, result);
+                    RILRequest rr = obtainRequest(RIL_REQUEST_DTMF_START, result);
 
                     rr.mParcel.writeString(Character.toString(c));
                     mDtmfReqQueue.start();
@@ -2323,7 +2241,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
         synchronized (mDtmfReqQueue) {
             if (!mDtmfReqQueue.hasSendChldRequest() && mDtmfReqQueue.size() < mDtmfReqQueue.MAXIMUM_DTMF_REQUEST) {
                 if (mDtmfReqQueue.isStart()) {
-                    RILRequest rr = RILRequest.obtain(RIL_REQUEST_DTMF_STOP, result);
+                    RILRequest rr = obtainRequest(RIL_REQUEST_DTMF_STOP, result);
 
                     mDtmfReqQueue.stop();
                     mDtmfReqQueue.add(rr);
@@ -2357,7 +2275,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
             String user, String password, String authType, String protocol,
             String interfaceId, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SETUP_DATA_CALL, result);
+                = obtainRequest(RIL_REQUEST_SETUP_DATA_CALL, result);
 
         rr.mParcel.writeInt(8); //the number should be changed according to number of parameters
 
@@ -2387,10 +2305,10 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
         RILRequest rr;
 
         if (power) {
-            rr = RILRequest.obtain(RIL_REQUEST_MODEM_POWERON, result);
+            rr = obtainRequest(RIL_REQUEST_MODEM_POWERON, result);
         }
         else {
-            rr = RILRequest.obtain(RIL_REQUEST_MODEM_POWEROFF, result);
+            rr = obtainRequest(RIL_REQUEST_MODEM_POWEROFF, result);
         }
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> "
@@ -2404,8 +2322,8 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     getCOLP(Message result) {
         RILRequest rr
-                //= RILRequest.obtain(RIL_REQUEST_GET_COLP, result, mySimId);
-                = RILRequest.obtain(RIL_REQUEST_GET_COLP, result);
+                //= obtainRequest(RIL_REQUEST_GET_COLP, result, mySimId);
+                = obtainRequest(RIL_REQUEST_GET_COLP, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2416,8 +2334,8 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     setCOLP(boolean enable, Message result) {
         RILRequest rr
-                //= RILRequest.obtain(RIL_REQUEST_SET_COLP, result, mySimId);
-                = RILRequest.obtain(RIL_REQUEST_SET_COLP, result);
+                //= obtainRequest(RIL_REQUEST_SET_COLP, result, mySimId);
+                = obtainRequest(RIL_REQUEST_SET_COLP, result);
 
         // count ints
         rr.mParcel.writeInt(1);
@@ -2438,8 +2356,8 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     getCOLR(Message result) {
         RILRequest rr
-                //= RILRequest.obtain(RIL_REQUEST_GET_COLR, result, mySimId);
-                = RILRequest.obtain(RIL_REQUEST_GET_COLR, result);
+                //= obtainRequest(RIL_REQUEST_GET_COLR, result, mySimId);
+                = obtainRequest(RIL_REQUEST_GET_COLR, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2451,7 +2369,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     getAvailableNetworks(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS_WITH_ACT,
+                = obtainRequest(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS_WITH_ACT,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2462,7 +2380,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     cancelAvailableNetworks(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_ABORT_QUERY_AVAILABLE_NETWORKS,
+                = obtainRequest(RIL_REQUEST_ABORT_QUERY_AVAILABLE_NETWORKS,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2473,8 +2391,8 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     ///M: For query CNAP
     public void sendCNAPSS(String cnapssString, Message response) {
         RILRequest rr
-                //= RILRequest.obtain(RIL_REQUEST_SEND_CNAP, response, mySimId);
-                = RILRequest.obtain(RIL_REQUEST_SEND_CNAP, response);
+                //= obtainRequest(RIL_REQUEST_SEND_CNAP, response, mySimId);
+                = obtainRequest(RIL_REQUEST_SEND_CNAP, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                 + " " + cnapssString);
@@ -2487,7 +2405,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void setBandMode(int[] bandMode, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_BAND_MODE, response);
+                = obtainRequest(RIL_REQUEST_SET_BAND_MODE, response);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeInt(bandMode[0]);
@@ -2508,7 +2426,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void handleCallSetupRequestFromSim(
             boolean accept, int resCode, Message response) {
 
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
             RILConstants.RIL_REQUEST_STK_HANDLE_CALL_SETUP_REQUESTED_FROM_SIM,
             response);
 
@@ -2529,7 +2447,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     @Override
     public void queryUtkSetupMenuFromMD(String contents, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_QUERY_UTK_MENU_FROM_MD, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2542,7 +2460,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     @Override
     public void queryStkSetUpMenuFromMD(String contents, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_QUERY_STK_MENU_FROM_MD, response);
 
         if (RILJ_LOGD) {
@@ -2557,7 +2475,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     @Override
     public void setPreferredNetworkType(int networkType , Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_SET_PREFERRED_NETWORK_TYPE, response);
 
         rr.mParcel.writeInt(1);
@@ -3045,16 +2963,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     private int getRequestCount(int reuestId) {
-        int count = 0;
-        synchronized (mRequestList) {
-            for (int i = 0, s = mRequestList.size() ; i < s ; i++) {
-                RILRequest rr = mRequestList.valueAt(i);
-                if (rr != null && rr.mRequest == reuestId) {
-                    count++;
-                }
-            }
-        }
-        return count;
+        return mRequestList.count(reuestId);
     }
 
     //MTK-START Femtocell (CSG)
@@ -3159,7 +3068,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void setInitialAttachApn(String apn, String protocol, int authType, String username,
             String password, Object obj, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_INITIAL_ATTACH_APN, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_INITIAL_ATTACH_APN, null);
 
         if (RILJ_LOGD) { riljLog("Set RIL_REQUEST_SET_INITIAL_ATTACH_APN"); }
 
@@ -3195,7 +3104,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     //MTK-START Support Multi-Application
     @Override
     public void openIccApplication(int application, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_OPEN_ICC_APPLICATION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_OPEN_ICC_APPLICATION, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(application);
@@ -3209,7 +3118,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void getIccApplicationStatus(int sessionId, Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_ICC_APPLICATION_STATUS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_ICC_APPLICATION_STATUS, result);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(sessionId);
@@ -3223,7 +3132,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override public void
     queryNetworkLock(int category, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_QUERY_SIM_NETWORK_LOCK, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_QUERY_SIM_NETWORK_LOCK, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -3238,7 +3147,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override public void
     setNetworkLock(int catagory, int lockop, String password,
                         String data_imsi, String gid1, String gid2, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_SIM_NETWORK_LOCK, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_SIM_NETWORK_LOCK, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -3264,7 +3173,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     doGeneralSimAuthentication(int sessionId, int mode , int tag, String param1,
                                          String param2, Message response) {
 
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GENERAL_SIM_AUTH, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GENERAL_SIM_AUTH, response);
 
         rr.mParcel.writeInt(sessionId);
         rr.mParcel.writeInt(mode);
@@ -3305,7 +3214,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void
     iccGetATR(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SIM_GET_ATR, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SIM_GET_ATR, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -3314,7 +3223,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void
     iccOpenChannelWithSw(String AID, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SIM_OPEN_CHANNEL_WITH_SW, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SIM_OPEN_CHANNEL_WITH_SW, result);
 
         rr.mParcel.writeString(AID);
 
@@ -3356,7 +3265,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     * used only by sendBTSIMProfile
     */
     private void requestConnectSIM(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_BTSIM_CONNECT, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_BTSIM_CONNECT, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -3367,7 +3276,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     * used only by sendBTSIMProfile
     */
     private void requestDisconnectOrPowerOffSIM(int nAction, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_BTSIM_DISCONNECT_OR_POWEROFF, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_BTSIM_DISCONNECT_OR_POWEROFF, response);
 
          rr.mParcel.writeString(Integer.toString(nAction));
 
@@ -3380,7 +3289,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     * used only by sendBTSIMProfile
     */
     private void requestPowerOnOrResetSIM(int nAction, int nType, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_BTSIM_POWERON_OR_RESETSIM, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_BTSIM_POWERON_OR_RESETSIM, response);
 
         rr.mParcel.writeInt(2);
         rr.mParcel.writeString(Integer.toString(nAction));
@@ -3396,7 +3305,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     * used only by sendBTSIMProfile
     */
     private void requestTransferApdu(int nAction, int nType, String strData, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_BTSIM_TRANSFERAPDU, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_BTSIM_TRANSFERAPDU, response);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeString(Integer.toString(nAction));
@@ -3414,7 +3323,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * {@inheritDoc}
      */
     public void queryPhbStorageInfo(int type, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_QUERY_PHB_STORAGE_INFO, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_QUERY_PHB_STORAGE_INFO, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(type);
@@ -3428,7 +3337,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * {@inheritDoc}
      */
     public void writePhbEntry(PhbEntry entry, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_WRITE_PHB_ENTRY, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_WRITE_PHB_ENTRY, result);
 
         rr.mParcel.writeInt(entry.type);
         rr.mParcel.writeInt(entry.index);
@@ -3445,7 +3354,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * {@inheritDoc}
      */
     public void ReadPhbEntry(int type, int bIndex, int eIndex, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_READ_PHB_ENTRY, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_READ_PHB_ENTRY, response);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeInt(type);
@@ -3481,13 +3390,13 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void queryUPBCapability(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_QUERY_UPB_CAPABILITY, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_QUERY_UPB_CAPABILITY, response);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         send(rr);
     }
 
     public void editUPBEntry(int entryType, int adnIndex, int entryIndex, String strVal, String tonForNum, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_EDIT_UPB_ENTRY, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_EDIT_UPB_ENTRY, response);
         if (entryType == 0) {
             rr.mParcel.writeInt(5);
         } else {
@@ -3508,7 +3417,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void deleteUPBEntry(int entryType, int adnIndex, int entryIndex, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_DELETE_UPB_ENTRY, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_DELETE_UPB_ENTRY, response);
         rr.mParcel.writeInt(3);
         rr.mParcel.writeInt(entryType);
         rr.mParcel.writeInt(adnIndex);
@@ -3518,7 +3427,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void readUPBGasList(int startIndex, int endIndex, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_READ_UPB_GAS_LIST, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_READ_UPB_GAS_LIST, response);
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(startIndex);
         rr.mParcel.writeInt(endIndex);
@@ -3527,7 +3436,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void readUPBGrpEntry(int adnIndex, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_READ_UPB_GRP, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_READ_UPB_GRP, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(adnIndex);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -3535,7 +3444,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void writeUPBGrpEntry(int adnIndex, int[] grpIds, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_WRITE_UPB_GRP, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_WRITE_UPB_GRP, response);
         int nLen = grpIds.length;
         rr.mParcel.writeInt(nLen + 1);
         rr.mParcel.writeInt(adnIndex);
@@ -3666,7 +3575,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * @return  <nlength><tlength><glength><slength><elength>
      */
     public void getPhoneBookStringsLength(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_PHB_STRING_LENGTH, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_PHB_STRING_LENGTH, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> :::" + requestToString(rr.mRequest));
 
@@ -3678,7 +3587,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * @return  PBMemStorage :: +cpbs:<storage>,<used>,<total>
      */
     public void getPhoneBookMemStorage(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_PHB_MEM_STORAGE, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_PHB_MEM_STORAGE, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> :::" + requestToString(rr.mRequest));
 
@@ -3690,7 +3599,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * @return
      */
     public void setPhoneBookMemStorage(String storage, String password, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_PHB_MEM_STORAGE, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_PHB_MEM_STORAGE, result);
         rr.mParcel.writeInt(2);
         rr.mParcel.writeString(storage);
         rr.mParcel.writeString(password);
@@ -3704,7 +3613,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * +CPBR:<indexn>,<number>,<type>,<text>,<hidden>,<group>,<adnumber>,<adtype>,<secondtext>,<email>
      */
     public void readPhoneBookEntryExt(int index1, int index2, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_READ_PHB_ENTRY_EXT, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_READ_PHB_ENTRY_EXT, result);
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(index1);
         rr.mParcel.writeInt(index2);
@@ -3718,7 +3627,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     /*
     public void writePhoneBookEntryExt(PBEntry entry, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_WRITE_PHB_ENTRY_EXT, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_WRITE_PHB_ENTRY_EXT, result);
 
         rr.mParcel.writeInt(entry.getIndex1());
         rr.mParcel.writeString(entry.getNumber());
@@ -3743,7 +3652,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * {@inheritDoc}
      */
     public void getSmsParameters(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_SMS_PARAMS, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_SMS_PARAMS, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -3770,7 +3679,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     /*
     public void setSmsParameters(SmsParameters params, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_SMS_PARAMS, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_SMS_PARAMS, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -3788,7 +3697,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * {@inheritDoc}
      */
     public void getSmsSimMemoryStatus(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_SMS_SIM_MEM_STATUS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_SMS_SIM_MEM_STATUS, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -3808,7 +3717,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * {@inheritDoc}
      */
     public void setEtws(int mode, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_ETWS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_ETWS, result);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(mode);
@@ -3821,7 +3730,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void setCellBroadcastChannelConfigInfo(String config, int cb_set_type,
             Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_CB_CHANNEL_CONFIG_INFO, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_CB_CHANNEL_CONFIG_INFO, response);
 
         rr.mParcel.writeInt(2);
         rr.mParcel.writeString(config);
@@ -3831,7 +3740,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void setCellBroadcastLanguageConfigInfo(String config, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_CB_LANGUAGE_CONFIG_INFO, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_CB_LANGUAGE_CONFIG_INFO, response);
 
         rr.mParcel.writeString(config);
 
@@ -3840,7 +3749,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void queryCellBroadcastConfigInfo(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_CB_CONFIG_INFO, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_CB_CONFIG_INFO, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         send(rr);
@@ -3860,7 +3769,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void removeCellBroadcastMsg(int channelId, int serialId, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_REMOVE_CB_MESSAGE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_REMOVE_CB_MESSAGE, response);
 
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(channelId);
@@ -3891,7 +3800,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     // MTK-END, SMS part
 
     public void setTrm(int mode, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_TRM, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_TRM, null);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(mode);
@@ -3901,13 +3810,13 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void queryModemType(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_QUERY_MODEM_TYPE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_QUERY_MODEM_TYPE, response);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         send(rr);
     }
 
     public void storeModemType(int modemType, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_STORE_MODEM_TYPE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_STORE_MODEM_TYPE, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(modemType);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -3915,7 +3824,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void reloadModemType(int modemType, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_RELOAD_MODEM_TYPE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_RELOAD_MODEM_TYPE, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(modemType);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -3924,8 +3833,8 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void setStkEvdlCallByAP(int enabled, Message response) {
         RILRequest rr =
-                //RILRequest.obtain(RIL_REQUEST_STK_EVDL_CALL_BY_AP, response, mySimId);
-                RILRequest.obtain(RIL_REQUEST_STK_EVDL_CALL_BY_AP, response);
+                //obtainRequest(RIL_REQUEST_STK_EVDL_CALL_BY_AP, response, mySimId);
+                obtainRequest(RIL_REQUEST_STK_EVDL_CALL_BY_AP, response);
         if (RILJ_LOGD) riljLog(rr.serialString() + ">>> " + requestToString(rr.mRequest));
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(enabled);
@@ -3986,7 +3895,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     /// M: CC010: Add RIL interface @{
     public void
     hangupAll(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_HANGUP_ALL,
+        RILRequest rr = obtainRequest(RIL_REQUEST_HANGUP_ALL,
                                         result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -3996,7 +3905,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void forceReleaseCall(int index, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_FORCE_RELEASE_CALL, result);
+                = obtainRequest(RIL_REQUEST_FORCE_RELEASE_CALL, result);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(index);
@@ -4009,7 +3918,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void setCallIndication(int mode, int callId, int seqNumber, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_CALL_INDICATION, result);
+                = obtainRequest(RIL_REQUEST_SET_CALL_INDICATION, result);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeInt(mode);
@@ -4033,7 +3942,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void
     emergencyDial(String address, int clirMode, UUSInfo uusInfo, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_EMERGENCY_DIAL, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_EMERGENCY_DIAL, result);
 
         rr.mParcel.writeString(address);
         rr.mParcel.writeInt(clirMode);
@@ -4063,7 +3972,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     public void
     conferenceDial(String[] participants, int clirMode, boolean isVideoCall, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CONFERENCE_DIAL, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CONFERENCE_DIAL, result);
 
         int numberOfParticipants = participants.length;
         /* numberOfStrings is including
@@ -4111,7 +4020,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     /* IMS VoLTE conference dial feature end*/
 
     public void setEccServiceCategory(int serviceCategory) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_ECC_SERVICE_CATEGORY, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_ECC_SERVICE_CATEGORY, null);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(serviceCategory);
@@ -4123,7 +4032,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     private void setEccList() {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_ECC_LIST, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_ECC_LIST, null);
         ArrayList<PhoneNumberUtils.EccEntry> eccList = PhoneNumberUtils.getEccList();
 
         rr.mParcel.writeInt(eccList.size() * 3);
@@ -4144,7 +4053,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     /// M: CC077: 2/3G CAPABILITY_HIGH_DEF_AUDIO @{
     public void setSpeechCodecInfo(boolean enable, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_SPEECH_CODEC_INFO,
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_SPEECH_CODEC_INFO,
                 response);
 
         rr.mParcel.writeInt(1);
@@ -4159,7 +4068,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     /// M: For 3G VT only @{
     public void
     vtDial(String address, int clirMode, UUSInfo uusInfo, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_VT_DIAL, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_VT_DIAL, result);
 
         rr.mParcel.writeString(address);
         rr.mParcel.writeInt(clirMode);
@@ -4180,7 +4089,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void
     acceptVtCallWithVoiceOnly(int callId, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_VOICE_ACCEPT, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_VOICE_ACCEPT, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " +
                 requestToString(rr.mRequest) + " " + callId);
@@ -4193,7 +4102,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     public void replaceVtCall(int index, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_REPLACE_VT_CALL, result);
+                = obtainRequest(RIL_REQUEST_REPLACE_VT_CALL, result);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(index);
@@ -4206,7 +4115,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     /// M: IMS feature. @{
     public void addConferenceMember(int confCallId, String address, int callIdToAdd, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ADD_IMS_CONFERENCE_CALL_MEMBER, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ADD_IMS_CONFERENCE_CALL_MEMBER, response);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeString(Integer.toString(confCallId));
@@ -4218,7 +4127,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void removeConferenceMember(int confCallId, String address, int callIdToRemove, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_REMOVE_IMS_CONFERENCE_CALL_MEMBER, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_REMOVE_IMS_CONFERENCE_CALL_MEMBER, response);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeString(Integer.toString(confCallId));
@@ -4235,7 +4144,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * @param response command response.
      */
     public void resumeCall(int callIdToResume, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_RESUME_CALL, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_RESUME_CALL, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(callIdToResume);
@@ -4252,7 +4161,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * @param response command response.
      */
     public void holdCall(int callIdToHold, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_HOLD_CALL, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_HOLD_CALL, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(callIdToHold);
@@ -4268,8 +4177,8 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     changeBarringPassword(String facility, String oldPwd, String newPwd,
         String newCfm, Message result) {
-        //RILRequest rr = RILRequest.obtain(RIL_REQUEST_CHANGE_BARRING_PASSWORD, result, mySimId);
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CHANGE_BARRING_PASSWORD, result);
+        //RILRequest rr = obtainRequest(RIL_REQUEST_CHANGE_BARRING_PASSWORD, result, mySimId);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CHANGE_BARRING_PASSWORD, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -4282,8 +4191,8 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void setCLIP(boolean enable, Message result) {
-        //RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_CLIP, result, mySimId);
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_CLIP, result);
+        //RILRequest rr = obtainRequest(RIL_REQUEST_SET_CLIP, result, mySimId);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_CLIP, result);
 
         // count ints
         rr.mParcel.writeInt(1);
@@ -4336,7 +4245,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     setNetworkSelectionModeManualWithAct(String operatorNumeric, String act, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL_WITH_ACT,
+                = obtainRequest(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL_WITH_ACT,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
@@ -4418,7 +4327,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     setNetworkSelectionModeSemiAutomatic(String operatorNumeric, String act, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL_WITH_ACT,
+                = obtainRequest(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL_WITH_ACT,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
@@ -4433,19 +4342,19 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void getPOLCapabilty(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_POL_CAPABILITY, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_POL_CAPABILITY, response);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         send(rr);
     }
 
     public void getCurrentPOLList(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_POL_LIST, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_POL_LIST, response);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         send(rr);
     }
 
     public void setPOLEntry(int index, String numeric, int nAct, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_POL_ENTRY, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_POL_ENTRY, response);
         if (numeric == null || (numeric.length() == 0)) {
             rr.mParcel.writeInt(1);
             rr.mParcel.writeString(Integer.toString(index));
@@ -4462,7 +4371,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     // Femtocell (CSG) feature START
     public void getFemtoCellList(String operatorNumeric, int rat, Message response) {
         RILRequest rr
-        = RILRequest.obtain(RIL_REQUEST_GET_FEMTOCELL_LIST,
+        = obtainRequest(RIL_REQUEST_GET_FEMTOCELL_LIST,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4473,14 +4382,14 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     }
 
     public void abortFemtoCellList(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ABORT_FEMTOCELL_LIST, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ABORT_FEMTOCELL_LIST, response);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         send(rr);
     }
 
     public void selectFemtoCell(FemtoCellInfo femtocell, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SELECT_FEMTOCELL,
+                = obtainRequest(RIL_REQUEST_SELECT_FEMTOCELL,
                                     response);
         int act = femtocell.getCsgRat();
 
@@ -4509,7 +4418,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     setDataOnToMD(boolean enable, Message result) {
         //AT+EDSS = <on/off>
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_DATA_ON_TO_MD, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_DATA_ON_TO_MD, result);
         int type = enable ? 1 : 0;
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(type);
@@ -4523,7 +4432,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     public void
     setRemoveRestrictEutranMode(boolean enable, Message result) {
         //AT+ECODE33 = <on/off>
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_REMOVE_RESTRICT_EUTRAN_MODE, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_REMOVE_RESTRICT_EUTRAN_MODE, result);
         int type = enable ? 1 : 0;
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(type);
@@ -4537,7 +4446,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void
     setLteAccessStratumReport(boolean enable, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_LTE_ACCESS_STRATUM_REPORT, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_LTE_ACCESS_STRATUM_REPORT, result);
         int type = enable ? 1 : 0;
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(type);
@@ -4550,7 +4459,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void
     setLteUplinkDataTransfer(int state, int interfaceId, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_LTE_UPLINK_DATA_TRANSFER, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_LTE_UPLINK_DATA_TRANSFER, result);
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(state);
         rr.mParcel.writeInt(interfaceId);
@@ -4564,24 +4473,14 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     // M: [LTE][Low Power][UL traffic shaping] End
 
     public boolean isGettingAvailableNetworks() {
-        synchronized (mRequestList) {
-            for (int i = 0, s = mRequestList.size() ; i < s ; i++) {
-                RILRequest rr = mRequestList.valueAt(i);
-                if (rr != null &&
-                    (rr.mRequest == RIL_REQUEST_QUERY_AVAILABLE_NETWORKS ||
-                     rr.mRequest == RIL_REQUEST_QUERY_AVAILABLE_NETWORKS_WITH_ACT)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return mRequestList.count(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS) > 0
+                || mRequestList.count(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS_WITH_ACT) > 0;
     }
 
     /* M: Network part end */
     // IMS
     public void setIMSEnabled(boolean enable, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_IMS_ENABLE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_IMS_ENABLE, response);
 
         rr.mParcel.writeInt(1);
         if (enable) {
@@ -4596,7 +4495,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     // M: Fast Dormancy
     public void setScri(boolean forceRelease, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_SCRI, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_SCRI, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -4609,7 +4508,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     //[New R8 modem FD]
     public void setFDMode(int mode, int parameter1, int parameter2, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_FD_MODE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_FD_MODE, response);
 
         //AT+EFD=<mode>[,<param1>[,<param2>]]
         //mode=0:disable modem Fast Dormancy; mode=1:enable modem Fast Dormancy
@@ -4640,7 +4539,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     //         false -> voice centric
     public void setDataCentric(boolean enable, Message response) {
         if (RILJ_LOGD) riljLog("setDataCentric");
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_DATA_CENTRIC, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_DATA_CENTRIC, response);
 
         rr.mParcel.writeInt(1);
         if (enable) {
@@ -4662,7 +4561,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     @Override
     public void setImsCallStatus(boolean existed, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_IMS_CALL_STATUS, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_IMS_CALL_STATUS, null);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(existed ? 1 : 0);
@@ -4683,7 +4582,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
      @Override
      public void setSrvccCallContextTransfer(int numberOfCall, SrvccCallContext[] callList) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_SRVCC_CALL_CONTEXT_TRANSFER, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_SRVCC_CALL_CONTEXT_TRANSFER, null);
 
         if ((numberOfCall <= 0) || (callList == null)) {
               return;
@@ -4725,7 +4624,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      *                 2: RF off
      */
      public void updateImsRegistrationStatus(int regState, int regType, int reason) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_UPDATE_IMS_REGISTRATION_STATUS, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_UPDATE_IMS_REGISTRATION_STATUS, null);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeInt(regState);
@@ -4742,7 +4641,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     /* M: C2K part start */
     @Override
     public void setViaTRM(int mode, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_VIA_TRM, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_VIA_TRM, null);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(mode);
@@ -4756,7 +4655,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void getNitzTime(Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_GET_NITZ_TIME, result);
+                = obtainRequest(RIL_REQUEST_GET_NITZ_TIME, result);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4768,7 +4667,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void requestSwitchHPF(boolean enableHPF, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SWITCH_HPF, response);
+                = obtainRequest(RIL_REQUEST_SWITCH_HPF, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest) + " " + enableHPF);
@@ -4783,7 +4682,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void setAvoidSYS(boolean avoidSYS, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_AVOID_SYS, response);
+                = obtainRequest(RIL_REQUEST_SET_AVOID_SYS, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest) + " " + avoidSYS);
@@ -4798,7 +4697,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void getAvoidSYSList(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_AVOID_SYS, response);
+                = obtainRequest(RIL_REQUEST_QUERY_AVOID_SYS, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4810,7 +4709,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void queryCDMANetworkInfo(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_CDMA_NETWORK_INFO, response);
+                = obtainRequest(RIL_REQUEST_QUERY_CDMA_NETWORK_INFO, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4821,7 +4720,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void setOplmn(String oplmnInfo, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SEND_OPLMN, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SEND_OPLMN, response);
         rr.mParcel.writeString(oplmnInfo);
         riljLog("sendOplmn, OPLMN is" + oplmnInfo);
 
@@ -4833,7 +4732,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void getOplmnVersion(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_OPLMN_VERSION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_OPLMN_VERSION, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4843,7 +4742,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void requestAGPSTcpConnected(int connected, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_AGPS_TCP_CONNIND, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_AGPS_TCP_CONNIND, result);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(connected);
         if (RILJ_LOGD) {
@@ -4854,7 +4753,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void requestAGPSSetMpcIpPort(String ip, String port, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_AGPS_SET_MPC_IPPORT, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_AGPS_SET_MPC_IPPORT, result);
         rr.mParcel.writeInt(2);
         rr.mParcel.writeString(ip);
         rr.mParcel.writeString(port);
@@ -4867,7 +4766,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void requestAGPSGetMpcIpPort(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_AGPS_GET_MPC_IPPORT, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_AGPS_GET_MPC_IPPORT, result);
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         }
@@ -4876,7 +4775,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void requestSetEtsDev(int dev, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_ETS_DEV, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_ETS_DEV, result);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(dev);
         if (RILJ_LOGD) {
@@ -4887,7 +4786,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void setArsiReportThreshold(int threshold, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_SET_ARSI_THRESHOLD, response);
 
         rr.mParcel.writeInt(1);
@@ -4903,7 +4802,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void queryCDMASmsAndPBStatus(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_SMS_AND_PHONEBOOK_STATUS, response);
+                = obtainRequest(RIL_REQUEST_QUERY_SMS_AND_PHONEBOOK_STATUS, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4915,7 +4814,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void queryCDMANetWorkRegistrationState(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_NETWORK_REGISTRATION, response);
+                = obtainRequest(RIL_REQUEST_QUERY_NETWORK_REGISTRATION, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4927,7 +4826,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void setMeid(String meid, Message response) {
         RILRequest rr
-               = RILRequest.obtain(RIL_REQUEST_SET_MEID, response);
+               = obtainRequest(RIL_REQUEST_SET_MEID, response);
 
        rr.mParcel.writeString(meid);
        if (RILJ_LOGD) {
@@ -4940,7 +4839,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void setMdnNumber(String mdn, Message response) {
          RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_WRITE_MDN, response);
+                = obtainRequest(RIL_REQUEST_WRITE_MDN, response);
 
         rr.mParcel.writeString(mdn);
         if (RILJ_LOGD) {
@@ -4965,7 +4864,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     /// M: UTK started @{
     @Override
     public void getUtkLocalInfo(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_LOCAL_INFO, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_LOCAL_INFO, result);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4976,7 +4875,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void requestUtkRefresh(int refreshType, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_UTK_REFRESH, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_UTK_REFRESH, result);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(refreshType);
@@ -4990,7 +4889,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void reportUtkServiceIsRunning(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_REPORT_STK_SERVICE_IS_RUNNING, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_REPORT_STK_SERVICE_IS_RUNNING, result);
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         }
@@ -5000,7 +4899,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void profileDownload(String profile, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_STK_SET_PROFILE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_STK_SET_PROFILE, response);
 
         rr.mParcel.writeString(profile);
 
@@ -5013,7 +4912,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void handleCallSetupRequestFromUim(boolean accept, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
             RILConstants.RIL_REQUEST_STK_HANDLE_CALL_SETUP_REQUESTED_FROM_SIM,
             response);
 
@@ -5032,7 +4931,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     ///M: [C2K][SVLTE] Removt SIM access feature @{
     @Override
     public void configModemStatus(int modemStatus, int remoteSimProtocol, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CONFIG_MODEM_STATUS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CONFIG_MODEM_STATUS, result);
 
         // count ints
         rr.mParcel.writeInt(2);
@@ -5051,7 +4950,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     /// M: [C2K][SVLTE] C2K SVLTE CDMA eHPRD control @{
     @Override
     public void configEvdoMode(int evdoMode, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CONFIG_EVDO_MODE, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CONFIG_EVDO_MODE, result);
 
         // count ints
         rr.mParcel.writeInt(1);
@@ -5069,7 +4968,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     ///M: [C2K][IRAT] code start @{
     @Override
     public void confirmIratChange(int apDecision, Message response) {
-        RILRequest rr = RILRequest.obtain(RILConstants.RIL_REQUEST_CONFIRM_INTER_3GPP_IRAT_CHANGE,
+        RILRequest rr = obtainRequest(RILConstants.RIL_REQUEST_CONFIRM_INTER_3GPP_IRAT_CHANGE,
                 response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(apDecision);
@@ -5081,7 +4980,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void requestSetPsActiveSlot(int psSlot, Message response) {
-        RILRequest rr = RILRequest.obtain(RILConstants.RIL_REQUEST_SET_ACTIVE_PS_SLOT, response);
+        RILRequest rr = obtainRequest(RILConstants.RIL_REQUEST_SET_ACTIVE_PS_SLOT, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(psSlot);
         if (RILJ_LOGD) {
@@ -5098,7 +4997,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void requestDeactivateLinkDownPdn(Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_DEACTIVATE_LINK_DOWN_PDN, response);
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -5126,7 +5025,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     @Override
     public void setSvlteRatMode(int radioTechMode, int preSvlteMode, int svlteMode,
             int preRoamingMode, int roamingMode, boolean is3GDualModeCard, Message response) {
-        RILRequest rr = RILRequest.obtain(RILConstants.RIL_REQUEST_SET_SVLTE_RAT_MODE, response);
+        RILRequest rr = obtainRequest(RILConstants.RIL_REQUEST_SET_SVLTE_RAT_MODE, response);
         rr.mParcel.writeInt(6);
         rr.mParcel.writeInt(radioTechMode);
         rr.mParcel.writeInt(preSvlteMode);
@@ -5148,7 +5047,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
     /// M: [C2K][SVLTE] Set the STK UTK mode. @}
     @Override
     public void setStkUtkMode(int stkUtkMode, Message response) {
-        RILRequest rr = RILRequest.obtain(RILConstants.RIL_REQUEST_SET_STK_UTK_MODE, response);
+        RILRequest rr = obtainRequest(RILConstants.RIL_REQUEST_SET_STK_UTK_MODE, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(stkUtkMode);
         if (RILJ_LOGD) {
@@ -5170,7 +5069,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void setRegistrationSuspendEnabled(int enabled, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_REG_SUSPEND_ENABLED, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_REG_SUSPEND_ENABLED, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(enabled);
         if (RILJ_LOGD) {
@@ -5181,7 +5080,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void setResumeRegistration(int sessionId, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_RESUME_REGISTRATION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_RESUME_REGISTRATION, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(sessionId);
         if (RILJ_LOGD) {
@@ -5192,7 +5091,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void setCdmaRegistrationSuspendEnabled(boolean enabled, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_REG_SUSPEND_ENABLED_CDMA, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_REG_SUSPEND_ENABLED_CDMA, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(enabled ? 1 : 0);
         if (RILJ_LOGD) {
@@ -5203,7 +5102,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
 
     @Override
     public void setResumeCdmaRegistration(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_RESUME_REGISTRATION_CDMA, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_RESUME_REGISTRATION_CDMA, response);
         mVoiceNetworkStateRegistrants.notifyRegistrants(new AsyncResult(null, null, null));
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -5282,7 +5181,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      */
     @Override
     public void switchAntenna(int callState, int ratMode) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SWITCH_ANTENNA, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SWITCH_ANTENNA, null);
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(callState);
         rr.mParcel.writeInt(ratMode);
@@ -5301,7 +5200,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * @param cardtype that to be switched.
      */
     public void switchCardType(int cardtype) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SWITCH_CARD_TYPE, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SWITCH_CARD_TYPE, null);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(cardtype);
         if (RILJ_LOGD) {
@@ -5316,7 +5215,7 @@ public class MediaTekRIL extends RIL implements CommandsInterface {
      * @param enable MD3 sleep.
      */
     public void enableMd3Sleep(int enable) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ENABLE_MD3_SLEEP, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ENABLE_MD3_SLEEP, null);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(enable);
         if (RILJ_LOGD) {
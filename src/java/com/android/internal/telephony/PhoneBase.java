@@ -186,8 +186,9 @@ public abstract class PhoneBase extends Handler implements Phone {
     protected static final int EVENT_CONFIG_LCE                     = 37;
     private static final int EVENT_CHECK_FOR_NETWORK_AUTOMATIC      = 38;
     protected static final int EVENT_GET_CALLFORWARDING_STATUS      = 39;
+    protected static final int EVENT_GET_ALL_CELL_INFO_DONE         = 40;
     protected static final int EVENT_LAST                           =
-            EVENT_GET_CALLFORWARDING_STATUS;
+            EVENT_GET_ALL_CELL_INFO_DONE;
 
     // For shared prefs.
     private static final String GSM_ROAMING_LIST_OVERRIDE_PREFIX = "gsm_roaming_list_";
@@ -604,6 +605,16 @@ public abstract class PhoneBase extends Handler implements Phone {
             case EVENT_SET_NETWORK_AUTOMATIC_COMPLETE:
                 handleSetSelectNetwork((AsyncResult) msg.obj);
                 return;
+
+            // reply to requestAllCellInfo() callers
+            case EVENT_GET_ALL_CELL_INFO_DONE: {
+                ar = (AsyncResult) msg.obj;
+                Message onComplete = (Message) ar.userObj;
+                AsyncResult.forMessage(onComplete,
+                        privatizeCellInfoList((List<CellInfo>) ar.result), ar.exception);
+                onComplete.sendToTarget();
+                return;
+            }
         }
 
         if (!mIsTheCurrentActivePhone) {
@@ -1446,6 +1457,18 @@ public abstract class PhoneBase extends Handler implements Phone {
         return privatizeCellInfoList(cellInfoList);
     }
 
+    /**
+     * Asynchronous version of {@link #getAllCellInfo}. Concurrent requests share one
+     * request to the RIL.
+     *
+     * @param response sent with an AsyncResult whose result is the List of CellInfo,
+     *     or null if none
+     */
+    public void requestAllCellInfo(Message response) {
+        getServiceStateTracker().requestAllCellInfo(
+                obtainMessage(EVENT_GET_ALL_CELL_INFO_DONE, response));
+    }
+
     /**
      * Clear CDMA base station lat/long values if location setting is disabled.
      * @param cellInfoList the original cell info list from the RIL
@@ -95,6 +95,7 @@ import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Random;
@@ -108,10 +109,8 @@ class RILRequest {
     //***** Class Variables
     static Random sRandom = new Random();
     static AtomicInteger sNextSerial = new AtomicInteger(0);
-    private static Object sPoolSync = new Object();
-    private static RILRequest sPool = null;
-    private static int sPoolSize = 0;
-    private static final int MAX_POOL_SIZE = 4;
+    // Shared by callers that do not go through a RIL instance
+    private static final RilRequestPool sDefaultPool = new RilRequestPool();
     private Context mContext;
 
     //***** Instance Variables
@@ -120,35 +119,47 @@ class RILRequest {
     Message mResult;
     Parcel mParcel;
     RILRequest mNext;
+    RilRequestPool mPool;
+    // SystemClock.elapsedRealtime() when queued for and written to rild
+    long mEnqueueTime;
+    long mSentTime;
+    boolean mReportedSlow;
 
     /**
-     * Retrieves a new RILRequest instance from the pool.
+     * Retrieves a new RILRequest instance from the shared pool.
      *
      * @param request RIL_REQUEST_*
      * @param result sent when operation completes
      * @return a RILRequest instance from the pool.
      */
     static RILRequest obtain(int request, Message result) {
-        RILRequest rr = null;
-
-        synchronized(sPoolSync) {
-            if (sPool != null) {
-                rr = sPool;
-                sPool = rr.mNext;
-                rr.mNext = null;
-                sPoolSize--;
-            }
-        }
+        return obtain(sDefaultPool, request, result);
+    }
+
+    /**
+     * Retrieves a new RILRequest instance from <code>pool</code>.
+     *
+     * @param pool the pool to take the request from and return it to
+     * @param request RIL_REQUEST_*
+     * @param result sent when operation completes
+     * @return a RILRequest instance from the pool.
+     */
+    static RILRequest obtain(RilRequestPool pool, int request, Message result) {
+        RILRequest rr = pool.acquire();
 
         if (rr == null) {
             rr = new RILRequest();
         }
 
+        rr.mPool = pool;
         rr.mSerial = sNextSerial.getAndIncrement();
 
         rr.mRequest = request;
         rr.mResult = result;
         rr.mParcel = Parcel.obtain();
+        rr.mEnqueueTime = 0;
+        rr.mSentTime = 0;
+        rr.mReportedSlow = false;
 
         if (result != null && result.getTarget() == null) {
             throw new NullPointerException("Message target must not be null");
@@ -167,14 +178,8 @@ class RILRequest {
      * Note: This should only be called once per use.
      */
     void release() {
-        synchronized (sPoolSync) {
-            if (sPoolSize < MAX_POOL_SIZE) {
-                mNext = sPool;
-                sPool = this;
-                sPoolSize++;
-                mResult = null;
-            }
-        }
+        mResult = null;
+        mPool.recycle(this);
     }
 
     private RILRequest() {
@@ -208,6 +213,14 @@ class RILRequest {
         return sb.toString();
     }
 
+    /**
+     * Returns how long this request has been waiting for its response since
+     * it was written to rild, or 0 if it has not been written yet.
+     */
+    long getAgeMillis(long now) {
+        return mSentTime > 0 ? now - mSentTime : 0;
+    }
+
     void
     onError(int error, Object ret) {
         CommandException ex;
@@ -250,6 +263,11 @@ public class RIL extends BaseCommands implements CommandsInterface {
      * the vendor ril.
      */
     private static final int DEFAULT_WAKE_LOCK_TIMEOUT = 60000;
+
+    /**
+     * Requests outstanding longer than this are reported as slow.
+     */
+    private static final int DEFAULT_SLOW_REQUEST_THRESHOLD = 10000;
     private static final int BYTE_SIZE = 1;
 
     /** Starting number for OEMHOOK request and response IDs */
@@ -279,7 +297,19 @@ public class RIL extends BaseCommands implements CommandsInterface {
     // until dec'd to 0
     int mWakeLockCount;
 
-    SparseArray<RILRequest> mRequestList = new SparseArray<RILRequest>();
+    final RilRequestTable mRequestList = new RilRequestTable();
+
+    final RilRequestPool mRequestPool = new RilRequestPool();
+
+    final RilRequestStats mRequestStats = new RilRequestStats();
+
+    // Requests without a response after this long are logged as slow.
+    // Set from caller threads, read on the sender thread.
+    volatile int mSlowRequestThreshold;
+
+    final UnsolCoalescer mUnsolCoalescer = new UnsolCoalescer();
+
+    final RilFramer mFramer = new RilFramer(RIL_MAX_COMMAND_BYTES);
 
     Object     mLastNITZTimeInfo;
 
@@ -297,6 +327,8 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     static final int EVENT_SEND                 = 1;
     static final int EVENT_WAKE_LOCK_TIMEOUT    = 2;
+    static final int EVENT_CHECK_SLOW_REQUESTS  = 3;
+    static final int EVENT_FLUSH_COALESCED_UNSOL = 4;
 
     //***** Constants
 
@@ -359,9 +391,6 @@ public class RIL extends BaseCommands implements CommandsInterface {
             super(looper);
         }
 
-        // Only allocated once
-        byte[] dataLength = new byte[4];
-
         //***** Runnable implementation
         @Override
         public void
@@ -390,9 +419,9 @@ public class RIL extends BaseCommands implements CommandsInterface {
                             return;
                         }
 
-                        synchronized (mRequestList) {
-                            mRequestList.append(rr.mSerial, rr);
-                        }
+                        mRequestList.put(rr);
+                        // rr may be recycled as soon as its response arrives
+                        int serial = rr.mSerial;
 
                         byte[] data;
 
@@ -400,27 +429,19 @@ public class RIL extends BaseCommands implements CommandsInterface {
                         rr.mParcel.recycle();
                         rr.mParcel = null;
 
-                        if (data.length > RIL_MAX_COMMAND_BYTES) {
-                            throw new RuntimeException(
-                                    "Parcel larger than max bytes allowed! "
-                                                          + data.length);
-                        }
-
-                        // parcel length in big endian
-                        dataLength[0] = dataLength[1] = 0;
-                        dataLength[2] = (byte)((data.length >> 8) & 0xff);
-                        dataLength[3] = (byte)((data.length) & 0xff);
-
                         //Rlog.v(RILJ_LOG_TAG, "writing packet: " + data.length + " bytes");
 
-                        s.getOutputStream().write(dataLength);
-                        s.getOutputStream().write(data);
+                        mFramer.writeMessage(s.getOutputStream(), data);
+                        // Only the time the modem takes counts towards a slow request
+                        mRequestList.markSent(serial, SystemClock.elapsedRealtime());
                     } catch (IOException ex) {
                         Rlog.e(RILJ_LOG_TAG, "IOException", ex);
                         req = findAndRemoveRequestFromList(rr.mSerial);
                         // make sure this request has not already been handled,
                         // eg, if RILReceiver cleared the list.
                         if (req != null) {
+                            mRequestStats.onCompleted(rr, RADIO_NOT_AVAILABLE,
+                                    SystemClock.elapsedRealtime());
                             rr.onError(RADIO_NOT_AVAILABLE, null);
                             rr.release();
                             decrementWakeLock();
@@ -431,6 +452,8 @@ public class RIL extends BaseCommands implements CommandsInterface {
                         // make sure this request has not already been handled,
                         // eg, if RILReceiver cleared the list.
                         if (req != null) {
+                            mRequestStats.onCompleted(rr, GENERIC_FAILURE,
+                                    SystemClock.elapsedRealtime());
                             rr.onError(GENERIC_FAILURE, null);
                             rr.release();
                             decrementWakeLock();
@@ -451,89 +474,40 @@ public class RIL extends BaseCommands implements CommandsInterface {
                     // Note: Keep mRequestList so that delayed response
                     // can still be handled when response finally comes.
 
-                    synchronized (mRequestList) {
-                        if (clearWakeLock()) {
-                            if (RILJ_LOGD) {
-                                int count = mRequestList.size();
-                                Rlog.d(RILJ_LOG_TAG, "WAKE_LOCK_TIMEOUT " +
-                                        " mRequestList=" + count);
-                                for (int i = 0; i < count; i++) {
-                                    rr = mRequestList.valueAt(i);
-                                    Rlog.d(RILJ_LOG_TAG, i + ": [" + rr.mSerial + "] "
-                                            + requestToString(rr.mRequest));
-                                }
+                    if (clearWakeLock()) {
+                        if (RILJ_LOGD) {
+                            ArrayList<RILRequest> pending = mRequestList.snapshot();
+                            long now = SystemClock.elapsedRealtime();
+                            int count = pending.size();
+                            Rlog.d(RILJ_LOG_TAG, "WAKE_LOCK_TIMEOUT " +
+                                    " mRequestList=" + count);
+                            for (int i = 0; i < count; i++) {
+                                rr = pending.get(i);
+                                Rlog.d(RILJ_LOG_TAG, i + ": [" + rr.mSerial + "] "
+                                        + requestToString(rr.mRequest)
+                                        + " age=" + rr.getAgeMillis(now) + "ms");
                             }
                         }
                     }
                     break;
-            }
-        }
-    }
 
-    /**
-     * Reads in a single RIL message off the wire. A RIL message consists
-     * of a 4-byte little-endian length and a subsequent series of bytes.
-     * The final message (length header omitted) is read into
-     * <code>buffer</code> and the length of the final message (less header)
-     * is returned. A return value of -1 indicates end-of-stream.
-     *
-     * @param is non-null; Stream to read from
-     * @param buffer Buffer to fill in. Must be as large as maximum
-     * message size, or an ArrayOutOfBounds exception will be thrown.
-     * @return Length of message less header, or -1 on end of stream.
-     * @throws IOException
-     */
-    private static int readRilMessage(InputStream is, byte[] buffer)
-            throws IOException {
-        int countRead;
-        int offset;
-        int remaining;
-        int messageLength;
-
-        // First, read in the length of the message
-        offset = 0;
-        remaining = 4;
-        do {
-            countRead = is.read(buffer, offset, remaining);
-
-            if (countRead < 0 ) {
-                Rlog.e(RILJ_LOG_TAG, "Hit EOS reading message length");
-                return -1;
-            }
+                case EVENT_CHECK_SLOW_REQUESTS:
+                    checkSlowRequests();
+                    break;
 
-            offset += countRead;
-            remaining -= countRead;
-        } while (remaining > 0);
-
-        messageLength = ((buffer[0] & 0xff) << 24)
-                | ((buffer[1] & 0xff) << 16)
-                | ((buffer[2] & 0xff) << 8)
-                | (buffer[3] & 0xff);
-
-        // Then, re-use the buffer and read in the message itself
-        offset = 0;
-        remaining = messageLength;
-        do {
-            countRead = is.read(buffer, offset, remaining);
-
-            if (countRead < 0 ) {
-                Rlog.e(RILJ_LOG_TAG, "Hit EOS reading message.  messageLength=" + messageLength
-                        + " remaining=" + remaining);
-                return -1;
+                case EVENT_FLUSH_COALESCED_UNSOL: {
+                    Object ret = mUnsolCoalescer.flush(msg.arg1, SystemClock.uptimeMillis());
+                    if (ret != UnsolCoalescer.NOTHING) {
+                        notifyCoalescibleUnsol(msg.arg1, ret);
+                    }
+                    break;
+                }
             }
-
-            offset += countRead;
-            remaining -= countRead;
-        } while (remaining > 0);
-
-        return messageLength;
+        }
     }
 
     protected class RILReceiver implements Runnable {
-        byte[] buffer;
-
         protected RILReceiver() {
-            buffer = new byte[RIL_MAX_COMMAND_BYTES];
         }
 
         @Override
@@ -610,13 +584,15 @@ public class RIL extends BaseCommands implements CommandsInterface {
                 }
 
                 int length = 0;
+                RilFramer.Reader reader = null;
                 try {
                     InputStream is = mSocket.getInputStream();
+                    reader = mFramer.newReader(is);
 
                     for (;;) {
                         Parcel p;
 
-                        length = readRilMessage(is, buffer);
+                        length = reader.next();
 
                         if (length < 0) {
                             // End-of-stream reached
@@ -624,7 +600,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
                         }
 
                         p = Parcel.obtain();
-                        p.unmarshall(buffer, 0, length);
+                        p.unmarshall(reader.array(), reader.offset(), length);
                         p.setDataPosition(0);
 
                         //Rlog.v(RILJ_LOG_TAG, "Read packet: " + length + " bytes");
@@ -638,6 +614,10 @@ public class RIL extends BaseCommands implements CommandsInterface {
                 } catch (Throwable tr) {
                     Rlog.e(RILJ_LOG_TAG, "Uncaught exception read length=" + length +
                         "Exception:" + tr.toString());
+                } finally {
+                    if (reader != null) {
+                        reader.close();
+                    }
                 }
 
                 Rlog.i(RILJ_LOG_TAG, "(" + mInstanceId + ") Disconnected from '" + rilSocket
@@ -692,6 +672,12 @@ public class RIL extends BaseCommands implements CommandsInterface {
         mWakeLockTimeout = SystemProperties.getInt(TelephonyProperties.PROPERTY_WAKE_LOCK_TIMEOUT,
                 DEFAULT_WAKE_LOCK_TIMEOUT);
         mWakeLockCount = 0;
+        mSlowRequestThreshold = SystemProperties.getInt("persist.radio.ril_slow_req_ms",
+                DEFAULT_SLOW_REQUEST_THRESHOLD);
+        // eg "1009:2000:dedupe,1036:5000"
+        mUnsolCoalescer.configure(SystemProperties.get("persist.radio.unsol_coalesce"));
+        // Before the receiver thread can decode anything
+        onRegisterDecoders();
 
         ///M: SVLTE solution2 C2K RIL connect/disconnect  control. @{
         if (CdmaFeatureOptionUtils.isCdmaLteDcSupport()) {
@@ -749,11 +735,21 @@ public class RIL extends BaseCommands implements CommandsInterface {
         return new RILReceiver();
     }
 
+    /**
+     * Retrieves a new RILRequest from this RIL's request pool.
+     *
+     * @param request RIL_REQUEST_*
+     * @param result sent when operation completes
+     */
+    protected RILRequest obtainRequest(int request, Message result) {
+        return RILRequest.obtain(mRequestPool, request, result);
+    }
+
     //***** CommandsInterface implementation
 
     @Override
     public void getVoiceRadioTechnology(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_VOICE_RADIO_TECH, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_VOICE_RADIO_TECH, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -762,7 +758,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
 
     public void getImsRegistrationState(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_IMS_REGISTRATION_STATE, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_IMS_REGISTRATION_STATE, result);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -787,7 +783,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     getIccCardStatus(Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_SIM_STATUS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_SIM_STATUS, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -796,7 +792,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     public void setUiccSubscription(int appIndex, boolean activate, Message result) {
         //Note: This RIL request is also valid for SIM and RUIM (ICC card)
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_UICC_SUBSCRIPTION, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_UICC_SUBSCRIPTION, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                 + " appIndex: " + appIndex + " activate: " + activate);
@@ -811,7 +807,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     // FIXME This API should take an AID and slot ID
     public void setDataAllowed(boolean allowed, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ALLOW_DATA, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ALLOW_DATA, result);
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest) +
                     " allowed: " + allowed);
@@ -831,7 +827,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     supplyIccPinForApp(String pin, String aid, Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ENTER_SIM_PIN, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ENTER_SIM_PIN, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -855,7 +851,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     supplyIccPukForApp(String puk, String newPin, String aid, Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ENTER_SIM_PUK, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ENTER_SIM_PUK, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -880,7 +876,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     supplyIccPin2ForApp(String pin, String aid, Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ENTER_SIM_PIN2, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ENTER_SIM_PIN2, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -904,7 +900,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     supplyIccPuk2ForApp(String puk, String newPin2, String aid, Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ENTER_SIM_PUK2, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ENTER_SIM_PUK2, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -929,7 +925,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     changeIccPinForApp(String oldPin, String newPin, String aid, Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CHANGE_SIM_PIN, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CHANGE_SIM_PIN, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -954,7 +950,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     changeIccPin2ForApp(String oldPin2, String newPin2, String aid, Message result) {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CHANGE_SIM_PIN2, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CHANGE_SIM_PIN2, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -973,7 +969,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     changeBarringPassword(String facility, String oldPwd, String newPwd, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CHANGE_BARRING_PASSWORD, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CHANGE_BARRING_PASSWORD, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1018,7 +1014,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getCurrentCalls (Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_CURRENT_CALLS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_CURRENT_CALLS, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1034,7 +1030,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getDataCallList(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_DATA_CALL_LIST, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_DATA_CALL_LIST, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1050,7 +1046,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     dial(String address, int clirMode, UUSInfo uusInfo, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_DIAL, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_DIAL, result);
 
         rr.mParcel.writeString(address);
         rr.mParcel.writeInt(clirMode);
@@ -1078,7 +1074,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getIMSIForApp(String aid, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_IMSI, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_IMSI, result);
 
         boolean skipNullAid = needsOldRilFeature("skipnullaid");
         boolean writeAidOnly = needsOldRilFeature("writeaidonly");
@@ -1101,7 +1097,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getIMEI(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_IMEI, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_IMEI, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1111,7 +1107,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getIMEISV(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_IMEISV, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_IMEISV, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1124,7 +1120,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     hangupConnection (int gsmIndex, Message result) {
         if (RILJ_LOGD) riljLog("hangupConnection: gsmIndex=" + gsmIndex);
 
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_HANGUP, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_HANGUP, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest) + " " +
                 gsmIndex);
@@ -1138,7 +1134,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     hangupWaitingOrBackground (Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_HANGUP_WAITING_OR_BACKGROUND,
+        RILRequest rr = obtainRequest(RIL_REQUEST_HANGUP_WAITING_OR_BACKGROUND,
                                         result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -1150,7 +1146,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     hangupForegroundResumeBackground (Message result) {
         RILRequest rr
-                = RILRequest.obtain(
+                = obtainRequest(
                         RIL_REQUEST_HANGUP_FOREGROUND_RESUME_BACKGROUND,
                                         result);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -1162,7 +1158,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     switchWaitingOrHoldingAndActive (Message result) {
         RILRequest rr
-                = RILRequest.obtain(
+                = obtainRequest(
                         RIL_REQUEST_SWITCH_WAITING_OR_HOLDING_AND_ACTIVE,
                                         result);
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -1174,7 +1170,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     conference (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_CONFERENCE, result);
+                = obtainRequest(RIL_REQUEST_CONFERENCE, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1184,7 +1180,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void setPreferredVoicePrivacy(boolean enable, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_SET_PREFERRED_VOICE_PRIVACY_MODE,
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_SET_PREFERRED_VOICE_PRIVACY_MODE,
                 result);
 
         rr.mParcel.writeInt(1);
@@ -1195,7 +1191,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void getPreferredVoicePrivacy(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_QUERY_PREFERRED_VOICE_PRIVACY_MODE,
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_QUERY_PREFERRED_VOICE_PRIVACY_MODE,
                 result);
         send(rr);
     }
@@ -1204,7 +1200,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     separateConnection (int gsmIndex, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SEPARATE_CONNECTION, result);
+                = obtainRequest(RIL_REQUEST_SEPARATE_CONNECTION, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                             + " " + gsmIndex);
@@ -1219,7 +1215,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     acceptCall (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_ANSWER, result);
+                = obtainRequest(RIL_REQUEST_ANSWER, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1230,7 +1226,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     rejectCall (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_UDUB, result);
+                = obtainRequest(RIL_REQUEST_UDUB, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1241,7 +1237,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     explicitCallTransfer (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_EXPLICIT_CALL_TRANSFER, result);
+                = obtainRequest(RIL_REQUEST_EXPLICIT_CALL_TRANSFER, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1252,7 +1248,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getLastCallFailCause (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_LAST_CALL_FAIL_CAUSE, result);
+                = obtainRequest(RIL_REQUEST_LAST_CALL_FAIL_CAUSE, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1276,7 +1272,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getLastDataCallFailCause (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_LAST_DATA_CALL_FAIL_CAUSE, result);
+                = obtainRequest(RIL_REQUEST_LAST_DATA_CALL_FAIL_CAUSE, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1287,7 +1283,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     setMute (boolean enableMute, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_MUTE, response);
+                = obtainRequest(RIL_REQUEST_SET_MUTE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                             + " " + enableMute);
@@ -1302,7 +1298,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getMute (Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_GET_MUTE, response);
+                = obtainRequest(RIL_REQUEST_GET_MUTE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1313,7 +1309,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getSignalStrength (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SIGNAL_STRENGTH, result);
+                = obtainRequest(RIL_REQUEST_SIGNAL_STRENGTH, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1324,7 +1320,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getVoiceRegistrationState (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_VOICE_REGISTRATION_STATE, result);
+                = obtainRequest(RIL_REQUEST_VOICE_REGISTRATION_STATE, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1335,7 +1331,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getDataRegistrationState (Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_DATA_REGISTRATION_STATE, result);
+                = obtainRequest(RIL_REQUEST_DATA_REGISTRATION_STATE, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1346,7 +1342,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getOperator(Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_OPERATOR, result);
+                = obtainRequest(RIL_REQUEST_OPERATOR, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1356,7 +1352,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getHardwareConfig (Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_HARDWARE_CONFIG, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_HARDWARE_CONFIG, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1367,7 +1363,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     sendDtmf(char c, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_DTMF, result);
+                = obtainRequest(RIL_REQUEST_DTMF, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1380,7 +1376,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     startDtmf(char c, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_DTMF_START, result);
+                = obtainRequest(RIL_REQUEST_DTMF_START, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1393,7 +1389,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     stopDtmf(Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_DTMF_STOP, result);
+                = obtainRequest(RIL_REQUEST_DTMF_STOP, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1403,7 +1399,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     sendBurstDtmf(String dtmfString, int on, int off, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_BURST_DTMF, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_BURST_DTMF, result);
 
         rr.mParcel.writeInt(3);
         rr.mParcel.writeString(dtmfString);
@@ -1426,7 +1422,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     sendSMS (String smscPDU, String pdu, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SEND_SMS, result);
+                = obtainRequest(RIL_REQUEST_SEND_SMS, result);
 
         constructGsmSendSmsRilRequest(rr, smscPDU, pdu);
 
@@ -1439,7 +1435,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     sendSMSExpectMore (String smscPDU, String pdu, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SEND_SMS_EXPECT_MORE, result);
+                = obtainRequest(RIL_REQUEST_SEND_SMS_EXPECT_MORE, result);
 
         constructGsmSendSmsRilRequest(rr, smscPDU, pdu);
 
@@ -1491,7 +1487,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     sendCdmaSms(byte[] pdu, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_CDMA_SEND_SMS, result);
+                = obtainRequest(RIL_REQUEST_CDMA_SEND_SMS, result);
 
         constructCdmaSendSmsRilRequest(rr, pdu);
 
@@ -1503,7 +1499,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     sendImsGsmSms (String smscPDU, String pdu, int retry, int messageRef,
             Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_IMS_SEND_SMS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_IMS_SEND_SMS, result);
 
         rr.mParcel.writeInt(RILConstants.GSM_PHONE);
         rr.mParcel.writeByte((byte)retry);
@@ -1518,7 +1514,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     public void
     sendImsCdmaSms(byte[] pdu, int retry, int messageRef, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_IMS_SEND_SMS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_IMS_SEND_SMS, result);
 
         rr.mParcel.writeInt(RILConstants.CDMA_PHONE);
         rr.mParcel.writeByte((byte)retry);
@@ -1533,7 +1529,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void deleteSmsOnSim(int index, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_DELETE_SMS_ON_SIM,
+        RILRequest rr = obtainRequest(RIL_REQUEST_DELETE_SMS_ON_SIM,
                 response);
 
         rr.mParcel.writeInt(1);
@@ -1548,7 +1544,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void deleteSmsOnRuim(int index, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_DELETE_SMS_ON_RUIM,
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_DELETE_SMS_ON_RUIM,
                 response);
 
         rr.mParcel.writeInt(1);
@@ -1565,7 +1561,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void writeSmsToSim(int status, String smsc, String pdu, Message response) {
         status = translateStatus(status);
 
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_WRITE_SMS_TO_SIM,
+        RILRequest rr = obtainRequest(RIL_REQUEST_WRITE_SMS_TO_SIM,
                 response);
 
         rr.mParcel.writeInt(status);
@@ -1583,7 +1579,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void writeSmsToRuim(int status, String pdu, Message response) {
         status = translateStatus(status);
 
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_WRITE_SMS_TO_RUIM,
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_WRITE_SMS_TO_RUIM,
                 response);
 
         rr.mParcel.writeInt(status);
@@ -1714,7 +1710,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
             String user, String password, String authType, String protocol,
             Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SETUP_DATA_CALL, result);
+                = obtainRequest(RIL_REQUEST_SETUP_DATA_CALL, result);
 
         rr.mParcel.writeInt(7);
 
@@ -1738,7 +1734,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     deactivateDataCall(int cid, int reason, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_DEACTIVATE_DATA_CALL, result);
+                = obtainRequest(RIL_REQUEST_DEACTIVATE_DATA_CALL, result);
 
         rr.mParcel.writeInt(2);
         rr.mParcel.writeString(Integer.toString(cid));
@@ -1753,7 +1749,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     setRadioPower(boolean on, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_RADIO_POWER, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_RADIO_POWER, result);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(on ? 1 : 0);
@@ -1768,7 +1764,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void requestShutdown(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SHUTDOWN, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SHUTDOWN, result);
 
         if (RILJ_LOGD)
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -1780,7 +1776,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     setSuppServiceNotifications(boolean enable, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_SUPP_SVC_NOTIFICATION, result);
+                = obtainRequest(RIL_REQUEST_SET_SUPP_SVC_NOTIFICATION, result);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(enable ? 1 : 0);
@@ -1795,7 +1791,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     acknowledgeLastIncomingGsmSms(boolean success, int cause, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SMS_ACKNOWLEDGE, result);
+                = obtainRequest(RIL_REQUEST_SMS_ACKNOWLEDGE, result);
 
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(success ? 1 : 0);
@@ -1811,7 +1807,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     acknowledgeLastIncomingCdmaSms(boolean success, int cause, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_CDMA_SMS_ACKNOWLEDGE, result);
+                = obtainRequest(RIL_REQUEST_CDMA_SMS_ACKNOWLEDGE, result);
 
         rr.mParcel.writeInt(success ? 0 : 1); //RIL_CDMA_SMS_ErrorClass
         // cause code according to X.S004-550E
@@ -1827,7 +1823,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     acknowledgeIncomingGsmSmsWithPdu(boolean success, String ackPdu, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_ACKNOWLEDGE_INCOMING_GSM_SMS_WITH_PDU, result);
+                = obtainRequest(RIL_REQUEST_ACKNOWLEDGE_INCOMING_GSM_SMS_WITH_PDU, result);
 
         rr.mParcel.writeInt(2);
         rr.mParcel.writeString(success ? "1" : "0");
@@ -1852,7 +1848,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
         //Note: This RIL request has not been renamed to ICC,
         //       but this request is also valid for SIM and RUIM
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SIM_IO, result);
+                = obtainRequest(RIL_REQUEST_SIM_IO, result);
 
         rr.mParcel.writeInt(command);
         rr.mParcel.writeInt(fileid);
@@ -1879,7 +1875,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getCLIR(Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_GET_CLIR, result);
+                = obtainRequest(RIL_REQUEST_GET_CLIR, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -1890,7 +1886,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     setCLIR(int clirMode, Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_CLIR, result);
+                = obtainRequest(RIL_REQUEST_SET_CLIR, result);
 
         // count ints
         rr.mParcel.writeInt(1);
@@ -1907,7 +1903,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     queryCallWaiting(int serviceClass, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_CALL_WAITING, response);
+                = obtainRequest(RIL_REQUEST_QUERY_CALL_WAITING, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(serviceClass);
@@ -1922,7 +1918,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     setCallWaiting(boolean enable, int serviceClass, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_CALL_WAITING, response);
+                = obtainRequest(RIL_REQUEST_SET_CALL_WAITING, response);
 
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(enable ? 1 : 0);
@@ -1938,7 +1934,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     setNetworkSelectionModeAutomatic(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_NETWORK_SELECTION_AUTOMATIC,
+                = obtainRequest(RIL_REQUEST_SET_NETWORK_SELECTION_AUTOMATIC,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -1950,7 +1946,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     setNetworkSelectionModeManual(String operatorNumeric, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL,
+                = obtainRequest(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
@@ -1965,7 +1961,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getNetworkSelectionMode(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_NETWORK_SELECTION_MODE,
+                = obtainRequest(RIL_REQUEST_QUERY_NETWORK_SELECTION_MODE,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -1977,7 +1973,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getAvailableNetworks(Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS,
+                = obtainRequest(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS,
                                     response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -1990,7 +1986,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     setCallForward(int action, int cfReason, int serviceClass,
                 String number, int timeSeconds, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_CALL_FORWARD, response);
+                = obtainRequest(RIL_REQUEST_SET_CALL_FORWARD, response);
 
         rr.mParcel.writeInt(action);
         rr.mParcel.writeInt(cfReason);
@@ -2011,7 +2007,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     queryCallForwardStatus(int cfReason, int serviceClass,
                 String number, Message response) {
         RILRequest rr
-            = RILRequest.obtain(RIL_REQUEST_QUERY_CALL_FORWARD_STATUS, response);
+            = obtainRequest(RIL_REQUEST_QUERY_CALL_FORWARD_STATUS, response);
 
         rr.mParcel.writeInt(2); // 2 is for query action, not in used anyway
         rr.mParcel.writeInt(cfReason);
@@ -2030,7 +2026,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     queryCLIP(Message response) {
         RILRequest rr
-            = RILRequest.obtain(RIL_REQUEST_QUERY_CLIP, response);
+            = obtainRequest(RIL_REQUEST_QUERY_CLIP, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2042,7 +2038,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     getBasebandVersion (Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_BASEBAND_VERSION, response);
+                = obtainRequest(RIL_REQUEST_BASEBAND_VERSION, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2060,7 +2056,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     queryFacilityLockForApp(String facility, String password, int serviceClass, String appId,
                             Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_QUERY_FACILITY_LOCK, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_QUERY_FACILITY_LOCK, response);
 
         // MTK
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
@@ -2096,7 +2092,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
                         int serviceClass, String appId, Message response) {
         String lockString;
          RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_FACILITY_LOCK, response);
+                = obtainRequest(RIL_REQUEST_SET_FACILITY_LOCK, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                                                         + " [" + facility + " " + lockState
@@ -2124,7 +2120,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void
     sendUSSD (String ussdString, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SEND_USSD, response);
+                = obtainRequest(RIL_REQUEST_SEND_USSD, response);
 
         if (RILJ_LOGD) {
             String logUssdString = "*******";
@@ -2142,7 +2138,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void cancelPendingUssd (Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_CANCEL_USSD, response);
+                = obtainRequest(RIL_REQUEST_CANCEL_USSD, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString()
                 + "> " + requestToString(rr.mRequest));
@@ -2154,7 +2150,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void resetRadio(Message result) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_RESET_RADIO, result);
+                = obtainRequest(RIL_REQUEST_RESET_RADIO, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2196,7 +2192,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void invokeOemRilRequestRaw(byte[] data, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_OEM_HOOK_RAW, response);
+                = obtainRequest(RIL_REQUEST_OEM_HOOK_RAW, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
                + "[" + IccUtils.bytesToHexString(data) + "]");
@@ -2210,7 +2206,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void invokeOemRilRequestStrings(String[] strings, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_OEM_HOOK_STRINGS, response);
+                = obtainRequest(RIL_REQUEST_OEM_HOOK_STRINGS, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2228,7 +2224,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void setBandMode (int bandMode, Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_SET_BAND_MODE, response);
+                = obtainRequest(RIL_REQUEST_SET_BAND_MODE, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(bandMode);
@@ -2250,7 +2246,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void queryAvailableBandMode (Message response) {
         RILRequest rr
-                = RILRequest.obtain(RIL_REQUEST_QUERY_AVAILABLE_BAND_MODE,
+                = obtainRequest(RIL_REQUEST_QUERY_AVAILABLE_BAND_MODE,
                 response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2263,7 +2259,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void sendTerminalResponse(String contents, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_STK_SEND_TERMINAL_RESPONSE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2277,7 +2273,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void sendEnvelope(String contents, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_STK_SEND_ENVELOPE_COMMAND, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2291,7 +2287,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void sendEnvelopeWithStatus(String contents, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_STK_SEND_ENVELOPE_WITH_STATUS, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest)
@@ -2308,7 +2304,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void handleCallSetupRequestFromSim(
             boolean accept, Message response) {
 
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
             RILConstants.RIL_REQUEST_STK_HANDLE_CALL_SETUP_REQUESTED_FROM_SIM,
             response);
 
@@ -2325,7 +2321,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setPreferredNetworkType(int networkType , Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_SET_PREFERRED_NETWORK_TYPE, response);
 
         rr.mParcel.writeInt(1);
@@ -2344,7 +2340,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void getPreferredNetworkType(Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_GET_PREFERRED_NETWORK_TYPE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2357,7 +2353,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void getNeighboringCids(Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_GET_NEIGHBORING_CELL_IDS, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -2370,7 +2366,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setLocationUpdates(boolean enable, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_LOCATION_UPDATES, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_LOCATION_UPDATES, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(enable ? 1 : 0);
 
@@ -2385,7 +2381,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void getSmscAddress(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_SMSC_ADDRESS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_SMSC_ADDRESS, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2397,7 +2393,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setSmscAddress(String address, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_SMSC_ADDRESS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_SMSC_ADDRESS, result);
 
         rr.mParcel.writeString(address);
 
@@ -2412,7 +2408,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void reportSmsMemoryStatus(boolean available, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_REPORT_SMS_MEMORY_STATUS, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_REPORT_SMS_MEMORY_STATUS, result);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(available ? 1 : 0);
 
@@ -2427,7 +2423,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void reportStkServiceIsRunning(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_REPORT_STK_SERVICE_IS_RUNNING, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_REPORT_STK_SERVICE_IS_RUNNING, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2439,7 +2435,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void getGsmBroadcastConfig(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GSM_GET_BROADCAST_CONFIG, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GSM_GET_BROADCAST_CONFIG, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -2451,7 +2447,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setGsmBroadcastConfig(SmsBroadcastConfigInfo[] config, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GSM_SET_BROADCAST_CONFIG, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GSM_SET_BROADCAST_CONFIG, response);
 
         int numOfConfig = config.length;
         rr.mParcel.writeInt(numOfConfig);
@@ -2480,7 +2476,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setGsmBroadcastActivation(boolean activate, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GSM_BROADCAST_ACTIVATION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GSM_BROADCAST_ACTIVATION, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(activate ? 0 : 1);
@@ -2516,7 +2512,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     }
 
     public /* MTK */ void sendScreenState(boolean on) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SCREEN_STATE, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SCREEN_STATE, null);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(on ? 1 : 0);
 
@@ -2619,11 +2615,466 @@ public class RIL extends BaseCommands implements CommandsInterface {
             return;
         }
 
+        rr.mEnqueueTime = SystemClock.elapsedRealtime();
         msg = mSender.obtainMessage(EVENT_SEND, rr);
 
         acquireWakeLock();
 
         msg.sendToTarget();
+
+        if (mSlowRequestThreshold > 0 && !mSender.hasMessages(EVENT_CHECK_SLOW_REQUESTS)) {
+            mSender.sendEmptyMessageDelayed(EVENT_CHECK_SLOW_REQUESTS, mSlowRequestThreshold);
+        }
+    }
+
+    /**
+     * Logs requests that have been waiting for a response longer than
+     * mSlowRequestThreshold, once per request, and keeps checking while
+     * requests are outstanding. Runs on the sender thread.
+     */
+    private void
+    checkSlowRequests() {
+        long now = SystemClock.elapsedRealtime();
+        for (RILRequest rr : mRequestList.snapshot()) {
+            long age = rr.getAgeMillis(now);
+            if (!rr.mReportedSlow && age >= mSlowRequestThreshold) {
+                rr.mReportedSlow = true;
+                mRequestStats.onSlow(rr.mRequest);
+                Rlog.w(RILJ_LOG_TAG, rr.serialString() + " " + requestToString(rr.mRequest)
+                        + " still outstanding after " + age + "ms");
+            }
+        }
+
+        if (mSlowRequestThreshold > 0 && mRequestList.size() > 0) {
+            mSender.sendEmptyMessageDelayed(EVENT_CHECK_SLOW_REQUESTS, mSlowRequestThreshold);
+        }
+    }
+
+    /**
+     * Sets how long a request may wait for its response before it is
+     * reported as slow; 0 disables the check.
+     */
+    public void setSlowRequestThreshold(int millis) {
+        mSlowRequestThreshold = millis;
+    }
+
+    /**
+     * Returns latency percentiles and error counts per request type
+     * since this RIL was created.
+     */
+    public List<RilRequestStats.Entry> getRequestStats() {
+        return mRequestStats.getSnapshot();
+    }
+
+    /**
+     * Decodes the payload of one solicited or unsolicited response.
+     *
+     * Vendor subclasses add or replace entries with {@link #registerSolicitedDecoders}
+     * and {@link #registerUnsolicitedDecoders} instead of copying the dispatch
+     * in processSolicited/processUnsolicited.
+     */
+    protected interface ResponseDecoder {
+        Object decode(Parcel p);
+    }
+
+    // Copy-on-write so the receiver thread can look up without locking
+    private volatile SparseArray<ResponseDecoder> mSolicitedDecoders =
+            makeDefaultSolicitedDecoders();
+    private volatile SparseArray<ResponseDecoder> mUnsolicitedDecoders =
+            makeDefaultUnsolicitedDecoders();
+    private final Object mDecoderSync = new Object();
+
+    /**
+     * Adds or replaces solicited response decoders keyed by RIL_REQUEST_*.
+     */
+    protected void registerSolicitedDecoders(SparseArray<ResponseDecoder> decoders) {
+        synchronized (mDecoderSync) {
+            mSolicitedDecoders = mergeDecoders(mSolicitedDecoders, decoders);
+        }
+    }
+
+    /**
+     * Adds or replaces unsolicited response decoders keyed by RIL_UNSOL_*.
+     */
+    protected void registerUnsolicitedDecoders(SparseArray<ResponseDecoder> decoders) {
+        synchronized (mDecoderSync) {
+            mUnsolicitedDecoders = mergeDecoders(mUnsolicitedDecoders, decoders);
+        }
+    }
+
+    /**
+     * Called by the constructor before the receiver thread starts, for vendor subclasses to
+     * register their decoders so that no response is decoded without them. It runs before
+     * the field initializers of the subclass, so it must only use fields it assigns itself.
+     */
+    protected void onRegisterDecoders() {
+    }
+
+    private static SparseArray<ResponseDecoder> mergeDecoders(
+            SparseArray<ResponseDecoder> current, SparseArray<ResponseDecoder> decoders) {
+        SparseArray<ResponseDecoder> merged = current.clone();
+        for (int i = 0, s = decoders.size(); i < s; i++) {
+            merged.put(decoders.keyAt(i), decoders.valueAt(i));
+        }
+        return merged;
+    }
+
+    protected Object
+    decodeSolicitedResponse(int request, Parcel p) {
+        ResponseDecoder decoder = mSolicitedDecoders.get(request);
+        if (decoder == null) {
+            throw new RuntimeException("Unrecognized solicited response: " + request);
+        }
+        return decoder.decode(p);
+    }
+
+    protected Object
+    decodeUnsolicitedResponse(int response, Parcel p) {
+        ResponseDecoder decoder = mUnsolicitedDecoders.get(response);
+        if (decoder == null) {
+            throw new RuntimeException("Unrecognized unsol response: " + response);
+        }
+        return decoder.decode(p);
+    }
+
+    private SparseArray<ResponseDecoder> makeDefaultSolicitedDecoders() {
+        final ResponseDecoder iccCardStatusDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseIccCardStatus(p); }
+        };
+        final ResponseDecoder intsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseInts(p); }
+        };
+        final ResponseDecoder callListDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCallList(p); }
+        };
+        final ResponseDecoder voidDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseVoid(p); }
+        };
+        final ResponseDecoder stringDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseString(p); }
+        };
+        final ResponseDecoder failCauseDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseFailCause(p); }
+        };
+        final ResponseDecoder signalStrengthDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSignalStrength(p); }
+        };
+        final ResponseDecoder stringsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseStrings(p); }
+        };
+        final ResponseDecoder smsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSMS(p); }
+        };
+        final ResponseDecoder setupDataCallDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSetupDataCall(p); }
+        };
+        final ResponseDecoder iccIoDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseICC_IO(p); }
+        };
+        final ResponseDecoder callForwardDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCallForward(p); }
+        };
+        final ResponseDecoder operatorInfosDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseOperatorInfos(p); }
+        };
+        final ResponseDecoder dataCallListDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseDataCallList(p); }
+        };
+        final ResponseDecoder rawDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseRaw(p); }
+        };
+        final ResponseDecoder getPreferredNetworkTypeDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseGetPreferredNetworkType(p); }
+        };
+        final ResponseDecoder cellListDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCellList(p); }
+        };
+        final ResponseDecoder gmsBroadcastConfigDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseGmsBroadcastConfig(p); }
+        };
+        final ResponseDecoder cdmaBroadcastConfigDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCdmaBroadcastConfig(p); }
+        };
+        final ResponseDecoder cellInfoListDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCellInfoList(p); }
+        };
+        final ResponseDecoder hardwareConfigDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseHardwareConfig(p); }
+        };
+        final ResponseDecoder iccIoBase64Decoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseICC_IOBase64(p); }
+        };
+        final ResponseDecoder radioCapabilityDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseRadioCapability(p); }
+        };
+        final ResponseDecoder lceStatusDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseLceStatus(p); }
+        };
+        final ResponseDecoder lceDataDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseLceData(p); }
+        };
+        final ResponseDecoder activityDataDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseActivityData(p); }
+        };
+        final ResponseDecoder hangupForegroundDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) {
+                if (mTestingEmergencyCall.getAndSet(false)) {
+                    if (mEmergencyCallbackModeRegistrant != null) {
+                        riljLog("testing emergency call, notify ECM Registrants");
+                        mEmergencyCallbackModeRegistrant.notifyRegistrant();
+                    }
+                }
+                return responseVoid(p);
+            }
+        };
+
+        SparseArray<ResponseDecoder> d = new SparseArray<ResponseDecoder>();
+        /*
+ cat libs/telephony/ril_commands.h \
+ | egrep "^ *{RIL_" \
+ | sed -re 's/\{([^,]+),[^,]+,([^}]+).+/d.put(\1, \2Decoder);/'
+         */
+        d.put(RIL_REQUEST_GET_SIM_STATUS, iccCardStatusDecoder);
+        d.put(RIL_REQUEST_ENTER_SIM_PIN, intsDecoder);
+        d.put(RIL_REQUEST_ENTER_SIM_PUK, intsDecoder);
+        d.put(RIL_REQUEST_ENTER_SIM_PIN2, intsDecoder);
+        d.put(RIL_REQUEST_ENTER_SIM_PUK2, intsDecoder);
+        d.put(RIL_REQUEST_CHANGE_SIM_PIN, intsDecoder);
+        d.put(RIL_REQUEST_CHANGE_SIM_PIN2, intsDecoder);
+        d.put(RIL_REQUEST_ENTER_NETWORK_DEPERSONALIZATION, intsDecoder);
+        d.put(RIL_REQUEST_GET_CURRENT_CALLS, callListDecoder);
+        d.put(RIL_REQUEST_DIAL, voidDecoder);
+        d.put(RIL_REQUEST_GET_IMSI, stringDecoder);
+        d.put(RIL_REQUEST_HANGUP, voidDecoder);
+        d.put(RIL_REQUEST_HANGUP_WAITING_OR_BACKGROUND, voidDecoder);
+        d.put(RIL_REQUEST_HANGUP_FOREGROUND_RESUME_BACKGROUND, hangupForegroundDecoder);
+        d.put(RIL_REQUEST_SWITCH_WAITING_OR_HOLDING_AND_ACTIVE, voidDecoder);
+        d.put(RIL_REQUEST_CONFERENCE, voidDecoder);
+        d.put(RIL_REQUEST_UDUB, voidDecoder);
+        d.put(RIL_REQUEST_LAST_CALL_FAIL_CAUSE, failCauseDecoder);
+        d.put(RIL_REQUEST_SIGNAL_STRENGTH, signalStrengthDecoder);
+        d.put(RIL_REQUEST_VOICE_REGISTRATION_STATE, stringsDecoder);
+        d.put(RIL_REQUEST_DATA_REGISTRATION_STATE, stringsDecoder);
+        d.put(RIL_REQUEST_OPERATOR, stringsDecoder);
+        d.put(RIL_REQUEST_RADIO_POWER, voidDecoder);
+        d.put(RIL_REQUEST_DTMF, voidDecoder);
+        d.put(RIL_REQUEST_SEND_SMS, smsDecoder);
+        d.put(RIL_REQUEST_SEND_SMS_EXPECT_MORE, smsDecoder);
+        d.put(RIL_REQUEST_SETUP_DATA_CALL, setupDataCallDecoder);
+        d.put(RIL_REQUEST_SIM_IO, iccIoDecoder);
+        d.put(RIL_REQUEST_SEND_USSD, voidDecoder);
+        d.put(RIL_REQUEST_CANCEL_USSD, voidDecoder);
+        d.put(RIL_REQUEST_GET_CLIR, intsDecoder);
+        d.put(RIL_REQUEST_SET_CLIR, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_CALL_FORWARD_STATUS, callForwardDecoder);
+        d.put(RIL_REQUEST_SET_CALL_FORWARD, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_CALL_WAITING, intsDecoder);
+        d.put(RIL_REQUEST_SET_CALL_WAITING, voidDecoder);
+        d.put(RIL_REQUEST_SMS_ACKNOWLEDGE, voidDecoder);
+        d.put(RIL_REQUEST_GET_IMEI, stringDecoder);
+        d.put(RIL_REQUEST_GET_IMEISV, stringDecoder);
+        d.put(RIL_REQUEST_ANSWER, voidDecoder);
+        d.put(RIL_REQUEST_DEACTIVATE_DATA_CALL, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_FACILITY_LOCK, intsDecoder);
+        d.put(RIL_REQUEST_SET_FACILITY_LOCK, intsDecoder);
+        d.put(RIL_REQUEST_CHANGE_BARRING_PASSWORD, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_NETWORK_SELECTION_MODE, intsDecoder);
+        d.put(RIL_REQUEST_SET_NETWORK_SELECTION_AUTOMATIC, voidDecoder);
+        d.put(RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_AVAILABLE_NETWORKS, operatorInfosDecoder);
+        d.put(RIL_REQUEST_DTMF_START, voidDecoder);
+        d.put(RIL_REQUEST_DTMF_STOP, voidDecoder);
+        d.put(RIL_REQUEST_BASEBAND_VERSION, stringDecoder);
+        d.put(RIL_REQUEST_SEPARATE_CONNECTION, voidDecoder);
+        d.put(RIL_REQUEST_SET_MUTE, voidDecoder);
+        d.put(RIL_REQUEST_GET_MUTE, intsDecoder);
+        d.put(RIL_REQUEST_QUERY_CLIP, intsDecoder);
+        d.put(RIL_REQUEST_LAST_DATA_CALL_FAIL_CAUSE, intsDecoder);
+        d.put(RIL_REQUEST_DATA_CALL_LIST, dataCallListDecoder);
+        d.put(RIL_REQUEST_RESET_RADIO, voidDecoder);
+        d.put(RIL_REQUEST_OEM_HOOK_RAW, rawDecoder);
+        d.put(RIL_REQUEST_OEM_HOOK_STRINGS, stringsDecoder);
+        d.put(RIL_REQUEST_SCREEN_STATE, voidDecoder);
+        d.put(RIL_REQUEST_SET_SUPP_SVC_NOTIFICATION, voidDecoder);
+        d.put(RIL_REQUEST_WRITE_SMS_TO_SIM, intsDecoder);
+        d.put(RIL_REQUEST_DELETE_SMS_ON_SIM, voidDecoder);
+        d.put(RIL_REQUEST_SET_BAND_MODE, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_AVAILABLE_BAND_MODE, intsDecoder);
+        d.put(RIL_REQUEST_STK_GET_PROFILE, stringDecoder);
+        d.put(RIL_REQUEST_STK_SET_PROFILE, voidDecoder);
+        d.put(RIL_REQUEST_STK_SEND_ENVELOPE_COMMAND, stringDecoder);
+        d.put(RIL_REQUEST_STK_SEND_TERMINAL_RESPONSE, voidDecoder);
+        d.put(RIL_REQUEST_STK_HANDLE_CALL_SETUP_REQUESTED_FROM_SIM, intsDecoder);
+        d.put(RIL_REQUEST_EXPLICIT_CALL_TRANSFER, voidDecoder);
+        d.put(RIL_REQUEST_SET_PREFERRED_NETWORK_TYPE, voidDecoder);
+        d.put(RIL_REQUEST_GET_PREFERRED_NETWORK_TYPE, getPreferredNetworkTypeDecoder);
+        d.put(RIL_REQUEST_GET_NEIGHBORING_CELL_IDS, cellListDecoder);
+        d.put(RIL_REQUEST_SET_LOCATION_UPDATES, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_SET_SUBSCRIPTION_SOURCE, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_SET_ROAMING_PREFERENCE, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_QUERY_ROAMING_PREFERENCE, intsDecoder);
+        d.put(RIL_REQUEST_SET_TTY_MODE, voidDecoder);
+        d.put(RIL_REQUEST_QUERY_TTY_MODE, intsDecoder);
+        d.put(RIL_REQUEST_CDMA_SET_PREFERRED_VOICE_PRIVACY_MODE, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_QUERY_PREFERRED_VOICE_PRIVACY_MODE, intsDecoder);
+        d.put(RIL_REQUEST_CDMA_FLASH, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_BURST_DTMF, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_SEND_SMS, smsDecoder);
+        d.put(RIL_REQUEST_CDMA_SMS_ACKNOWLEDGE, voidDecoder);
+        d.put(RIL_REQUEST_GSM_GET_BROADCAST_CONFIG, gmsBroadcastConfigDecoder);
+        d.put(RIL_REQUEST_GSM_SET_BROADCAST_CONFIG, voidDecoder);
+        d.put(RIL_REQUEST_GSM_BROADCAST_ACTIVATION, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_GET_BROADCAST_CONFIG, cdmaBroadcastConfigDecoder);
+        d.put(RIL_REQUEST_CDMA_SET_BROADCAST_CONFIG, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_BROADCAST_ACTIVATION, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_VALIDATE_AND_WRITE_AKEY, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_SUBSCRIPTION, stringsDecoder);
+        d.put(RIL_REQUEST_CDMA_WRITE_SMS_TO_RUIM, intsDecoder);
+        d.put(RIL_REQUEST_CDMA_DELETE_SMS_ON_RUIM, voidDecoder);
+        d.put(RIL_REQUEST_DEVICE_IDENTITY, stringsDecoder);
+        d.put(RIL_REQUEST_GET_SMSC_ADDRESS, stringDecoder);
+        d.put(RIL_REQUEST_SET_SMSC_ADDRESS, voidDecoder);
+        d.put(RIL_REQUEST_EXIT_EMERGENCY_CALLBACK_MODE, voidDecoder);
+        d.put(RIL_REQUEST_REPORT_SMS_MEMORY_STATUS, voidDecoder);
+        d.put(RIL_REQUEST_REPORT_STK_SERVICE_IS_RUNNING, voidDecoder);
+        d.put(RIL_REQUEST_CDMA_GET_SUBSCRIPTION_SOURCE, intsDecoder);
+        d.put(RIL_REQUEST_ISIM_AUTHENTICATION, stringDecoder);
+        d.put(RIL_REQUEST_ACKNOWLEDGE_INCOMING_GSM_SMS_WITH_PDU, voidDecoder);
+        d.put(RIL_REQUEST_STK_SEND_ENVELOPE_WITH_STATUS, iccIoDecoder);
+        d.put(RIL_REQUEST_VOICE_RADIO_TECH, intsDecoder);
+        d.put(RIL_REQUEST_GET_CELL_INFO_LIST, cellInfoListDecoder);
+        d.put(RIL_REQUEST_SET_UNSOL_CELL_INFO_LIST_RATE, voidDecoder);
+        d.put(RIL_REQUEST_SET_INITIAL_ATTACH_APN, voidDecoder);
+        d.put(RIL_REQUEST_SET_DATA_PROFILE, voidDecoder);
+        d.put(RIL_REQUEST_IMS_REGISTRATION_STATE, intsDecoder);
+        d.put(RIL_REQUEST_IMS_SEND_SMS, smsDecoder);
+        d.put(RIL_REQUEST_SIM_TRANSMIT_APDU_BASIC, iccIoDecoder);
+        d.put(RIL_REQUEST_SIM_OPEN_CHANNEL, intsDecoder);
+        d.put(RIL_REQUEST_CAF_SIM_OPEN_CHANNEL_WITH_P2, intsDecoder);
+        d.put(RIL_REQUEST_SIM_CLOSE_CHANNEL, voidDecoder);
+        d.put(RIL_REQUEST_SIM_TRANSMIT_APDU_CHANNEL, iccIoDecoder);
+        d.put(RIL_REQUEST_SIM_GET_ATR, stringDecoder);
+        d.put(RIL_REQUEST_NV_READ_ITEM, stringDecoder);
+        d.put(RIL_REQUEST_NV_WRITE_ITEM, voidDecoder);
+        d.put(RIL_REQUEST_NV_WRITE_CDMA_PRL, voidDecoder);
+        d.put(RIL_REQUEST_NV_RESET_CONFIG, voidDecoder);
+        d.put(RIL_REQUEST_SET_UICC_SUBSCRIPTION, voidDecoder);
+        d.put(RIL_REQUEST_ALLOW_DATA, voidDecoder);
+        d.put(RIL_REQUEST_GET_HARDWARE_CONFIG, hardwareConfigDecoder);
+        d.put(RIL_REQUEST_SIM_AUTHENTICATION, iccIoBase64Decoder);
+        d.put(RIL_REQUEST_SHUTDOWN, voidDecoder);
+        d.put(RIL_REQUEST_GET_RADIO_CAPABILITY, radioCapabilityDecoder);
+        d.put(RIL_REQUEST_SET_RADIO_CAPABILITY, radioCapabilityDecoder);
+        d.put(RIL_REQUEST_START_LCE, lceStatusDecoder);
+        d.put(RIL_REQUEST_STOP_LCE, lceStatusDecoder);
+        d.put(RIL_REQUEST_PULL_LCEDATA, lceDataDecoder);
+        d.put(RIL_REQUEST_GET_ACTIVITY_INFO, activityDataDecoder);
+        d.put(RIL_REQUEST_SET_MAX_TRANSMIT_POWER, voidDecoder);
+        return d;
+    }
+
+    private SparseArray<ResponseDecoder> makeDefaultUnsolicitedDecoders() {
+        final ResponseDecoder voidDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseVoid(p); }
+        };
+        final ResponseDecoder stringDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseString(p); }
+        };
+        final ResponseDecoder intsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseInts(p); }
+        };
+        final ResponseDecoder stringsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseStrings(p); }
+        };
+        final ResponseDecoder signalStrengthDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSignalStrength(p); }
+        };
+        final ResponseDecoder dataCallListDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseDataCallList(p); }
+        };
+        final ResponseDecoder suppServiceNotificationDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSuppServiceNotification(p); }
+        };
+        final ResponseDecoder simRefreshDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSimRefresh(p); }
+        };
+        final ResponseDecoder callRingDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCallRing(p); }
+        };
+        final ResponseDecoder cdmaSmsDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCdmaSms(p); }
+        };
+        final ResponseDecoder rawDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseRaw(p); }
+        };
+        final ResponseDecoder cdmaCallWaitingDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCdmaCallWaiting(p); }
+        };
+        final ResponseDecoder cdmaInformationRecordDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCdmaInformationRecord(p); }
+        };
+        final ResponseDecoder cellInfoListDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseCellInfoList(p); }
+        };
+        final ResponseDecoder hardwareConfigDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseHardwareConfig(p); }
+        };
+        final ResponseDecoder radioCapabilityDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseRadioCapability(p); }
+        };
+        final ResponseDecoder ssDataDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseSsData(p); }
+        };
+        final ResponseDecoder lceDataDecoder = new ResponseDecoder() {
+            @Override public Object decode(Parcel p) { return responseLceData(p); }
+        };
+
+        SparseArray<ResponseDecoder> d = new SparseArray<ResponseDecoder>();
+        d.put(RIL_UNSOL_RESPONSE_RADIO_STATE_CHANGED, voidDecoder);
+        d.put(RIL_UNSOL_RESPONSE_CALL_STATE_CHANGED, voidDecoder);
+        d.put(RIL_UNSOL_RESPONSE_VOICE_NETWORK_STATE_CHANGED, voidDecoder);
+        d.put(RIL_UNSOL_RESPONSE_NEW_SMS, stringDecoder);
+        d.put(RIL_UNSOL_RESPONSE_NEW_SMS_STATUS_REPORT, stringDecoder);
+        d.put(RIL_UNSOL_RESPONSE_NEW_SMS_ON_SIM, intsDecoder);
+        d.put(RIL_UNSOL_ON_USSD, stringsDecoder);
+        d.put(RIL_UNSOL_NITZ_TIME_RECEIVED, stringDecoder);
+        d.put(RIL_UNSOL_SIGNAL_STRENGTH, signalStrengthDecoder);
+        d.put(RIL_UNSOL_DATA_CALL_LIST_CHANGED, dataCallListDecoder);
+        d.put(RIL_UNSOL_SUPP_SVC_NOTIFICATION, suppServiceNotificationDecoder);
+        d.put(RIL_UNSOL_STK_SESSION_END, voidDecoder);
+        d.put(RIL_UNSOL_STK_PROACTIVE_COMMAND, stringDecoder);
+        d.put(RIL_UNSOL_STK_EVENT_NOTIFY, stringDecoder);
+        d.put(RIL_UNSOL_STK_CALL_SETUP, intsDecoder);
+        d.put(RIL_UNSOL_SIM_SMS_STORAGE_FULL, voidDecoder);
+        d.put(RIL_UNSOL_SIM_REFRESH, simRefreshDecoder);
+        d.put(RIL_UNSOL_CALL_RING, callRingDecoder);
+        d.put(RIL_UNSOL_RESTRICTED_STATE_CHANGED, intsDecoder);
+        d.put(RIL_UNSOL_RESPONSE_SIM_STATUS_CHANGED, voidDecoder);
+        d.put(RIL_UNSOL_RESPONSE_CDMA_NEW_SMS, cdmaSmsDecoder);
+        d.put(RIL_UNSOL_RESPONSE_NEW_BROADCAST_SMS, rawDecoder);
+        d.put(RIL_UNSOL_CDMA_RUIM_SMS_STORAGE_FULL, voidDecoder);
+        d.put(RIL_UNSOL_ENTER_EMERGENCY_CALLBACK_MODE, voidDecoder);
+        d.put(RIL_UNSOL_CDMA_CALL_WAITING, cdmaCallWaitingDecoder);
+        d.put(RIL_UNSOL_CDMA_OTA_PROVISION_STATUS, intsDecoder);
+        d.put(RIL_UNSOL_CDMA_INFO_REC, cdmaInformationRecordDecoder);
+        d.put(RIL_UNSOL_OEM_HOOK_RAW, rawDecoder);
+        d.put(RIL_UNSOL_RINGBACK_TONE, intsDecoder);
+        d.put(RIL_UNSOL_RESEND_INCALL_MUTE, voidDecoder);
+        d.put(RIL_UNSOL_CDMA_SUBSCRIPTION_SOURCE_CHANGED, intsDecoder);
+        d.put(RIL_UNSOl_CDMA_PRL_CHANGED, intsDecoder);
+        d.put(RIL_UNSOL_EXIT_EMERGENCY_CALLBACK_MODE, voidDecoder);
+        d.put(RIL_UNSOL_RIL_CONNECTED, intsDecoder);
+        d.put(RIL_UNSOL_VOICE_RADIO_TECH_CHANGED, intsDecoder);
+        d.put(RIL_UNSOL_CELL_INFO_LIST, cellInfoListDecoder);
+        d.put(RIL_UNSOL_RESPONSE_IMS_NETWORK_STATE_CHANGED, voidDecoder);
+        d.put(RIL_UNSOL_UICC_SUBSCRIPTION_STATUS_CHANGED, intsDecoder);
+        d.put(RIL_UNSOL_SRVCC_STATE_NOTIFY, intsDecoder);
+        d.put(RIL_UNSOL_HARDWARE_CONFIG_CHANGED, hardwareConfigDecoder);
+        d.put(RIL_UNSOL_RADIO_CAPABILITY, radioCapabilityDecoder);
+        d.put(RIL_UNSOL_ON_SS, ssDataDecoder);
+        d.put(RIL_UNSOL_STK_CC_ALPHA_NOTIFY, stringDecoder);
+        d.put(RIL_UNSOL_LCEDATA_RECV, lceDataDecoder);
+        return d;
     }
 
     protected void
@@ -2635,8 +3086,15 @@ public class RIL extends BaseCommands implements CommandsInterface {
         if (type == RESPONSE_UNSOLICITED) {
             processUnsolicited (p);
         } else if (type == RESPONSE_SOLICITED) {
+            // Peek at the error for the statistics, processSolicited reads it again
+            int position = p.dataPosition();
+            p.readInt();
+            int error = p.readInt();
+            p.setDataPosition(position);
+
             RILRequest rr = processSolicited (p);
             if (rr != null) {
+                mRequestStats.onCompleted(rr, error, SystemClock.elapsedRealtime());
                 rr.release();
                 decrementWakeLock();
             }
@@ -2650,38 +3108,30 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     protected void clearRequestList(int error, boolean loggable) {
         RILRequest rr;
-        synchronized (mRequestList) {
-            int count = mRequestList.size();
-            if (RILJ_LOGD && loggable) {
-                Rlog.d(RILJ_LOG_TAG, "clearRequestList " +
-                        " mWakeLockCount=" + mWakeLockCount +
-                        " mRequestList=" + count);
-            }
+        ArrayList<RILRequest> removed = mRequestList.removeAll();
+        int count = removed.size();
+        if (RILJ_LOGD && loggable) {
+            Rlog.d(RILJ_LOG_TAG, "clearRequestList " +
+                    " mWakeLockCount=" + mWakeLockCount +
+                    " mRequestList=" + count);
+        }
 
-            for (int i = 0; i < count ; i++) {
-                rr = mRequestList.valueAt(i);
-                if (RILJ_LOGD && loggable) {
-                    Rlog.d(RILJ_LOG_TAG, i + ": [" + rr.mSerial + "] " +
-                            requestToString(rr.mRequest));
-                }
-                rr.onError(error, null);
-                rr.release();
-                decrementWakeLock();
+        long now = SystemClock.elapsedRealtime();
+        for (int i = 0; i < count ; i++) {
+            rr = removed.get(i);
+            if (RILJ_LOGD && loggable) {
+                Rlog.d(RILJ_LOG_TAG, i + ": [" + rr.mSerial + "] " +
+                        requestToString(rr.mRequest));
             }
-            mRequestList.clear();
+            mRequestStats.onCompleted(rr, error, now);
+            rr.onError(error, null);
+            rr.release();
+            decrementWakeLock();
         }
     }
 
     protected RILRequest findAndRemoveRequestFromList(int serial) {
-        RILRequest rr = null;
-        synchronized (mRequestList) {
-            rr = mRequestList.get(serial);
-            if (rr != null) {
-                mRequestList.remove(serial);
-            }
-        }
-
-        return rr;
+        return mRequestList.remove(serial);
     }
 
     protected RILRequest
@@ -2706,162 +3156,9 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
         if (error == 0 || p.dataAvail() > 0) {
             // either command succeeds or command fails but with data payload
-            try {switch (rr.mRequest) {
-            /*
- cat libs/telephony/ril_commands.h \
- | egrep "^ *{RIL_" \
- | sed -re 's/\{([^,]+),[^,]+,([^}]+).+/case \1: ret = \2(p); break;/'
-             */
-            case RIL_REQUEST_GET_SIM_STATUS: ret =  responseIccCardStatus(p); break;
-            case RIL_REQUEST_ENTER_SIM_PIN: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_SIM_PUK: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_SIM_PIN2: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_SIM_PUK2: ret =  responseInts(p); break;
-            case RIL_REQUEST_CHANGE_SIM_PIN: ret =  responseInts(p); break;
-            case RIL_REQUEST_CHANGE_SIM_PIN2: ret =  responseInts(p); break;
-            case RIL_REQUEST_ENTER_NETWORK_DEPERSONALIZATION: ret =  responseInts(p); break;
-            case RIL_REQUEST_GET_CURRENT_CALLS: ret =  responseCallList(p); break;
-            case RIL_REQUEST_DIAL: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_IMSI: ret =  responseString(p); break;
-            case RIL_REQUEST_HANGUP: ret =  responseVoid(p); break;
-            case RIL_REQUEST_HANGUP_WAITING_OR_BACKGROUND: ret =  responseVoid(p); break;
-            case RIL_REQUEST_HANGUP_FOREGROUND_RESUME_BACKGROUND: {
-                if (mTestingEmergencyCall.getAndSet(false)) {
-                    if (mEmergencyCallbackModeRegistrant != null) {
-                        riljLog("testing emergency call, notify ECM Registrants");
-                        mEmergencyCallbackModeRegistrant.notifyRegistrant();
-                    }
-                }
-                ret =  responseVoid(p);
-                break;
-            }
-            case RIL_REQUEST_SWITCH_WAITING_OR_HOLDING_AND_ACTIVE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CONFERENCE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_UDUB: ret =  responseVoid(p); break;
-            case RIL_REQUEST_LAST_CALL_FAIL_CAUSE: ret =  responseFailCause(p); break;
-            case RIL_REQUEST_SIGNAL_STRENGTH: ret =  responseSignalStrength(p); break;
-            case RIL_REQUEST_VOICE_REGISTRATION_STATE: ret =  responseStrings(p); break;
-            case RIL_REQUEST_DATA_REGISTRATION_STATE: ret =  responseStrings(p); break;
-            case RIL_REQUEST_OPERATOR: ret =  responseStrings(p); break;
-            case RIL_REQUEST_RADIO_POWER: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DTMF: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SEND_SMS: ret =  responseSMS(p); break;
-            case RIL_REQUEST_SEND_SMS_EXPECT_MORE: ret =  responseSMS(p); break;
-            case RIL_REQUEST_SETUP_DATA_CALL: ret =  responseSetupDataCall(p); break;
-            case RIL_REQUEST_SIM_IO: ret =  responseICC_IO(p); break;
-            case RIL_REQUEST_SEND_USSD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CANCEL_USSD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_CLIR: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_CLIR: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_CALL_FORWARD_STATUS: ret =  responseCallForward(p); break;
-            case RIL_REQUEST_SET_CALL_FORWARD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_CALL_WAITING: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_CALL_WAITING: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SMS_ACKNOWLEDGE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_IMEI: ret =  responseString(p); break;
-            case RIL_REQUEST_GET_IMEISV: ret =  responseString(p); break;
-            case RIL_REQUEST_ANSWER: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DEACTIVATE_DATA_CALL: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_FACILITY_LOCK: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_FACILITY_LOCK: ret =  responseInts(p); break;
-            case RIL_REQUEST_CHANGE_BARRING_PASSWORD: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_NETWORK_SELECTION_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_NETWORK_SELECTION_AUTOMATIC: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_NETWORK_SELECTION_MANUAL: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_AVAILABLE_NETWORKS : ret =  responseOperatorInfos(p); break;
-            case RIL_REQUEST_DTMF_START: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DTMF_STOP: ret =  responseVoid(p); break;
-            case RIL_REQUEST_BASEBAND_VERSION: ret =  responseString(p); break;
-            case RIL_REQUEST_SEPARATE_CONNECTION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_MUTE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_MUTE: ret =  responseInts(p); break;
-            case RIL_REQUEST_QUERY_CLIP: ret =  responseInts(p); break;
-            case RIL_REQUEST_LAST_DATA_CALL_FAIL_CAUSE: ret =  responseInts(p); break;
-            case RIL_REQUEST_DATA_CALL_LIST: ret =  responseDataCallList(p); break;
-            case RIL_REQUEST_RESET_RADIO: ret =  responseVoid(p); break;
-            case RIL_REQUEST_OEM_HOOK_RAW: ret =  responseRaw(p); break;
-            case RIL_REQUEST_OEM_HOOK_STRINGS: ret =  responseStrings(p); break;
-            case RIL_REQUEST_SCREEN_STATE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_SUPP_SVC_NOTIFICATION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_WRITE_SMS_TO_SIM: ret =  responseInts(p); break;
-            case RIL_REQUEST_DELETE_SMS_ON_SIM: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_BAND_MODE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_AVAILABLE_BAND_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_STK_GET_PROFILE: ret =  responseString(p); break;
-            case RIL_REQUEST_STK_SET_PROFILE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_STK_SEND_ENVELOPE_COMMAND: ret =  responseString(p); break;
-            case RIL_REQUEST_STK_SEND_TERMINAL_RESPONSE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_STK_HANDLE_CALL_SETUP_REQUESTED_FROM_SIM: ret =  responseInts(p); break;
-            case RIL_REQUEST_EXPLICIT_CALL_TRANSFER: ret =  responseVoid(p); break;
-            case RIL_REQUEST_SET_PREFERRED_NETWORK_TYPE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GET_PREFERRED_NETWORK_TYPE: ret =  responseGetPreferredNetworkType(p); break;
-            case RIL_REQUEST_GET_NEIGHBORING_CELL_IDS: ret = responseCellList(p); break;
-            case RIL_REQUEST_SET_LOCATION_UPDATES: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SET_SUBSCRIPTION_SOURCE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SET_ROAMING_PREFERENCE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_QUERY_ROAMING_PREFERENCE: ret =  responseInts(p); break;
-            case RIL_REQUEST_SET_TTY_MODE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_QUERY_TTY_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_CDMA_SET_PREFERRED_VOICE_PRIVACY_MODE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_QUERY_PREFERRED_VOICE_PRIVACY_MODE: ret =  responseInts(p); break;
-            case RIL_REQUEST_CDMA_FLASH: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_BURST_DTMF: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SEND_SMS: ret =  responseSMS(p); break;
-            case RIL_REQUEST_CDMA_SMS_ACKNOWLEDGE: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GSM_GET_BROADCAST_CONFIG: ret =  responseGmsBroadcastConfig(p); break;
-            case RIL_REQUEST_GSM_SET_BROADCAST_CONFIG: ret =  responseVoid(p); break;
-            case RIL_REQUEST_GSM_BROADCAST_ACTIVATION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_GET_BROADCAST_CONFIG: ret =  responseCdmaBroadcastConfig(p); break;
-            case RIL_REQUEST_CDMA_SET_BROADCAST_CONFIG: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_BROADCAST_ACTIVATION: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_VALIDATE_AND_WRITE_AKEY: ret =  responseVoid(p); break;
-            case RIL_REQUEST_CDMA_SUBSCRIPTION: ret =  responseStrings(p); break;
-            case RIL_REQUEST_CDMA_WRITE_SMS_TO_RUIM: ret =  responseInts(p); break;
-            case RIL_REQUEST_CDMA_DELETE_SMS_ON_RUIM: ret =  responseVoid(p); break;
-            case RIL_REQUEST_DEVICE_IDENTITY: ret =  responseStrings(p); break;
-            case RIL_REQUEST_GET_SMSC_ADDRESS: ret = responseString(p); break;
-            case RIL_REQUEST_SET_SMSC_ADDRESS: ret = responseVoid(p); break;
-            case RIL_REQUEST_EXIT_EMERGENCY_CALLBACK_MODE: ret = responseVoid(p); break;
-            case RIL_REQUEST_REPORT_SMS_MEMORY_STATUS: ret = responseVoid(p); break;
-            case RIL_REQUEST_REPORT_STK_SERVICE_IS_RUNNING: ret = responseVoid(p); break;
-            case RIL_REQUEST_CDMA_GET_SUBSCRIPTION_SOURCE: ret =  responseInts(p); break;
-            case RIL_REQUEST_ISIM_AUTHENTICATION: ret =  responseString(p); break;
-            case RIL_REQUEST_ACKNOWLEDGE_INCOMING_GSM_SMS_WITH_PDU: ret = responseVoid(p); break;
-            case RIL_REQUEST_STK_SEND_ENVELOPE_WITH_STATUS: ret = responseICC_IO(p); break;
-            case RIL_REQUEST_VOICE_RADIO_TECH: ret = responseInts(p); break;
-            case RIL_REQUEST_GET_CELL_INFO_LIST: ret = responseCellInfoList(p); break;
-            case RIL_REQUEST_SET_UNSOL_CELL_INFO_LIST_RATE: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_INITIAL_ATTACH_APN: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_DATA_PROFILE: ret = responseVoid(p); break;
-            case RIL_REQUEST_IMS_REGISTRATION_STATE: ret = responseInts(p); break;
-            case RIL_REQUEST_IMS_SEND_SMS: ret =  responseSMS(p); break;
-            case RIL_REQUEST_SIM_TRANSMIT_APDU_BASIC: ret =  responseICC_IO(p); break;
-            case RIL_REQUEST_SIM_OPEN_CHANNEL: ret  = responseInts(p); break;
-            case RIL_REQUEST_CAF_SIM_OPEN_CHANNEL_WITH_P2: ret = responseInts(p); break;
-            case RIL_REQUEST_SIM_CLOSE_CHANNEL: ret  = responseVoid(p); break;
-            case RIL_REQUEST_SIM_TRANSMIT_APDU_CHANNEL: ret = responseICC_IO(p); break;
-            case RIL_REQUEST_SIM_GET_ATR: ret = responseString(p); break;
-            case RIL_REQUEST_NV_READ_ITEM: ret = responseString(p); break;
-            case RIL_REQUEST_NV_WRITE_ITEM: ret = responseVoid(p); break;
-            case RIL_REQUEST_NV_WRITE_CDMA_PRL: ret = responseVoid(p); break;
-            case RIL_REQUEST_NV_RESET_CONFIG: ret = responseVoid(p); break;
-            case RIL_REQUEST_SET_UICC_SUBSCRIPTION: ret = responseVoid(p); break;
-            case RIL_REQUEST_ALLOW_DATA: ret = responseVoid(p); break;
-            case RIL_REQUEST_GET_HARDWARE_CONFIG: ret = responseHardwareConfig(p); break;
-            case RIL_REQUEST_SIM_AUTHENTICATION: ret =  responseICC_IOBase64(p); break;
-            case RIL_REQUEST_SHUTDOWN: ret = responseVoid(p); break;
-            case RIL_REQUEST_GET_RADIO_CAPABILITY: ret =  responseRadioCapability(p); break;
-            case RIL_REQUEST_SET_RADIO_CAPABILITY: ret =  responseRadioCapability(p); break;
-            case RIL_REQUEST_START_LCE: ret = responseLceStatus(p); break;
-            case RIL_REQUEST_STOP_LCE: ret = responseLceStatus(p); break;
-            case RIL_REQUEST_PULL_LCEDATA: ret = responseLceData(p); break;
-            case RIL_REQUEST_GET_ACTIVITY_INFO: ret = responseActivityData(p); break;
-            case RIL_REQUEST_SET_MAX_TRANSMIT_POWER: ret = responseVoid(p); break;
-
-            default:
-                throw new RuntimeException("Unrecognized solicited response: " + rr.mRequest);
-            //break;
-            }} catch (Throwable tr) {
+            try {
+                ret = decodeSolicitedResponse(rr.mRequest, p);
+            } catch (Throwable tr) {
                 // Exceptions here usually mean invalid RIL responses
 
                 Rlog.w(RILJ_LOG_TAG, rr.serialString() + "< "
@@ -3050,6 +3347,60 @@ public class RIL extends BaseCommands implements CommandsInterface {
         return s;
     }
 
+    /**
+     * Returns true for the unsolicited responses that can be coalesced,
+     * i.e. those whose notification only depends on the decoded payload.
+     */
+    private static boolean
+    isCoalescibleUnsol(int response) {
+        switch (response) {
+            case RIL_UNSOL_SIGNAL_STRENGTH:
+            case RIL_UNSOL_CELL_INFO_LIST:
+            case RIL_UNSOL_RESPONSE_VOICE_NETWORK_STATE_CHANGED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void
+    notifyCoalescibleUnsol(int response, Object ret) {
+        switch (response) {
+            case RIL_UNSOL_SIGNAL_STRENGTH:
+                if (mSignalStrengthRegistrant != null) {
+                    mSignalStrengthRegistrant.notifyRegistrant(
+                                        new AsyncResult (null, ret, null));
+                }
+                break;
+            case RIL_UNSOL_CELL_INFO_LIST:
+                if (mRilCellInfoListRegistrants != null) {
+                    mRilCellInfoListRegistrants.notifyRegistrants(
+                                        new AsyncResult (null, ret, null));
+                }
+                break;
+            case RIL_UNSOL_RESPONSE_VOICE_NETWORK_STATE_CHANGED:
+                mVoiceNetworkStateRegistrants
+                    .notifyRegistrants(new AsyncResult(null, null, null));
+                break;
+        }
+    }
+
+    /**
+     * Enables coalescing of an unsolicited response before it reaches
+     * registrants. Only RIL_UNSOL_SIGNAL_STRENGTH, RIL_UNSOL_CELL_INFO_LIST
+     * and RIL_UNSOL_RESPONSE_VOICE_NETWORK_STATE_CHANGED are supported.
+     *
+     * @param response RIL_UNSOL_*
+     * @param windowMillis deliver at most the latest response per window, 0 for no window
+     * @param dedupe drop responses equal to the last delivered one
+     */
+    public void setUnsolCoalescing(int response, int windowMillis, boolean dedupe) {
+        if (!isCoalescibleUnsol(response)) {
+            throw new IllegalArgumentException("Cannot coalesce " + responseToString(response));
+        }
+        mUnsolCoalescer.configure(response, windowMillis, dedupe);
+    }
+
     protected void
     processUnsolicited (Parcel p) {
         int response;
@@ -3057,68 +3408,27 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
         response = p.readInt();
 
-        try {switch(response) {
-/*
- cat libs/telephony/ril_unsol_commands.h \
- | egrep "^ *{RIL_" \
- | sed -re 's/\{([^,]+),[^,]+,([^}]+).+/case \1: \2(rr, p); break;/'
-*/
-
-            case RIL_UNSOL_RESPONSE_RADIO_STATE_CHANGED: ret =  responseVoid(p); break;
-            case RIL_UNSOL_RESPONSE_CALL_STATE_CHANGED: ret =  responseVoid(p); break;
-            case RIL_UNSOL_RESPONSE_VOICE_NETWORK_STATE_CHANGED: ret =  responseVoid(p); break;
-            case RIL_UNSOL_RESPONSE_NEW_SMS: ret =  responseString(p); break;
-            case RIL_UNSOL_RESPONSE_NEW_SMS_STATUS_REPORT: ret =  responseString(p); break;
-            case RIL_UNSOL_RESPONSE_NEW_SMS_ON_SIM: ret =  responseInts(p); break;
-            case RIL_UNSOL_ON_USSD: ret =  responseStrings(p); break;
-            case RIL_UNSOL_NITZ_TIME_RECEIVED: ret =  responseString(p); break;
-            case RIL_UNSOL_SIGNAL_STRENGTH: ret = responseSignalStrength(p); break;
-            case RIL_UNSOL_DATA_CALL_LIST_CHANGED: ret = responseDataCallList(p);break;
-            case RIL_UNSOL_SUPP_SVC_NOTIFICATION: ret = responseSuppServiceNotification(p); break;
-            case RIL_UNSOL_STK_SESSION_END: ret = responseVoid(p); break;
-            case RIL_UNSOL_STK_PROACTIVE_COMMAND: ret = responseString(p); break;
-            case RIL_UNSOL_STK_EVENT_NOTIFY: ret = responseString(p); break;
-            case RIL_UNSOL_STK_CALL_SETUP: ret = responseInts(p); break;
-            case RIL_UNSOL_SIM_SMS_STORAGE_FULL: ret =  responseVoid(p); break;
-            case RIL_UNSOL_SIM_REFRESH: ret =  responseSimRefresh(p); break;
-            case RIL_UNSOL_CALL_RING: ret =  responseCallRing(p); break;
-            case RIL_UNSOL_RESTRICTED_STATE_CHANGED: ret = responseInts(p); break;
-            case RIL_UNSOL_RESPONSE_SIM_STATUS_CHANGED:  ret =  responseVoid(p); break;
-            case RIL_UNSOL_RESPONSE_CDMA_NEW_SMS:  ret =  responseCdmaSms(p); break;
-            case RIL_UNSOL_RESPONSE_NEW_BROADCAST_SMS:  ret =  responseRaw(p); break;
-            case RIL_UNSOL_CDMA_RUIM_SMS_STORAGE_FULL:  ret =  responseVoid(p); break;
-            case RIL_UNSOL_ENTER_EMERGENCY_CALLBACK_MODE: ret = responseVoid(p); break;
-            case RIL_UNSOL_CDMA_CALL_WAITING: ret = responseCdmaCallWaiting(p); break;
-            case RIL_UNSOL_CDMA_OTA_PROVISION_STATUS: ret = responseInts(p); break;
-            case RIL_UNSOL_CDMA_INFO_REC: ret = responseCdmaInformationRecord(p); break;
-            case RIL_UNSOL_OEM_HOOK_RAW: ret = responseRaw(p); break;
-            case RIL_UNSOL_RINGBACK_TONE: ret = responseInts(p); break;
-            case RIL_UNSOL_RESEND_INCALL_MUTE: ret = responseVoid(p); break;
-            case RIL_UNSOL_CDMA_SUBSCRIPTION_SOURCE_CHANGED: ret = responseInts(p); break;
-            case RIL_UNSOl_CDMA_PRL_CHANGED: ret = responseInts(p); break;
-            case RIL_UNSOL_EXIT_EMERGENCY_CALLBACK_MODE: ret = responseVoid(p); break;
-            case RIL_UNSOL_RIL_CONNECTED: ret = responseInts(p); break;
-            case RIL_UNSOL_VOICE_RADIO_TECH_CHANGED: ret =  responseInts(p); break;
-            case RIL_UNSOL_CELL_INFO_LIST: ret = responseCellInfoList(p); break;
-            case RIL_UNSOL_RESPONSE_IMS_NETWORK_STATE_CHANGED: ret =  responseVoid(p); break;
-            case RIL_UNSOL_UICC_SUBSCRIPTION_STATUS_CHANGED: ret =  responseInts(p); break;
-            case RIL_UNSOL_SRVCC_STATE_NOTIFY: ret = responseInts(p); break;
-            case RIL_UNSOL_HARDWARE_CONFIG_CHANGED: ret = responseHardwareConfig(p); break;
-            case RIL_UNSOL_RADIO_CAPABILITY:
-                    ret = responseRadioCapability(p); break;
-            case RIL_UNSOL_ON_SS: ret =  responseSsData(p); break;
-            case RIL_UNSOL_STK_CC_ALPHA_NOTIFY: ret =  responseString(p); break;
-            case RIL_UNSOL_LCEDATA_RECV: ret = responseLceData(p); break;
-
-            default:
-                throw new RuntimeException("Unrecognized unsol response: " + response);
-            //break; (implied)
-        }} catch (Throwable tr) {
+        try {
+            ret = decodeUnsolicitedResponse(response, p);
+        } catch (Throwable tr) {
             Rlog.e(RILJ_LOG_TAG, "Exception processing unsol response: " + response +
                 "Exception:" + tr.toString());
             return;
         }
 
+        if (isCoalescibleUnsol(response)) {
+            long now = SystemClock.uptimeMillis();
+            int action = mUnsolCoalescer.offer(response, ret, now);
+            if (action == UnsolCoalescer.DEFER) {
+                mSender.sendMessageDelayed(
+                        mSender.obtainMessage(EVENT_FLUSH_COALESCED_UNSOL, response, 0),
+                        mUnsolCoalescer.getFlushDelay(response, now));
+            }
+            if (action != UnsolCoalescer.DELIVER) {
+                return;
+            }
+        }
+
         switch(response) {
             case RIL_UNSOL_RESPONSE_RADIO_STATE_CHANGED:
                 /* has bonus radio state int */
@@ -3142,8 +3452,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
             case RIL_UNSOL_RESPONSE_VOICE_NETWORK_STATE_CHANGED:
                 if (RILJ_LOGD) unsljLog(response);
 
-                mVoiceNetworkStateRegistrants
-                    .notifyRegistrants(new AsyncResult(null, null, null));
+                notifyCoalescibleUnsol(response, ret);
             break;
             case RIL_UNSOL_RESPONSE_NEW_SMS: {
                 if (RILJ_LOGD) unsljLog(response);
@@ -3233,10 +3542,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
                 // frequently
                 if (RILJ_LOGV) unsljLogvRet(response, ret);
 
-                if (mSignalStrengthRegistrant != null) {
-                    mSignalStrengthRegistrant.notifyRegistrant(
-                                        new AsyncResult (null, ret, null));
-                }
+                notifyCoalescibleUnsol(response, ret);
             break;
             case RIL_UNSOL_DATA_CALL_LIST_CHANGED:
                 if (RILJ_LOGD) unsljLogRet(response, ret);
@@ -3482,10 +3788,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
             case RIL_UNSOL_CELL_INFO_LIST: {
                 if (RILJ_LOGD) unsljLogRet(response, ret);
 
-                if (mRilCellInfoListRegistrants != null) {
-                    mRilCellInfoListRegistrants.notifyRegistrants(
-                                        new AsyncResult (null, ret, null));
-                }
+                notifyCoalescibleUnsol(response, ret);
                 break;
             }
             case RIL_UNSOL_UICC_SUBSCRIPTION_STATUS_CHANGED: {
@@ -4942,7 +5245,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getDeviceIdentity(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_DEVICE_IDENTITY, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_DEVICE_IDENTITY, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -4952,7 +5255,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     getCDMASubscription(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_SUBSCRIPTION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_SUBSCRIPTION, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -4970,7 +5273,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void queryCdmaRoamingPreference(Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_CDMA_QUERY_ROAMING_PREFERENCE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -4983,7 +5286,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setCdmaRoamingPreference(int cdmaRoamingType, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_CDMA_SET_ROAMING_PREFERENCE, response);
 
         rr.mParcel.writeInt(1);
@@ -5000,7 +5303,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setCdmaSubscriptionSource(int cdmaSubscription , Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_CDMA_SET_SUBSCRIPTION_SOURCE, response);
 
         rr.mParcel.writeInt(1);
@@ -5017,7 +5320,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void getCdmaSubscriptionSource(Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_CDMA_GET_SUBSCRIPTION_SOURCE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -5030,7 +5333,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void queryTTYMode(Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_QUERY_TTY_MODE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -5043,7 +5346,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void setTTYMode(int ttyMode, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RILConstants.RIL_REQUEST_SET_TTY_MODE, response);
 
         rr.mParcel.writeInt(1);
@@ -5061,7 +5364,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void
     sendCDMAFeatureCode(String FeatureCode, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_FLASH, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_FLASH, response);
 
         rr.mParcel.writeString(FeatureCode);
 
@@ -5073,14 +5376,14 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void getCdmaBroadcastConfig(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_GET_BROADCAST_CONFIG, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_GET_BROADCAST_CONFIG, response);
 
         send(rr);
     }
 
     @Override
     public void setCdmaBroadcastConfig(CdmaSmsBroadcastConfigInfo[] configs, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_SET_BROADCAST_CONFIG, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_SET_BROADCAST_CONFIG, response);
 
         // Convert to 1 service category per config (the way RIL takes is)
         ArrayList<CdmaSmsBroadcastConfigInfo> processedConfigs =
@@ -5115,7 +5418,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void setCdmaBroadcastActivation(boolean activate, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CDMA_BROADCAST_ACTIVATION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CDMA_BROADCAST_ACTIVATION, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(activate ? 0 :1);
@@ -5130,7 +5433,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void exitEmergencyCallbackMode(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_EXIT_EMERGENCY_CALLBACK_MODE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_EXIT_EMERGENCY_CALLBACK_MODE, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -5139,7 +5442,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void requestIsimAuthentication(String nonce, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_ISIM_AUTHENTICATION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_ISIM_AUTHENTICATION, response);
 
         rr.mParcel.writeString(nonce);
 
@@ -5151,7 +5454,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void requestIccSimAuthentication(int authContext, String data, String aid,
                                             Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SIM_AUTHENTICATION, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SIM_AUTHENTICATION, response);
 
         rr.mParcel.writeInt(authContext);
         rr.mParcel.writeString(data);
@@ -5167,7 +5470,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void getCellInfoList(Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_CELL_INFO_LIST, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_CELL_INFO_LIST, result);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
 
@@ -5180,7 +5483,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     @Override
     public void setCellInfoListRate(int rateInMillis, Message response) {
         if (RILJ_LOGD) riljLog("setCellInfoListRate: " + rateInMillis);
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_UNSOL_CELL_INFO_LIST_RATE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_UNSOL_CELL_INFO_LIST_RATE, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(rateInMillis);
@@ -5192,7 +5495,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     public void setInitialAttachApn(String apn, String protocol, int authType, String username,
             String password, Message result) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_INITIAL_ATTACH_APN, result);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_INITIAL_ATTACH_APN, result);
 
         if (RILJ_LOGD) riljLog("Set RIL_REQUEST_SET_INITIAL_ATTACH_APN");
 
@@ -5212,7 +5515,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     public void setDataProfile(DataProfile[] dps, Message result) {
         if (RILJ_LOGD) riljLog("Set RIL_REQUEST_SET_DATA_PROFILE");
 
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_DATA_PROFILE, null);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_DATA_PROFILE, null);
         DataProfile.toParcel(rr.mParcel, dps);
 
         if (RILJ_LOGD) {
@@ -5244,19 +5547,25 @@ public class RIL extends BaseCommands implements CommandsInterface {
         pw.println(" mReceiver=" + mReceiver);
         pw.println(" mWakeLock=" + mWakeLock);
         pw.println(" mWakeLockTimeout=" + mWakeLockTimeout);
-        synchronized (mRequestList) {
-            synchronized (mWakeLock) {
-                pw.println(" mWakeLockCount=" + mWakeLockCount);
-            }
-            int count = mRequestList.size();
-            pw.println(" mRequestList count=" + count);
-            for (int i = 0; i < count; i++) {
-                RILRequest rr = mRequestList.valueAt(i);
-                pw.println("  [" + rr.mSerial + "] " + requestToString(rr.mRequest));
-            }
+        synchronized (mWakeLock) {
+            pw.println(" mWakeLockCount=" + mWakeLockCount);
+        }
+        ArrayList<RILRequest> pending = mRequestList.snapshot();
+        long now = SystemClock.elapsedRealtime();
+        int count = pending.size();
+        pw.println(" mRequestList count=" + count);
+        for (int i = 0; i < count; i++) {
+            RILRequest rr = pending.get(i);
+            pw.println("  [" + rr.mSerial + "] " + requestToString(rr.mRequest)
+                    + " age=" + rr.getAgeMillis(now) + "ms");
         }
         pw.println(" mLastNITZTimeInfo=" + mLastNITZTimeInfo);
         pw.println(" mTestingEmergencyCall=" + mTestingEmergencyCall.get());
+        pw.println(" mSlowRequestThreshold=" + mSlowRequestThreshold);
+        mRequestStats.dump(pw);
+        mUnsolCoalescer.dump(pw);
+        mRequestPool.dump(pw);
+        mFramer.dump(pw);
     }
 
     /**
@@ -5274,7 +5583,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
             return;
         }
 
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SIM_OPEN_CHANNEL, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SIM_OPEN_CHANNEL, response);
         rr.mParcel.writeString(AID);
 
         if (RILJ_LOGD)
@@ -5285,7 +5594,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void iccOpenLogicalChannel(String AID, byte p2, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_CAF_SIM_OPEN_CHANNEL_WITH_P2, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_CAF_SIM_OPEN_CHANNEL_WITH_P2, response);
         rr.mParcel.writeByte(p2);
         rr.mParcel.writeString(AID);
 
@@ -5300,7 +5609,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void iccCloseLogicalChannel(int channel, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SIM_CLOSE_CHANNEL, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SIM_CLOSE_CHANNEL, response);
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(channel);
 
@@ -5351,7 +5660,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
      */
     @Override
     public void getAtr(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SIM_GET_ATR, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SIM_GET_ATR, response);
         int slotId = 0;
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(slotId);
@@ -5377,7 +5686,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
             return;
         }
 
-        RILRequest rr = RILRequest.obtain(rilCommand, response);
+        RILRequest rr = obtainRequest(rilCommand, response);
         rr.mParcel.writeInt(channel);
         rr.mParcel.writeInt(cla);
         rr.mParcel.writeInt(instruction);
@@ -5394,7 +5703,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void nvReadItem(int itemID, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_NV_READ_ITEM, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_NV_READ_ITEM, response);
 
         rr.mParcel.writeInt(itemID);
 
@@ -5406,7 +5715,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void nvWriteItem(int itemID, String itemValue, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_NV_WRITE_ITEM, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_NV_WRITE_ITEM, response);
 
         rr.mParcel.writeInt(itemID);
         rr.mParcel.writeString(itemValue);
@@ -5419,7 +5728,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void nvWriteCdmaPrl(byte[] preferredRoamingList, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_NV_WRITE_CDMA_PRL, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_NV_WRITE_CDMA_PRL, response);
 
         rr.mParcel.writeByteArray(preferredRoamingList);
 
@@ -5431,7 +5740,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void nvResetConfig(int resetType, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_NV_RESET_CONFIG, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_NV_RESET_CONFIG, response);
 
         rr.mParcel.writeInt(1);
         rr.mParcel.writeInt(resetType);
@@ -5444,7 +5753,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void setRadioCapability(RadioCapability rc, Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RIL_REQUEST_SET_RADIO_CAPABILITY, response);
 
         rr.mParcel.writeInt(rc.getVersion());
@@ -5464,7 +5773,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void getRadioCapability(Message response) {
-        RILRequest rr = RILRequest.obtain(
+        RILRequest rr = obtainRequest(
                 RIL_REQUEST_GET_RADIO_CAPABILITY, response);
 
         if (RILJ_LOGD) riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
@@ -5474,7 +5783,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void startLceService(int reportIntervalMs, boolean pullMode, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_START_LCE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_START_LCE, response);
         /** solicited command argument: reportIntervalMs, pullMode. */
         rr.mParcel.writeInt(2);
         rr.mParcel.writeInt(reportIntervalMs);
@@ -5489,7 +5798,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void stopLceService(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_STOP_LCE, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_STOP_LCE, response);
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         }
@@ -5498,7 +5807,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void pullLceData(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_PULL_LCEDATA, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_PULL_LCEDATA, response);
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         }
@@ -5509,7 +5818,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
     * @hide
     */
     public void getModemActivityInfo(Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_GET_ACTIVITY_INFO, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_GET_ACTIVITY_INFO, response);
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest));
         }
@@ -5518,7 +5827,7 @@ public class RIL extends BaseCommands implements CommandsInterface {
 
     @Override
     public void setMaxTransmitPower(int state, Message response) {
-        RILRequest rr = RILRequest.obtain(RIL_REQUEST_SET_MAX_TRANSMIT_POWER, response);
+        RILRequest rr = obtainRequest(RIL_REQUEST_SET_MAX_TRANSMIT_POWER, response);
 
         if (RILJ_LOGD) {
             riljLog(rr.serialString() + "> " + requestToString(rr.mRequest) + " state = " + state);
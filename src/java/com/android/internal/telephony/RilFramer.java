@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.telephony.Rlog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+
+/**
+ * Length-prefixed framing of RIL messages on the rild socket.
+ *
+ * Every message on the wire is a 4-byte big-endian length followed by the
+ * marshalled Parcel. Frame buffers are taken from a small shared pool so that
+ * neither the receiver nor the sender thread allocates per message. The
+ * receiver may pull several messages out of a single socket read and hands
+ * each payload to Parcel.unmarshall() straight out of the frame buffer; the
+ * sender puts header and payload into one frame and writes it with a single
+ * call.
+ *
+ * Buffers are heap backed on purpose: LocalSocket only exposes streams and
+ * Parcel only (un)marshalls byte arrays, so a direct buffer would cost an
+ * extra copy on each side.
+ *
+ * {@hide}
+ */
+class RilFramer {
+    static final String LOG_TAG = "RilFramer";
+
+    static final int HEADER_SIZE = 4;
+
+    private static final int MAX_POOL_SIZE = 4;
+
+    private static final Object sPoolSync = new Object();
+    private static final ByteBuffer[] sPool = new ByteBuffer[MAX_POOL_SIZE];
+    private static int sPoolSize = 0;
+
+    private final int mMaxPayload;
+
+    // Receive and send side statistics. Each side has a single writer thread, so volatile
+    // is enough for dump() to read them from another thread.
+
+    // Receive side statistics, only written by the receiver thread
+    private volatile long mMessagesRead;
+    private volatile long mBytesRead;
+    private volatile long mReadCalls;
+    private volatile long mBytesCopiedIn;
+
+    // Send side statistics, only written by the sender thread
+    private volatile long mMessagesWritten;
+    private volatile long mBytesWritten;
+    private volatile long mWriteCalls;
+    private volatile long mBytesCopiedOut;
+
+    // Shared pool statistics, guarded by sPoolSync
+    private static long sPoolHits;
+    private static long sPoolMisses;
+
+    RilFramer(int maxPayload) {
+        mMaxPayload = maxPayload;
+    }
+
+    /**
+     * Returns a frame buffer large enough for a maximum sized message
+     * and its header, cleared and ready for use.
+     */
+    ByteBuffer obtainFrame() {
+        ByteBuffer frame = null;
+        synchronized (sPoolSync) {
+            // Only reuse buffers that are big enough for this framer
+            for (int i = sPoolSize - 1; i >= 0; i--) {
+                if (sPool[i].capacity() >= HEADER_SIZE + mMaxPayload) {
+                    frame = sPool[i];
+                    sPool[i] = sPool[--sPoolSize];
+                    sPool[sPoolSize] = null;
+                    break;
+                }
+            }
+            if (frame != null) {
+                sPoolHits++;
+            } else {
+                sPoolMisses++;
+            }
+        }
+        if (frame == null) {
+            frame = ByteBuffer.allocate(HEADER_SIZE + mMaxPayload);
+        }
+        frame.clear();
+        return frame;
+    }
+
+    /**
+     * Returns a frame buffer to the pool.
+     *
+     * Note: This should only be called once per obtained frame.
+     */
+    void releaseFrame(ByteBuffer frame) {
+        synchronized (sPoolSync) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                sPool[sPoolSize++] = frame;
+            }
+        }
+    }
+
+    /**
+     * Writes <code>data</code> as one length-prefixed message using
+     * a single write on <code>os</code>.
+     *
+     * @throws RuntimeException if data is larger than the maximum message size
+     */
+    void writeMessage(OutputStream os, byte[] data) throws IOException {
+        if (data.length > mMaxPayload) {
+            throw new RuntimeException("Parcel larger than max bytes allowed! " + data.length);
+        }
+
+        ByteBuffer frame = obtainFrame();
+        try {
+            // parcel length in big endian
+            frame.putInt(data.length);
+            frame.put(data);
+            os.write(frame.array(), frame.arrayOffset(), frame.position());
+        } finally {
+            releaseFrame(frame);
+        }
+
+        mMessagesWritten++;
+        mBytesWritten += HEADER_SIZE + data.length;
+        mBytesCopiedOut += data.length;
+        mWriteCalls++;
+    }
+
+    Reader newReader(InputStream is) {
+        return new Reader(is);
+    }
+
+    /**
+     * Reads consecutive messages off one connection. Not thread safe,
+     * a Reader belongs to the receiver thread that created it.
+     */
+    class Reader {
+        private final InputStream mIs;
+        private ByteBuffer mFrame;
+        private int mLastLength;
+
+        private Reader(InputStream is) {
+            mIs = is;
+            mFrame = obtainFrame();
+            // Nothing buffered yet
+            mFrame.limit(0);
+        }
+
+        /**
+         * Reads in the next message. On success the payload is available
+         * from {@link #array()} starting at {@link #offset()} until the
+         * next call.
+         *
+         * @return Length of message less header, or -1 on end of stream.
+         * @throws IOException
+         */
+        int next() throws IOException {
+            ByteBuffer frame = mFrame;
+
+            // Drop the message returned by the previous call
+            frame.position(frame.position() + mLastLength);
+            mLastLength = 0;
+
+            for (;;) {
+                int needed = HEADER_SIZE;
+                if (frame.remaining() >= HEADER_SIZE) {
+                    int messageLength = frame.getInt(frame.position());
+                    if (messageLength < 0 || messageLength > mMaxPayload) {
+                        throw new IOException("Invalid RIL message length " + messageLength);
+                    }
+                    needed += messageLength;
+                    if (frame.remaining() >= needed) {
+                        frame.position(frame.position() + HEADER_SIZE);
+                        mLastLength = messageLength;
+                        mMessagesRead++;
+                        mBytesRead += needed;
+                        // Parcel.unmarshall() copies the payload once
+                        mBytesCopiedIn += messageLength;
+                        return messageLength;
+                    }
+                }
+
+                // Make room for the rest of the message at the end of the frame
+                if (!frame.hasRemaining() || frame.capacity() - frame.position() < needed) {
+                    mBytesCopiedIn += frame.remaining();
+                    frame.compact();
+                    frame.flip();
+                }
+
+                int limit = frame.limit();
+                int countRead = mIs.read(frame.array(), frame.arrayOffset() + limit,
+                        frame.capacity() - limit);
+                mReadCalls++;
+                if (countRead < 0) {
+                    Rlog.e(LOG_TAG, "Hit EOS reading message. buffered=" + frame.remaining());
+                    return -1;
+                }
+                frame.limit(limit + countRead);
+            }
+        }
+
+        byte[] array() {
+            return mFrame.array();
+        }
+
+        int offset() {
+            return mFrame.arrayOffset() + mFrame.position();
+        }
+
+        /** Returns the frame buffer to the pool; the reader is unusable afterwards. */
+        void close() {
+            if (mFrame != null) {
+                releaseFrame(mFrame);
+                mFrame = null;
+            }
+        }
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println(" RilFramer:");
+        pw.println("  messagesRead=" + mMessagesRead + " bytesRead=" + mBytesRead
+                + " readCalls=" + mReadCalls + " bytesCopiedIn=" + mBytesCopiedIn
+                + " bytesCopiedPerMessageIn=" + perMessage(mBytesCopiedIn, mMessagesRead));
+        pw.println("  messagesWritten=" + mMessagesWritten + " bytesWritten=" + mBytesWritten
+                + " writeCalls=" + mWriteCalls + " bytesCopiedOut=" + mBytesCopiedOut
+                + " bytesCopiedPerMessageOut=" + perMessage(mBytesCopiedOut, mMessagesWritten));
+        // The previous framing issued at least two reads and exactly two writes per message
+        pw.println("  legacyReadCalls>=" + (2 * mMessagesRead)
+                + " legacyWriteCalls=" + (2 * mMessagesWritten));
+        synchronized (sPoolSync) {
+            pw.println("  framePool size=" + sPoolSize + " hits=" + sPoolHits
+                    + " misses=" + sPoolMisses);
+        }
+    }
+
+    private static long perMessage(long bytes, long messages) {
+        return messages == 0 ? 0 : bytes / messages;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import java.io.PrintWriter;
+
+/**
+ * Pool of recycled RILRequest objects owned by one RIL instance.
+ *
+ * The pool grows to the number of requests observed outstanding at the
+ * same time, so a burst such as the iccIO reads fired while loading a SIM
+ * is served from the pool the next time it happens. The high water mark
+ * is re-evaluated every {@link #ADAPT_INTERVAL} obtains, letting the pool
+ * shrink again once the bursts stop.
+ *
+ * {@hide}
+ */
+class RilRequestPool {
+    static final int MIN_POOL_SIZE = 4;
+    static final int MAX_POOL_SIZE = 64;
+    static final int ADAPT_INTERVAL = 256;
+
+    private final Object mLock = new Object();
+    private RILRequest mHead;
+    private int mSize;
+    private int mCapacity = MIN_POOL_SIZE;
+
+    // Requests handed out and not yet released
+    private int mOutstanding;
+    private int mWindowPeakOutstanding;
+    private int mObtainsInWindow;
+
+    private long mHits;
+    private long mMisses;
+    private long mDropped;
+    private int mPeakSize;
+    private int mPeakOutstanding;
+
+    /**
+     * Returns a recycled RILRequest, or null if the caller must allocate
+     * one. Either way the request counts as outstanding until
+     * {@link #recycle} is called for it.
+     */
+    RILRequest acquire() {
+        synchronized (mLock) {
+            mOutstanding++;
+            if (mOutstanding > mWindowPeakOutstanding) {
+                mWindowPeakOutstanding = mOutstanding;
+                if (mOutstanding > mPeakOutstanding) {
+                    mPeakOutstanding = mOutstanding;
+                }
+                // Grow right away so the rest of the burst gets recycled
+                if (mOutstanding > mCapacity) {
+                    mCapacity = Math.min(mOutstanding, MAX_POOL_SIZE);
+                }
+            }
+
+            if (++mObtainsInWindow >= ADAPT_INTERVAL) {
+                mCapacity = Math.max(MIN_POOL_SIZE,
+                        Math.min(mWindowPeakOutstanding, MAX_POOL_SIZE));
+                mWindowPeakOutstanding = mOutstanding;
+                mObtainsInWindow = 0;
+                while (mSize > mCapacity) {
+                    RILRequest dropped = mHead;
+                    mHead = dropped.mNext;
+                    dropped.mNext = null;
+                    mSize--;
+                }
+            }
+
+            RILRequest rr = mHead;
+            if (rr != null) {
+                mHead = rr.mNext;
+                rr.mNext = null;
+                mSize--;
+                mHits++;
+            } else {
+                mMisses++;
+            }
+            return rr;
+        }
+    }
+
+    /**
+     * Returns a request to the pool, or drops it if the pool is at its
+     * current capacity.
+     */
+    void recycle(RILRequest rr) {
+        synchronized (mLock) {
+            if (mOutstanding > 0) {
+                mOutstanding--;
+            }
+            if (mSize < mCapacity) {
+                rr.mNext = mHead;
+                mHead = rr;
+                mSize++;
+                if (mSize > mPeakSize) {
+                    mPeakSize = mSize;
+                }
+            } else {
+                mDropped++;
+            }
+        }
+    }
+
+    long getHits() {
+        synchronized (mLock) {
+            return mHits;
+        }
+    }
+
+    long getMisses() {
+        synchronized (mLock) {
+            return mMisses;
+        }
+    }
+
+    int getPeakSize() {
+        synchronized (mLock) {
+            return mPeakSize;
+        }
+    }
+
+    int getCapacity() {
+        synchronized (mLock) {
+            return mCapacity;
+        }
+    }
+
+    void dump(PrintWriter pw) {
+        synchronized (mLock) {
+            long total = mHits + mMisses;
+            pw.println(" RILRequest pool: size=" + mSize + " capacity=" + mCapacity
+                    + " peakSize=" + mPeakSize + " outstanding=" + mOutstanding
+                    + " peakOutstanding=" + mPeakOutstanding);
+            pw.println("  hits=" + mHits + " misses=" + mMisses + " dropped=" + mDropped
+                    + " hitRate=" + (total == 0 ? 0 : (100 * mHits / total)) + "%");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.util.SparseArray;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per request type latency and error statistics for one RIL instance.
+ *
+ * Latencies are measured from the time a request is queued for sending to
+ * the time its solicited response is processed, and kept in power-of-two
+ * millisecond buckets so recording one is a few integer operations.
+ * Percentiles are reported as the upper bound of the bucket they fall in.
+ *
+ * {@hide}
+ */
+public class RilRequestStats {
+    // Bucket i holds latencies in [2^(i-1), 2^i) ms, bucket 0 holds 0ms.
+    // The last bucket also takes everything above 2^(BUCKETS - 2) ms.
+    private static final int BUCKETS = 18;
+
+    /**
+     * Snapshot of the statistics of one request type.
+     */
+    public static class Entry {
+        public final int request;
+        public final long count;
+        public final long errors;
+        public final long slow;
+        public final long p50Millis;
+        public final long p95Millis;
+        public final long p99Millis;
+        public final long maxMillis;
+        public final long meanQueueMillis;
+
+        Entry(Counter c) {
+            request = c.mRequest;
+            count = c.mCount;
+            errors = c.mErrors;
+            slow = c.mSlow;
+            p50Millis = c.percentile(50);
+            p95Millis = c.percentile(95);
+            p99Millis = c.percentile(99);
+            maxMillis = c.mMaxMillis;
+            meanQueueMillis = c.mCount == 0 ? 0 : c.mQueueMillis / c.mCount;
+        }
+
+        @Override
+        public String toString() {
+            return RIL.requestToString(request) + " count=" + count + " errors=" + errors
+                    + " slow=" + slow + " p50=" + p50Millis + "ms p95=" + p95Millis
+                    + "ms p99=" + p99Millis + "ms max=" + maxMillis
+                    + "ms queue=" + meanQueueMillis + "ms";
+        }
+    }
+
+    private static class Counter {
+        final int mRequest;
+        final int[] mBuckets = new int[BUCKETS];
+        long mCount;
+        long mErrors;
+        long mSlow;
+        long mMaxMillis;
+        long mQueueMillis;
+
+        Counter(int request) {
+            mRequest = request;
+        }
+
+        long percentile(int percent) {
+            long rank = (mCount * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(i == 0 ? 0 : 1L << i, mMaxMillis);
+                }
+            }
+            return mMaxMillis;
+        }
+    }
+
+    private final SparseArray<Counter> mCounters = new SparseArray<Counter>();
+
+    private static int bucketOf(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(millis);
+        return bucket < BUCKETS ? bucket : BUCKETS - 1;
+    }
+
+    private Counter counterFor(int request) {
+        Counter c = mCounters.get(request);
+        if (c == null) {
+            c = new Counter(request);
+            mCounters.put(request, c);
+        }
+        return c;
+    }
+
+    /**
+     * Records the completion of a request.
+     *
+     * @param rr the completed request, with its enqueue and send times set
+     * @param error the RIL_Errno it completed with, 0 on success
+     * @param now SystemClock.elapsedRealtime() at completion
+     */
+    void onCompleted(RILRequest rr, int error, long now) {
+        long latency = now - rr.mEnqueueTime;
+        long queued = rr.mSentTime > 0 ? rr.mSentTime - rr.mEnqueueTime : 0;
+        synchronized (mCounters) {
+            Counter c = counterFor(rr.mRequest);
+            c.mCount++;
+            c.mBuckets[bucketOf(latency)]++;
+            if (latency > c.mMaxMillis) {
+                c.mMaxMillis = latency;
+            }
+            if (queued > 0) {
+                c.mQueueMillis += queued;
+            }
+            if (error != 0) {
+                c.mErrors++;
+            }
+        }
+    }
+
+    /**
+     * Records that a request was found still outstanding past the slow
+     * request threshold. Called at most once per request.
+     */
+    void onSlow(int request) {
+        synchronized (mCounters) {
+            counterFor(request).mSlow++;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics of every request type seen so far.
+     */
+    public List<Entry> getSnapshot() {
+        synchronized (mCounters) {
+            ArrayList<Entry> entries = new ArrayList<Entry>(mCounters.size());
+            for (int i = 0, s = mCounters.size(); i < s; i++) {
+                entries.add(new Entry(mCounters.valueAt(i)));
+            }
+            return entries;
+        }
+    }
+
+    void reset() {
+        synchronized (mCounters) {
+            mCounters.clear();
+        }
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println(" RilRequestStats:");
+        for (Entry e : getSnapshot()) {
+            pw.println("  " + e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of RIL requests that were sent to rild and are waiting for a
+ * solicited response, keyed by serial number.
+ *
+ * Serials are handed out sequentially, so the low bits of a serial pick a
+ * slot that is almost always free when the request is sent and is the first
+ * slot probed when its response arrives. Slots are claimed and released with
+ * compare-and-set, so the sender thread, the receiver thread and the wake
+ * lock timeout never block each other. Only when every slot is taken do
+ * requests spill into a locked overflow list.
+ *
+ * Removing a request empties its slot, so a lookup cannot stop at the first
+ * empty slot. Instead the table keeps the furthest any request in it was put
+ * from its home slot, and a lookup probes only that far. It is kept in the
+ * same atomic word as the size and goes back to 0 whenever the table empties.
+ *
+ * {@hide}
+ */
+class RilRequestTable {
+    static final int CAPACITY = 128; // must be a power of two
+    private static final int MASK = CAPACITY - 1;
+
+    private final AtomicReferenceArray<RILRequest> mSlots =
+            new AtomicReferenceArray<RILRequest>(CAPACITY);
+    private final SparseArray<RILRequest> mOverflow = new SparseArray<RILRequest>();
+    // Size in the high 32 bits, furthest probe distance in the low 32 bits
+    private final AtomicLong mState = new AtomicLong();
+
+    /**
+     * Adds a request that is about to be written to rild.
+     */
+    void put(RILRequest rr) {
+        // Counted before it is placed, so the probe distance is not reset
+        // while it is being put
+        mState.addAndGet(1L << 32);
+
+        int home = rr.mSerial & MASK;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (mSlots.compareAndSet((home + i) & MASK, null, rr)) {
+                raiseMaxProbe(i);
+                return;
+            }
+        }
+
+        synchronized (mOverflow) {
+            mOverflow.put(rr.mSerial, rr);
+        }
+    }
+
+    /**
+     * Removes and returns the request with the given serial, or null if
+     * there is none (eg, it was already removed by {@link #removeAll}).
+     */
+    RILRequest remove(int serial) {
+        int home = serial & MASK;
+        int maxProbe = getMaxProbe();
+        for (int i = 0; i <= maxProbe; i++) {
+            int index = (home + i) & MASK;
+            RILRequest rr = mSlots.get(index);
+            // A request is only recycled after it left the table, so the
+            // serial read here can only go stale if another thread removed
+            // and resent the same object between the read and the CAS.
+            if (rr != null && rr.mSerial == serial && mSlots.compareAndSet(index, rr, null)) {
+                decrementSize();
+                return rr;
+            }
+        }
+
+        synchronized (mOverflow) {
+            RILRequest rr = mOverflow.get(serial);
+            if (rr != null) {
+                mOverflow.remove(serial);
+                decrementSize();
+            }
+            return rr;
+        }
+    }
+
+    /**
+     * Stamps the send time of the request with the given serial once it has
+     * been written to rild, see {@link RILRequest#getAgeMillis}. Does nothing
+     * if its response already removed it.
+     */
+    void markSent(int serial, long now) {
+        int home = serial & MASK;
+        int maxProbe = getMaxProbe();
+        for (int i = 0; i <= maxProbe; i++) {
+            RILRequest rr = mSlots.get((home + i) & MASK);
+            if (rr != null && rr.mSerial == serial) {
+                rr.mSentTime = now;
+                return;
+            }
+        }
+
+        synchronized (mOverflow) {
+            RILRequest rr = mOverflow.get(serial);
+            if (rr != null) {
+                rr.mSentTime = now;
+            }
+        }
+    }
+
+    /**
+     * Removes every request and returns the removed requests. A request
+     * removed concurrently by {@link #remove} is never returned here too.
+     */
+    ArrayList<RILRequest> removeAll() {
+        ArrayList<RILRequest> removed = new ArrayList<RILRequest>();
+        for (int i = 0; i < CAPACITY; i++) {
+            RILRequest rr = mSlots.get(i);
+            if (rr != null && mSlots.compareAndSet(i, rr, null)) {
+                decrementSize();
+                removed.add(rr);
+            }
+        }
+
+        synchronized (mOverflow) {
+            for (int i = 0, s = mOverflow.size(); i < s; i++) {
+                removed.add(mOverflow.valueAt(i));
+                decrementSize();
+            }
+            mOverflow.clear();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns a weakly consistent snapshot of the requests in flight. The
+     * requests may complete and be recycled at any time, so callers should
+     * only read fields they copy out immediately.
+     */
+    ArrayList<RILRequest> snapshot() {
+        ArrayList<RILRequest> list = new ArrayList<RILRequest>(size());
+        for (int i = 0; i < CAPACITY; i++) {
+            RILRequest rr = mSlots.get(i);
+            if (rr != null) {
+                list.add(rr);
+            }
+        }
+
+        synchronized (mOverflow) {
+            for (int i = 0, s = mOverflow.size(); i < s; i++) {
+                list.add(mOverflow.valueAt(i));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of requests of the given type in flight.
+     */
+    int count(int request) {
+        int count = 0;
+        for (RILRequest rr : snapshot()) {
+            if (rr.mRequest == request) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return (int) (mState.get() >>> 32);
+    }
+
+    /**
+     * Returns how many slots past its home slot the furthest request in the
+     * table was put.
+     */
+    int getMaxProbe() {
+        return (int) mState.get();
+    }
+
+    private void raiseMaxProbe(int probe) {
+        while (true) {
+            long state = mState.get();
+            if ((int) state >= probe
+                    || mState.compareAndSet(state, (state & ~0xffffffffL) | probe)) {
+                return;
+            }
+        }
+    }
+
+    private void decrementSize() {
+        while (true) {
+            long state = mState.get();
+            long size = (state >>> 32) - 1;
+            // No request can be displaced in an empty table
+            long next = size == 0 ? 0 : (size << 32) | (state & 0xffffffffL);
+            if (mState.compareAndSet(state, next)) {
+                return;
+            }
+        }
+    }
+}
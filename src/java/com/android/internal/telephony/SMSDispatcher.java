@@ -69,6 +69,9 @@ import com.android.internal.telephony.GsmAlphabet.TextEncodingDetails;
 import com.android.internal.telephony.uicc.UiccCard;
 import com.android.internal.telephony.uicc.UiccController;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -135,6 +138,9 @@ public abstract class SMSDispatcher extends Handler {
     protected static final int EVENT_NEW_ICC_SMS = 14;
     protected static final int EVENT_ICC_CHANGED = 15;
 
+    /** Restore the messages awaiting a status report, off the constructor */
+    private static final int EVENT_LOAD_DELIVERY_PENDING = 16;
+
     protected PhoneBase mPhone;
     protected final Context mContext;
     protected final ContentResolver mResolver;
@@ -197,6 +203,17 @@ public abstract class SMSDispatcher extends Handler {
                 com.android.internal.R.bool.config_sms_capable);
         mSmsSendDisabled = !mTelephonyManager.getSmsSendCapableForPhone(
                 mPhone.getPhoneId(), mSmsCapable);
+        File journal = null;
+        if (hasDeliveryPendingJournal()
+                && SystemProperties.getBoolean("persist.radio.sms_dr_journal", false)) {
+            journal = new File(mContext.getFilesDir(), "sms_delivery_pending_"
+                    + getClass().getSimpleName() + "_" + mPhone.getPhoneId());
+        }
+        deliveryPendingList = new SmsDeliveryPendingList(journal,
+                SmsDeliveryPendingList.DEFAULT_EXPIRY_MILLIS);
+        if (journal != null) {
+            sendEmptyMessage(EVENT_LOAD_DELIVERY_PENDING);
+        }
         Rlog.d(TAG, "SMSDispatcher: ctor mSmsCapable=" + mSmsCapable + " format=" + getFormat()
                 + " mSmsSendDisabled=" + mSmsSendDisabled);
     }
@@ -232,6 +249,10 @@ public abstract class SMSDispatcher extends Handler {
         mContext.getContentResolver().unregisterContentObserver(mSettingsObserver);
     }
 
+    /** Dumps the state of the dispatcher; nothing by default. */
+    public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+    }
+
     /**
      * The format of the message PDU in the associated broadcast intent.
      * This will be either "3gpp" for GSM/UMTS/LTE messages in 3GPP format
@@ -257,13 +278,20 @@ public abstract class SMSDispatcher extends Handler {
         Rlog.d(TAG, "handleStatusReport() called with no subclass.");
     }
 
-    /* TODO: Need to figure out how to keep track of status report routing in a
-     *       persistent manner. If the phone process restarts (reboot or crash),
-     *       we will lose this list and any status reports that come in after
-     *       will be dropped.
+    /**
+     * Sent messages awaiting a delivery status report. Only kept in memory unless
+     * persist.radio.sms_dr_journal is set, in which case they survive a restart of
+     * the phone process.
+     */
+    protected final SmsDeliveryPendingList deliveryPendingList;
+
+    /**
+     * Returns false for a dispatcher that never sends messages itself, so keeps no journal
+     * of its deliveryPendingList. Called from the constructor.
      */
-    /** Sent messages awaiting a delivery status report. */
-    protected final ArrayList<SmsTracker> deliveryPendingList = new ArrayList<SmsTracker>();
+    protected boolean hasDeliveryPendingJournal() {
+        return true;
+    }
 
     /**
      * Handles events coming from the phone stack. Overridden from handler.
@@ -324,6 +352,10 @@ public abstract class SMSDispatcher extends Handler {
             handleStatusReport(msg.obj);
             break;
 
+        case EVENT_LOAD_DELIVERY_PENDING:
+            deliveryPendingList.load();
+            break;
+
         default:
             Rlog.e(TAG, "handleMessage() ignoring message of unexpected type " + msg.what);
         }
@@ -635,11 +667,12 @@ public abstract class SMSDispatcher extends Handler {
         if (ar.exception == null) {
             if (DBG) Rlog.d(TAG, "SMS send complete. Broadcasting intent: " + sentIntent);
 
+            tracker.onSent(mContext);
             if (tracker.mDeliveryIntent != null) {
-                // Expecting a status report.  Add it to the list.
+                // Expecting a status report.  Add it to the list, once onSent()
+                // has set the message Uri so that it can be journaled.
                 deliveryPendingList.add(tracker);
             }
-            tracker.onSent(mContext);
         } else {
             if (DBG) Rlog.d(TAG, "SMS send failed");
 
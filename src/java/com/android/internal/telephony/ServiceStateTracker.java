@@ -83,9 +83,16 @@ public abstract class ServiceStateTracker extends Handler {
     protected ServiceState mNewSS = new ServiceState();
 
     private static final long LAST_CELL_INFO_LIST_MAX_AGE_MS = 2000;
+    private static final long CELL_INFO_LIST_QUERY_TIMEOUT_MS = 5000;
     protected long mLastCellInfoListTime;
     protected List<CellInfo> mLastCellInfoList = null;
 
+    // The getCellInfoList request in flight, shared by all callers wanting fresh cell info
+    private final Object mCellInfoLock = new Object();
+    private CellInfoResult mPendingCellInfoResult;
+    private int mCellInfoRequests;
+    private int mCellInfoRequestsCoalesced;
+
     // This is final as subclasses alias to a more specific type
     // so we don't want the reference to change.
     protected final CellInfo mCellInfo;
@@ -227,6 +234,11 @@ public abstract class ServiceStateTracker extends Handler {
 
     private class CellInfoResult {
         List<CellInfo> list;
+        Throwable exception;
+        boolean done;
+        long requestTime;
+        // Async callers to reply to when the request completes
+        ArrayList<Message> callbacks;
         Object lockObj = new Object();
     }
 
@@ -592,10 +604,17 @@ public abstract class ServiceStateTracker extends Handler {
             case EVENT_GET_CELL_INFO_LIST: {
                 AsyncResult ar = (AsyncResult) msg.obj;
                 CellInfoResult result = (CellInfoResult) ar.userObj;
+                ArrayList<Message> callbacks;
+                synchronized (mCellInfoLock) {
+                    if (mPendingCellInfoResult == result) {
+                        mPendingCellInfoResult = null;
+                    }
+                }
                 synchronized(result.lockObj) {
                     if (ar.exception != null) {
                         log("EVENT_GET_CELL_INFO_LIST: error ret null, e=" + ar.exception);
                         result.list = null;
+                        result.exception = ar.exception;
                     } else {
                         result.list = (List<CellInfo>) ar.result;
 
@@ -606,7 +625,16 @@ public abstract class ServiceStateTracker extends Handler {
                     }
                     mLastCellInfoListTime = SystemClock.elapsedRealtime();
                     mLastCellInfoList = result.list;
-                    result.lockObj.notify();
+                    result.done = true;
+                    callbacks = result.callbacks;
+                    result.callbacks = null;
+                    result.lockObj.notifyAll();
+                }
+                if (callbacks != null) {
+                    for (Message callback : callbacks) {
+                        AsyncResult.forMessage(callback, result.list, result.exception);
+                        callback.sendToTarget();
+                    }
                 }
                 break;
             }
@@ -956,14 +984,18 @@ public abstract class ServiceStateTracker extends Handler {
             if (isCallerOnDifferentThread()) {
                 if ((SystemClock.elapsedRealtime() - mLastCellInfoListTime)
                         > LAST_CELL_INFO_LIST_MAX_AGE_MS) {
-                    Message msg = obtainMessage(EVENT_GET_CELL_INFO_LIST, result);
+                    result = getCellInfoResult(null);
                     synchronized(result.lockObj) {
-                        result.list = null;
-                        mCi.getCellInfoList(msg);
-                        try {
-                            result.lockObj.wait(5000);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
+                        long deadline = result.requestTime + CELL_INFO_LIST_QUERY_TIMEOUT_MS;
+                        long now;
+                        while (!result.done
+                                && (now = SystemClock.elapsedRealtime()) < deadline) {
+                            try {
+                                result.lockObj.wait(deadline - now);
+                            } catch (InterruptedException e) {
+                                e.printStackTrace();
+                                break;
+                            }
                         }
                     }
                 } else {
@@ -990,6 +1022,66 @@ public abstract class ServiceStateTracker extends Handler {
         }
     }
 
+    /**
+     * Asynchronous version of {@link #getAllCellInfo} that never blocks the caller.
+     *
+     * @param response sent with an AsyncResult whose result is the List of CellInfo,
+     *     or null if none
+     */
+    public void requestAllCellInfo(Message response) {
+        List<CellInfo> list = null;
+        if (mCi.getRilVersion() >= 8) {
+            if ((SystemClock.elapsedRealtime() - mLastCellInfoListTime)
+                    > LAST_CELL_INFO_LIST_MAX_AGE_MS) {
+                getCellInfoResult(response);
+                return;
+            }
+            if (DBG) log("SST.requestAllCellInfo(): return last, back to back calls");
+            list = mLastCellInfoList;
+        } else {
+            if (DBG) log("SST.requestAllCellInfo(): not implemented");
+        }
+        AsyncResult.forMessage(response, list, null);
+        response.sendToTarget();
+    }
+
+    /**
+     * Returns the getCellInfoList request in flight, sending one if there is none or if
+     * the one in flight has timed out.
+     *
+     * @param callback if not null, sent when the request completes
+     */
+    private CellInfoResult getCellInfoResult(Message callback) {
+        long now = SystemClock.elapsedRealtime();
+        CellInfoResult result;
+        boolean send = false;
+        synchronized (mCellInfoLock) {
+            result = mPendingCellInfoResult;
+            if (result == null || now - result.requestTime >= CELL_INFO_LIST_QUERY_TIMEOUT_MS) {
+                result = new CellInfoResult();
+                result.requestTime = now;
+                mPendingCellInfoResult = result;
+                mCellInfoRequests++;
+                send = true;
+            } else {
+                if (DBG) log("SST.getAllCellInfo(): joining the request in flight");
+                mCellInfoRequestsCoalesced++;
+            }
+            if (callback != null) {
+                synchronized (result.lockObj) {
+                    if (result.callbacks == null) {
+                        result.callbacks = new ArrayList<Message>();
+                    }
+                    result.callbacks.add(callback);
+                }
+            }
+        }
+        if (send) {
+            mCi.getCellInfoList(obtainMessage(EVENT_GET_CELL_INFO_LIST, result));
+        }
+        return result;
+    }
+
     /**
      * @return signal strength
      */
@@ -1010,6 +1102,10 @@ public abstract class ServiceStateTracker extends Handler {
         pw.println(" mDontPollSignalStrength=" + mDontPollSignalStrength);
         pw.println(" mPendingRadioPowerOffAfterDataOff=" + mPendingRadioPowerOffAfterDataOff);
         pw.println(" mPendingRadioPowerOffAfterDataOffTag=" + mPendingRadioPowerOffAfterDataOffTag);
+        synchronized (mCellInfoLock) {
+            pw.println(" mCellInfoRequests=" + mCellInfoRequests
+                    + " mCellInfoRequestsCoalesced=" + mCellInfoRequestsCoalesced);
+        }
         pw.flush();
     }
 
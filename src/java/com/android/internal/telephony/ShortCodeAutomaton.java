@@ -0,0 +1,501 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Deterministic automaton over the digits 0-9 that tells which of several
+ * regular expressions fully matches a number, in a single pass over it.
+ *
+ * Only the subset of java.util.regex used by the short code patterns is
+ * supported: digits, '.', \d, character classes, groups, alternation and the
+ * ?, *, +, {m}, {m,} and {m,n} quantifiers. {@link #compile} returns null
+ * for anything else, in which case the caller should keep using
+ * java.util.regex.
+ *
+ * {@hide}
+ */
+class ShortCodeAutomaton {
+    /** Returned by {@link #match} when no pattern matches. */
+    static final int NO_MATCH = -1;
+
+    /** Returned by {@link #match} for input that isn't made of digits only. */
+    static final int NOT_DIGITS = -2;
+
+    // Give up on patterns needing more states than this
+    private static final int MAX_NFA_STATES = 20000;
+    private static final int MAX_DFA_STATES = 4096;
+    private static final int MAX_REPEAT = 32;
+
+    private static final int ALL_DIGITS = (1 << 10) - 1;
+
+    // mNext[state * 10 + digit] is the next state, or -1 if nothing can match any more
+    private final int[] mNext;
+    // Index of the first pattern matching in each state, or NO_MATCH
+    private final int[] mAccept;
+
+    private ShortCodeAutomaton(int[] next, int[] accept) {
+        mNext = next;
+        mAccept = accept;
+    }
+
+    int getStateCount() {
+        return mAccept.length;
+    }
+
+    /**
+     * Returns the index of the first pattern fully matching <code>number</code>,
+     * {@link #NO_MATCH}, or {@link #NOT_DIGITS}.
+     */
+    int match(String number) {
+        int state = 0;
+        for (int i = 0, len = number.length(); i < len; i++) {
+            int digit = number.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_DIGITS;
+            }
+            if (state >= 0) {
+                state = mNext[state * 10 + digit];
+            }
+        }
+        return state < 0 ? NO_MATCH : mAccept[state];
+    }
+
+    /**
+     * Compiles patterns into one automaton.
+     *
+     * @param patterns the patterns in priority order, null entries never match
+     * @return the automaton, or null if a pattern is not supported
+     */
+    static ShortCodeAutomaton compile(String[] patterns) {
+        Nfa nfa = new Nfa();
+        int start = nfa.newState();
+        try {
+            for (int i = 0; i < patterns.length; i++) {
+                if (patterns[i] == null) {
+                    continue;
+                }
+                Node node = new Parser(patterns[i]).parse();
+                int[] fragment = nfa.build(node);
+                nfa.addEpsilon(start, fragment[0]);
+                nfa.setAccept(fragment[1], i);
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return nfa.toDfa(start);
+    }
+
+    /**
+     * Regular expression syntax tree.
+     */
+    private static final class Node {
+        static final int CHARS = 0;
+        static final int CONCAT = 1;
+        static final int ALT = 2;
+        static final int REPEAT = 3;
+
+        final int mType;
+        int mMask;
+        ArrayList<Node> mChildren;
+        int mMin;
+        int mMax;   // -1 for unbounded
+
+        Node(int type) {
+            mType = type;
+        }
+
+        static Node chars(int mask) {
+            Node n = new Node(CHARS);
+            n.mMask = mask;
+            return n;
+        }
+    }
+
+    /**
+     * Recursive descent parser for the supported regex subset.
+     * Throws IllegalArgumentException on anything else.
+     */
+    private static final class Parser {
+        private final String mRegex;
+        private int mPos;
+
+        Parser(String regex) {
+            mRegex = regex;
+        }
+
+        Node parse() {
+            Node n = parseAlternation();
+            if (mPos != mRegex.length()) {
+                throw new IllegalArgumentException("Unexpected ')' in " + mRegex);
+            }
+            return n;
+        }
+
+        private boolean more() {
+            return mPos < mRegex.length();
+        }
+
+        private char peek() {
+            return mRegex.charAt(mPos);
+        }
+
+        private Node parseAlternation() {
+            Node first = parseConcatenation();
+            if (!more() || peek() != '|') {
+                return first;
+            }
+            Node alt = new Node(Node.ALT);
+            alt.mChildren = new ArrayList<Node>();
+            alt.mChildren.add(first);
+            while (more() && peek() == '|') {
+                mPos++;
+                alt.mChildren.add(parseConcatenation());
+            }
+            return alt;
+        }
+
+        private Node parseConcatenation() {
+            Node concat = new Node(Node.CONCAT);
+            concat.mChildren = new ArrayList<Node>();
+            while (more() && peek() != '|' && peek() != ')') {
+                concat.mChildren.add(parseQuantified());
+            }
+            return concat;
+        }
+
+        private Node parseQuantified() {
+            Node atom = parseAtom();
+            while (more()) {
+                char c = peek();
+                int min;
+                int max;
+                if (c == '?') {
+                    min = 0;
+                    max = 1;
+                } else if (c == '*') {
+                    min = 0;
+                    max = -1;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                } else if (c == '{') {
+                    int close = mRegex.indexOf('}', mPos);
+                    if (close < 0) {
+                        throw new IllegalArgumentException("Unclosed '{' in " + mRegex);
+                    }
+                    String range = mRegex.substring(mPos + 1, close);
+                    int comma = range.indexOf(',');
+                    // Throws NumberFormatException, an IllegalArgumentException
+                    if (comma < 0) {
+                        min = max = Integer.parseInt(range);
+                    } else {
+                        min = Integer.parseInt(range.substring(0, comma));
+                        max = comma == range.length() - 1 ? -1
+                                : Integer.parseInt(range.substring(comma + 1));
+                    }
+                    mPos = close;
+                } else {
+                    break;
+                }
+                mPos++;
+                if (more() && peek() == '?') {
+                    // Lazy quantifiers don't change what fully matches
+                    mPos++;
+                } else if (more() && peek() == '+') {
+                    throw new IllegalArgumentException("Possessive quantifier in " + mRegex);
+                }
+                if (min < 0 || min > MAX_REPEAT || max > MAX_REPEAT || (max >= 0 && max < min)) {
+                    throw new IllegalArgumentException("Unsupported repetition in " + mRegex);
+                }
+                Node repeat = new Node(Node.REPEAT);
+                repeat.mChildren = new ArrayList<Node>(1);
+                repeat.mChildren.add(atom);
+                repeat.mMin = min;
+                repeat.mMax = max;
+                atom = repeat;
+            }
+            return atom;
+        }
+
+        private Node parseAtom() {
+            char c = peek();
+            mPos++;
+            if (c >= '0' && c <= '9') {
+                return Node.chars(1 << (c - '0'));
+            } else if (c == '.') {
+                return Node.chars(ALL_DIGITS);
+            } else if (c == '\\') {
+                if (more() && peek() == 'd') {
+                    mPos++;
+                    return Node.chars(ALL_DIGITS);
+                }
+            } else if (c == '[') {
+                return Node.chars(parseClass());
+            } else if (c == '(') {
+                if (more() && peek() == '?') {
+                    if (mPos + 1 < mRegex.length() && mRegex.charAt(mPos + 1) == ':') {
+                        mPos += 2;
+                    } else {
+                        throw new IllegalArgumentException("Unsupported group in " + mRegex);
+                    }
+                }
+                Node n = parseAlternation();
+                if (!more() || peek() != ')') {
+                    throw new IllegalArgumentException("Unclosed group in " + mRegex);
+                }
+                mPos++;
+                return n;
+            }
+            throw new IllegalArgumentException("Unsupported '" + c + "' in " + mRegex);
+        }
+
+        private int parseClass() {
+            boolean negate = more() && peek() == '^';
+            if (negate) {
+                mPos++;
+            }
+            int mask = 0;
+            boolean first = true;
+            while (more() && (peek() != ']' || first)) {
+                first = false;
+                int lo = parseClassChar();
+                int hi = lo;
+                if (mPos + 1 < mRegex.length() && peek() == '-'
+                        && mRegex.charAt(mPos + 1) != ']') {
+                    mPos++;
+                    hi = parseClassChar();
+                }
+                if (lo < 0 || hi < lo) {
+                    throw new IllegalArgumentException("Unsupported class in " + mRegex);
+                }
+                mask |= hi == 10 ? ALL_DIGITS : ((1 << (hi + 1)) - 1) & ~((1 << lo) - 1);
+            }
+            if (!more()) {
+                throw new IllegalArgumentException("Unclosed '[' in " + mRegex);
+            }
+            mPos++;
+            return negate ? ~mask & ALL_DIGITS : mask;
+        }
+
+        // Returns the digit, 10 for \d, or throws
+        private int parseClassChar() {
+            char c = peek();
+            mPos++;
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            }
+            if (c == '\\' && more() && peek() == 'd') {
+                mPos++;
+                return 10;
+            }
+            throw new IllegalArgumentException("Unsupported '" + c + "' in class in " + mRegex);
+        }
+    }
+
+    /**
+     * Thompson NFA: each state has at most one digit transition, plus epsilon transitions.
+     */
+    private static final class Nfa {
+        final ArrayList<int[]> mEpsilons = new ArrayList<int[]>();
+        final ArrayList<Integer> mMasks = new ArrayList<Integer>();
+        final ArrayList<Integer> mTargets = new ArrayList<Integer>();
+        final BitSet mAcceptStates = new BitSet();
+        // Accepting state -> index of its pattern
+        final HashMap<Integer, Integer> mAcceptPattern = new HashMap<Integer, Integer>();
+
+        void setAccept(int state, int pattern) {
+            mAcceptStates.set(state);
+            mAcceptPattern.put(state, pattern);
+        }
+
+        int newState() {
+            if (mMasks.size() >= MAX_NFA_STATES) {
+                throw new IllegalArgumentException("Too many states");
+            }
+            mEpsilons.add(null);
+            mMasks.add(0);
+            mTargets.add(-1);
+            return mMasks.size() - 1;
+        }
+
+        void addEpsilon(int from, int to) {
+            int[] old = mEpsilons.get(from);
+            int[] eps;
+            if (old == null) {
+                eps = new int[] { to };
+            } else {
+                eps = new int[old.length + 1];
+                System.arraycopy(old, 0, eps, 0, old.length);
+                eps[old.length] = to;
+            }
+            mEpsilons.set(from, eps);
+        }
+
+        /**
+         * Returns the start and end state of the fragment matching <code>node</code>.
+         */
+        int[] build(Node node) {
+            int start = newState();
+            int end;
+            switch (node.mType) {
+                case Node.CHARS:
+                    end = newState();
+                    mMasks.set(start, node.mMask);
+                    mTargets.set(start, end);
+                    break;
+                case Node.CONCAT:
+                    end = start;
+                    for (Node child : node.mChildren) {
+                        int[] f = build(child);
+                        addEpsilon(end, f[0]);
+                        end = f[1];
+                    }
+                    break;
+                case Node.ALT:
+                    end = newState();
+                    for (Node child : node.mChildren) {
+                        int[] f = build(child);
+                        addEpsilon(start, f[0]);
+                        addEpsilon(f[1], end);
+                    }
+                    break;
+                case Node.REPEAT:
+                    Node child = node.mChildren.get(0);
+                    end = start;
+                    for (int i = 0; i < node.mMin; i++) {
+                        int[] f = build(child);
+                        addEpsilon(end, f[0]);
+                        end = f[1];
+                    }
+                    if (node.mMax < 0) {
+                        int[] f = build(child);
+                        int loopEnd = newState();
+                        addEpsilon(end, f[0]);
+                        addEpsilon(end, loopEnd);
+                        addEpsilon(f[1], f[0]);
+                        addEpsilon(f[1], loopEnd);
+                        end = loopEnd;
+                    } else {
+                        int optionalEnd = newState();
+                        for (int i = node.mMin; i < node.mMax; i++) {
+                            int[] f = build(child);
+                            addEpsilon(end, optionalEnd);
+                            addEpsilon(end, f[0]);
+                            end = f[1];
+                        }
+                        addEpsilon(end, optionalEnd);
+                        end = optionalEnd;
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown node " + node.mType);
+            }
+            return new int[] { start, end };
+        }
+
+        private void close(BitSet states) {
+            int[] stack = new int[mMasks.size()];
+            int top = 0;
+            for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+                stack[top++] = s;
+            }
+            while (top > 0) {
+                int[] eps = mEpsilons.get(stack[--top]);
+                if (eps == null) {
+                    continue;
+                }
+                for (int to : eps) {
+                    if (!states.get(to)) {
+                        states.set(to);
+                        stack[top++] = to;
+                    }
+                }
+            }
+        }
+
+        private int acceptOf(BitSet states) {
+            int best = NO_MATCH;
+            BitSet accepting = (BitSet) states.clone();
+            accepting.and(mAcceptStates);
+            for (int s = accepting.nextSetBit(0); s >= 0; s = accepting.nextSetBit(s + 1)) {
+                int pattern = mAcceptPattern.get(s);
+                if (best == NO_MATCH || pattern < best) {
+                    best = pattern;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Subset construction, or null if the automaton gets too large.
+         */
+        ShortCodeAutomaton toDfa(int start) {
+            HashMap<BitSet, Integer> ids = new HashMap<BitSet, Integer>();
+            ArrayList<BitSet> states = new ArrayList<BitSet>();
+            BitSet initial = new BitSet();
+            initial.set(start);
+            close(initial);
+            ids.put(initial, 0);
+            states.add(initial);
+
+            int[] next = new int[10 * 16];
+            for (int i = 0; i < states.size(); i++) {
+                BitSet from = states.get(i);
+                if (next.length < (i + 1) * 10) {
+                    int[] grown = new int[next.length * 2];
+                    System.arraycopy(next, 0, grown, 0, next.length);
+                    next = grown;
+                }
+                for (int digit = 0; digit < 10; digit++) {
+                    BitSet to = new BitSet();
+                    for (int s = from.nextSetBit(0); s >= 0; s = from.nextSetBit(s + 1)) {
+                        if ((mMasks.get(s) & (1 << digit)) != 0) {
+                            to.set(mTargets.get(s));
+                        }
+                    }
+                    if (to.isEmpty()) {
+                        next[i * 10 + digit] = -1;
+                        continue;
+                    }
+                    close(to);
+                    Integer id = ids.get(to);
+                    if (id == null) {
+                        if (states.size() >= MAX_DFA_STATES) {
+                            return null;
+                        }
+                        id = states.size();
+                        ids.put(to, id);
+                        states.add(to);
+                    }
+                    next[i * 10 + digit] = id;
+                }
+            }
+
+            int[] trimmed = new int[states.size() * 10];
+            System.arraycopy(next, 0, trimmed, 0, trimmed.length);
+            int[] accept = new int[states.size()];
+            for (int i = 0; i < accept.length; i++) {
+                accept[i] = acceptOf(states.get(i));
+            }
+            return new ShortCodeAutomaton(trimmed, accept);
+        }
+    }
+}
@@ -30,6 +30,8 @@ import com.android.internal.telephony.cdma.sms.UserData;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.util.Arrays;
+
 public class Sms7BitEncodingTranslator {
     private static final String TAG = "Sms7BitEncodingTranslator";
     private static final boolean DBG = Build.IS_DEBUGGABLE ;
@@ -39,6 +41,15 @@ public class Sms7BitEncodingTranslator {
     private static SparseIntArray mTranslationTableGSM = null;
     private static SparseIntArray mTranslationTableCDMA = null;
 
+    // What each character translates to for each format, in pages of 256 characters.
+    // A null page translates its characters to themselves.
+    private static char[][] sGsmPages;
+    private static char[][] sCdmaPages;
+
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
     // Parser variables
     private static final String XML_START_TAG = "SmsEnforce7BitTranslationTable";
     private static final String XML_TRANSLATION_TYPE_TAG = "TranslationType";
@@ -68,27 +79,87 @@ public class Sms7BitEncodingTranslator {
             return "";
         }
 
-        if (!mIs7BitTranslationTableLoaded) {
-            mTranslationTableCommon = new SparseIntArray();
-            mTranslationTableGSM = new SparseIntArray();
-            mTranslationTableCDMA = new SparseIntArray();
-            load7BitTranslationTableFromXml();
-            mIs7BitTranslationTableLoaded = true;
+        synchronized (Sms7BitEncodingTranslator.class) {
+            if (!mIs7BitTranslationTableLoaded) {
+                mTranslationTableCommon = new SparseIntArray();
+                mTranslationTableGSM = new SparseIntArray();
+                mTranslationTableCDMA = new SparseIntArray();
+                load7BitTranslationTableFromXml();
+                if (mTranslationTableCommon.size() > 0 || mTranslationTableGSM.size() > 0
+                        || mTranslationTableCDMA.size() > 0) {
+                    sGsmPages = buildPages(mTranslationTableCommon, mTranslationTableGSM, false);
+                    sCdmaPages = buildPages(mTranslationTableCommon, mTranslationTableCDMA, true);
+                }
+                mIs7BitTranslationTableLoaded = true;
+            }
+        }
+
+        char[][] gsmPages = sGsmPages;
+        char[][] cdmaPages = sCdmaPages;
+        if (gsmPages == null) {
+            return null;
         }
 
-        if ((mTranslationTableCommon != null && mTranslationTableCommon.size() > 0) ||
-                (mTranslationTableGSM != null && mTranslationTableGSM.size() > 0) ||
-                (mTranslationTableCDMA != null && mTranslationTableCDMA.size() > 0)) {
-            char[] output = new char[size];
-            boolean isCdmaFormat = useCdmaFormatForMoSms();
-            for (int i = 0; i < size; i++) {
-                output[i] = translateIfNeeded(message.charAt(i), isCdmaFormat);
+        // Most messages need no translation in either format, so leave them alone without
+        // copying them or finding out which format is in use
+        int first = 0;
+        while (first < size) {
+            char c = message.charAt(first);
+            if (lookup(gsmPages, c) != c || lookup(cdmaPages, c) != c) {
+                break;
             }
+            first++;
+        }
+        if (first == size) {
+            return message.toString();
+        }
 
-            return String.valueOf(output);
+        char[][] pages = useCdmaFormatForMoSms() ? cdmaPages : gsmPages;
+        char[] output = new char[size];
+        for (int i = 0; i < size; i++) {
+            char c = message.charAt(i);
+            output[i] = i < first ? c : lookup(pages, c);
+            if (DBG && output[i] != c) {
+                Rlog.v(TAG, Integer.toHexString(c) + " (" + c + ")" + " translated to "
+                        + Integer.toHexString(output[i]) + " (" + output[i] + ")");
+            }
         }
+        return String.valueOf(output);
+    }
+
+    private static char lookup(char[][] pages, char c) {
+        char[] page = pages[c >> PAGE_SHIFT];
+        return page == null ? c : page[c & PAGE_MASK];
+    }
 
-        return null;
+    /**
+     * Builds the page table giving the translation of every character for one format.
+     * Pages whose characters are all left alone are null, and identical pages, such as
+     * ones translating everything to a space, are shared.
+     */
+    static char[][] buildPages(SparseIntArray common, SparseIntArray format,
+            boolean isCdmaFormat) {
+        char[][] pages = new char[(Character.MAX_VALUE + 1) >> PAGE_SHIFT][];
+        char[] page = new char[PAGE_SIZE];
+        char[] lastPage = null;
+        for (int p = 0; p < pages.length; p++) {
+            boolean identity = true;
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                char c = (char) ((p << PAGE_SHIFT) | i);
+                page[i] = translateIfNeeded(c, common, format, isCdmaFormat);
+                identity &= page[i] == c;
+            }
+            if (identity) {
+                continue;
+            }
+            if (lastPage != null && Arrays.equals(page, lastPage)) {
+                pages[p] = lastPage;
+            } else {
+                lastPage = page.clone();
+                pages[p] = lastPage;
+            }
+        }
+        return pages;
     }
 
     /**
@@ -102,11 +173,9 @@ public class Sms7BitEncodingTranslator {
      *         space, if no mapping is found in the translation table for such
      *         character
      */
-    private static char translateIfNeeded(char c, boolean isCdmaFormat) {
+    private static char translateIfNeeded(char c, SparseIntArray common, SparseIntArray format,
+            boolean isCdmaFormat) {
         if (noTranslationNeeded(c, isCdmaFormat)) {
-            if (DBG) {
-                Rlog.v(TAG, "No translation needed for " + Integer.toHexString(c));
-            }
             return c;
         }
 
@@ -119,33 +188,17 @@ public class Sms7BitEncodingTranslator {
          */
         int translation = -1;
 
-        if (mTranslationTableCommon != null) {
-            translation = mTranslationTableCommon.get(c, -1);
+        if (common != null) {
+            translation = common.get(c, -1);
         }
 
-        if (translation == -1) {
-            if (isCdmaFormat) {
-                if (mTranslationTableCDMA != null) {
-                    translation = mTranslationTableCDMA.get(c, -1);
-                }
-            } else {
-                if (mTranslationTableGSM != null) {
-                    translation = mTranslationTableGSM.get(c, -1);
-                }
-            }
+        if (translation == -1 && format != null) {
+            translation = format.get(c, -1);
         }
 
         if (translation != -1) {
-            if (DBG) {
-                Rlog.v(TAG, Integer.toHexString(c) + " (" + c + ")" + " translated to "
-                        + Integer.toHexString(translation) + " (" + (char) translation + ")");
-            }
             return (char) translation;
         } else {
-            if (DBG) {
-                Rlog.w(TAG, "No translation found for " + Integer.toHexString(c)
-                        + "! Replacing for empty space");
-            }
             return ' ';
         }
     }
@@ -23,7 +23,9 @@ import android.database.SQLException;
 import android.net.Uri;
 import android.provider.Telephony;
 import android.telephony.Rlog;
+import android.util.SparseArray;
 
+import com.android.internal.telephony.SmsReassemblyIndex.SmsReferenceKey;
 import com.android.internal.telephony.cdma.CdmaInboundSmsHandler;
 import com.android.internal.telephony.gsm.GsmInboundSmsHandler;
 
@@ -99,6 +101,12 @@ public class SmsBroadcastUndelivered implements Runnable {
         HashMap<SmsReferenceKey, Integer> multiPartReceivedCount =
                 new HashMap<SmsReferenceKey, Integer>(4);
         HashSet<SmsReferenceKey> oldMultiPartMessages = new HashSet<SmsReferenceKey>(4);
+        // Segments to load into the reassembly index, unless another scan is loading it
+        SmsReassemblyIndex index = SmsReassemblyIndex.getInstance();
+        HashMap<SmsReferenceKey, SparseArray<InboundSmsTracker>> segments = null;
+        if (index.beginLoad()) {
+            segments = new HashMap<SmsReferenceKey, SparseArray<InboundSmsTracker>>(4);
+        }
         Cursor cursor = null;
         try {
             cursor = mResolver.query(sRawUri, PDU_PENDING_MESSAGE_PROJECTION, null, null, null);
@@ -122,6 +130,15 @@ public class SmsBroadcastUndelivered implements Runnable {
                     broadcastSms(tracker);
                 } else {
                     SmsReferenceKey reference = new SmsReferenceKey(tracker);
+                    if (segments != null) {
+                        SparseArray<InboundSmsTracker> messageSegments = segments.get(reference);
+                        if (messageSegments == null) {
+                            messageSegments = new SparseArray<InboundSmsTracker>(
+                                    tracker.getMessageCount());
+                            segments.put(reference, messageSegments);
+                        }
+                        messageSegments.put(tracker.getSequenceNumber(), tracker);
+                    }
                     Integer receivedCount = multiPartReceivedCount.get(reference);
                     if (receivedCount == null) {
                         multiPartReceivedCount.put(reference, 1);    // first segment seen
@@ -147,6 +164,7 @@ public class SmsBroadcastUndelivered implements Runnable {
             }
             // Delete old incomplete message segments
             for (SmsReferenceKey message : oldMultiPartMessages) {
+                index.remove(message.getDeleteWhereArgs());
                 int rows = mResolver.delete(sRawUri, InboundSmsHandler.SELECT_BY_REFERENCE,
                         message.getDeleteWhereArgs());
                 if (rows == 0) {
@@ -156,9 +174,18 @@ public class SmsBroadcastUndelivered implements Runnable {
                             + message.mMessageCount + " part message");
                 }
             }
+            if (segments != null) {
+                index.finishLoad(segments);
+                segments = null;
+                if (DBG) Rlog.d(TAG, "loaded " + index.size() + " partial messages");
+            }
         } catch (SQLException e) {
             Rlog.e(TAG, "error reading pending SMS messages", e);
         } finally {
+            if (segments != null) {
+                // Failed before the index could be loaded, keep using queries
+                index.abortLoad();
+            }
             if (cursor != null) {
                 cursor.close();
             }
@@ -183,40 +210,4 @@ public class SmsBroadcastUndelivered implements Runnable {
             Rlog.e(TAG, "null handler for " + tracker.getFormat() + " format, can't deliver.");
         }
     }
-
-    /**
-     * Used as the HashMap key for matching concatenated message segments.
-     */
-    private static class SmsReferenceKey {
-        final String mAddress;
-        final int mReferenceNumber;
-        final int mMessageCount;
-
-        SmsReferenceKey(InboundSmsTracker tracker) {
-            mAddress = tracker.getAddress();
-            mReferenceNumber = tracker.getReferenceNumber();
-            mMessageCount = tracker.getMessageCount();
-        }
-
-        String[] getDeleteWhereArgs() {
-            return new String[]{mAddress, Integer.toString(mReferenceNumber),
-                    Integer.toString(mMessageCount)};
-        }
-
-        @Override
-        public int hashCode() {
-            return ((mReferenceNumber * 31) + mMessageCount) * 31 + mAddress.hashCode();
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (o instanceof SmsReferenceKey) {
-                SmsReferenceKey other = (SmsReferenceKey) o;
-                return other.mAddress.equals(mAddress)
-                        && (other.mReferenceNumber == mReferenceNumber)
-                        && (other.mMessageCount == mMessageCount);
-            }
-            return false;
-        }
-    }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SqliteWrapper;
+import android.net.Uri;
+import android.provider.Telephony.Sms;
+import android.telephony.Rlog;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
+
+import com.android.internal.telephony.SMSDispatcher.SmsTracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Sent messages awaiting a delivery status report, indexed by message reference.
+ *
+ * Message references wrap around (at 256 for GSM), so several messages can be pending with
+ * the same reference; a status report is matched to the oldest of them, as before. Entries
+ * are dropped once they are older than the expiry age since no status report will arrive
+ * for them any more.
+ *
+ * If a journal file is given, additions and removals are appended to it so that the
+ * entries survive a restart of the phone process. It is read by {@link #load}, or by the
+ * first call that needs the entries, rather than by the constructor. The PendingIntent of
+ * a message can't be persisted, so for an entry restored from the journal a status report
+ * only updates the status of the message in the SMS provider.
+ *
+ * Not thread safe, used from the handler thread of the owning {@link SMSDispatcher}.
+ */
+public class SmsDeliveryPendingList {
+    private static final String TAG = "SmsDeliveryPendingList";
+
+    /** Drop messages still waiting for a status report after three days. */
+    static final long DEFAULT_EXPIRY_MILLIS = 3 * 24 * 60 * 60 * 1000L;
+
+    // Journal record types
+    private static final int RECORD_ADD = 1;
+    private static final int RECORD_REMOVE = 2;
+
+    // Rewrite the journal, or prune removed entries from mByAge, when they hold this many
+    // more than twice the number of entries
+    private static final int JOURNAL_COMPACT_SLACK = 256;
+
+    /**
+     * A message awaiting a status report.
+     */
+    public static final class Pending {
+        final long mId;
+        final int mMessageRef;
+        final long mTime;
+        final Uri mMessageUri;
+        final SmsTracker mTracker;
+        boolean mRemoved;
+
+        Pending(long id, int messageRef, long time, Uri messageUri, SmsTracker tracker) {
+            mId = id;
+            mMessageRef = messageRef;
+            mTime = time;
+            mMessageUri = messageUri;
+            mTracker = tracker;
+        }
+
+        /**
+         * Returns the tracker of the message, or null if it was restored from the journal.
+         */
+        public SmsTracker getTracker() {
+            return mTracker;
+        }
+
+        /**
+         * Updates the status of the message in the SMS provider, if it was written there.
+         */
+        public void updateSentMessageStatus(Context context, int status) {
+            if (mTracker != null) {
+                mTracker.updateSentMessageStatus(context, status);
+            } else if (mMessageUri != null) {
+                ContentValues values = new ContentValues(1);
+                values.put(Sms.STATUS, status);
+                SqliteWrapper.update(context, context.getContentResolver(),
+                        mMessageUri, values, null, null);
+            }
+        }
+    }
+
+    private final SparseArray<ArrayList<Pending>> mByMessageRef =
+            new SparseArray<ArrayList<Pending>>();
+
+    // All entries in the order they were added, for expiry. Removed entries are skipped.
+    private final ArrayDeque<Pending> mByAge = new ArrayDeque<Pending>();
+
+    private final long mExpiryMillis;
+    private final File mJournalFile;
+    private DataOutputStream mJournal;
+    private int mJournalRecords;
+    private boolean mLoaded;
+
+    private int mSize;
+    private long mNextId;
+
+    /**
+     * @param journalFile where to persist the entries, or null to keep them in memory only
+     * @param expiryMillis how long to wait for a status report
+     */
+    public SmsDeliveryPendingList(File journalFile, long expiryMillis) {
+        mJournalFile = journalFile;
+        mExpiryMillis = expiryMillis;
+    }
+
+    /**
+     * Restores the entries from the journal and compacts it, if not done yet.
+     */
+    public void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (mJournalFile != null) {
+            loadJournal();
+        }
+    }
+
+    public int size() {
+        load();
+        return mSize;
+    }
+
+    /**
+     * Adds a sent message expecting a status report, once its message reference is known.
+     */
+    public void add(SmsTracker tracker) {
+        add(tracker.mMessageRef, tracker.mMessageUri, tracker, System.currentTimeMillis());
+    }
+
+    void add(int messageRef, Uri messageUri, SmsTracker tracker, long now) {
+        load();
+        expire(now);
+        if (mByAge.size() > 2 * mSize + JOURNAL_COMPACT_SLACK) {
+            // Drop entries removed before they expired
+            for (Iterator<Pending> it = mByAge.iterator(); it.hasNext(); ) {
+                if (it.next().mRemoved) {
+                    it.remove();
+                }
+            }
+        }
+        Pending pending = new Pending(mNextId++, messageRef, now, messageUri, tracker);
+        insert(pending);
+        if (mJournalFile != null) {
+            writeRecord(pending, RECORD_ADD);
+        }
+    }
+
+    /**
+     * Returns the oldest message pending with <code>messageRef</code>, or null.
+     */
+    public Pending get(int messageRef) {
+        return get(messageRef, System.currentTimeMillis());
+    }
+
+    Pending get(int messageRef, long now) {
+        load();
+        expire(now);
+        ArrayList<Pending> list = mByMessageRef.get(messageRef);
+        return list == null || list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * Removes a message once its final status report has arrived.
+     */
+    public void remove(Pending pending) {
+        if (pending.mRemoved) {
+            return;
+        }
+        unlink(pending);
+        if (mJournalFile != null) {
+            writeRecord(pending, RECORD_REMOVE);
+        }
+    }
+
+    private void insert(Pending pending) {
+        ArrayList<Pending> list = mByMessageRef.get(pending.mMessageRef);
+        if (list == null) {
+            list = new ArrayList<Pending>(1);
+            mByMessageRef.put(pending.mMessageRef, list);
+        }
+        list.add(pending);
+        mByAge.addLast(pending);
+        mSize++;
+    }
+
+    private void unlink(Pending pending) {
+        pending.mRemoved = true;
+        mSize--;
+        ArrayList<Pending> list = mByMessageRef.get(pending.mMessageRef);
+        if (list != null) {
+            list.remove(pending);
+            if (list.isEmpty()) {
+                mByMessageRef.remove(pending.mMessageRef);
+            }
+        }
+    }
+
+    private void expire(long now) {
+        Pending oldest;
+        while ((oldest = mByAge.peekFirst()) != null) {
+            if (!oldest.mRemoved) {
+                if (now - oldest.mTime < mExpiryMillis) {
+                    break;
+                }
+                Rlog.d(TAG, "No status report for messageRef=" + oldest.mMessageRef
+                        + ", dropping it");
+                remove(oldest);
+            }
+            mByAge.removeFirst();
+        }
+    }
+
+    private void loadJournal() {
+        DataInputStream in = null;
+        LongSparseArray<Pending> loaded = new LongSparseArray<Pending>();
+        ArrayList<Pending> order = new ArrayList<Pending>();
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mJournalFile)));
+            while (true) {
+                int type = in.readByte();
+                long id = in.readLong();
+                if (type == RECORD_ADD) {
+                    int messageRef = in.readInt();
+                    long time = in.readLong();
+                    String uri = in.readUTF();
+                    Pending pending = new Pending(id, messageRef, time,
+                            uri.isEmpty() ? null : Uri.parse(uri), null);
+                    loaded.put(id, pending);
+                    order.add(pending);
+                } else if (type == RECORD_REMOVE) {
+                    Pending pending = loaded.get(id);
+                    if (pending != null) {
+                        pending.mRemoved = true;
+                    }
+                } else {
+                    throw new IOException("unknown record type " + type);
+                }
+                mNextId = Math.max(mNextId, id + 1);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing was pending
+        } catch (EOFException e) {
+            // End of the journal, possibly a truncated last record
+        } catch (IOException e) {
+            Rlog.e(TAG, "Error reading " + mJournalFile + ", keeping what was read", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        for (Pending pending : order) {
+            if (!pending.mRemoved) {
+                insert(pending);
+            }
+        }
+        if (mSize > 0) {
+            Rlog.d(TAG, "Restored " + mSize + " messages awaiting a status report");
+        }
+        // Start from a journal holding only the restored entries
+        compactJournal();
+    }
+
+    private void writeRecord(Pending pending, int type) {
+        if (mJournalRecords > 2 * mSize + JOURNAL_COMPACT_SLACK && compactJournal()) {
+            // The change was made before the journal was rewritten, so it already holds
+            // an added entry and no longer holds a removed one
+            return;
+        }
+        try {
+            if (mJournal == null) {
+                mJournal = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(mJournalFile, true)));
+            }
+            writeRecord(mJournal, pending, type);
+            mJournal.flush();
+            mJournalRecords++;
+        } catch (IOException e) {
+            Rlog.e(TAG, "Error writing " + mJournalFile, e);
+            closeJournal();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Pending pending, int type)
+            throws IOException {
+        out.writeByte(type);
+        out.writeLong(pending.mId);
+        if (type == RECORD_ADD) {
+            out.writeInt(pending.mMessageRef);
+            out.writeLong(pending.mTime);
+            out.writeUTF(pending.mMessageUri == null ? "" : pending.mMessageUri.toString());
+        }
+    }
+
+    /**
+     * Rewrites the journal with one record per pending message.
+     *
+     * @return false if it couldn't be rewritten
+     */
+    private boolean compactJournal() {
+        closeJournal();
+        File tmp = new File(mJournalFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            int records = 0;
+            for (Iterator<Pending> it = mByAge.iterator(); it.hasNext(); ) {
+                Pending pending = it.next();
+                if (!pending.mRemoved) {
+                    writeRecord(out, pending, RECORD_ADD);
+                    records++;
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(mJournalFile)) {
+                throw new IOException("rename failed");
+            }
+            mJournalRecords = records;
+            return true;
+        } catch (IOException e) {
+            Rlog.e(TAG, "Error compacting " + mJournalFile, e);
+            tmp.delete();
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    private void closeJournal() {
+        if (mJournal != null) {
+            try {
+                mJournal.close();
+            } catch (IOException e) {
+            }
+            mJournal = null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Sliding window limit on the number of messages each app sends.
+ *
+ * The send times of an app are kept in a ring buffer of primitive longs, which never
+ * holds more than the limit, so expiring old times and recording new ones is cheap.
+ * Apps are spread over independently locked stripes, and the apps that haven't sent
+ * anything within the period are dropped by a sweep of their stripe at most once per
+ * period rather than on every check.
+ *
+ * {@hide}
+ */
+class SmsRateLimiter {
+    // Must be a power of two
+    private static final int STRIPES = 8;
+
+    /**
+     * Send times of one app, oldest first.
+     */
+    private static final class History {
+        long[] mTimes;
+        int mHead;
+        int mCount;
+
+        History(int capacity) {
+            mTimes = new long[Math.max(capacity, 1)];
+        }
+
+        void expire(long beginCheckPeriod) {
+            while (mCount > 0 && mTimes[mHead] < beginCheckPeriod) {
+                mHead = (mHead + 1) % mTimes.length;
+                mCount--;
+            }
+        }
+
+        long newest() {
+            return mTimes[(mHead + mCount - 1) % mTimes.length];
+        }
+
+        void add(long time, int count, int maxAllowed) {
+            if (mCount + count > mTimes.length) {
+                // Never more than maxAllowed times are held
+                long[] times = new long[Math.max(mCount + count,
+                        Math.min(2 * mTimes.length, maxAllowed))];
+                for (int i = 0; i < mCount; i++) {
+                    times[i] = mTimes[(mHead + i) % mTimes.length];
+                }
+                mTimes = times;
+                mHead = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                mTimes[(mHead + mCount) % mTimes.length] = time;
+                mCount++;
+            }
+        }
+    }
+
+    private static final class Stripe {
+        final HashMap<String, History> mHistories = new HashMap<String, History>();
+        long mNextSweep;
+    }
+
+    private final Stripe[] mStripes = new Stripe[STRIPES];
+
+    SmsRateLimiter() {
+        for (int i = 0; i < STRIPES; i++) {
+            mStripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripeFor(String appName) {
+        int h = appName.hashCode();
+        return mStripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Records <code>count</code> messages sent by <code>appName</code> at <code>now</code>
+     * if that keeps it within <code>maxAllowed</code> messages per period.
+     *
+     * @return true if the messages were recorded, false if they are over the limit
+     */
+    boolean tryAcquire(String appName, int count, long now, int maxAllowed, long periodMillis) {
+        long beginCheckPeriod = now - periodMillis;
+        Stripe stripe = stripeFor(appName);
+        synchronized (stripe) {
+            if (now >= stripe.mNextSweep) {
+                sweep(stripe, beginCheckPeriod);
+                stripe.mNextSweep = now + periodMillis;
+            }
+
+            History history = stripe.mHistories.get(appName);
+            if (history != null) {
+                history.expire(beginCheckPeriod);
+            }
+            int sent = history == null ? 0 : history.mCount;
+            if (sent + count > maxAllowed) {
+                return false;
+            }
+            if (count > 0) {
+                if (history == null) {
+                    history = new History(Math.min(maxAllowed, 2 * count));
+                    stripe.mHistories.put(appName, history);
+                }
+                history.add(now, count, maxAllowed);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes the apps that have sent nothing within the period. This can happen if an SMS
+     * app is used to send messages and then uninstalled.
+     */
+    private static void sweep(Stripe stripe, long beginCheckPeriod) {
+        Iterator<History> it = stripe.mHistories.values().iterator();
+        while (it.hasNext()) {
+            History history = it.next();
+            if (history.mCount == 0 || history.newest() < beginCheckPeriod) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of apps with messages recorded.
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                size += stripe.mHistories.size();
+            }
+        }
+        return size;
+    }
+
+    void clear() {
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                stripe.mHistories.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.util.SparseArray;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * In-memory index of the segments of multi-part SMS messages stored in the raw table, so
+ * that {@link InboundSmsHandler} can detect duplicate segments and complete messages
+ * without querying the table for every segment. The raw table stays the durable store:
+ * the index is loaded from it by {@link SmsBroadcastUndelivered} at boot and mirrors every
+ * insert and delete made by the inbound SMS handlers afterwards.
+ *
+ * The raw table is shared by all inbound SMS handlers, so there is one index per process.
+ * Until it is loaded, {@link #isLoaded} returns false and callers must query the table.
+ */
+final class SmsReassemblyIndex {
+    private static final SmsReassemblyIndex sInstance = new SmsReassemblyIndex();
+
+    /** Segments by sequence number, per message. */
+    private final HashMap<SmsReferenceKey, SparseArray<InboundSmsTracker>> mMessages =
+            new HashMap<SmsReferenceKey, SparseArray<InboundSmsTracker>>();
+
+    private boolean mLoaded;
+    private boolean mLoading;
+
+    /** Messages deleted while the index is being loaded. */
+    private HashSet<SmsReferenceKey> mRemovedWhileLoading;
+
+    SmsReassemblyIndex() {
+    }
+
+    static SmsReassemblyIndex getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns whether the index reflects the raw table and can be used instead of queries.
+     */
+    synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Starts loading the index. Returns false if it is already loaded or being loaded by
+     * another caller, in which case {@link #finishLoad} must not be called.
+     */
+    synchronized boolean beginLoad() {
+        if (mLoaded || mLoading) {
+            return false;
+        }
+        mLoading = true;
+        mRemovedWhileLoading = new HashSet<SmsReferenceKey>();
+        return true;
+    }
+
+    /**
+     * Finishes loading the index with the segments read from the raw table. Segments added
+     * since {@link #beginLoad} are kept, and messages deleted since then are not loaded.
+     */
+    synchronized void finishLoad(Map<SmsReferenceKey, SparseArray<InboundSmsTracker>> loaded) {
+        for (Map.Entry<SmsReferenceKey, SparseArray<InboundSmsTracker>> e : loaded.entrySet()) {
+            if (mRemovedWhileLoading.contains(e.getKey())) {
+                continue;
+            }
+            SparseArray<InboundSmsTracker> segments = getOrCreate(e.getKey());
+            SparseArray<InboundSmsTracker> loadedSegments = e.getValue();
+            for (int i = 0, s = loadedSegments.size(); i < s; i++) {
+                if (segments.indexOfKey(loadedSegments.keyAt(i)) < 0) {
+                    segments.put(loadedSegments.keyAt(i), loadedSegments.valueAt(i));
+                }
+            }
+        }
+        mRemovedWhileLoading = null;
+        mLoading = false;
+        mLoaded = true;
+    }
+
+    /**
+     * Gives up loading the index after {@link #beginLoad}, leaving it unloaded.
+     */
+    synchronized void abortLoad() {
+        mRemovedWhileLoading = null;
+        mLoading = false;
+    }
+
+    private SparseArray<InboundSmsTracker> getOrCreate(SmsReferenceKey key) {
+        SparseArray<InboundSmsTracker> segments = mMessages.get(key);
+        if (segments == null) {
+            segments = new SparseArray<InboundSmsTracker>(key.mMessageCount);
+            mMessages.put(key, segments);
+        }
+        return segments;
+    }
+
+    /**
+     * Records a segment that was inserted into the raw table.
+     */
+    synchronized void add(InboundSmsTracker tracker) {
+        getOrCreate(new SmsReferenceKey(tracker)).put(tracker.getSequenceNumber(), tracker);
+    }
+
+    /**
+     * Returns the stored segment with the same message and sequence number as
+     * <code>tracker</code>, or null.
+     */
+    synchronized InboundSmsTracker getDuplicate(InboundSmsTracker tracker) {
+        SparseArray<InboundSmsTracker> segments = mMessages.get(new SmsReferenceKey(tracker));
+        return segments == null ? null : segments.get(tracker.getSequenceNumber());
+    }
+
+    /**
+     * Returns the segments of the message <code>tracker</code> belongs to, ordered by
+     * sequence number, or null if some are still missing.
+     */
+    synchronized InboundSmsTracker[] getCompleteMessage(InboundSmsTracker tracker) {
+        SparseArray<InboundSmsTracker> segments = mMessages.get(new SmsReferenceKey(tracker));
+        int count = tracker.getMessageCount();
+        if (segments == null || segments.size() < count) {
+            return null;
+        }
+        InboundSmsTracker[] result = new InboundSmsTracker[count];
+        int offset = tracker.getIndexOffset();
+        for (int i = 0; i < count; i++) {
+            if (segments.keyAt(i) != i + offset) {
+                return null;
+            }
+            result[i] = segments.valueAt(i);
+        }
+        return result;
+    }
+
+    /**
+     * Records that the segments of a message were deleted from the raw table.
+     *
+     * @param deleteWhereArgs the address, reference number and count of the message, as
+     *        used with {@link InboundSmsHandler#SELECT_BY_REFERENCE}
+     */
+    synchronized void remove(String[] deleteWhereArgs) {
+        SmsReferenceKey key;
+        try {
+            key = new SmsReferenceKey(deleteWhereArgs[0], Integer.parseInt(deleteWhereArgs[1]),
+                    Integer.parseInt(deleteWhereArgs[2]));
+        } catch (RuntimeException e) {
+            // Not written by SmsReferenceKey, forget everything rather than go stale
+            mMessages.clear();
+            mLoaded = false;
+            return;
+        }
+        mMessages.remove(key);
+        if (mRemovedWhileLoading != null) {
+            mRemovedWhileLoading.add(key);
+        }
+    }
+
+    synchronized int size() {
+        return mMessages.size();
+    }
+
+    /**
+     * Used as the HashMap key for matching concatenated message segments.
+     */
+    static final class SmsReferenceKey {
+        final String mAddress;
+        final int mReferenceNumber;
+        final int mMessageCount;
+
+        SmsReferenceKey(InboundSmsTracker tracker) {
+            this(tracker.getAddress(), tracker.getReferenceNumber(), tracker.getMessageCount());
+        }
+
+        SmsReferenceKey(String address, int referenceNumber, int messageCount) {
+            mAddress = address;
+            mReferenceNumber = referenceNumber;
+            mMessageCount = messageCount;
+        }
+
+        String[] getDeleteWhereArgs() {
+            return new String[]{mAddress, Integer.toString(mReferenceNumber),
+                    Integer.toString(mMessageCount)};
+        }
+
+        @Override
+        public int hashCode() {
+            return ((mReferenceNumber * 31) + mMessageCount) * 31 + mAddress.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof SmsReferenceKey) {
+                SmsReferenceKey other = (SmsReferenceKey) o;
+                return other.mAddress.equals(mAddress)
+                        && (other.mReferenceNumber == mReferenceNumber)
+                        && (other.mMessageCount == mMessageCount);
+            }
+            return false;
+        }
+    }
+}
@@ -47,11 +47,9 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -112,8 +110,8 @@ public class SmsUsageMonitor {
     private final AtomicInteger mCheckPeriod = new AtomicInteger(0);
     private final AtomicInteger mMaxAllowed = new AtomicInteger(0);
 
-    private final HashMap<String, ArrayList<Long>> mSmsStamp =
-            new HashMap<String, ArrayList<Long>>();
+    /** Messages sent by each app within the checking period. */
+    private final SmsRateLimiter mSmsStamp = new SmsRateLimiter();
 
     /** Context for retrieving regexes from XML resource. */
     private final Context mContext;
@@ -124,6 +122,10 @@ public class SmsUsageMonitor {
     /** Cached short code pattern matcher for {@link #mCurrentCountry}. */
     private ShortCodePatternMatcher mCurrentPatternMatcher;
 
+    /** Pattern matchers of the countries seen so far, null for countries without patterns. */
+    private final HashMap<String, ShortCodePatternMatcher> mPatternMatchers =
+            new HashMap<String, ShortCodePatternMatcher>();
+
     /** Notice when the enabled setting changes - can be changed through gservices */
     private final AtomicBoolean mCheckEnabled = new AtomicBoolean(true);
 
@@ -183,12 +185,25 @@ public class SmsUsageMonitor {
 
     /**
      * SMS short code regex pattern matcher for a specific country.
+     *
+     * The patterns are also compiled into a single automaton giving the category of a
+     * number in one pass; the regexes are only used for numbers that aren't all digits,
+     * or if the patterns use syntax the automaton doesn't support.
      */
     private static final class ShortCodePatternMatcher {
+        // Categories in the order the patterns are checked
+        private static final int[] CATEGORIES = new int[] {
+            CATEGORY_FREE_SHORT_CODE,
+            CATEGORY_STANDARD_SHORT_CODE,
+            CATEGORY_PREMIUM_SHORT_CODE,
+            CATEGORY_POSSIBLE_PREMIUM_SHORT_CODE,
+        };
+
         private final Pattern mShortCodePattern;
         private final Pattern mPremiumShortCodePattern;
         private final Pattern mFreeShortCodePattern;
         private final Pattern mStandardShortCodePattern;
+        private final ShortCodeAutomaton mAutomaton;
 
         ShortCodePatternMatcher(String shortCodeRegex, String premiumShortCodeRegex,
                 String freeShortCodeRegex, String standardShortCodeRegex) {
@@ -199,9 +214,26 @@ public class SmsUsageMonitor {
                     Pattern.compile(freeShortCodeRegex) : null);
             mStandardShortCodePattern = (standardShortCodeRegex != null ?
                     Pattern.compile(standardShortCodeRegex) : null);
+            mAutomaton = ShortCodeAutomaton.compile(new String[] {
+                    freeShortCodeRegex, standardShortCodeRegex, premiumShortCodeRegex,
+                    shortCodeRegex });
+            if (mAutomaton == null) {
+                Rlog.w(TAG, "Short code patterns not supported by the automaton,"
+                        + " using regex matching");
+            } else if (VDBG) {
+                Rlog.d(TAG, "Short code automaton has " + mAutomaton.getStateCount() + " states");
+            }
         }
 
         int getNumberCategory(String phoneNumber) {
+            if (mAutomaton != null) {
+                int match = mAutomaton.match(phoneNumber);
+                if (match == ShortCodeAutomaton.NO_MATCH) {
+                    return CATEGORY_NOT_SHORT_CODE;
+                } else if (match >= 0) {
+                    return CATEGORIES[match];
+                }
+            }
             if (mFreeShortCodePattern != null && mFreeShortCodePattern.matcher(phoneNumber)
                     .matches()) {
                 return CATEGORY_FREE_SHORT_CODE;
@@ -370,17 +402,10 @@ public class SmsUsageMonitor {
      *  of new sms messages
      */
     public boolean check(String appName, int smsWaiting) {
-        synchronized (mSmsStamp) {
-            removeExpiredTimestamps();
-
-            ArrayList<Long> sentList = mSmsStamp.get(appName);
-            if (sentList == null) {
-                sentList = new ArrayList<Long>();
-                mSmsStamp.put(appName, sentList);
-            }
-
-            return isUnderLimit(sentList, smsWaiting);
-        }
+        long ct = System.currentTimeMillis();
+        if (VDBG) log("SMS send app=" + appName + " time=" + ct);
+        return mSmsStamp.tryAcquire(appName, smsWaiting, ct, mMaxAllowed.get(),
+                mCheckPeriod.get());
     }
 
     /**
@@ -411,14 +436,25 @@ public class SmsUsageMonitor {
             }
 
             if (countryIso != null) {
-                if (mCurrentCountry == null || !countryIso.equals(mCurrentCountry) ||
-                        mPatternFile.lastModified() != mPatternFileLastModified) {
-                    if (mPatternFile.exists()) {
-                        if (DBG) Rlog.d(TAG, "Loading SMS Short Code patterns from file");
-                        mCurrentPatternMatcher = getPatternMatcherFromFile(countryIso);
+                long lastModified = mPatternFile.lastModified();
+                if (lastModified != mPatternFileLastModified) {
+                    // The patterns were updated, or the file went away
+                    mPatternMatchers.clear();
+                    mPatternFileLastModified = lastModified;
+                    mCurrentCountry = null;
+                }
+                if (mCurrentCountry == null || !countryIso.equals(mCurrentCountry)) {
+                    if (mPatternMatchers.containsKey(countryIso)) {
+                        mCurrentPatternMatcher = mPatternMatchers.get(countryIso);
                     } else {
-                        if (DBG) Rlog.d(TAG, "Loading SMS Short Code patterns from resource");
-                        mCurrentPatternMatcher = getPatternMatcherFromResource(countryIso);
+                        if (mPatternFile.exists()) {
+                            if (DBG) Rlog.d(TAG, "Loading SMS Short Code patterns from file");
+                            mCurrentPatternMatcher = getPatternMatcherFromFile(countryIso);
+                        } else {
+                            if (DBG) Rlog.d(TAG, "Loading SMS Short Code patterns from resource");
+                            mCurrentPatternMatcher = getPatternMatcherFromResource(countryIso);
+                        }
+                        mPatternMatchers.put(countryIso, mCurrentPatternMatcher);
                     }
                     mCurrentCountry = countryIso;
                 }
@@ -614,44 +650,6 @@ public class SmsUsageMonitor {
         throw new SecurityException("Disallowed call for uid " + uid);
     }
 
-    /**
-     * Remove keys containing only old timestamps. This can happen if an SMS app is used
-     * to send messages and then uninstalled.
-     */
-    private void removeExpiredTimestamps() {
-        long beginCheckPeriod = System.currentTimeMillis() - mCheckPeriod.get();
-
-        synchronized (mSmsStamp) {
-            Iterator<Map.Entry<String, ArrayList<Long>>> iter = mSmsStamp.entrySet().iterator();
-            while (iter.hasNext()) {
-                Map.Entry<String, ArrayList<Long>> entry = iter.next();
-                ArrayList<Long> oldList = entry.getValue();
-                if (oldList.isEmpty() || oldList.get(oldList.size() - 1) < beginCheckPeriod) {
-                    iter.remove();
-                }
-            }
-        }
-    }
-
-    private boolean isUnderLimit(ArrayList<Long> sent, int smsWaiting) {
-        Long ct = System.currentTimeMillis();
-        long beginCheckPeriod = ct - mCheckPeriod.get();
-
-        if (VDBG) log("SMS send size=" + sent.size() + " time=" + ct);
-
-        while (!sent.isEmpty() && sent.get(0) < beginCheckPeriod) {
-            sent.remove(0);
-        }
-
-        if ((sent.size() + smsWaiting) <= mMaxAllowed.get()) {
-            for (int i = 0; i < smsWaiting; i++ ) {
-                sent.add(ct);
-            }
-            return true;
-        }
-        return false;
-    }
-
     private static void log(String msg) {
         Rlog.d(TAG, msg);
     }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.util.SparseArray;
+
+import java.io.PrintWriter;
+
+/**
+ * Opt-in coalescing of unsolicited responses before they are fanned out
+ * to registrants.
+ *
+ * Each configured RIL_UNSOL_* type can have a window and/or duplicate
+ * suppression. With a window, the first response after a quiet period is
+ * delivered at once and later ones within the window are held back so that
+ * only the latest is delivered when the window closes. With duplicate
+ * suppression, a response whose payload equals the last delivered one is
+ * dropped. Types that are not configured are always delivered.
+ *
+ * This class only makes decisions; the caller delivers responses and
+ * schedules the end of a window.
+ *
+ * {@hide}
+ */
+class UnsolCoalescer {
+    /** Deliver the response now. */
+    static final int DELIVER = 0;
+    /** Drop the response. */
+    static final int DROP = 1;
+    /** Hold the response; call {@link #flush} after {@link #getFlushDelay}. */
+    static final int DEFER = 2;
+
+    /** Returned by {@link #flush} when there is nothing to deliver. */
+    static final Object NOTHING = new Object();
+
+    private static class Entry {
+        int mWindowMillis;
+        boolean mDedupe;
+
+        long mLastDeliveryTime = -1;
+        Object mLastDelivered = NOTHING;
+        Object mPending = NOTHING;
+
+        long mDelivered;
+        long mDropped;
+    }
+
+    private final SparseArray<Entry> mEntries = new SparseArray<Entry>();
+
+    /**
+     * Enables coalescing for an unsolicited response type.
+     *
+     * @param response RIL_UNSOL_*
+     * @param windowMillis hold back responses arriving this soon after a
+     *     delivery and only deliver the latest, 0 for no window
+     * @param dedupe drop responses whose payload equals the last delivered one
+     */
+    synchronized void configure(int response, int windowMillis, boolean dedupe) {
+        if (windowMillis <= 0 && !dedupe) {
+            mEntries.remove(response);
+            return;
+        }
+        Entry e = mEntries.get(response);
+        if (e == null) {
+            e = new Entry();
+            mEntries.put(response, e);
+        }
+        e.mWindowMillis = Math.max(windowMillis, 0);
+        e.mDedupe = dedupe;
+    }
+
+    /**
+     * Parses a configuration of the form
+     * <code>response:windowMillis[:dedupe],...</code>, eg "1009:1000:dedupe".
+     * Malformed items are ignored.
+     */
+    void configure(String config) {
+        if (config == null) {
+            return;
+        }
+        for (String item : config.split(",")) {
+            String[] fields = item.trim().split(":");
+            if (fields.length < 2) {
+                continue;
+            }
+            try {
+                configure(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        fields.length > 2 && "dedupe".equals(fields[2]));
+            } catch (NumberFormatException ex) {
+                // ignore this item
+            }
+        }
+    }
+
+    /**
+     * Decides what to do with a decoded unsolicited response.
+     *
+     * @param now SystemClock.uptimeMillis()
+     * @return DELIVER, DROP or DEFER
+     */
+    synchronized int offer(int response, Object ret, long now) {
+        Entry e = mEntries.get(response);
+        if (e == null) {
+            return DELIVER;
+        }
+
+        if (e.mPending != NOTHING) {
+            // A window is open, the newer response supersedes the held one
+            e.mPending = ret;
+            e.mDropped++;
+            return DROP;
+        }
+
+        if (e.mDedupe && ret != null && ret.equals(e.mLastDelivered)) {
+            e.mDropped++;
+            return DROP;
+        }
+
+        if (e.mWindowMillis > 0 && e.mLastDeliveryTime >= 0
+                && now - e.mLastDeliveryTime < e.mWindowMillis) {
+            e.mPending = ret;
+            return DEFER;
+        }
+
+        markDelivered(e, ret, now);
+        return DELIVER;
+    }
+
+    /**
+     * Returns how long after <code>now</code> the window of
+     * <code>response</code> closes.
+     */
+    synchronized long getFlushDelay(int response, long now) {
+        Entry e = mEntries.get(response);
+        if (e == null || e.mLastDeliveryTime < 0) {
+            return 0;
+        }
+        return Math.max(0, e.mLastDeliveryTime + e.mWindowMillis - now);
+    }
+
+    /**
+     * Closes the window of <code>response</code>.
+     *
+     * @return the held response to deliver now, or {@link #NOTHING}
+     */
+    synchronized Object flush(int response, long now) {
+        Entry e = mEntries.get(response);
+        if (e == null || e.mPending == NOTHING) {
+            return NOTHING;
+        }
+
+        Object ret = e.mPending;
+        e.mPending = NOTHING;
+        if (e.mDedupe && ret != null && ret.equals(e.mLastDelivered)) {
+            e.mDropped++;
+            return NOTHING;
+        }
+        markDelivered(e, ret, now);
+        return ret;
+    }
+
+    private static void markDelivered(Entry e, Object ret, long now) {
+        e.mLastDelivered = ret;
+        e.mLastDeliveryTime = now;
+        e.mDelivered++;
+    }
+
+    synchronized long getDelivered(int response) {
+        Entry e = mEntries.get(response);
+        return e == null ? 0 : e.mDelivered;
+    }
+
+    synchronized long getDropped(int response) {
+        Entry e = mEntries.get(response);
+        return e == null ? 0 : e.mDropped;
+    }
+
+    synchronized void dump(PrintWriter pw) {
+        pw.println(" UnsolCoalescer:");
+        for (int i = 0, s = mEntries.size(); i < s; i++) {
+            Entry e = mEntries.valueAt(i);
+            pw.println("  " + RIL.responseToString(mEntries.keyAt(i))
+                    + " window=" + e.mWindowMillis + "ms dedupe=" + e.mDedupe
+                    + " delivered=" + e.mDelivered + " dropped=" + e.mDropped);
+        }
+    }
+}
@@ -27,7 +27,7 @@ import java.util.List;
  */
 class BerTlv {
     private int mTag = BER_UNKNOWN_TAG;
-    private List<ComprehensionTlv> mCompTlvs = null;
+    private ComprehensionTlvIndex mCompTlvs = null;
     private boolean mLengthValid = true;
 
     public static final int BER_UNKNOWN_TAG             = 0x00;
@@ -35,7 +35,7 @@ class BerTlv {
     public static final int BER_MENU_SELECTION_TAG      = 0xd3;
     public static final int BER_EVENT_DOWNLOAD_TAG      = 0xd6;
 
-    private BerTlv(int tag, List<ComprehensionTlv> ctlvs, boolean lengthValid) {
+    private BerTlv(int tag, ComprehensionTlvIndex ctlvs, boolean lengthValid) {
         mTag = tag;
         mCompTlvs = ctlvs;
         mLengthValid = lengthValid;
@@ -47,6 +47,16 @@ class BerTlv {
      * @return A list of COMPREHENSION-TLV object
      */
     public List<ComprehensionTlv> getComprehensionTlvs() {
+        return mCompTlvs.asList();
+    }
+
+    /**
+     * Gets the ComprehensionTlv objects contained in this BER-TLV object, indexed by
+     * tag.
+     *
+     * @return The index of the COMPREHENSION-TLV objects
+     */
+    ComprehensionTlvIndex getComprehensionTlvIndex() {
         return mCompTlvs;
     }
 
@@ -127,13 +137,12 @@ class BerTlv {
                     " length=" + length);
         }
 
-        List<ComprehensionTlv> ctlvs = ComprehensionTlv.decodeMany(data,
-                curIndex);
+        ComprehensionTlvIndex ctlvs = ComprehensionTlvIndex.decode(data, curIndex);
 
         if (tag == BER_PROACTIVE_COMMAND_TAG) {
             int totalLength = 0;
-            for (ComprehensionTlv item : ctlvs) {
-                int itemLength = item.getLength();
+            for (int i = 0; i < ctlvs.size(); i++) {
+                int itemLength = ctlvs.getLength(i);
                 if (itemLength >= 0x80 && itemLength <= 0xFF) {
                     totalLength += itemLength + 3; //3: 'tag'(1 byte) and 'length'(2 bytes).
                 } else if (itemLength >= 0 && itemLength < 0x80) {
@@ -24,8 +24,6 @@ import android.os.Message;
 import com.android.internal.telephony.GsmAlphabet;
 import com.android.internal.telephony.uicc.IccFileHandler;
 
-import java.util.Iterator;
-import java.util.List;
 import static com.android.internal.telephony.cat.CatCmdMessage.
                    SetupEventListConstants.USER_ACTIVITY_EVENT;
 import static com.android.internal.telephony.cat.CatCmdMessage.
@@ -80,22 +78,22 @@ class CommandParamsFactory extends Handler {
     private static final int MAX_UCS2_CHARS = 118;
 
     static synchronized CommandParamsFactory getInstance(RilMessageDecoder caller,
-            IccFileHandler fh) {
+            IccFileHandler fh, int slotId) {
         if (sInstance != null) {
             return sInstance;
         }
         if (fh != null) {
-            return new CommandParamsFactory(caller, fh);
+            return new CommandParamsFactory(caller, fh, slotId);
         }
         return null;
     }
 
-    private CommandParamsFactory(RilMessageDecoder caller, IccFileHandler fh) {
+    private CommandParamsFactory(RilMessageDecoder caller, IccFileHandler fh, int slotId) {
         mCaller = caller;
-        mIconLoader = IconLoader.getInstance(this, fh);
+        mIconLoader = IconLoader.getInstance(this, fh, slotId);
     }
 
-    private CommandDetails processCommandDetails(List<ComprehensionTlv> ctlvs) {
+    private CommandDetails processCommandDetails(ComprehensionTlvIndex ctlvs) {
         CommandDetails cmdDet = null;
 
         if (ctlvs != null) {
@@ -127,7 +125,7 @@ class CommandParamsFactory extends Handler {
             return;
         }
         boolean cmdPending = false;
-        List<ComprehensionTlv> ctlvs = berTlv.getComprehensionTlvs();
+        ComprehensionTlvIndex ctlvs = berTlv.getComprehensionTlvIndex();
         // process command dtails from the tlv list.
         CommandDetails cmdDet = processCommandDetails(ctlvs);
         if (cmdDet == null) {
@@ -274,56 +272,31 @@ class CommandParamsFactory extends Handler {
     }
 
     /**
-     * Search for a COMPREHENSION-TLV object with the given tag from a list
+     * Search for a COMPREHENSION-TLV object with the given tag from an index
      *
      * @param tag A tag to search for
-     * @param ctlvs List of ComprehensionTlv objects used to search in
+     * @param ctlvs Index of ComprehensionTlv objects used to search in
      *
      * @return A ComprehensionTlv object that has the tag value of {@code tag}.
      *         If no object is found with the tag, null is returned.
      */
     private ComprehensionTlv searchForTag(ComprehensionTlvTag tag,
-            List<ComprehensionTlv> ctlvs) {
-        Iterator<ComprehensionTlv> iter = ctlvs.iterator();
-        return searchForNextTag(tag, iter);
-    }
-
-    /**
-     * Search for the next COMPREHENSION-TLV object with the given tag from a
-     * list iterated by {@code iter}. {@code iter} points to the object next to
-     * the found object when this method returns. Used for searching the same
-     * list for similar tags, usually item id.
-     *
-     * @param tag A tag to search for
-     * @param iter Iterator for ComprehensionTlv objects used for search
-     *
-     * @return A ComprehensionTlv object that has the tag value of {@code tag}.
-     *         If no object is found with the tag, null is returned.
-     */
-    private ComprehensionTlv searchForNextTag(ComprehensionTlvTag tag,
-            Iterator<ComprehensionTlv> iter) {
-        int tagValue = tag.value();
-        while (iter.hasNext()) {
-            ComprehensionTlv ctlv = iter.next();
-            if (ctlv.getTag() == tagValue) {
-                return ctlv;
-            }
-        }
-        return null;
+            ComprehensionTlvIndex ctlvs) {
+        return ctlvs.find(tag);
     }
 
     /**
      * Processes DISPLAY_TEXT proactive command from the SIM card.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      * @throws ResultException
      */
     private boolean processDisplayText(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs)
+            ComprehensionTlvIndex ctlvs)
             throws ResultException {
 
         CatLog.d(this, "process DisplayText");
@@ -378,14 +351,14 @@ class CommandParamsFactory extends Handler {
      * Processes SET_UP_IDLE_MODE_TEXT proactive command from the SIM card.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      * @throws ResultException
      */
     private boolean processSetUpIdleModeText(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
 
         CatLog.d(this, "process SetUpIdleModeText");
 
@@ -428,14 +401,14 @@ class CommandParamsFactory extends Handler {
      * Processes GET_INKEY proactive command from the SIM card.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      * @throws ResultException
      */
     private boolean processGetInkey(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
 
         CatLog.d(this, "process GetInkey");
 
@@ -486,14 +459,14 @@ class CommandParamsFactory extends Handler {
      * Processes GET_INPUT proactive command from the SIM card.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      * @throws ResultException
      */
     private boolean processGetInput(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
 
         CatLog.d(this, "process GetInput");
 
@@ -566,21 +539,20 @@ class CommandParamsFactory extends Handler {
      * Processes SELECT_ITEM proactive command from the SIM card.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      * @throws ResultException
      */
     private boolean processSelectItem(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
 
         CatLog.d(this, "process SelectItem");
 
         Menu menu = new Menu();
         IconId titleIconId = null;
         ItemsIconId itemsIconId = null;
-        Iterator<ComprehensionTlv> iter = ctlvs.iterator();
 
         ComprehensionTlv ctlv = searchForTag(ComprehensionTlvTag.ALPHA_ID,
                 ctlvs);
@@ -588,13 +560,9 @@ class CommandParamsFactory extends Handler {
             menu.title = ValueParser.retrieveAlphaId(ctlv);
         }
 
-        while (true) {
-            ctlv = searchForNextTag(ComprehensionTlvTag.ITEM, iter);
-            if (ctlv != null) {
-                menu.items.add(ValueParser.retrieveItem(ctlv));
-            } else {
-                break;
-            }
+        for (int i = ctlvs.indexOf(ComprehensionTlvTag.ITEM, 0); i >= 0;
+                i = ctlvs.nextIndexOf(i)) {
+            menu.items.add(ValueParser.retrieveItem(ctlvs.get(i)));
         }
 
         // We must have at least one menu item.
@@ -666,13 +634,13 @@ class CommandParamsFactory extends Handler {
      * Processes EVENT_NOTIFY message from baseband.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      */
     private boolean processEventNotify(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
 
         CatLog.d(this, "process EventNotify");
 
@@ -748,14 +716,14 @@ class CommandParamsFactory extends Handler {
      * Processes SET_UP_EVENT_LIST proactive command from the SIM card.
      *
      * @param cmdDet Command Details object retrieved.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return false. This function always returns false meaning that the command
      *         processing is  not pending and additional asynchronous processing
      *         is not required.
      */
     private boolean processSetUpEventList(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) {
+            ComprehensionTlvIndex ctlvs) {
 
         CatLog.d(this, "process SetUpEventList");
         ComprehensionTlv ctlv = searchForTag(ComprehensionTlvTag.EVENT_LIST, ctlvs);
@@ -799,14 +767,14 @@ class CommandParamsFactory extends Handler {
      * Processes LAUNCH_BROWSER proactive command from the SIM card.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      * @throws ResultException
      */
     private boolean processLaunchBrowser(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
 
         CatLog.d(this, "process LaunchBrowser");
 
@@ -872,14 +840,14 @@ class CommandParamsFactory extends Handler {
      * Processes PLAY_TONE proactive command from the SIM card.
      *
      * @param cmdDet Command Details container object.
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.t
      * @throws ResultException
      */
     private boolean processPlayTone(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
 
         CatLog.d(this, "process PlayTone");
 
@@ -943,16 +911,15 @@ class CommandParamsFactory extends Handler {
      *
      * @param cmdDet Command Details object retrieved from the proactive command
      *        object
-     * @param ctlvs List of ComprehensionTlv objects following Command Details
+     * @param ctlvs Index of ComprehensionTlv objects following Command Details
      *        object and Device Identities object within the proactive command
      * @return true if the command is processing is pending and additional
      *         asynchronous processing is required.
      */
     private boolean processSetupCall(CommandDetails cmdDet,
-            List<ComprehensionTlv> ctlvs) throws ResultException {
+            ComprehensionTlvIndex ctlvs) throws ResultException {
         CatLog.d(this, "process SetupCall");
 
-        Iterator<ComprehensionTlv> iter = ctlvs.iterator();
         ComprehensionTlv ctlv = null;
         // User confirmation phase message.
         TextMessage confirmMsg = new TextMessage();
@@ -962,7 +929,7 @@ class CommandParamsFactory extends Handler {
         IconId callIconId = null;
 
         // get confirmation message string.
-        ctlv = searchForNextTag(ComprehensionTlvTag.ALPHA_ID, iter);
+        ctlv = ctlvs.find(ComprehensionTlvTag.ALPHA_ID, 0);
         confirmMsg.text = ValueParser.retrieveAlphaId(ctlv);
 
         ctlv = searchForTag(ComprehensionTlvTag.ICON_ID, ctlvs);
@@ -972,7 +939,7 @@ class CommandParamsFactory extends Handler {
         }
 
         // get call set up message string.
-        ctlv = searchForNextTag(ComprehensionTlvTag.ALPHA_ID, iter);
+        ctlv = ctlvs.find(ComprehensionTlvTag.ALPHA_ID, 1);
         if (ctlv != null) {
             callMsg.text = ValueParser.retrieveAlphaId(ctlv);
         }
@@ -1000,7 +967,7 @@ class CommandParamsFactory extends Handler {
         return false;
     }
 
-    private boolean processProvideLocalInfo(CommandDetails cmdDet, List<ComprehensionTlv> ctlvs)
+    private boolean processProvideLocalInfo(CommandDetails cmdDet, ComprehensionTlvIndex ctlvs)
             throws ResultException {
         CatLog.d(this, "process ProvideLocalInfo");
         switch (cmdDet.commandQualifier) {
@@ -1021,7 +988,7 @@ class CommandParamsFactory extends Handler {
     }
 
     private boolean processBIPClient(CommandDetails cmdDet,
-                                     List<ComprehensionTlv> ctlvs) throws ResultException {
+                                     ComprehensionTlvIndex ctlvs) throws ResultException {
         AppInterface.CommandType commandType =
                                     AppInterface.CommandType.fromInt(cmdDet.typeOfCommand);
         if (commandType != null) {
@@ -1060,7 +1027,7 @@ class CommandParamsFactory extends Handler {
     }
 
     private boolean processActivate(CommandDetails cmdDet,
-                                     List<ComprehensionTlv> ctlvs) throws ResultException {
+                                     ComprehensionTlvIndex ctlvs) throws ResultException {
         AppInterface.CommandType commandType =
                 AppInterface.CommandType.fromInt(cmdDet.typeOfCommand);
         CatLog.d(this, "process " + commandType.name());
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.cat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The COMPREHENSION-TLV objects of a BER-TLV object, decoded in one pass over its bytes
+ * and indexed by tag.
+ *
+ * The tag, length and value index of each object are kept in arrays, and the objects
+ * with the same tag are chained so that the first, or the n-th of a repeated tag such as
+ * ITEM, is found without walking the other objects. A {@link ComprehensionTlv} is only
+ * made for the objects that are asked for.
+ *
+ * {@hide}
+ */
+class ComprehensionTlvIndex {
+    private static final String LOG_TAG = "ComprehensionTlvIndex";
+
+    // Set on the tag of the objects with the comprehension required flag
+    private static final int CR_FLAG = 1 << 16;
+    private static final int TAG_MASK = CR_FLAG - 1;
+
+    // Fields of an object in mObjects
+    private static final int OBJECT_TAG = 0;
+    private static final int OBJECT_LENGTH = 1;
+    private static final int OBJECT_VALUE_INDEX = 2;
+    // Position of the next object with the same tag, or -1
+    private static final int OBJECT_NEXT = 3;
+    private static final int OBJECT_SIZE = 4;
+
+    // Fields of a tag in mTags
+    private static final int TAG_VALUE = 0;
+    private static final int TAG_FIRST = 1;
+    private static final int TAG_LAST = 2;
+    private static final int TAG_SIZE = 3;
+
+    // A proactive command seldom has more objects, or tags, than these
+    private static final int INITIAL_OBJECTS = 16;
+    private static final int INITIAL_TAGS = 8;
+
+    private final byte[] mData;
+    private int mCount;
+    private int[] mObjects = new int[INITIAL_OBJECTS * OBJECT_SIZE];
+    // The distinct tags, in the order they were first seen. There are only a few of
+    // them, so they are searched linearly.
+    private int mTagCount;
+    private int[] mTags = new int[INITIAL_TAGS * TAG_SIZE];
+    // Objects made so far, by position
+    private ComprehensionTlv[] mTlvs;
+
+    private ComprehensionTlvIndex(byte[] data) {
+        mData = data;
+    }
+
+    /**
+     * Decodes the COMPREHENSION-TLV objects in a byte array, up to its end or the first
+     * object with an unexpected tag, like {@link ComprehensionTlv#decodeMany}.
+     *
+     * @param data A byte array containing data to be parsed
+     * @param startIndex Index in data at which to start parsing
+     * @return The index of the COMPREHENSION-TLV objects parsed
+     * @throws ResultException
+     */
+    static ComprehensionTlvIndex decode(byte[] data, int startIndex) throws ResultException {
+        ComprehensionTlvIndex index = new ComprehensionTlvIndex(data);
+        int[] header = new int[ComprehensionTlv.HEADER_SIZE];
+        int endIndex = data.length;
+        while (startIndex < endIndex) {
+            if (!ComprehensionTlv.decodeHeader(data, startIndex, header)) {
+                CatLog.d(LOG_TAG, "decode: ctlv is null, stop decoding");
+                break;
+            }
+            index.add(header[ComprehensionTlv.HEADER_TAG],
+                    header[ComprehensionTlv.HEADER_CR] != 0,
+                    header[ComprehensionTlv.HEADER_LENGTH],
+                    header[ComprehensionTlv.HEADER_VALUE_INDEX]);
+            startIndex = header[ComprehensionTlv.HEADER_VALUE_INDEX]
+                    + header[ComprehensionTlv.HEADER_LENGTH];
+        }
+        return index;
+    }
+
+    private void add(int tag, boolean cr, int length, int valueIndex) {
+        int position = mCount++;
+        int offset = position * OBJECT_SIZE;
+        if (offset == mObjects.length) {
+            mObjects = grow(mObjects);
+        }
+        mObjects[offset + OBJECT_TAG] = cr ? (tag | CR_FLAG) : tag;
+        mObjects[offset + OBJECT_LENGTH] = length;
+        mObjects[offset + OBJECT_VALUE_INDEX] = valueIndex;
+        mObjects[offset + OBJECT_NEXT] = -1;
+
+        int tagOffset = findTag(tag);
+        if (tagOffset < 0) {
+            tagOffset = mTagCount++ * TAG_SIZE;
+            if (tagOffset == mTags.length) {
+                mTags = grow(mTags);
+            }
+            mTags[tagOffset + TAG_VALUE] = tag;
+            mTags[tagOffset + TAG_FIRST] = position;
+        } else {
+            mObjects[mTags[tagOffset + TAG_LAST] * OBJECT_SIZE + OBJECT_NEXT] = position;
+        }
+        mTags[tagOffset + TAG_LAST] = position;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    // Returns the offset of tag in mTags, or -1
+    private int findTag(int tag) {
+        int end = mTagCount * TAG_SIZE;
+        for (int offset = 0; offset < end; offset += TAG_SIZE) {
+            if (mTags[offset + TAG_VALUE] == tag) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the position of the first object with tag, or -1
+    private int first(int tag) {
+        int offset = findTag(tag);
+        return offset < 0 ? -1 : mTags[offset + TAG_FIRST];
+    }
+
+    /**
+     * Returns the number of objects.
+     */
+    int size() {
+        return mCount;
+    }
+
+    int getTag(int position) {
+        checkPosition(position);
+        return mObjects[position * OBJECT_SIZE + OBJECT_TAG] & TAG_MASK;
+    }
+
+    boolean isComprehensionRequired(int position) {
+        checkPosition(position);
+        return (mObjects[position * OBJECT_SIZE + OBJECT_TAG] & CR_FLAG) != 0;
+    }
+
+    int getLength(int position) {
+        checkPosition(position);
+        return mObjects[position * OBJECT_SIZE + OBJECT_LENGTH];
+    }
+
+    int getValueIndex(int position) {
+        checkPosition(position);
+        return mObjects[position * OBJECT_SIZE + OBJECT_VALUE_INDEX];
+    }
+
+    byte[] getRawValue() {
+        return mData;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mCount) {
+            throw new IndexOutOfBoundsException("position=" + position + " size=" + mCount);
+        }
+    }
+
+    /**
+     * Returns the position of the <code>n</code>-th object with <code>tag</code>,
+     * counting from 0, or -1 if there are not that many.
+     */
+    int indexOf(ComprehensionTlvTag tag, int n) {
+        int position = first(tag.value());
+        while (position >= 0 && n-- > 0) {
+            position = mObjects[position * OBJECT_SIZE + OBJECT_NEXT];
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of the next object with the same tag as the one at
+     * <code>position</code>, or -1 if it is the last.
+     */
+    int nextIndexOf(int position) {
+        checkPosition(position);
+        return mObjects[position * OBJECT_SIZE + OBJECT_NEXT];
+    }
+
+    /**
+     * Returns the number of objects with <code>tag</code>.
+     */
+    int count(ComprehensionTlvTag tag) {
+        int count = 0;
+        for (int position = first(tag.value()); position >= 0;
+                position = mObjects[position * OBJECT_SIZE + OBJECT_NEXT]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first object with <code>tag</code>, or null if there is none.
+     */
+    ComprehensionTlv find(ComprehensionTlvTag tag) {
+        return find(tag, 0);
+    }
+
+    /**
+     * Returns the <code>n</code>-th object with <code>tag</code>, counting from 0, or
+     * null if there are not that many.
+     */
+    ComprehensionTlv find(ComprehensionTlvTag tag, int n) {
+        int position = indexOf(tag, n);
+        return position >= 0 ? get(position) : null;
+    }
+
+    /**
+     * Returns the object at <code>position</code>.
+     */
+    ComprehensionTlv get(int position) {
+        checkPosition(position);
+        if (mTlvs == null) {
+            mTlvs = new ComprehensionTlv[mCount];
+        }
+        ComprehensionTlv ctlv = mTlvs[position];
+        if (ctlv == null) {
+            ctlv = new ComprehensionTlv(getTag(position), isComprehensionRequired(position),
+                    getLength(position), mData, getValueIndex(position));
+            mTlvs[position] = ctlv;
+        }
+        return ctlv;
+    }
+
+    /**
+     * Returns all the objects, in the order they were decoded.
+     */
+    List<ComprehensionTlv> asList() {
+        ArrayList<ComprehensionTlv> list = new ArrayList<ComprehensionTlv>(mCount);
+        for (int i = 0; i < mCount; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+}
@@ -17,6 +17,8 @@
 package com.android.internal.telephony.cat;
 
 import com.android.internal.telephony.uicc.IccFileHandler;
+import com.android.internal.telephony.uicc.UiccCard;
+import com.android.internal.telephony.uicc.UiccController;
 
 import android.graphics.Bitmap;
 import android.graphics.Color;
@@ -25,35 +27,48 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
- * Class for loading icons from the SIM card. Has two states: single, for loading
- * one icon. Multi, for loading icons list.
+ * Class for loading icons from the SIM card, one icon or an icons list at a time.
  *
+ * Loaded icons are kept in an LRU cache bounded by the bytes of their bitmaps. The cache
+ * is shared by the loaders of all slots and outlives them, so icons survive STK menu
+ * refreshes; icons are keyed by slot, ICCID and EF_IMG record number so that a new card
+ * never gets the icons of another. The icons of a list are loaded in parallel, and an
+ * icon asked for several times is only read once.
  */
 class IconLoader extends Handler {
     // members
-    private int mState = STATE_SINGLE_ICON;
-    private ImageDescriptor mId = null;
-    private Bitmap mCurrentIcon = null;
-    private int mRecordNumber;
+    private final int mSlotId;
     private IccFileHandler mSimFH = null;
-    private Message mEndMsg = null;
-    private byte[] mIconData = null;
-    // multi icons state members
-    private int[] mRecordNumbers = null;
-    private int mCurrentRecordIndex = 0;
-    private Bitmap[] mIcons = null;
-    private HashMap<Integer, Bitmap> mIconsCache = null;
+    // Icons being read from the SIM, by cache key
+    private final HashMap<String, IconRequest> mLoading = new HashMap<String, IconRequest>();
+    // Reused for decoding icons of up to MAX_PIXEL_BUFFER_SIZE pixels
+    private int[] mPixels = null;
 
     private static IconLoader sLoader = null;
     private static HandlerThread sThread = null;
 
-    // Loader state values.
-    private static final int STATE_SINGLE_ICON = 1;
-    private static final int STATE_MULTI_ICONS = 2;
+    // Bytes of the bitmaps kept in the icons cache
+    static final int ICONS_CACHE_MAX_BYTES = 512 * 1024;
+    // Largest pixel buffer kept for reuse, an icon of 128x128 pixels
+    private static final int MAX_PIXEL_BUFFER_SIZE = 128 * 128;
+
+    private static final LruCache<String, Bitmap> sIconsCache =
+            new LruCache<String, Bitmap>(ICONS_CACHE_MAX_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap icon) {
+            return icon.getByteCount();
+        }
+    };
 
+    // Start loading the icons of a LoadBatch.
+    private static final int EVENT_LOAD_ICONS               = 0;
     // Finished loading single record from a linear-fixed EF-IMG.
     private static final int EVENT_READ_EF_IMG_RECOED_DONE  = 1;
     // Finished loading single icon from a Transparent DF-Graphics.
@@ -66,22 +81,56 @@ class IconLoader extends Handler {
     // CLUT entry size, {Red, Green, Black}
     private static final int CLUT_ENTRY_SIZE = 3;
 
+    /**
+     * The icons asked for by one call to loadIcon() or loadIcons().
+     */
+    private static class LoadBatch {
+        final int[] mRecordNumbers;
+        final Bitmap[] mIcons;
+        final boolean mMulti;
+        final Message mEndMsg;
+        int mPending;
+
+        LoadBatch(int[] recordNumbers, boolean multi, Message endMsg) {
+            mRecordNumbers = recordNumbers;
+            mIcons = new Bitmap[recordNumbers.length];
+            mMulti = multi;
+            mEndMsg = endMsg;
+            mPending = recordNumbers.length;
+        }
+    }
+
+    /**
+     * An icon being read from the SIM, and the batches waiting for it.
+     */
+    private static class IconRequest {
+        final String mKey;
+        final int mRecordNumber;
+        final ArrayList<LoadBatch> mBatches = new ArrayList<LoadBatch>();
+        final ArrayList<Integer> mIndexes = new ArrayList<Integer>();
+        ImageDescriptor mId = null;
+        byte[] mIconData = null;
+
+        IconRequest(String key, int recordNumber) {
+            mKey = key;
+            mRecordNumber = recordNumber;
+        }
+    }
 
-    private IconLoader(Looper looper , IccFileHandler fh) {
+    private IconLoader(Looper looper, IccFileHandler fh, int slotId) {
         super(looper);
         mSimFH = fh;
-
-        mIconsCache = new HashMap<Integer, Bitmap>(50);
+        mSlotId = slotId;
     }
 
-    static IconLoader getInstance(Handler caller, IccFileHandler fh) {
+    static IconLoader getInstance(Handler caller, IccFileHandler fh, int slotId) {
         if (sLoader != null) {
             return sLoader;
         }
         if (fh != null) {
             sThread = new HandlerThread("Cat Icon Loader");
             sThread.start();
-            return new IconLoader(sThread.getLooper(), fh);
+            return new IconLoader(sThread.getLooper(), fh, slotId);
         }
         return null;
     }
@@ -90,85 +139,101 @@ class IconLoader extends Handler {
         if (recordNumbers == null || recordNumbers.length == 0 || msg == null) {
             return;
         }
-        mEndMsg = msg;
-        // initialize multi icons load variables.
-        mIcons = new Bitmap[recordNumbers.length];
-        mRecordNumbers = recordNumbers;
-        mCurrentRecordIndex = 0;
-        mState = STATE_MULTI_ICONS;
-        startLoadingIcon(recordNumbers[0]);
+        sendMessage(obtainMessage(EVENT_LOAD_ICONS,
+                new LoadBatch(recordNumbers.clone(), true, msg)));
     }
 
     void loadIcon(int recordNumber, Message msg) {
         if (msg == null) {
             return;
         }
-        mEndMsg = msg;
-        mState = STATE_SINGLE_ICON;
-        startLoadingIcon(recordNumber);
+        sendMessage(obtainMessage(EVENT_LOAD_ICONS,
+                new LoadBatch(new int[] {recordNumber}, false, msg)));
     }
 
-    private void startLoadingIcon(int recordNumber) {
-        // Reset the load variables.
-        mId = null;
-        mIconData = null;
-        mCurrentIcon = null;
-        mRecordNumber = recordNumber;
-
-        // make sure the icon was not already loaded and saved in the local cache.
-        if (mIconsCache.containsKey(recordNumber)) {
-            mCurrentIcon = mIconsCache.get(recordNumber);
-            postIcon();
-            return;
-        }
+    static String getCacheKey(int slotId, String iccId, int recordNumber) {
+        return slotId + "/" + iccId + "/" + recordNumber;
+    }
 
-        // start the first phase ==> loading Image Descriptor.
-        readId();
+    private String getIccId() {
+        UiccCard card = UiccController.getInstance().getUiccCard(mSlotId);
+        return card != null ? card.getIccId() : null;
+    }
+
+    private void startLoadingIcons(LoadBatch batch) {
+        String iccId = getIccId();
+        for (int i = 0; i < batch.mRecordNumbers.length; i++) {
+            int recordNumber = batch.mRecordNumbers[i];
+            if (recordNumber < 0 || mSimFH == null) {
+                onIconLoaded(batch, i, null);
+                continue;
+            }
+            // Icons of a card without ICCID are loaded but not cached
+            String key = iccId != null ? getCacheKey(mSlotId, iccId, recordNumber) : null;
+            Bitmap icon = key != null ? sIconsCache.get(key) : null;
+            if (icon != null) {
+                onIconLoaded(batch, i, icon);
+                continue;
+            }
+            IconRequest request = key != null ? mLoading.get(key) : null;
+            if (request == null) {
+                request = new IconRequest(key, recordNumber);
+                if (key != null) {
+                    mLoading.put(key, request);
+                }
+                // start the first phase ==> loading Image Descriptor.
+                readId(request);
+            }
+            request.mBatches.add(batch);
+            request.mIndexes.add(i);
+        }
     }
 
     @Override
     public void handleMessage(Message msg) {
-        AsyncResult ar;
+        if (msg.what == EVENT_LOAD_ICONS) {
+            startLoadingIcons((LoadBatch) msg.obj);
+            return;
+        }
 
+        AsyncResult ar = (AsyncResult) msg.obj;
+        IconRequest request = (IconRequest) ar.userObj;
         try {
+            if (ar.exception != null) {
+                throw ar.exception;
+            }
             switch (msg.what) {
             case EVENT_READ_EF_IMG_RECOED_DONE:
-                ar = (AsyncResult) msg.obj;
-                if (handleImageDescriptor((byte[]) ar.result)) {
-                    readIconData();
+                if (handleImageDescriptor(request, (byte[]) ar.result)) {
+                    readIconData(request);
                 } else {
                     throw new Exception("Unable to parse image descriptor");
                 }
                 break;
             case EVENT_READ_ICON_DONE:
                 CatLog.d(this, "load icon done");
-                ar = (AsyncResult) msg.obj;
                 byte[] rawData = ((byte[]) ar.result);
-                if (mId.mCodingScheme == ImageDescriptor.CODING_SCHEME_BASIC) {
-                    mCurrentIcon = parseToBnW(rawData, rawData.length);
-                    mIconsCache.put(mRecordNumber, mCurrentIcon);
-                    postIcon();
-                } else if (mId.mCodingScheme == ImageDescriptor.CODING_SCHEME_COLOUR) {
-                    mIconData = rawData;
-                    readClut();
+                if (request.mId.mCodingScheme == ImageDescriptor.CODING_SCHEME_BASIC) {
+                    postIcon(request, parseToBnW(rawData, rawData.length,
+                            getPixelBuffer(rawData)));
+                } else if (request.mId.mCodingScheme == ImageDescriptor.CODING_SCHEME_COLOUR) {
+                    request.mIconData = rawData;
+                    readClut(request);
                 } else {
                     CatLog.d(this, "else  /postIcon ");
-                    postIcon();
+                    postIcon(request, null);
                 }
                 break;
             case EVENT_READ_CLUT_DONE:
-                ar = (AsyncResult) msg.obj;
                 byte [] clut = ((byte[]) ar.result);
-                mCurrentIcon = parseToRGB(mIconData, mIconData.length,
-                        false, clut);
-                mIconsCache.put(mRecordNumber, mCurrentIcon);
-                postIcon();
+                postIcon(request, parseToRGB(request.mIconData, request.mIconData.length,
+                        false, clut, getPixelBuffer(request.mIconData)));
                 break;
             }
-        } catch (Exception e) {
+        } catch (Throwable e) {
             CatLog.d(this, "Icon load failed");
             // post null icon back to the caller.
-            postIcon();
+            postIcon(request, null);
         }
     }
 
@@ -179,55 +244,72 @@ class IconLoader extends Handler {
      * @param rawData byte [] containing Image Instance descriptor as defined in
      * TS 51.011.
      */
-    private boolean handleImageDescriptor(byte[] rawData) {
-        mId = ImageDescriptor.parse(rawData, 1);
-        if (mId == null) {
+    private boolean handleImageDescriptor(IconRequest request, byte[] rawData) {
+        request.mId = ImageDescriptor.parse(rawData, 1);
+        if (request.mId == null) {
             return false;
         }
         return true;
     }
 
     // Start reading color lookup table from SIM card.
-    private void readClut() {
-        int length = mIconData[3] * CLUT_ENTRY_SIZE;
-        Message msg = obtainMessage(EVENT_READ_CLUT_DONE);
-        mSimFH.loadEFImgTransparent(mId.mImageId,
-                mIconData[CLUT_LOCATION_OFFSET],
-                mIconData[CLUT_LOCATION_OFFSET + 1], length, msg);
+    private void readClut(IconRequest request) {
+        byte[] iconData = request.mIconData;
+        int length = iconData[3] * CLUT_ENTRY_SIZE;
+        Message msg = obtainMessage(EVENT_READ_CLUT_DONE, request);
+        mSimFH.loadEFImgTransparent(request.mId.mImageId,
+                iconData[CLUT_LOCATION_OFFSET],
+                iconData[CLUT_LOCATION_OFFSET + 1], length, msg);
     }
 
     // Start reading Image Descriptor from SIM card.
-    private void readId() {
-        if (mRecordNumber < 0) {
-            mCurrentIcon = null;
-            postIcon();
-            return;
-        }
-        Message msg = obtainMessage(EVENT_READ_EF_IMG_RECOED_DONE);
-        mSimFH.loadEFImgLinearFixed(mRecordNumber, msg);
+    private void readId(IconRequest request) {
+        Message msg = obtainMessage(EVENT_READ_EF_IMG_RECOED_DONE, request);
+        mSimFH.loadEFImgLinearFixed(request.mRecordNumber, msg);
     }
 
     // Start reading icon bytes array from SIM card.
-    private void readIconData() {
-        Message msg = obtainMessage(EVENT_READ_ICON_DONE);
-        mSimFH.loadEFImgTransparent(mId.mImageId, 0, 0, mId.mLength ,msg);
+    private void readIconData(IconRequest request) {
+        Message msg = obtainMessage(EVENT_READ_ICON_DONE, request);
+        mSimFH.loadEFImgTransparent(request.mId.mImageId, 0, 0, request.mId.mLength, msg);
     }
 
-    // When all is done pass icon back to caller.
-    private void postIcon() {
-        if (mState == STATE_SINGLE_ICON) {
-            mEndMsg.obj = mCurrentIcon;
-            mEndMsg.sendToTarget();
-        } else if (mState == STATE_MULTI_ICONS) {
-            mIcons[mCurrentRecordIndex++] = mCurrentIcon;
-            // If not all icons were loaded, start loading the next one.
-            if (mCurrentRecordIndex < mRecordNumbers.length) {
-                startLoadingIcon(mRecordNumbers[mCurrentRecordIndex]);
-            } else {
-                mEndMsg.obj = mIcons;
-                mEndMsg.sendToTarget();
+    /**
+     * Returns a buffer for the pixels of the icon in <code>data</code>, or null if the
+     * icon is too large for the reused buffer.
+     */
+    private int[] getPixelBuffer(byte[] data) {
+        int numOfPixels = (data[0] & 0xFF) * (data[1] & 0xFF);
+        if (numOfPixels > MAX_PIXEL_BUFFER_SIZE) {
+            return null;
+        }
+        if (mPixels == null || mPixels.length < numOfPixels) {
+            mPixels = new int[numOfPixels];
+        }
+        return mPixels;
+    }
+
+    // When an icon is read, cache it and pass it to the batches waiting for it.
+    private void postIcon(IconRequest request, Bitmap icon) {
+        if (request.mKey != null) {
+            mLoading.remove(request.mKey);
+            if (icon != null) {
+                sIconsCache.put(request.mKey, icon);
             }
         }
+        for (int i = 0; i < request.mBatches.size(); i++) {
+            onIconLoaded(request.mBatches.get(i), request.mIndexes.get(i), icon);
+        }
+    }
+
+    // When all icons of a batch are done pass them back to caller.
+    private void onIconLoaded(LoadBatch batch, int index, Bitmap icon) {
+        batch.mIcons[index] = icon;
+        if (--batch.mPending > 0) {
+            return;
+        }
+        batch.mEndMsg.obj = batch.mMulti ? batch.mIcons : batch.mIcons[0];
+        batch.mEndMsg.sendToTarget();
     }
 
     /**
@@ -237,12 +319,23 @@ class IconLoader extends Handler {
      * @return The bitmap
      */
     public static Bitmap parseToBnW(byte[] data, int length){
+        return parseToBnW(data, length, null);
+    }
+
+    /**
+     * Convert a TS 131.102 image instance of code scheme '11' into Bitmap
+     * @param data The raw data
+     * @param length The length of image body
+     * @param buffer Buffer for the pixels, reused if it is large enough
+     * @return The bitmap
+     */
+    static Bitmap parseToBnW(byte[] data, int length, int[] buffer){
         int valueIndex = 0;
         int width = data[valueIndex++] & 0xFF;
         int height = data[valueIndex++] & 0xFF;
         int numOfPixels = width*height;
 
-        int[] pixels = new int[numOfPixels];
+        int[] pixels = getPixels(buffer, numOfPixels);
 
         int pixelIndex = 0;
         int bitIndex = 7;
@@ -259,7 +352,20 @@ class IconLoader extends Handler {
         if (pixelIndex != numOfPixels) {
             CatLog.d("IconLoader", "parseToBnW; size error");
         }
-        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+        // The pixels are copied, leaving the buffer free for the next icon
+        return Bitmap.createBitmap(pixels, 0, width, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Returns <code>buffer</code> with its first <code>numOfPixels</code> pixels cleared, or
+     * a new array if it is null or too small, so nothing of the last icon is left in it.
+     */
+    private static int[] getPixels(int[] buffer, int numOfPixels) {
+        if (buffer == null || buffer.length < numOfPixels) {
+            return new int[numOfPixels];
+        }
+        Arrays.fill(buffer, 0, numOfPixels, 0);
+        return buffer;
     }
 
     /**
@@ -288,6 +394,21 @@ class IconLoader extends Handler {
      */
     public static Bitmap parseToRGB(byte[] data, int length,
             boolean transparency, byte[] clut) {
+        return parseToRGB(data, length, transparency, clut, null);
+    }
+
+    /**
+     * a TS 131.102 image instance of code scheme '11' into color Bitmap
+     *
+     * @param data The raw data
+     * @param length the length of image body
+     * @param transparency with or without transparency
+     * @param clut coulor lookup table
+     * @param buffer Buffer for the pixels, reused if it is large enough
+     * @return The color bitmap
+     */
+    static Bitmap parseToRGB(byte[] data, int length,
+            boolean transparency, byte[] clut, int[] buffer) {
         int valueIndex = 0;
         int width = data[valueIndex++] & 0xFF;
         int height = data[valueIndex++] & 0xFF;
@@ -299,7 +420,7 @@ class IconLoader extends Handler {
         }
 
         int numOfPixels = width * height;
-        int[] pixels = new int[numOfPixels];
+        int[] pixels = getPixels(buffer, numOfPixels);
 
         valueIndex = 6;
         int pixelIndex = 0;
@@ -321,7 +442,7 @@ class IconLoader extends Handler {
             bitIndex -= bitsPerImg;
         }
 
-        return Bitmap.createBitmap(pixels, width, height,
+        return Bitmap.createBitmap(pixels, 0, width, width, height,
                 Bitmap.Config.ARGB_8888);
     }
 
@@ -368,7 +489,7 @@ class IconLoader extends Handler {
             sThread.quit();
             sThread = null;
         }
-        mIconsCache = null;
+        mLoading.clear();
         sLoader = null;
     }
 }
@@ -1270,6 +1270,8 @@ public class CDMAPhone extends PhoneBase {
             // handle the select network completion callbacks.
             case EVENT_SET_NETWORK_MANUAL_COMPLETE:
             case EVENT_SET_NETWORK_AUTOMATIC_COMPLETE:
+            // reply to requestAllCellInfo() callers
+            case EVENT_GET_ALL_CELL_INFO_DONE:
                 super.handleMessage(msg);
                 return;
         }
@@ -36,6 +36,7 @@ import com.android.internal.telephony.PhoneBase;
 import com.android.internal.telephony.PhoneConstants;
 import com.android.internal.telephony.SMSDispatcher;
 import com.android.internal.telephony.SmsConstants;
+import com.android.internal.telephony.SmsDeliveryPendingList;
 import com.android.internal.telephony.SmsHeader;
 import com.android.internal.telephony.SmsUsageMonitor;
 import com.android.internal.telephony.TelephonyProperties;
@@ -85,14 +86,16 @@ public class CdmaSMSDispatcher extends SMSDispatcher {
      * @param sms the CDMA SMS message to process
      */
     void handleCdmaStatusReport(SmsMessage sms) {
-        for (int i = 0, count = deliveryPendingList.size(); i < count; i++) {
-            SmsTracker tracker = deliveryPendingList.get(i);
-            if (tracker.mMessageRef == sms.mMessageRef) {
-                // Found it.  Remove from list and broadcast.
-                deliveryPendingList.remove(i);
-                // Update the message status (COMPLETE)
-                tracker.updateSentMessageStatus(mContext, Sms.STATUS_COMPLETE);
+        // Only expect to see one tracker matching this message.
+        SmsDeliveryPendingList.Pending pending = deliveryPendingList.get(sms.mMessageRef);
+        if (pending != null) {
+            // Found it.  Remove from list and broadcast.
+            deliveryPendingList.remove(pending);
+            // Update the message status (COMPLETE)
+            pending.updateSentMessageStatus(mContext, Sms.STATUS_COMPLETE);
 
+            SmsTracker tracker = pending.getTracker();
+            if (tracker != null) {
                 PendingIntent intent = tracker.mDeliveryIntent;
                 Intent fillIn = new Intent();
                 fillIn.putExtra("pdu", sms.getPdu());
@@ -100,7 +103,6 @@ public class CdmaSMSDispatcher extends SMSDispatcher {
                 try {
                     intent.send(mContext, Activity.RESULT_OK, fillIn);
                 } catch (CanceledException ex) {}
-                break;  // Only expect to see one tracker matching this message.
             }
         }
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.telephony.ServiceState;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of an APN list by the type the APNs can handle and the radio technology they
+ * can be used on.
+ *
+ * The APNs handling each type with a bit in {@link ApnSetting#typesBitmask} are listed
+ * when the index is built, and narrowed down to a radio technology the first time that
+ * combination is asked for. Lists keep the order of the APN list, so they hold the same
+ * APNs, in the same order, as walking it with {@link ApnSetting#canHandleType} and
+ * {@link ServiceState#bitmaskHasTech}. Types without a bit are looked up by walking the
+ * list.
+ *
+ * The returned lists must not be modified. Not thread safe, used from the handler thread
+ * of the owning {@link DcTracker}.
+ */
+final class ApnIndex {
+    private final ArrayList<ApnSetting> mApns;
+    private final int mSize;
+
+    // Type bit -> APNs handling it
+    private final SparseArray<List<ApnSetting>> mByType = new SparseArray<List<ApnSetting>>();
+    // (type bit, radio technology) -> APNs handling the type on the technology
+    private final SparseArray<List<ApnSetting>> mByTypeAndTech =
+            new SparseArray<List<ApnSetting>>();
+
+    ApnIndex(ArrayList<ApnSetting> apns) {
+        mApns = apns;
+        mSize = apns == null ? 0 : apns.size();
+        for (int bit = 1; bit != 0 && bit <= ApnSetting.TYPE_BITMASK_ALL; bit <<= 1) {
+            ArrayList<ApnSetting> list = null;
+            for (int i = 0; i < mSize; i++) {
+                ApnSetting apn = apns.get(i);
+                if (apn.carrierEnabled && (apn.typesBitmask & bit) != 0) {
+                    if (list == null) {
+                        list = new ArrayList<ApnSetting>();
+                    }
+                    list.add(apn);
+                }
+            }
+            if (list != null) {
+                mByType.put(bit, list);
+            }
+        }
+    }
+
+    /**
+     * Returns whether this indexes <code>apns</code> as they are now. The APN list is
+     * only replaced, cleared or appended to after the index was built, so it is enough
+     * to compare the list and its size.
+     */
+    boolean isIndexOf(ArrayList<ApnSetting> apns) {
+        return apns == mApns && (apns == null || apns.size() == mSize);
+    }
+
+    /**
+     * Returns whether any APN can handle <code>type</code>.
+     */
+    boolean hasType(String type) {
+        int bit = ApnSetting.getTypeBitmask(type);
+        if (bit != 0) {
+            return mByType.get(bit) != null;
+        }
+        for (int i = 0; i < mSize; i++) {
+            if (mApns.get(i).canHandleType(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the APNs that can handle <code>type</code> on <code>radioTech</code>.
+     */
+    List<ApnSetting> get(String type, int radioTech) {
+        int bit = ApnSetting.getTypeBitmask(type);
+        if (bit == 0) {
+            return filter(mApns, mSize, type, radioTech);
+        }
+        List<ApnSetting> byType = mByType.get(bit);
+        if (byType == null) {
+            return Collections.emptyList();
+        }
+        // Radio technologies are small positive numbers
+        int key = (Integer.numberOfTrailingZeros(bit) << 16) | (radioTech & 0xffff);
+        List<ApnSetting> list = mByTypeAndTech.get(key);
+        if (list == null) {
+            list = filter(byType, byType.size(), null, radioTech);
+            mByTypeAndTech.put(key, list);
+        }
+        return list;
+    }
+
+    private static List<ApnSetting> filter(List<ApnSetting> apns, int size, String type,
+            int radioTech) {
+        ArrayList<ApnSetting> list = null;
+        for (int i = 0; i < size; i++) {
+            ApnSetting apn = apns.get(i);
+            if ((type == null || apn.canHandleType(type))
+                    && ServiceState.bitmaskHasTech(apn.bearerBitmask, radioTech)) {
+                if (list == null) {
+                    list = new ArrayList<ApnSetting>();
+                }
+                list.add(apn);
+            }
+        }
+        return list == null ? Collections.<ApnSetting>emptyList() : list;
+    }
+
+    @Override
+    public String toString() {
+        return "ApnIndex{apns=" + mSize + " types=" + mByType.size()
+                + " cached=" + mByTypeAndTech.size() + "}";
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.Telephony;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rows of the APN table read by the last refresh of the APN list of an operator, each
+ * with the APN made from it, so that the next refresh only makes APNs for the rows that
+ * are new or changed.
+ *
+ * Used from the handler thread of {@link DcTracker}.
+ */
+final class ApnRowCache {
+    /**
+     * Makes the APN of the row at a cursor.
+     */
+    interface ApnFactory {
+        ApnSetting makeApnSetting(Cursor cursor);
+    }
+
+    /**
+     * A row of the APN table and the APN made from it, reused as long as the row is the same.
+     */
+    private static final class Row {
+        final String[] mValues;
+        final int mHash;
+        final ApnSetting mApn;
+
+        Row(String[] values, int hash, ApnSetting apn) {
+            mValues = values;
+            mHash = hash;
+            mApn = apn;
+        }
+    }
+
+    private final ApnFactory mFactory;
+
+    /** _id -> row of the APNs of mOperator read by the last refresh */
+    private SparseArray<Row> mRows = new SparseArray<Row>();
+    /** The rows read so far by the refresh in progress */
+    private SparseArray<Row> mNextRows;
+    private String mOperator;
+    private int mRowsRebuilt;
+
+    ApnRowCache(ApnFactory factory) {
+        mFactory = factory;
+    }
+
+    /**
+     * Starts a refresh, reading the APN rows of <code>operator</code>.
+     */
+    void beginRefresh(String operator) {
+        mOperator = operator;
+        mNextRows = new SparseArray<Row>();
+        mRowsRebuilt = 0;
+    }
+
+    /**
+     * Returns the APN of the row at the cursor, the one made by the last refresh if the row
+     * is unchanged.
+     */
+    ApnSetting getApnSetting(Cursor cursor) {
+        if (mNextRows == null) {
+            return mFactory.makeApnSetting(cursor);
+        }
+        int id = cursor.getInt(cursor.getColumnIndexOrThrow(Telephony.Carriers._ID));
+        String[] values = new String[cursor.getColumnCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = cursor.getString(i);
+        }
+        int hash = Arrays.hashCode(values);
+        Row row = mRows.get(id);
+        if (row == null || row.mHash != hash || !Arrays.equals(row.mValues, values)) {
+            row = new Row(values, hash, mFactory.makeApnSetting(cursor));
+            mRowsRebuilt++;
+        }
+        mNextRows.put(id, row);
+        return row.mApn;
+    }
+
+    /**
+     * Ends the refresh, forgetting the rows it didn't read.
+     */
+    void endRefresh() {
+        if (mNextRows != null) {
+            mRows = mNextRows;
+            mNextRows = null;
+        }
+    }
+
+    /**
+     * Returns false if <code>uri</code> is a single row of the APN table that neither was
+     * read by the last refresh nor is an APN of <code>operator</code>, so the APN list of
+     * the operator can't have changed.
+     */
+    boolean isChangeRelevant(Uri uri, String operator, ContentResolver resolver) {
+        int id = getRowId(uri);
+        if (id < 0 || operator == null || !operator.equals(mOperator)
+                || mRows.get(id) != null) {
+            return true;
+        }
+        Cursor cursor = resolver.query(uri,
+                new String[] { Telephony.Carriers.NUMERIC }, null, null, null);
+        if (cursor == null) {
+            return true;
+        }
+        try {
+            // A deleted row has no numeric
+            return cursor.moveToFirst() && operator.equals(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the _id of the row of the APN table <code>uri</code> is, or -1 if it is not
+     * a single row, eg the whole table or the preferred APN.
+     */
+    static int getRowId(Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        List<String> table = Telephony.Carriers.CONTENT_URI.getPathSegments();
+        List<String> segments = uri.getPathSegments();
+        if (!TextUtils.equals(Telephony.Carriers.CONTENT_URI.getAuthority(), uri.getAuthority())
+                || segments.size() != table.size() + 1
+                || !segments.subList(0, table.size()).equals(table)) {
+            return -1;
+        }
+        try {
+            int id = Integer.parseInt(segments.get(table.size()));
+            return id >= 0 ? id : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    String getOperator() {
+        return mOperator;
+    }
+
+    /**
+     * Returns the number of rows the last refresh made an APN for.
+     */
+    int getRowsRebuilt() {
+        return mRowsRebuilt;
+    }
+
+    int size() {
+        return mRows.size();
+    }
+}
@@ -25,6 +25,7 @@ import com.android.internal.telephony.RILConstants;
 import com.android.internal.telephony.uicc.IccRecords;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 
@@ -37,6 +38,26 @@ public class ApnSetting {
     static final String V3_FORMAT_REGEX = "^\\[ApnSettingV3\\]\\s*";
     static final String TAG = "ApnSetting";
 
+    // APN types that have a bit in typesBitmask, bit i standing for BITMASK_TYPES[i]
+    private static final String[] BITMASK_TYPES = {
+            PhoneConstants.APN_TYPE_DEFAULT,
+            PhoneConstants.APN_TYPE_MMS,
+            PhoneConstants.APN_TYPE_SUPL,
+            PhoneConstants.APN_TYPE_DUN,
+            PhoneConstants.APN_TYPE_HIPRI,
+            PhoneConstants.APN_TYPE_FOTA,
+            PhoneConstants.APN_TYPE_IMS,
+            PhoneConstants.APN_TYPE_CBS,
+            PhoneConstants.APN_TYPE_IA,
+            PhoneConstants.APN_TYPE_EMERGENCY};
+    private static final HashMap<String, Integer> sTypeBits = new HashMap<String, Integer>();
+    static {
+        for (int i = 0; i < BITMASK_TYPES.length; i++) {
+            sTypeBits.put(BITMASK_TYPES[i], 1 << i);
+        }
+    }
+    static final int TYPE_BITMASK_ALL = (1 << BITMASK_TYPES.length) - 1;
+
     public final String carrier;
     public final String apn;
     public final String proxy;
@@ -47,7 +68,17 @@ public class ApnSetting {
     public final String user;
     public final String password;
     public final int authType;
-    public String[] types;
+    /**
+     * The types this APN can handle, in lower case. A copy made by the constructor, which
+     * must not be modified since {@link #typesBitmask} is computed from it; hand out copies.
+     */
+    public final String[] types;
+    /**
+     * Bitmask of the known types this APN can handle, see {@link #getTypeBitmask}.
+     * APN_TYPE_ALL sets every bit and APN_TYPE_DEFAULT also sets the one of
+     * APN_TYPE_HIPRI, so a known type is handled iff its bit is set.
+     */
+    public final int typesBitmask;
     public final int id;
     public final String numeric;
     public final String protocol;
@@ -120,6 +151,7 @@ public class ApnSetting {
         for (int i = 0; i < types.length; i++) {
             this.types[i] = types[i].toLowerCase(Locale.ROOT);
         }
+        this.typesBitmask = getTypesBitmask(this.types);
         this.protocol = protocol;
         this.roamingProtocol = roamingProtocol;
         this.carrierEnabled = carrierEnabled;
@@ -316,6 +348,10 @@ public class ApnSetting {
 
     public boolean canHandleType(String type) {
         if (!carrierEnabled) return false;
+        int bit = getTypeBitmask(type);
+        if (bit != 0) {
+            return (typesBitmask & bit) != 0;
+        }
         for (String t : types) {
             // DEFAULT handles all, and HIPRI is handled by DEFAULT
             if (t.equalsIgnoreCase(type) ||
@@ -328,6 +364,36 @@ public class ApnSetting {
         return false;
     }
 
+    /**
+     * Returns the bit of an APN type in {@link #typesBitmask}, or 0 if the type has none.
+     */
+    static int getTypeBitmask(String type) {
+        if (type == null) return 0;
+        Integer bit = sTypeBits.get(type);
+        if (bit == null) {
+            // The PhoneConstants names are lower case, only look up others again
+            String lower = type.toLowerCase(Locale.ROOT);
+            if (lower.equals(type)) return 0;
+            bit = sTypeBits.get(lower);
+            if (bit == null) return 0;
+        }
+        return bit;
+    }
+
+    private static int getTypesBitmask(String[] types) {
+        int bitmask = 0;
+        for (String t : types) {
+            if (PhoneConstants.APN_TYPE_ALL.equals(t)) {
+                return TYPE_BITMASK_ALL;
+            }
+            bitmask |= getTypeBitmask(t);
+            if (PhoneConstants.APN_TYPE_DEFAULT.equals(t)) {
+                bitmask |= getTypeBitmask(PhoneConstants.APN_TYPE_HIPRI);
+            }
+        }
+        return bitmask;
+    }
+
     private static boolean imsiMatches(String imsiDB, String imsiSIM) {
         // Note: imsiDB value has digit number or 'x' character for seperating USIM information
         // for MVNO operator. And then digit number is matched at same order and 'x' character
@@ -387,6 +453,33 @@ public class ApnSetting {
         return false;
     }
 
+    /**
+     * Unlike {@link #equals}, which compares {@link #toString} and so leaves out the user
+     * and password, compares every field.
+     */
+    boolean equalsWithCredentials(ApnSetting other) {
+        return other != null && equals(other) && TextUtils.equals(user, other.user)
+                && TextUtils.equals(password, other.password);
+    }
+
+    /**
+     * Returns true if both lists hold APNs equal in every field, in the same order.
+     */
+    static boolean equalsWithCredentials(List<ApnSetting> first, List<ApnSetting> second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (!first.get(i).equalsWithCredentials(second.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // TODO - if we have this function we should also have hashCode.
     // Also should handle changes in type order and perhaps case-insensitivity
     @Override
@@ -119,7 +119,12 @@ public class DcTracker extends DcTrackerBase {
 
         @Override
         public void onChange(boolean selfChange) {
-            sendMessage(obtainMessage(DctConstants.EVENT_APN_CHANGED));
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            sendMessage(obtainMessage(DctConstants.EVENT_APN_CHANGED, uri));
         }
     }
 
@@ -163,6 +168,23 @@ public class DcTracker extends DcTrackerBase {
 
     private boolean mCanSetPreferApn = false;
 
+    /** Index of mAllApnSettings by APN type and radio technology, see getApnIndex() */
+    private ApnIndex mApnIndex;
+
+    /** The rows of the APN table read by the last createAllApnList() */
+    private final ApnRowCache mApnRowCache = new ApnRowCache(new ApnRowCache.ApnFactory() {
+        @Override
+        public ApnSetting makeApnSetting(Cursor cursor) {
+            return DcTracker.this.makeApnSetting(cursor);
+        }
+    });
+
+    // Statistics of createAllApnList()
+    private int mApnRefreshCount;
+    private int mApnRefreshUnchangedCount;
+    private long mLastApnRefreshMillis;
+    private long mMaxApnRefreshMillis;
+
     private AtomicBoolean mAttached = new AtomicBoolean(false);
 
     /** Watches for changes to the APN db. */
@@ -652,14 +674,17 @@ public class DcTracker extends DcTrackerBase {
             return true;
         }
 
-        if (mAllApnSettings != null) {
-            for (ApnSetting apn : mAllApnSettings) {
-                if (apn.canHandleType(type)) {
-                    return true;
-                }
-            }
+        return getApnIndex().hasType(type);
+    }
+
+    /**
+     * Returns the index of mAllApnSettings, rebuilding it if the list has changed since.
+     */
+    private ApnIndex getApnIndex() {
+        if (mApnIndex == null || !mApnIndex.isIndexOf(mAllApnSettings)) {
+            mApnIndex = new ApnIndex(mAllApnSettings);
         }
-        return false;
+        return mApnIndex;
     }
 
     /**
@@ -1279,7 +1304,7 @@ public class DcTracker extends DcTrackerBase {
 
         if (cursor.moveToFirst()) {
             do {
-                ApnSetting apn = makeApnSetting(cursor);
+                ApnSetting apn = mApnRowCache.getApnSetting(cursor);
                 if (apn == null) {
                     continue;
                 }
@@ -1430,11 +1455,24 @@ public class DcTracker extends DcTrackerBase {
     /**
      * Handles changes to the APN database.
      */
-    private void onApnChanged() {
-        if(DBG) log("onApnChanged: tryRestartDataConnections");
+    private void onApnChanged(Uri uri) {
+        if (!isApnChangeRelevant(uri)) {
+            if (DBG) log("onApnChanged: uri=" + uri + " is not an APN of the operator, ignored");
+            return;
+        }
+        if(DBG) log("onApnChanged: tryRestartDataConnections uri=" + uri);
         tryRestartDataConnections(Phone.REASON_APN_CHANGED);
     }
 
+    /**
+     * Returns false if <code>uri</code> is a single row of the APN table that neither was
+     * nor is an APN of the current operator, so the APN list can't have changed.
+     */
+    private boolean isApnChangeRelevant(Uri uri) {
+        return mApnRowCache.isChangeRelevant(uri, getOperatorNumeric(),
+                mPhone.getContext().getContentResolver());
+    }
+
     protected void tryRestartDataConnections(String reason) {
         DctConstants.State overallState = getOverallState();
         boolean isDisconnected = (overallState == DctConstants.State.IDLE ||
@@ -1445,10 +1483,21 @@ public class DcTracker extends DcTrackerBase {
             ((GSMPhone)mPhone).updateCurrentCarrierInProvider();
         }
 
-        // TODO: It'd be nice to only do this if the changed entrie(s)
-        // match the current operator.
         if (DBG) log("tryRestartDataConnections: createAllApnList and cleanUpAllConnections");
+        ArrayList<ApnSetting> oldApnSettings = mAllApnSettings;
+        ApnSetting oldPreferredApn = mPreferredApn;
         createAllApnList();
+        if (reason.equalsIgnoreCase(Phone.REASON_APN_CHANGED)
+                && ApnSetting.equalsWithCredentials(oldApnSettings, mAllApnSettings)
+                && (oldPreferredApn == null ? mPreferredApn == null
+                        : oldPreferredApn.equalsWithCredentials(mPreferredApn))) {
+            // Eg only the current carrier or the APNs of another operator were updated.
+            // ApnSetting.equals() leaves out the credentials, so an edit of only those
+            // must be compared field by field to be seen.
+            if (DBG) log("tryRestartDataConnections: APNs unchanged, nothing to restart");
+            mApnRefreshUnchangedCount++;
+            return;
+        }
         setInitialAttachApn();
         if (reason.equalsIgnoreCase(Phone.REASON_APN_CHANGED)) {
             cleanUpConnectionsOnUpdatedApns(!isDisconnected);
@@ -2429,19 +2478,22 @@ public class DcTracker extends DcTrackerBase {
      * Data Connections and setup the preferredApn.
      */
     protected void createAllApnList() {
+        long start = SystemClock.elapsedRealtime();
         mMvnoMatched = false;
         mAllApnSettings = new ArrayList<ApnSetting>();
         String operator = getOperatorNumeric();
+        mApnRowCache.beginRefresh(operator);
         if (operator != null && !operator.isEmpty()) {
-            String selection = "numeric = '" + operator + "'";
+            String selection = "numeric = ?";
+            String[] selectionArgs = new String[] { operator };
             String orderBy = "_id";
             // query only enabled apn.
             // carrier_enabled : 1 means enabled apn, 0 disabled apn.
             // selection += " and carrier_enabled = 1";
-            if (DBG) log("createAllApnList: selection=" + selection);
+            if (DBG) log("createAllApnList: selection=" + selection + " operator=" + operator);
 
             Cursor cursor = mPhone.getContext().getContentResolver().query(
-                    Telephony.Carriers.CONTENT_URI, null, selection, null, orderBy);
+                    Telephony.Carriers.CONTENT_URI, null, selection, selectionArgs, orderBy);
 
             if (cursor != null) {
                 if (cursor.getCount() > 0) {
@@ -2450,6 +2502,7 @@ public class DcTracker extends DcTrackerBase {
                 cursor.close();
             }
         }
+        mApnRowCache.endRefresh();
 
         addEmergencyApnSetting();
 
@@ -2472,6 +2525,15 @@ public class DcTracker extends DcTrackerBase {
             }
             if (DBG) log("createAllApnList: mPreferredApn=" + mPreferredApn);
         }
+        mApnIndex = new ApnIndex(mAllApnSettings);
+
+        mLastApnRefreshMillis = SystemClock.elapsedRealtime() - start;
+        mMaxApnRefreshMillis = Math.max(mMaxApnRefreshMillis, mLastApnRefreshMillis);
+        mApnRefreshCount++;
+        if (DBG) {
+            log("createAllApnList: took " + mLastApnRefreshMillis + "ms, rebuilt "
+                    + mApnRowCache.getRowsRebuilt() + " of " + mApnRowCache.size() + " rows");
+        }
         if (DBG) log("createAllApnList: X mAllApnSettings=" + mAllApnSettings);
 
         setDataProfilesAsNeeded();
@@ -2726,24 +2788,7 @@ public class DcTracker extends DcTrackerBase {
         }
         if (mAllApnSettings != null && !mAllApnSettings.isEmpty()) {
             if (DBG) log("buildWaitingApns: mAllApnSettings=" + mAllApnSettings);
-            for (ApnSetting apn : mAllApnSettings) {
-                if (apn.canHandleType(requestedApnType)) {
-                    if (ServiceState.bitmaskHasTech(apn.bearerBitmask, radioTech)) {
-                        if (DBG) log("buildWaitingApns: adding apn=" + apn);
-                        apnList.add(apn);
-                    } else {
-                        if (DBG) {
-                            log("buildWaitingApns: bearerBitmask:" + apn.bearerBitmask + " does " +
-                                    "not include radioTech:" + radioTech);
-                        }
-                    }
-                } else {
-                    if (DBG) {
-                        log("buildWaitingApns: couldn't handle requesedApnType="
-                                + requestedApnType);
-                    }
-                }
-            }
+            apnList.addAll(getApnIndex().get(requestedApnType, radioTech));
         } else {
             loge("mAllApnSettings is null!");
         }
@@ -2854,7 +2899,7 @@ public class DcTracker extends DcTrackerBase {
                 break;
 
             case DctConstants.EVENT_APN_CHANGED:
-                onApnChanged();
+                onApnChanged((Uri) msg.obj);
                 break;
 
             case DctConstants.EVENT_PS_RESTRICT_ENABLED:
@@ -3256,6 +3301,10 @@ public class DcTracker extends DcTrackerBase {
         pw.println(" mReregisterOnReconnectFailure=" + mReregisterOnReconnectFailure);
         pw.println(" canSetPreferApn=" + mCanSetPreferApn);
         pw.println(" mApnObserver=" + mApnObserver);
+        pw.println(" mApnIndex=" + mApnIndex);
+        pw.println(" APN refreshes=" + mApnRefreshCount + " unchanged="
+                + mApnRefreshUnchangedCount + " lastRowsRebuilt=" + mApnRowCache.getRowsRebuilt()
+                + " lastMillis=" + mLastApnRefreshMillis + " maxMillis=" + mMaxApnRefreshMillis);
         pw.println(" getOverallState=" + getOverallState());
         pw.println(" mDataConnectionAsyncChannels=%s\n" + mDataConnectionAcHashMap);
         pw.println(" mAttached=" + mAttached.get());
@@ -3361,6 +3410,15 @@ public class DcTracker extends DcTrackerBase {
         }
     }
 
+    private static boolean containsWithCredentials(ArrayList<ApnSetting> apns, ApnSetting apn) {
+        for (ApnSetting other : apns) {
+            if (apn.equalsWithCredentials(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void cleanUpConnectionsOnUpdatedApns(boolean tearDown) {
         if (DBG) log("cleanUpConnectionsOnUpdatedApns: tearDown=" + tearDown);
         if (mAllApnSettings.isEmpty()) {
@@ -3377,10 +3435,18 @@ public class DcTracker extends DcTrackerBase {
                     ArrayList<ApnSetting> waitingApns = buildWaitingApns(
                             apnContext.getApnType(), radioTech);
                     if (VDBG) log("new waitingApns:" + waitingApns);
-                    if (waitingApns.size() == currentWaitingApns.size()) {
+                    ApnSetting apnInUse = apnContext.getApnSetting();
+                    if (apnContext.getState() == DctConstants.State.CONNECTED
+                            && apnInUse != null && containsWithCredentials(waitingApns, apnInUse)) {
+                        // The connection's APN is unchanged and still usable, keep it
+                        if (VDBG) log("apn in use is unchanged: " + apnInUse);
+                        cleanUpApn = false;
+                        apnContext.setWaitingApns(waitingApns);
+                    } else if (waitingApns.size() == currentWaitingApns.size()) {
                         cleanUpApn = false;
                         for (int i = 0; i < waitingApns.size(); i++) {
-                            if (!currentWaitingApns.get(i).equals(waitingApns.get(i))) {
+                            if (!currentWaitingApns.get(i).equalsWithCredentials(
+                                    waitingApns.get(i))) {
                                 if (VDBG) log("new waiting apn is different at " + i);
                                 cleanUpApn = true;
                                 apnContext.setWaitingApns(waitingApns);
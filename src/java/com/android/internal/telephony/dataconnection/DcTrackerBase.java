@@ -72,6 +72,7 @@ import com.mediatek.internal.telephony.ltedc.svlte.SvlteUtils;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -288,6 +289,25 @@ public abstract class DcTrackerBase extends Handler {
     /** preferred apn */
     protected ApnSetting mPreferredApn = null;
 
+    /**
+     * DUN APNs parsed from a setting, kept until the setting changes. Immutable, so it can
+     * be replaced while another thread reads the previous one.
+     */
+    private static final class DunApnSettings {
+        final Object mData;
+        final List<ApnSetting> mApns;
+
+        DunApnSettings(Object data, List<ApnSetting> apns) {
+            mData = data;
+            mApns = apns;
+        }
+    }
+
+    /** Parsed Settings.Global.TETHER_DUN_APN */
+    private volatile DunApnSettings mGlobalDunApns;
+    /** Parsed R.array.config_tether_apndata */
+    private volatile DunApnSettings mConfigDunApns;
+
     /** Is packet service restricted by network */
     protected boolean mIsPsRestricted = false;
 
@@ -706,7 +726,12 @@ public abstract class DcTrackerBase extends Handler {
         int bearer = mPhone.getServiceState().getRilDataRadioTechnology();
         ApnSetting retDunSetting = null;
         String apnData = Settings.Global.getString(mResolver, Settings.Global.TETHER_DUN_APN);
-        List<ApnSetting> dunSettings = ApnSetting.arrayFromString(apnData);
+        DunApnSettings globalDunApns = mGlobalDunApns;
+        if (globalDunApns == null || !TextUtils.equals(apnData, (String) globalDunApns.mData)) {
+            globalDunApns = new DunApnSettings(apnData, ApnSetting.arrayFromString(apnData));
+            mGlobalDunApns = globalDunApns;
+        }
+        List<ApnSetting> dunSettings = globalDunApns.mApns;
         IccRecords r = mIccRecords.get();
         for (ApnSetting dunSetting : dunSettings) {
             String operator = (r != null) ? r.getOperatorNumeric() : "";
@@ -731,21 +756,33 @@ public abstract class DcTrackerBase extends Handler {
         String[] apnArrayData = c.getResources().getStringArray(R.array.config_tether_apndata);
         if (apnArrayData == null) return null;
 
-        for (String apn : apnArrayData) {
-            ApnSetting dunSetting = ApnSetting.fromString(apn);
-            if (dunSetting != null) {
-                if (!ServiceState.bitmaskHasTech(dunSetting.bearerBitmask, bearer)) continue;
-                if (dunSetting.hasMvnoParams()) {
-                    if (r != null && ApnSetting.mvnoMatches(r, dunSetting.mvnoType,
-                            dunSetting.mvnoMatchData)) {
-                        if (VDBG) {
-                            log("fetchDunApn: config_tether_apndata mvno dunSetting=" + dunSetting);
-                        }
-                        return dunSetting;
+        // The resources can change with the SIM's mcc/mnc, so compare the strings
+        DunApnSettings configDunApns = mConfigDunApns;
+        if (configDunApns == null
+                || !Arrays.equals(apnArrayData, (String[]) configDunApns.mData)) {
+            List<ApnSetting> apns = new ArrayList<ApnSetting>(apnArrayData.length);
+            for (String apn : apnArrayData) {
+                ApnSetting dunSetting = ApnSetting.fromString(apn);
+                if (dunSetting != null) {
+                    apns.add(dunSetting);
+                }
+            }
+            configDunApns = new DunApnSettings(apnArrayData, apns);
+            mConfigDunApns = configDunApns;
+        }
+
+        for (ApnSetting dunSetting : configDunApns.mApns) {
+            if (!ServiceState.bitmaskHasTech(dunSetting.bearerBitmask, bearer)) continue;
+            if (dunSetting.hasMvnoParams()) {
+                if (r != null && ApnSetting.mvnoMatches(r, dunSetting.mvnoType,
+                        dunSetting.mvnoMatchData)) {
+                    if (VDBG) {
+                        log("fetchDunApn: config_tether_apndata mvno dunSetting=" + dunSetting);
                     }
-                } else if (mMvnoMatched == false) {
-                    retDunSetting = dunSetting;
+                    return dunSetting;
                 }
+            } else if (mMvnoMatched == false) {
+                retDunSetting = dunSetting;
             }
         }
 
@@ -762,7 +799,7 @@ public abstract class DcTrackerBase extends Handler {
     public String[] getActiveApnTypes() {
         String[] result;
         if (mActiveApn != null) {
-            result = mActiveApn.types;
+            result = mActiveApn.types.clone();
         } else {
             result = new String[1];
             result[0] = PhoneConstants.APN_TYPE_DEFAULT;
@@ -19,19 +19,21 @@ package com.android.internal.telephony.gsm;
 import android.content.Context;
 import android.os.AsyncResult;
 import android.os.Message;
+import android.os.SystemClock;
 import android.os.SystemProperties;
 import android.telephony.CellLocation;
 import android.telephony.SmsCbLocation;
 import android.telephony.SmsCbMessage;
 import android.telephony.gsm.GsmCellLocation;
 import android.telephony.TelephonyManager;
+import android.text.TextUtils;
 
 import com.android.internal.telephony.CellBroadcastHandler;
 import com.android.internal.telephony.PhoneBase;
 import com.android.internal.telephony.TelephonyProperties;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 /**
  * Handler for 3GPP format Cell Broadcasts. Parent class can also handle CDMA Cell Broadcasts.
@@ -39,12 +41,21 @@ import java.util.Iterator;
 public class GsmCellBroadcastHandler extends CellBroadcastHandler {
     private static final boolean VDBG = false;  // log CB PDU data
 
-    /** This map holds incomplete concatenated messages waiting for assembly. */
-    private final HashMap<SmsCbConcatInfo, byte[][]> mSmsCbPageMap =
-            new HashMap<SmsCbConcatInfo, byte[][]>(4);
+    /** Recently received messages and incomplete concatenated messages. */
+    private final SmsCbMessageCache mMessageCache;
+
+    // Location that the incomplete messages were last checked against
+    private String mLastPlmn;
+    private int mLastLac = -1;
+    private int mLastCid = -1;
 
     protected GsmCellBroadcastHandler(Context context, PhoneBase phone) {
         super("GsmCellBroadcastHandler", context, phone);
+        mMessageCache = new SmsCbMessageCache(
+                SystemProperties.getLong("persist.radio.cb_dup_expiry_ms",
+                        SmsCbMessageCache.DEFAULT_DUPLICATE_EXPIRY_MS),
+                SystemProperties.getLong("persist.radio.cb_page_timeout_ms",
+                        SmsCbMessageCache.DEFAULT_PAGE_TIMEOUT_MS));
         phone.mCi.setOnNewGsmBroadcastSms(getHandler(), EVENT_NEW_SMS_MESSAGE, null);
     }
 
@@ -139,55 +150,41 @@ public class GsmCellBroadcastHandler extends CellBroadcastHandler {
                     break;
             }
 
+            long now = SystemClock.elapsedRealtime();
+            if (mMessageCache.isDuplicate(header, location, now)) {
+                // Networks repeat broadcasts, ETWS and CMAS ones every few seconds
+                if (VDBG) log("Dropping duplicate SMS CB " + header);
+                return null;
+            }
+
+            // Remove messages that are out of scope to prevent the map from
+            // growing indefinitely, containing incomplete messages that were
+            // never assembled
+            if (lac != mLastLac || cid != mLastCid || !TextUtils.equals(plmn, mLastPlmn)) {
+                mMessageCache.removeOutOfLocation(plmn, lac, cid);
+                mLastPlmn = plmn;
+                mLastLac = lac;
+                mLastCid = cid;
+            }
+
             byte[][] pdus;
             int pageCount = header.getNumberOfPages();
             if (pageCount > 1) {
                 // Multi-page message
-                SmsCbConcatInfo concatInfo = new SmsCbConcatInfo(header, location);
-
-                // Try to find other pages of the same message
-                pdus = mSmsCbPageMap.get(concatInfo);
-
+                pdus = mMessageCache.addPage(header, location, receivedPdu, now);
                 if (pdus == null) {
-                    // This is the first page of this message, make room for all
-                    // pages and keep until complete
-                    pdus = new byte[pageCount][];
-
-                    mSmsCbPageMap.put(concatInfo, pdus);
-                }
-
-                // Page parameter is one-based
-                pdus[header.getPageIndex() - 1] = receivedPdu;
-
-                for (byte[] pdu : pdus) {
-                    if (pdu == null) {
-                        // Still missing pages, exit
-                        return null;
-                    }
+                    // Still missing pages, exit
+                    return null;
                 }
-
-                // Message complete, remove and dispatch
-                mSmsCbPageMap.remove(concatInfo);
             } else {
                 // Single page message
                 pdus = new byte[1][];
                 pdus[0] = receivedPdu;
             }
 
-            // Remove messages that are out of scope to prevent the map from
-            // growing indefinitely, containing incomplete messages that were
-            // never assembled
-            Iterator<SmsCbConcatInfo> iter = mSmsCbPageMap.keySet().iterator();
-
-            while (iter.hasNext()) {
-                SmsCbConcatInfo info = iter.next();
-
-                if (!info.matchesLocation(plmn, lac, cid)) {
-                    iter.remove();
-                }
-            }
-
-            return GsmSmsCbMessage.createSmsCbMessage(header, location, pdus);
+            SmsCbMessage message = GsmSmsCbMessage.createSmsCbMessage(header, location, pdus);
+            mMessageCache.addReceived(header, location, now);
+            return message;
 
         } catch (RuntimeException e) {
             loge("Error in decoding SMS CB pdu", e);
@@ -195,51 +192,10 @@ public class GsmCellBroadcastHandler extends CellBroadcastHandler {
         }
     }
 
-    /**
-     * Holds all info about a message page needed to assemble a complete concatenated message.
-     */
-    private static final class SmsCbConcatInfo {
-
-        private final SmsCbHeader mHeader;
-        private final SmsCbLocation mLocation;
-
-        SmsCbConcatInfo(SmsCbHeader header, SmsCbLocation location) {
-            mHeader = header;
-            mLocation = location;
-        }
-
-        @Override
-        public int hashCode() {
-            return (mHeader.getSerialNumber() * 31) + mLocation.hashCode();
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof SmsCbConcatInfo) {
-                SmsCbConcatInfo other = (SmsCbConcatInfo)obj;
-
-                // Two pages match if they have the same serial number (which includes the
-                // geographical scope and update number), and both pages belong to the same
-                // location (PLMN, plus LAC and CID if these are part of the geographical scope).
-                return mHeader.getSerialNumber() == other.mHeader.getSerialNumber()
-                        && mLocation.equals(other.mLocation);
-            }
-
-            return false;
-        }
-
-        /**
-         * Compare the location code for this message to the current location code. The match is
-         * relative to the geographical scope of the message, which determines whether the LAC
-         * and Cell ID are saved in mLocation or set to -1 to match all values.
-         *
-         * @param plmn the current PLMN
-         * @param lac the current Location Area (GSM) or Service Area (UMTS)
-         * @param cid the current Cell ID
-         * @return true if this message is valid for the current location; false otherwise
-         */
-        public boolean matchesLocation(String plmn, int lac, int cid) {
-            return mLocation.isInLocationArea(plmn, lac, cid);
-        }
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        super.dump(fd, pw, args);
+        pw.println("GsmCellBroadcastHandler:");
+        mMessageCache.dump(pw);
     }
 }
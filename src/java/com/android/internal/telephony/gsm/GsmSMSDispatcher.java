@@ -34,6 +34,7 @@ import com.android.internal.telephony.InboundSmsHandler;
 import com.android.internal.telephony.PhoneBase;
 import com.android.internal.telephony.SMSDispatcher;
 import com.android.internal.telephony.SmsConstants;
+import com.android.internal.telephony.SmsDeliveryPendingList;
 import com.android.internal.telephony.SmsHeader;
 import com.android.internal.telephony.SmsUsageMonitor;
 import com.android.internal.telephony.uicc.IccRecords;
@@ -122,15 +123,17 @@ public final class GsmSMSDispatcher extends SMSDispatcher {
         if (sms != null) {
             int tpStatus = sms.getStatus();
             int messageRef = sms.mMessageRef;
-            for (int i = 0, count = deliveryPendingList.size(); i < count; i++) {
-                SmsTracker tracker = deliveryPendingList.get(i);
-                if (tracker.mMessageRef == messageRef) {
-                    // Found it.  Remove from list and broadcast.
-                    if(tpStatus >= Sms.STATUS_FAILED || tpStatus < Sms.STATUS_PENDING ) {
-                       deliveryPendingList.remove(i);
-                       // Update the message status (COMPLETE or FAILED)
-                       tracker.updateSentMessageStatus(mContext, tpStatus);
-                    }
+            // Only expect to see one tracker matching this messageref
+            SmsDeliveryPendingList.Pending pending = deliveryPendingList.get(messageRef);
+            if (pending != null) {
+                // Found it.  Remove from list and broadcast.
+                if(tpStatus >= Sms.STATUS_FAILED || tpStatus < Sms.STATUS_PENDING ) {
+                   deliveryPendingList.remove(pending);
+                   // Update the message status (COMPLETE or FAILED)
+                   pending.updateSentMessageStatus(mContext, tpStatus);
+                }
+                SmsTracker tracker = pending.getTracker();
+                if (tracker != null) {
                     PendingIntent intent = tracker.mDeliveryIntent;
                     Intent fillIn = new Intent();
                     fillIn.putExtra("pdu", IccUtils.hexStringToBytes(pduString));
@@ -138,9 +141,6 @@ public final class GsmSMSDispatcher extends SMSDispatcher {
                     try {
                         intent.send(mContext, Activity.RESULT_OK, fillIn);
                     } catch (CanceledException ex) {}
-
-                    // Only expect to see one tracker matching this messageref
-                    break;
                 }
             }
         }
@@ -127,6 +127,21 @@ public class GsmServiceStateTracker extends ServiceStateTracker {
      */
     protected boolean mEmergencyOnly = false;
 
+    /** Start over rather than wait for a poll that has been in flight this long. */
+    private static final long POLL_IN_FLIGHT_MAX_MS = 10 * 1000;
+
+    // A poll was asked for while one was in flight; it is sent once that one completes
+    private boolean mPollFollowUpPending;
+    private long mPollStartTime;
+
+    // Poll statistics for dump()
+    private int mPollCount;
+    private int mPollMergedCount;
+    // Polls whose responses all arrived, the ones mPollLatencyTotalMs is the sum for
+    private int mPollCompletedCount;
+    private long mPollLatencyTotalMs;
+    private long mPollLatencyMaxMs;
+
     /**
      * Sometimes we get the NITZ time before we know what country we
      * are in. Keep the time zone information from the NITZ string so
@@ -941,12 +956,29 @@ public class GsmServiceStateTracker extends ServiceStateTracker {
         mPollingContext[0]--;
 
         if (mPollingContext[0] == 0) {
+            long latency = SystemClock.elapsedRealtime() - mPollStartTime;
+            mPollCompletedCount++;
+            mPollLatencyTotalMs += latency;
+            mPollLatencyMaxMs = Math.max(mPollLatencyMaxMs, latency);
+
             updateRoamingState();
             mNewSS.setEmergencyOnly(mEmergencyOnly);
             pollStateDone();
+
+            if (mPollFollowUpPending) {
+                // Pick up what changed while this poll was in flight
+                mPollFollowUpPending = false;
+                startPoll();
+            }
         }
     }
 
+    @Override
+    protected void cancelPollState() {
+        super.cancelPollState();
+        mPollFollowUpPending = false;
+    }
+
     /**
      * Query the carrier configuration to determine if there any network overrides
      * for roaming or not roaming for the current service state.
@@ -1061,14 +1093,30 @@ public class GsmServiceStateTracker extends ServiceStateTracker {
      * A complete "service state" from our perspective is
      * composed of a handful of separate requests to the radio.
      *
-     * We make all of these requests at once, but then abandon them
-     * and start over again if the radio notifies us that some
-     * event has changed
+     * We make all of these requests at once. If the radio notifies us
+     * that something changed while they are in flight, they are left to
+     * complete and one more poll is made after them, however many
+     * notifications arrive in the meantime. A poll that is taking too long
+     * is abandoned and started over.
      */
     @Override
     public void pollState() {
+        if (mCi.getRadioState().isOn() && mPollingContext != null && mPollingContext[0] > 0
+                && SystemClock.elapsedRealtime() - mPollStartTime < POLL_IN_FLIGHT_MAX_MS) {
+            mPollFollowUpPending = true;
+            mPollMergedCount++;
+            if (VDBG) log("pollState: poll in flight, merging");
+            return;
+        }
+        mPollFollowUpPending = false;
+        startPoll();
+    }
+
+    private void startPoll() {
         mPollingContext = new int[1];
         mPollingContext[0] = 0;
+        mPollStartTime = SystemClock.elapsedRealtime();
+        mPollCount++;
 
         switch (mCi.getRadioState()) {
             case RADIO_UNAVAILABLE:
@@ -1111,6 +1159,8 @@ public class GsmServiceStateTracker extends ServiceStateTracker {
                     obtainMessage(
                         EVENT_POLL_STATE_REGISTRATION, mPollingContext));
 
+                // Always asked for: the modem can change the selection mode by itself,
+                // eg back to automatic when the manually selected network is lost
                 mPollingContext[0]++;
                 mCi.getNetworkSelectionMode(
                     obtainMessage(
@@ -2224,6 +2274,11 @@ public class GsmServiceStateTracker extends ServiceStateTracker {
         pw.println(" mDataRoaming=" + mDataRoaming);
         pw.println(" mEmergencyOnly=" + mEmergencyOnly);
         pw.println(" mNeedFixZoneAfterNitz=" + mNeedFixZoneAfterNitz);
+        pw.println(" mPollCount=" + mPollCount + " mPollMergedCount=" + mPollMergedCount
+                + " mPollCompletedCount=" + mPollCompletedCount
+                + " mPollLatencyAvgMs="
+                + (mPollCompletedCount == 0 ? 0 : mPollLatencyTotalMs / mPollCompletedCount)
+                + " mPollLatencyMaxMs=" + mPollLatencyMaxMs);
         pw.flush();
         pw.println(" mZoneOffset=" + mZoneOffset);
         pw.println(" mZoneDst=" + mZoneDst);
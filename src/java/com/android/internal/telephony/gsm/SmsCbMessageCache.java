@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.gsm;
+
+import android.telephony.SmsCbLocation;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The 3GPP cell broadcasts that {@link GsmCellBroadcastHandler} has received recently, to
+ * drop the ones that the network repeats, and the pages of the messages that are still
+ * missing some.
+ *
+ * A message is identified by its serial number, which includes the geographical scope and
+ * update number, its message identifier, whether it is an ETWS primary notification and its
+ * location within that scope. Both maps are
+ * kept in insertion order, so the entries that expire first are at their head, and are
+ * bounded in size.
+ *
+ * {@hide}
+ */
+final class SmsCbMessageCache {
+    // A network repeating a broadcast keeps its serial number, an update gets a new one
+    static final long DEFAULT_DUPLICATE_EXPIRY_MS = 24 * 60 * 60 * 1000L;
+    static final int MAX_RECEIVED_MESSAGES = 256;
+    // The pages of a message are broadcast together, give up on it after this
+    static final long DEFAULT_PAGE_TIMEOUT_MS = 5 * 60 * 1000L;
+    static final int MAX_INCOMPLETE_MESSAGES = 16;
+
+    private final long mDuplicateExpiryMs;
+    private final long mPageTimeoutMs;
+
+    /** Messages received, to the time they were received at. */
+    private final LinkedHashMap<SmsCbConcatInfo, Long> mReceived =
+            new LinkedHashMap<SmsCbConcatInfo, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SmsCbConcatInfo, Long> eldest) {
+            return size() > MAX_RECEIVED_MESSAGES;
+        }
+    };
+
+    /** This map holds incomplete concatenated messages waiting for assembly. */
+    private final LinkedHashMap<SmsCbConcatInfo, PendingPages> mSmsCbPageMap =
+            new LinkedHashMap<SmsCbConcatInfo, PendingPages>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SmsCbConcatInfo, PendingPages> eldest) {
+            if (size() > MAX_INCOMPLETE_MESSAGES) {
+                mDroppedIncomplete++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private int mDuplicates;
+    private int mDroppedIncomplete;
+
+    SmsCbMessageCache(long duplicateExpiryMs, long pageTimeoutMs) {
+        mDuplicateExpiryMs = duplicateExpiryMs;
+        mPageTimeoutMs = pageTimeoutMs;
+    }
+
+    /**
+     * Returns true, and counts it, if the message with this page was received less than
+     * the duplicate expiry time before <code>now</code>.
+     */
+    boolean isDuplicate(SmsCbHeader header, SmsCbLocation location, long now) {
+        expire(now);
+        if (mReceived.containsKey(new SmsCbConcatInfo(header, location))) {
+            mDuplicates++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remembers that the message was received at <code>now</code>.
+     */
+    void addReceived(SmsCbHeader header, SmsCbLocation location, long now) {
+        mReceived.put(new SmsCbConcatInfo(header, location), now);
+    }
+
+    /**
+     * Adds a page of a multi-page message.
+     *
+     * @return all the pages of the message if this page completes it, otherwise null
+     */
+    byte[][] addPage(SmsCbHeader header, SmsCbLocation location, byte[] pdu, long now) {
+        expire(now);
+        SmsCbConcatInfo concatInfo = new SmsCbConcatInfo(header, location);
+
+        // Try to find other pages of the same message
+        PendingPages pending = mSmsCbPageMap.get(concatInfo);
+        if (pending == null || pending.mPdus.length != header.getNumberOfPages()) {
+            // This is the first page of this message, make room for all
+            // pages and keep until complete
+            pending = new PendingPages(header.getNumberOfPages(), now);
+            // Removed first so that a replaced entry moves to the tail, keeping the map in
+            // order of first page time for expire()
+            mSmsCbPageMap.remove(concatInfo);
+            mSmsCbPageMap.put(concatInfo, pending);
+        }
+
+        // Page parameter is one-based
+        pending.mPdus[header.getPageIndex() - 1] = pdu;
+
+        for (byte[] page : pending.mPdus) {
+            if (page == null) {
+                // Still missing pages, exit
+                return null;
+            }
+        }
+
+        // Message complete, remove and dispatch
+        mSmsCbPageMap.remove(concatInfo);
+        return pending.mPdus;
+    }
+
+    /**
+     * Removes messages that are out of scope of the current location.
+     */
+    void removeOutOfLocation(String plmn, int lac, int cid) {
+        Iterator<SmsCbConcatInfo> iter = mSmsCbPageMap.keySet().iterator();
+        while (iter.hasNext()) {
+            if (!iter.next().matchesLocation(plmn, lac, cid)) {
+                iter.remove();
+            }
+        }
+    }
+
+    // Removes the received messages and incomplete messages that expired at now
+    private void expire(long now) {
+        Iterator<Long> received = mReceived.values().iterator();
+        while (received.hasNext() && now - received.next() >= mDuplicateExpiryMs) {
+            received.remove();
+        }
+        Iterator<PendingPages> pending = mSmsCbPageMap.values().iterator();
+        while (pending.hasNext() && now - pending.next().mFirstPageTime >= mPageTimeoutMs) {
+            pending.remove();
+            mDroppedIncomplete++;
+        }
+    }
+
+    int getDuplicateCount() {
+        return mDuplicates;
+    }
+
+    int getDroppedIncompleteCount() {
+        return mDroppedIncomplete;
+    }
+
+    int getIncompleteCount() {
+        return mSmsCbPageMap.size();
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println(" mDuplicateExpiryMs=" + mDuplicateExpiryMs);
+        pw.println(" mPageTimeoutMs=" + mPageTimeoutMs);
+        pw.println(" received messages=" + mReceived.size());
+        pw.println(" duplicates suppressed=" + mDuplicates);
+        pw.println(" incomplete messages=" + mSmsCbPageMap.size());
+        pw.println(" incomplete messages dropped=" + mDroppedIncomplete);
+    }
+
+    /**
+     * The pages of a message received so far.
+     */
+    private static final class PendingPages {
+        final byte[][] mPdus;
+        final long mFirstPageTime;
+
+        PendingPages(int pageCount, long firstPageTime) {
+            mPdus = new byte[pageCount][];
+            mFirstPageTime = firstPageTime;
+        }
+    }
+
+    /**
+     * Holds all info about a message page needed to assemble a complete concatenated message.
+     */
+    private static final class SmsCbConcatInfo {
+
+        private final SmsCbHeader mHeader;
+        private final SmsCbLocation mLocation;
+
+        SmsCbConcatInfo(SmsCbHeader header, SmsCbLocation location) {
+            mHeader = header;
+            mLocation = location;
+        }
+
+        @Override
+        public int hashCode() {
+            return (((((mHeader.getSerialNumber() * 31) + mHeader.getServiceCategory()) * 31)
+                    + mLocation.hashCode()) * 31)
+                    + (mHeader.isEtwsPrimaryNotification() ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof SmsCbConcatInfo) {
+                SmsCbConcatInfo other = (SmsCbConcatInfo)obj;
+
+                // Two pages match if they have the same serial number (which includes the
+                // geographical scope and update number) and message identifier, and both
+                // pages belong to the same location (PLMN, plus LAC and CID if these are
+                // part of the geographical scope). An ETWS primary notification shares both
+                // numbers with the secondary warning message that follows it, so the format
+                // tells them apart.
+                return mHeader.getSerialNumber() == other.mHeader.getSerialNumber()
+                        && mHeader.getServiceCategory() == other.mHeader.getServiceCategory()
+                        && mHeader.isEtwsPrimaryNotification()
+                                == other.mHeader.isEtwsPrimaryNotification()
+                        && mLocation.equals(other.mLocation);
+            }
+
+            return false;
+        }
+
+        /**
+         * Compare the location code for this message to the current location code. The match is
+         * relative to the geographical scope of the message, which determines whether the LAC
+         * and Cell ID are saved in mLocation or set to -1 to match all values.
+         *
+         * @param plmn the current PLMN
+         * @param lac the current Location Area (GSM) or Service Area (UMTS)
+         * @param cid the current Cell ID
+         * @return true if this message is valid for the current location; false otherwise
+         */
+        public boolean matchesLocation(String plmn, int lac, int cid) {
+            return mLocation.isInLocationArea(plmn, lac, cid);
+        }
+    }
+}
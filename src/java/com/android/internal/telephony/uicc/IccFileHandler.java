@@ -20,6 +20,8 @@ import android.os.*;
 import com.android.internal.telephony.CommandsInterface;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 
 /**
  * {@hide}
@@ -92,12 +94,21 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
     /** Finished retrieving size of record for EFimg now. */
     static protected final int EVENT_GET_RECORD_SIZE_IMG_DONE = 11;
 
+    // READ RECORD requests kept in flight when loading all records of an EF
+    static final int DEFAULT_READ_RECORD_WINDOW = 4;
+
      // member variables
     protected final CommandsInterface mCi;
     protected final UiccCardApplication mParentApp;
     protected final String mAid;
     protected boolean mUseLocalPb = false;
 
+    private volatile int mReadRecordWindow = DEFAULT_READ_RECORD_WINDOW;
+
+    // Record size and count of linear fixed EFs, keyed by path and EF id, from their
+    // GET RESPONSE. Cleared when the card is refreshed.
+    private final HashMap<String, int[]> mRecordSizeCache = new HashMap<String, int[]>();
+
     static class LoadLinearFixedContext {
 
         int mEfid;
@@ -114,6 +125,13 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
 
         ArrayList<byte[]> results;
 
+        // Variables used to load all records
+        int mNextRecordNum;
+        int mCountInFlight;
+        int mCountLoaded;
+        boolean mFailed;
+        long mStartTime;
+
         LoadLinearFixedContext(int efid, int recordNum, Message onLoaded) {
             mEfid = efid;
             mRecordNum = recordNum;
@@ -185,6 +203,7 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
     }
 
     public void dispose() {
+        clearRecordSizeCache();
     }
 
     //***** Public Methods
@@ -202,12 +221,7 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
      */
     public void loadEFLinearFixed(int fileid, String path, int recordNum, Message onLoaded) {
         String efPath = (path == null) ? getEFPath(fileid) : path;
-        Message response
-                = obtainMessage(EVENT_GET_RECORD_SIZE_DONE,
-                        new LoadLinearFixedContext(fileid, recordNum, efPath, onLoaded));
-
-        mCi.iccIOForApp(COMMAND_GET_RESPONSE, fileid, efPath,
-                        0, 0, GET_RESPONSE_EF_SIZE_BYTES, null, null, mAid, response);
+        loadRecords(new LoadLinearFixedContext(fileid, recordNum, efPath, onLoaded));
     }
 
     /**
@@ -288,11 +302,9 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
      */
     public void loadEFLinearFixedAll(int fileid, String path, Message onLoaded) {
         String efPath = (path == null) ? getEFPath(fileid) : path;
-        Message response = obtainMessage(EVENT_GET_RECORD_SIZE_DONE,
-                        new LoadLinearFixedContext(fileid, efPath, onLoaded));
-
-        mCi.iccIOForApp(COMMAND_GET_RESPONSE, fileid, efPath,
-                        0, 0, GET_RESPONSE_EF_SIZE_BYTES, null, null, mAid, response);
+        LoadLinearFixedContext lc = new LoadLinearFixedContext(fileid, efPath, onLoaded);
+        lc.mStartTime = SystemClock.elapsedRealtime();
+        loadRecords(lc);
     }
 
     /**
@@ -337,11 +349,25 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
         if (path == null){
             path = getEFPath(fileid);
         }
-        Message response = obtainMessage(EVENT_GET_RECORD_SIZE_DONE,
-                new LoadLinearFixedContext(fileid, recordNums, path, onLoaded));
+        loadRecords(new LoadLinearFixedContext(fileid, recordNums, path, onLoaded));
+    }
 
-        mCi.iccIOForApp(COMMAND_GET_RESPONSE, fileid, path, 0, 0,
-                GET_RESPONSE_EF_SIZE_BYTES, null, null, mAid, response);
+    /**
+     * Sets how many READ RECORD requests are kept in flight when all records of a
+     * linear fixed EF are loaded. 1 reads one record after the other.
+     */
+    public void setReadRecordWindow(int window) {
+        mReadRecordWindow = Math.max(1, window);
+    }
+
+    /**
+     * Forgets the record sizes of linear fixed EFs, to be called when the files of the
+     * card may have changed.
+     */
+    public void clearRecordSizeCache() {
+        synchronized (mRecordSizeCache) {
+            mRecordSizeCache.clear();
+        }
     }
 
     /**
@@ -481,6 +507,86 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
 
     //***** Private Methods
 
+    private static String getRecordSizeKey(LoadLinearFixedContext lc) {
+        return lc.mPath + "/" + Integer.toHexString(lc.mEfid);
+    }
+
+    /**
+     * Loads the records of <code>lc</code>, starting with the GET RESPONSE of the EF
+     * unless its record size is already known.
+     */
+    private void loadRecords(final LoadLinearFixedContext lc) {
+        int[] recordSize;
+        synchronized (mRecordSizeCache) {
+            recordSize = mRecordSizeCache.get(getRecordSizeKey(lc));
+        }
+        if (recordSize != null) {
+            lc.mRecordSize = recordSize[0];
+            lc.mCountRecords = recordSize[1];
+            // The responses are handled on the handler thread, start from there too
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    startReadRecords(lc);
+                }
+            });
+            return;
+        }
+        mCi.iccIOForApp(COMMAND_GET_RESPONSE, lc.mEfid, lc.mPath,
+                        0, 0, GET_RESPONSE_EF_SIZE_BYTES, null, null, mAid,
+                        obtainMessage(EVENT_GET_RECORD_SIZE_DONE, lc));
+    }
+
+    /**
+     * Starts reading the records of <code>lc</code> once their size is known.
+     */
+    private void startReadRecords(LoadLinearFixedContext lc) {
+        if (lc.mLoadAll) {
+            lc.results = new ArrayList<byte[]>(
+                    Collections.nCopies(lc.mCountRecords, (byte[]) null));
+            lc.mNextRecordNum = 1;
+            if (lc.mCountRecords == 0) {
+                sendResult(lc.mOnLoaded, lc.results, null);
+            } else {
+                readNextRecords(lc);
+            }
+            return;
+        } else if (lc.mLoadPart) {
+            lc.initLCResults(lc.mCountRecords);
+        }
+
+        String path = lc.mPath;
+        if (path == null) {
+            path = getEFPath(lc.mEfid);
+        }
+        mCi.iccIOForApp(COMMAND_READ_RECORD, lc.mEfid, path,
+                lc.mRecordNum,
+                READ_RECORD_MODE_ABSOLUTE,
+                lc.mRecordSize, null, null, mAid,
+                obtainMessage(EVENT_READ_RECORD_DONE, lc));
+    }
+
+    /**
+     * Requests the next records of <code>lc</code>, up to the read record window.
+     * The record number of each request is passed in arg1 of its response.
+     */
+    private void readNextRecords(LoadLinearFixedContext lc) {
+        String path = lc.mPath;
+        if (path == null) {
+            path = getEFPath(lc.mEfid);
+        }
+        int window = mReadRecordWindow;
+        while (lc.mCountInFlight < window && lc.mNextRecordNum <= lc.mCountRecords) {
+            int recordNum = lc.mNextRecordNum++;
+            lc.mCountInFlight++;
+            mCi.iccIOForApp(COMMAND_READ_RECORD, lc.mEfid, path,
+                    recordNum,
+                    READ_RECORD_MODE_ABSOLUTE,
+                    lc.mRecordSize, null, null, mAid,
+                    obtainMessage(EVENT_READ_RECORD_DONE, recordNum, 0, lc));
+        }
+    }
+
     private void sendResult(Message response, Object result, Throwable ex) {
         if (response == null) {
             return;
@@ -581,21 +687,15 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
 
                 lc.mCountRecords = size / lc.mRecordSize;
 
-                 if (lc.mLoadAll) {
-                     lc.results = new ArrayList<byte[]>(lc.mCountRecords);
-                 } else if (lc.mLoadPart) {
-                     lc.initLCResults(lc.mCountRecords);
-                 }
-
-                 if (path == null) {
-                     path = getEFPath(lc.mEfid);
-                 }
-                 mCi.iccIOForApp(COMMAND_READ_RECORD, lc.mEfid, path,
-                         lc.mRecordNum,
-                         READ_RECORD_MODE_ABSOLUTE,
-                         lc.mRecordSize, null, null, mAid,
-                         obtainMessage(EVENT_READ_RECORD_DONE, lc));
-                 break;
+                if (msg.what == EVENT_GET_RECORD_SIZE_DONE) {
+                    synchronized (mRecordSizeCache) {
+                        mRecordSizeCache.put(getRecordSizeKey(lc),
+                                new int[] {lc.mRecordSize, lc.mCountRecords});
+                    }
+                }
+
+                startReadRecords(lc);
+                break;
             case EVENT_GET_BINARY_SIZE_DONE:
                 ar = (AsyncResult)msg.obj;
                 response = (Message) ar.userObj;
@@ -635,27 +735,31 @@ public abstract class IccFileHandler extends Handler implements IccConstants {
                 response = lc.mOnLoaded;
                 path = lc.mPath;
 
+                if (lc.mLoadAll) {
+                    lc.mCountInFlight--;
+                    if (lc.mFailed) {
+                        // The load was already failed by an earlier record
+                        response = null;
+                        break;
+                    }
+                }
+
                 if (processException(response, (AsyncResult) msg.obj)) {
+                    lc.mFailed = true;
                     break;
                 }
 
                 if (lc.mLoadAll) {
-                    lc.results.add(result.payload);
-
-                    lc.mRecordNum++;
+                    lc.results.set(msg.arg1 - 1, result.payload);
+                    lc.mCountLoaded++;
 
-                    if (lc.mRecordNum > lc.mCountRecords) {
+                    if (lc.mCountLoaded == lc.mCountRecords) {
+                        logd("Loaded " + lc.mCountRecords + " records of EF 0x"
+                                + Integer.toHexString(lc.mEfid) + " in "
+                                + (SystemClock.elapsedRealtime() - lc.mStartTime) + "ms");
                         sendResult(response, lc.results, null);
                     } else {
-                        if (path == null) {
-                            path = getEFPath(lc.mEfid);
-                        }
-
-                        mCi.iccIOForApp(COMMAND_READ_RECORD, lc.mEfid, path,
-                                    lc.mRecordNum,
-                                    READ_RECORD_MODE_ABSOLUTE,
-                                    lc.mRecordSize, null, null, mAid,
-                                    obtainMessage(EVENT_READ_RECORD_DONE, lc));
+                        readNextRecords(lc);
                     }
                 } else if (lc.mLoadPart) {
                     lc.results.set(lc.mRecordNum - 1, result.payload);
@@ -225,7 +225,7 @@ public abstract class IccRecords extends Handler implements IccConstants {
         Registrant r = new Registrant(h, what, obj);
         mRecordsLoadedRegistrants.add(r);
 
-        if (mRecordsToLoad == 0 && mRecordsRequested == true) {
+        if (getRecordsLoaded()) {
             r.notifyRegistrant(new AsyncResult(null, null, null));
         }
     }
@@ -626,11 +626,17 @@ public abstract class IccRecords extends Handler implements IccConstants {
         switch (refreshResponse.refreshResult) {
             case IccRefreshResponse.REFRESH_RESULT_FILE_UPDATE:
                 if (DBG) log("handleRefresh with SIM_FILE_UPDATED");
+                if (mFh != null) {
+                    mFh.clearRecordSizeCache();
+                }
                 handleFileUpdate(refreshResponse.efId);
                 break;
             case IccRefreshResponse.REFRESH_RESULT_INIT:
                 if (DBG) log("handleRefresh with SIM_REFRESH_INIT");
                 // need to reload all files (that we care about)
+                if (mFh != null) {
+                    mFh.clearRecordSizeCache();
+                }
                 if (mAdnCache != null) {
                     mAdnCache.reset();
                     //We will re-fetch the records when the app
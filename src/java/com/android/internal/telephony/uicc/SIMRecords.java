@@ -19,11 +19,13 @@ package com.android.internal.telephony.uicc;
 import android.content.Context;
 import android.os.AsyncResult;
 import android.os.Message;
+import android.os.SystemClock;
 import android.telephony.PhoneNumberUtils;
 import android.telephony.SmsMessage;
 import android.text.TextUtils;
 import android.telephony.Rlog;
 import android.content.res.Resources;
+import android.util.AtomicFile;
 
 import com.android.internal.telephony.CommandsInterface;
 import com.android.internal.telephony.MccTable;
@@ -34,6 +36,7 @@ import com.android.internal.telephony.uicc.IccCardApplicationStatus.AppState;
 import com.android.internal.telephony.uicc.IccCardApplicationStatus.AppType;
 import com.android.internal.telephony.uicc.UICCConfig;
 
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
@@ -86,6 +89,22 @@ public class SIMRecords extends IccRecords {
 
     UsimServiceTable mUsimServiceTable;
 
+    // Records saved when they were last loaded, null if there is nowhere to save them
+    private AtomicFile mSnapshotFile;
+    // Records as published from the snapshot, null once all records are loaded
+    private SimRecordsSnapshot mPublishedSnapshot;
+    // Records that still hold the value they got from the snapshot
+    private int mSnapshotFields;
+    // Records read from the SIM since the last fetchSimRecords()
+    private int mLoadedFields;
+    // Whether the snapshot may still be applied, only once after resetRecords()
+    private boolean mSnapshotAllowed;
+
+    // Timing of the last fetchSimRecords(), in ms since it started
+    private long mFetchStartTime;
+    private long mSnapshotPublishTime = -1;
+    private long mAllRecordsLoadedTime = -1;
+
     @Override
     public String toString() {
         return "SimRecords: " + super.toString()
@@ -198,6 +217,12 @@ public class SIMRecords extends IccRecords {
 
         mCi.setOnSmsOnSim(this, EVENT_SMS_ON_SIM, null);
 
+        File dir = c.getFilesDir();
+        if (dir != null) {
+            mSnapshotFile = new AtomicFile(
+                    new File(dir, "sim_records_" + mParentApp.getPhoneId()));
+        }
+
         // Start off by setting empty state
         resetRecords();
         mParentApp.registerForReady(this, EVENT_APP_READY, null);
@@ -237,6 +262,11 @@ public class SIMRecords extends IccRecords {
         mGid1 = null;
         mGid2 = null;
 
+        mPublishedSnapshot = null;
+        mSnapshotFields = 0;
+        mLoadedFields = 0;
+        mSnapshotAllowed = true;
+
         mAdnCache.reset();
 
         log("SIMRecords: onRadioOffOrNotAvailable set 'gsm.sim.operator.numeric' to operator=null");
@@ -256,6 +286,15 @@ public class SIMRecords extends IccRecords {
 
     //***** Public Methods
 
+    /**
+     * Returns true once all records are loaded, or while records published from the
+     * snapshot are being checked against the SIM.
+     */
+    @Override
+    public boolean getRecordsLoaded() {
+        return super.getRecordsLoaded() || mPublishedSnapshot != null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -638,6 +677,7 @@ public class SIMRecords extends IccRecords {
             /* IO events */
             case EVENT_GET_IMSI_DONE:
                 isRecordLoadResponse = true;
+                onRecordRead(SimRecordsSnapshot.IMSI);
 
                 ar = (AsyncResult)msg.obj;
 
@@ -741,6 +781,7 @@ public class SIMRecords extends IccRecords {
                 break;
             case EVENT_GET_CPHS_MAILBOX_DONE:
             case EVENT_GET_MBDN_DONE:
+                onRecordRead(SimRecordsSnapshot.VOICE_MAIL);
                 //Resetting the voice mail number and voice mail tag to null
                 //as these should be updated from the data read from EF_MBDN.
                 //If they are not reset, incase of invalid data/exception these
@@ -795,6 +836,7 @@ public class SIMRecords extends IccRecords {
 
             case EVENT_GET_MSISDN_DONE:
                 isRecordLoadResponse = true;
+                onRecordRead(SimRecordsSnapshot.MSISDN);
 
                 ar = (AsyncResult)msg.obj;
 
@@ -880,6 +922,7 @@ public class SIMRecords extends IccRecords {
                 mIccId = IccUtils.bcdToString(data, 0, data.length);
 
                 log("iccid: " + mIccId);
+                publishSnapshot();
 
             break;
 
@@ -887,6 +930,7 @@ public class SIMRecords extends IccRecords {
             case EVENT_GET_AD_DONE:
                 try {
                     isRecordLoadResponse = true;
+                    onRecordRead(SimRecordsSnapshot.MNC_LENGTH);
 
                     ar = (AsyncResult)msg.obj;
                     data = (byte[])ar.result;
@@ -963,6 +1007,7 @@ public class SIMRecords extends IccRecords {
 
             case EVENT_GET_SPN_DONE:
                 isRecordLoadResponse = true;
+                onRecordRead(SimRecordsSnapshot.SPN);
                 ar = (AsyncResult) msg.obj;
                 getSpnFsm(false, ar);
             break;
@@ -984,6 +1029,7 @@ public class SIMRecords extends IccRecords {
 
             case EVENT_GET_SPDI_DONE:
                 isRecordLoadResponse = true;
+                onRecordRead(SimRecordsSnapshot.SPDI);
 
                 ar = (AsyncResult)msg.obj;
                 data = (byte[])ar.result;
@@ -1196,6 +1242,7 @@ public class SIMRecords extends IccRecords {
 
             case EVENT_GET_GID1_DONE:
                 isRecordLoadResponse = true;
+                onRecordRead(SimRecordsSnapshot.GID1);
 
                 ar = (AsyncResult)msg.obj;
                 data =(byte[])ar.result;
@@ -1212,6 +1259,7 @@ public class SIMRecords extends IccRecords {
 
             case EVENT_GET_GID2_DONE:
                 isRecordLoadResponse = true;
+                onRecordRead(SimRecordsSnapshot.GID2);
 
                 ar = (AsyncResult)msg.obj;
                 data =(byte[])ar.result;
@@ -1423,8 +1471,34 @@ public class SIMRecords extends IccRecords {
             return ;
         }
 
-        // Some fields require more than one SIM record to set
+        publishRecords();
+
+        SimRecordsSnapshot snapshot = makeSnapshot();
+        mAllRecordsLoadedTime = SystemClock.elapsedRealtime() - mFetchStartTime;
+        mSnapshotAllowed = false;
+        if (mPublishedSnapshot == null) {
+            log("onAllRecordsLoaded in " + mAllRecordsLoadedTime + "ms");
+            mRecordsLoadedRegistrants.notifyRegistrants(
+                new AsyncResult(null, null, null));
+        } else {
+            int changed = mPublishedSnapshot.diff(snapshot);
+            log("onAllRecordsLoaded in " + mAllRecordsLoadedTime + "ms, published after "
+                    + mSnapshotPublishTime + "ms, changed=0x" + Integer.toHexString(changed));
+            mPublishedSnapshot = null;
+            mSnapshotFields = 0;
+            if (changed != 0) {
+                mRecordsLoadedRegistrants.notifyRegistrants(
+                    new AsyncResult(null, null, null));
+            }
+        }
+        saveSnapshot(snapshot);
+    }
 
+    /**
+     * Sets the fields that require more than one SIM record, from the records as they
+     * are now.
+     */
+    private void publishRecords() {
         String operator = getOperatorNumeric();
         if (!TextUtils.isEmpty(operator)) {
             log("onAllRecordsLoaded set 'gsm.sim.operator.numeric' to operator='" +
@@ -1452,11 +1526,146 @@ public class SIMRecords extends IccRecords {
 
         setVoiceMailByCountry(operator);
         setSpnFromConfig(operator);
+    }
+
+    private SimRecordsSnapshot makeSnapshot() {
+        return new SimRecordsSnapshot(mIccId, mImsi, mMncLength, mMsisdn, mMsisdnTag,
+                getServiceProviderName(), mSpnDisplayCondition, mGid1, mGid2, mSpdiNetworks,
+                mVoiceMailNum, mVoiceMailTag);
+    }
+
+    private void saveSnapshot(SimRecordsSnapshot snapshot) {
+        if (mSnapshotFile == null || snapshot.mIccId == null || snapshot.mImsi == null) {
+            return;
+        }
+        if (!snapshot.equals(SimRecordsSnapshot.read(mSnapshotFile))) {
+            log("saving " + snapshot);
+            snapshot.write(mSnapshotFile);
+        }
+    }
 
+    /**
+     * Publishes the records saved the last time this SIM was loaded, as soon as its ICCID
+     * is known. Records already read from the SIM are kept. The published records are
+     * replaced by what the SIM holds as they are read, and registrants for records
+     * loaded are only notified again if they turn out to be different.
+     */
+    private void publishSnapshot() {
+        if (!mSnapshotAllowed || mSnapshotFile == null || mIccId == null) {
+            return;
+        }
+        mSnapshotAllowed = false;
+        SimRecordsSnapshot snapshot = SimRecordsSnapshot.read(mSnapshotFile);
+        if (snapshot == null || !mIccId.equals(snapshot.mIccId)) {
+            log("publishSnapshot: no snapshot of this SIM");
+            return;
+        }
+
+        int fields = SimRecordsSnapshot.ALL & ~mLoadedFields;
+        if ((fields & SimRecordsSnapshot.IMSI) != 0 && snapshot.mImsi != null) {
+            mImsi = snapshot.mImsi;
+            mParentApp.getUICCConfig().setImsi(mImsi);
+            mSnapshotFields |= SimRecordsSnapshot.IMSI;
+        }
+        if ((fields & SimRecordsSnapshot.MNC_LENGTH) != 0
+                && snapshot.mMncLength != UNINITIALIZED) {
+            mMncLength = snapshot.mMncLength;
+            if (mMncLength != UNKNOWN) {
+                mParentApp.getUICCConfig().setMncLength(mMncLength);
+            }
+            mSnapshotFields |= SimRecordsSnapshot.MNC_LENGTH;
+        }
+        if ((fields & SimRecordsSnapshot.MSISDN) != 0) {
+            mMsisdn = snapshot.mMsisdn;
+            mMsisdnTag = snapshot.mMsisdnTag;
+            mSnapshotFields |= SimRecordsSnapshot.MSISDN;
+        }
+        if ((fields & SimRecordsSnapshot.SPN) != 0) {
+            setServiceProviderName(snapshot.mSpn);
+            mSpnDisplayCondition = snapshot.mSpnDisplayCondition;
+            if (snapshot.mSpn != null) {
+                mTelephonyManager.setSimOperatorNameForPhone(
+                        mParentApp.getPhoneId(), snapshot.mSpn);
+            }
+            mSnapshotFields |= SimRecordsSnapshot.SPN;
+        }
+        if ((fields & SimRecordsSnapshot.GID1) != 0) {
+            mGid1 = snapshot.mGid1;
+            mSnapshotFields |= SimRecordsSnapshot.GID1;
+        }
+        if ((fields & SimRecordsSnapshot.GID2) != 0) {
+            mGid2 = snapshot.mGid2;
+            mSnapshotFields |= SimRecordsSnapshot.GID2;
+        }
+        if ((fields & SimRecordsSnapshot.SPDI) != 0) {
+            mSpdiNetworks = snapshot.mSpdiNetworks;
+            mSnapshotFields |= SimRecordsSnapshot.SPDI;
+        }
+        if ((fields & SimRecordsSnapshot.VOICE_MAIL) != 0) {
+            mVoiceMailNum = snapshot.mVoiceMailNum;
+            mVoiceMailTag = snapshot.mVoiceMailTag;
+            mSnapshotFields |= SimRecordsSnapshot.VOICE_MAIL;
+        }
+
+        if (mImsi == null || mParentApp.getState() != AppState.APPSTATE_READY) {
+            log("publishSnapshot: not publishing, imsi=" + (mImsi != null)
+                    + " state=" + mParentApp.getState());
+            return;
+        }
+        publishRecords();
+        mPublishedSnapshot = makeSnapshot();
+        mSnapshotPublishTime = SystemClock.elapsedRealtime() - mFetchStartTime;
+        log("publishSnapshot: published records after " + mSnapshotPublishTime + "ms, fields=0x"
+                + Integer.toHexString(mSnapshotFields));
+
+        if ((mSnapshotFields & SimRecordsSnapshot.IMSI) != 0) {
+            mImsiReadyRegistrants.notifyRegistrants();
+        }
         mRecordsLoadedRegistrants.notifyRegistrants(
             new AsyncResult(null, null, null));
     }
 
+    /**
+     * Called as a record of the snapshot is read from the SIM, before it is set. Drops the
+     * value the record got from the snapshot, so that only what the SIM holds is kept.
+     */
+    private void onRecordRead(int field) {
+        mLoadedFields |= field;
+        if ((mSnapshotFields & field) == 0) {
+            return;
+        }
+        mSnapshotFields &= ~field;
+        switch (field) {
+            case SimRecordsSnapshot.IMSI:
+                mImsi = null;
+                break;
+            case SimRecordsSnapshot.MNC_LENGTH:
+                mMncLength = UNINITIALIZED;
+                break;
+            case SimRecordsSnapshot.MSISDN:
+                mMsisdn = null;
+                mMsisdnTag = null;
+                break;
+            case SimRecordsSnapshot.SPN:
+                setServiceProviderName(null);
+                mSpnDisplayCondition = -1;
+                break;
+            case SimRecordsSnapshot.GID1:
+                mGid1 = null;
+                break;
+            case SimRecordsSnapshot.GID2:
+                mGid2 = null;
+                break;
+            case SimRecordsSnapshot.SPDI:
+                mSpdiNetworks = null;
+                break;
+            case SimRecordsSnapshot.VOICE_MAIL:
+                mVoiceMailNum = null;
+                mVoiceMailTag = null;
+                break;
+        }
+    }
+
     //***** Private methods
 
     private void setVoiceMailByCountry (String spn) {
@@ -1500,6 +1709,10 @@ public class SIMRecords extends IccRecords {
 
     protected void fetchSimRecords() {
         mRecordsRequested = true;
+        mLoadedFields = 0;
+        mFetchStartTime = SystemClock.elapsedRealtime();
+        mSnapshotPublishTime = -1;
+        mAllRecordsLoadedTime = -1;
 
         if (DBG) log("fetchSimRecords " + mRecordsToLoad);
 
@@ -1922,6 +2135,10 @@ public class SIMRecords extends IccRecords {
         pw.println(" mUsimServiceTable=" + mUsimServiceTable);
         pw.println(" mGid1=" + mGid1);
         pw.println(" mGid2=" + mGid2);
+        pw.println(" mPublishedSnapshot=" + mPublishedSnapshot);
+        pw.println(" mSnapshotFields=0x" + Integer.toHexString(mSnapshotFields));
+        pw.println(" mSnapshotPublishTime=" + mSnapshotPublishTime);
+        pw.println(" mAllRecordsLoadedTime=" + mAllRecordsLoadedTime);
         pw.flush();
     }
 }
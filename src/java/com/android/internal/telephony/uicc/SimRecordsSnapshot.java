@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.uicc;
+
+import android.telephony.Rlog;
+import android.text.TextUtils;
+import android.util.AtomicFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * The records of a SIM that {@link SIMRecords} can publish before it has read them,
+ * saved when they were last loaded.
+ *
+ * A snapshot belongs to the SIM with its ICCID. It is stored with a CRC32 digest of its
+ * content and a snapshot whose digest doesn't match is discarded.
+ *
+ * {@hide}
+ */
+final class SimRecordsSnapshot {
+    private static final String LOG_TAG = "SimRecordsSnapshot";
+
+    private static final int VERSION = 1;
+    // Far more than the records can take up
+    private static final int MAX_LENGTH = 4096;
+
+    // Records of the snapshot, as bits of a field mask
+    static final int IMSI = 1 << 0;
+    static final int MNC_LENGTH = 1 << 1;
+    static final int MSISDN = 1 << 2;
+    static final int SPN = 1 << 3;
+    static final int GID1 = 1 << 4;
+    static final int GID2 = 1 << 5;
+    static final int SPDI = 1 << 6;
+    static final int VOICE_MAIL = 1 << 7;
+    static final int ALL = IMSI | MNC_LENGTH | MSISDN | SPN | GID1 | GID2 | SPDI | VOICE_MAIL;
+
+    final String mIccId;
+    final String mImsi;
+    final int mMncLength;
+    final String mMsisdn;
+    final String mMsisdnTag;
+    final String mSpn;
+    final int mSpnDisplayCondition;
+    final String mGid1;
+    final String mGid2;
+    final ArrayList<String> mSpdiNetworks;
+    final String mVoiceMailNum;
+    final String mVoiceMailTag;
+
+    SimRecordsSnapshot(String iccId, String imsi, int mncLength, String msisdn,
+            String msisdnTag, String spn, int spnDisplayCondition, String gid1, String gid2,
+            ArrayList<String> spdiNetworks, String voiceMailNum, String voiceMailTag) {
+        mIccId = iccId;
+        mImsi = imsi;
+        mMncLength = mncLength;
+        mMsisdn = msisdn;
+        mMsisdnTag = msisdnTag;
+        mSpn = spn;
+        mSpnDisplayCondition = spnDisplayCondition;
+        mGid1 = gid1;
+        mGid2 = gid2;
+        mSpdiNetworks = spdiNetworks == null ? null : new ArrayList<String>(spdiNetworks);
+        mVoiceMailNum = voiceMailNum;
+        mVoiceMailTag = voiceMailTag;
+    }
+
+    /**
+     * Returns the records that differ between this snapshot and <code>other</code>.
+     */
+    int diff(SimRecordsSnapshot other) {
+        int fields = 0;
+        if (!TextUtils.equals(mImsi, other.mImsi)) fields |= IMSI;
+        if (mMncLength != other.mMncLength) fields |= MNC_LENGTH;
+        if (!TextUtils.equals(mMsisdn, other.mMsisdn)
+                || !TextUtils.equals(mMsisdnTag, other.mMsisdnTag)) fields |= MSISDN;
+        if (!TextUtils.equals(mSpn, other.mSpn)
+                || mSpnDisplayCondition != other.mSpnDisplayCondition) fields |= SPN;
+        if (!TextUtils.equals(mGid1, other.mGid1)) fields |= GID1;
+        if (!TextUtils.equals(mGid2, other.mGid2)) fields |= GID2;
+        if (mSpdiNetworks == null ? other.mSpdiNetworks != null
+                : !mSpdiNetworks.equals(other.mSpdiNetworks)) fields |= SPDI;
+        if (!TextUtils.equals(mVoiceMailNum, other.mVoiceMailNum)
+                || !TextUtils.equals(mVoiceMailTag, other.mVoiceMailTag)) fields |= VOICE_MAIL;
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SimRecordsSnapshot)) {
+            return false;
+        }
+        SimRecordsSnapshot other = (SimRecordsSnapshot) o;
+        return TextUtils.equals(mIccId, other.mIccId) && diff(other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return mIccId == null ? 0 : mIccId.hashCode();
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeString(out, mIccId);
+            writeString(out, mImsi);
+            out.writeInt(mMncLength);
+            writeString(out, mMsisdn);
+            writeString(out, mMsisdnTag);
+            writeString(out, mSpn);
+            out.writeInt(mSpnDisplayCondition);
+            writeString(out, mGid1);
+            writeString(out, mGid2);
+            out.writeInt(mSpdiNetworks == null ? -1 : mSpdiNetworks.size());
+            if (mSpdiNetworks != null) {
+                for (String network : mSpdiNetworks) {
+                    writeString(out, network);
+                }
+            }
+            writeString(out, mVoiceMailNum);
+            writeString(out, mVoiceMailTag);
+            out.flush();
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static SimRecordsSnapshot fromBytes(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        String iccId = readString(in);
+        String imsi = readString(in);
+        int mncLength = in.readInt();
+        String msisdn = readString(in);
+        String msisdnTag = readString(in);
+        String spn = readString(in);
+        int spnDisplayCondition = in.readInt();
+        String gid1 = readString(in);
+        String gid2 = readString(in);
+        ArrayList<String> spdiNetworks = null;
+        int count = in.readInt();
+        if (count > data.length) {
+            throw new IOException("Bad SPDI network count " + count);
+        } else if (count >= 0) {
+            spdiNetworks = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                spdiNetworks.add(readString(in));
+            }
+        }
+        return new SimRecordsSnapshot(iccId, imsi, mncLength, msisdn, msisdnTag, spn,
+                spnDisplayCondition, gid1, gid2, spdiNetworks, readString(in), readString(in));
+    }
+
+    static long digest(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Reads the snapshot saved in <code>file</code>.
+     *
+     * @return the snapshot, or null if there is none or it is corrupt
+     */
+    static SimRecordsSnapshot read(AtomicFile file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(file.openRead());
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            long digest = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length > MAX_LENGTH) {
+                Rlog.w(LOG_TAG, "Discarding corrupt snapshot " + file.getBaseFile());
+                return null;
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            if (digest(data) != digest) {
+                Rlog.w(LOG_TAG, "Discarding corrupt snapshot " + file.getBaseFile());
+                return null;
+            }
+            return fromBytes(data);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Rlog.w(LOG_TAG, "Error reading " + file.getBaseFile(), e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the snapshot saved in <code>file</code> with this one.
+     */
+    boolean write(AtomicFile file) {
+        FileOutputStream os = null;
+        try {
+            byte[] data = toBytes();
+            os = file.startWrite();
+            DataOutputStream out = new DataOutputStream(os);
+            out.writeInt(VERSION);
+            out.writeLong(digest(data));
+            out.writeInt(data.length);
+            out.write(data);
+            out.flush();
+            file.finishWrite(os);
+            return true;
+        } catch (IOException e) {
+            Rlog.w(LOG_TAG, "Error writing " + file.getBaseFile(), e);
+            if (os != null) {
+                file.failWrite(os);
+            }
+            return false;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @Override
+    public String toString() {
+        // The records identify the subscriber, don't log them
+        return "SimRecordsSnapshot{digest=" + Long.toHexString(digest(toBytes())) + "}";
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.util;
+
+import java.util.HashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * In-memory snapshot of the blacklist table.
+ *
+ * Plain entries are kept in a hash map keyed by normalized number. Regex entries use the
+ * SQL LIKE wildcards produced by {@link BlacklistUtils#normalizeNumber}, '%' and '_'; the
+ * blocking ones are compiled into a single pattern per mode. Matching gives the same
+ * result as querying the provider: a plain entry wins over any regex, and a plain entry
+ * that doesn't block the mode whitelists the number.
+ *
+ * Immutable once {@link #seal} has been called.
+ * @hide
+ */
+final class BlacklistCache {
+    private final String mCountryIso;
+
+    // Normalized number -> BLOCK_CALLS | BLOCK_MESSAGES bits of its plain entry
+    private final HashMap<String, Integer> mNumbers = new HashMap<String, Integer>();
+
+    private final StringBuilder mCallRegex = new StringBuilder();
+    private final StringBuilder mMessageRegex = new StringBuilder();
+    private Pattern mCallPattern;
+    private Pattern mMessagePattern;
+    private int mRegexCount;
+
+    /**
+     * @param countryIso the country the numbers were normalized for, since normalizing
+     *     to E164 depends on it
+     */
+    BlacklistCache(String countryIso) {
+        mCountryIso = countryIso;
+    }
+
+    String getCountryIso() {
+        return mCountryIso;
+    }
+
+    int size() {
+        return mNumbers.size() + mRegexCount;
+    }
+
+    /**
+     * Adds an entry of the table.
+     *
+     * @param number the normalized number, or the pattern as stored if isRegex
+     * @param isRegex whether the entry is a pattern
+     * @param flags BLOCK_CALLS and/or BLOCK_MESSAGES if the entry blocks them
+     */
+    void add(String number, boolean isRegex, int flags) {
+        if (isRegex) {
+            mRegexCount++;
+            if ((flags & BlacklistUtils.BLOCK_CALLS) != 0) {
+                appendRegex(mCallRegex, number);
+            }
+            if ((flags & BlacklistUtils.BLOCK_MESSAGES) != 0) {
+                appendRegex(mMessageRegex, number);
+            }
+        } else {
+            // Duplicate rows block the mode if any of them does, as with the provider query
+            Integer old = mNumbers.get(number);
+            mNumbers.put(number, old == null ? flags : old | flags);
+        }
+    }
+
+    /**
+     * Compiles the regex entries, after which the cache can be used for matching.
+     */
+    void seal() throws PatternSyntaxException {
+        mCallPattern = compile(mCallRegex);
+        mMessagePattern = compile(mMessageRegex);
+        mCallRegex.setLength(0);
+        mMessageRegex.setLength(0);
+    }
+
+    /**
+     * Matches a normalized number against the snapshot.
+     *
+     * @param mode BLOCK_CALLS or BLOCK_MESSAGES
+     * @param regexEnabled whether regex entries are in effect
+     * @return one of MATCH_NONE, MATCH_LIST or MATCH_REGEX
+     */
+    int match(String number, int mode, boolean regexEnabled) {
+        Integer flags = mNumbers.get(number);
+        if (flags != null) {
+            return (flags & mode) != 0 ? BlacklistUtils.MATCH_LIST : BlacklistUtils.MATCH_NONE;
+        }
+        if (regexEnabled) {
+            Pattern p = mode == BlacklistUtils.BLOCK_CALLS ? mCallPattern : mMessagePattern;
+            if (p != null && p.matcher(number).matches()) {
+                return BlacklistUtils.MATCH_REGEX;
+            }
+        }
+        return BlacklistUtils.MATCH_NONE;
+    }
+
+    private static void appendRegex(StringBuilder sb, String like) {
+        if (sb.length() > 0) {
+            sb.append('|');
+        }
+        sb.append("(?:");
+        int start = 0;
+        for (int i = 0, len = like.length(); i < len; i++) {
+            char c = like.charAt(i);
+            if (c == '%' || c == '_') {
+                if (i > start) {
+                    sb.append(Pattern.quote(like.substring(start, i)));
+                }
+                sb.append(c == '%' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if (start < like.length()) {
+            sb.append(Pattern.quote(like.substring(start)));
+        }
+        sb.append(')');
+    }
+
+    private static Pattern compile(StringBuilder sb) {
+        return sb.length() == 0 ? null : Pattern.compile(sb.toString(), Pattern.DOTALL);
+    }
+
+    @Override
+    public String toString() {
+        return "BlacklistCache{numbers=" + mNumbers.size() + " regexes=" + mRegexCount
+                + " country=" + mCountryIso + "}";
+    }
+}
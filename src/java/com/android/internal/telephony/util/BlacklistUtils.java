@@ -18,6 +18,7 @@ package com.android.internal.telephony.util;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.UserHandle;
@@ -53,6 +54,16 @@ public class BlacklistUtils {
     public final static int BLOCK_MESSAGES =
             Settings.System.BLACKLIST_BLOCK << Settings.System.BLACKLIST_MESSAGE_SHIFT;
 
+    private static final String[] CACHE_PROJECTION = new String[] {
+        Blacklist.NUMBER, Blacklist.IS_REGEX, Blacklist.PHONE_MODE, Blacklist.MESSAGE_MODE
+    };
+
+    // Snapshot of the blacklist table, dropped whenever the table changes
+    private static final Object sCacheLock = new Object();
+    private static volatile BlacklistCache sCache;
+    private static int sCacheGeneration;
+    private static ContentObserver sCacheObserver;
+
     public static boolean addOrUpdate(Context context, String number, int flags, int valid) {
         ContentValues cv = new ContentValues();
 
@@ -113,9 +124,28 @@ public class BlacklistUtils {
             return MATCH_NONE;
         }
 
+        final boolean regexEnabled = isBlacklistRegexEnabled(context);
+        final int result;
+        BlacklistCache cache = getCache(context);
+        if (cache != null) {
+            String normalizedNumber = normalizeNumber(number, cache.getCountryIso());
+            result = cache.match(normalizedNumber, mode, regexEnabled);
+        } else {
+            result = queryListed(context, number, type, regexEnabled);
+        }
+
+        if (DEBUG) Log.d(TAG, "Blacklist check result for number " + number + " is " + result);
+        return result;
+    }
+
+    /**
+     * Asks the provider whether the number is listed, for when the snapshot can't be loaded.
+     */
+    private static int queryListed(Context context, String number, String type,
+            boolean regexEnabled) {
         Uri.Builder builder = Blacklist.CONTENT_FILTER_BYNUMBER_URI.buildUpon();
         builder.appendPath(number);
-        if (isBlacklistRegexEnabled(context)) {
+        if (regexEnabled) {
             builder.appendQueryParameter(Blacklist.REGEX_KEY, "1");
         }
 
@@ -150,10 +180,104 @@ public class BlacklistUtils {
             c.close();
         }
 
-        if (DEBUG) Log.d(TAG, "Blacklist check result for number " + number + " is " + result);
         return result;
     }
 
+    /**
+     * Returns the snapshot of the blacklist table, loading it if the table changed since it
+     * was last loaded, or null if it can't be loaded.
+     */
+    private static BlacklistCache getCache(Context context) {
+        String countryIso = getCountryIso(context);
+        BlacklistCache cache = sCache;
+        if (cache != null && cache.getCountryIso().equals(countryIso)) {
+            return cache;
+        }
+
+        final int generation;
+        synchronized (sCacheLock) {
+            if (sCacheObserver == null) {
+                sCacheObserver = new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        synchronized (sCacheLock) {
+                            sCacheGeneration++;
+                            sCache = null;
+                        }
+                    }
+                };
+                context.getApplicationContext().getContentResolver().registerContentObserver(
+                        Blacklist.CONTENT_URI, true, sCacheObserver);
+            }
+            generation = sCacheGeneration;
+        }
+
+        cache = loadCache(context, countryIso);
+        if (cache != null) {
+            synchronized (sCacheLock) {
+                // Don't install a snapshot the table changed under while it was read
+                if (generation == sCacheGeneration) {
+                    sCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static BlacklistCache loadCache(Context context, String countryIso) {
+        Cursor c = context.getContentResolver().query(Blacklist.CONTENT_URI,
+                CACHE_PROJECTION, null, null, null);
+        if (c == null) {
+            return null;
+        }
+        return loadCache(c, countryIso);
+    }
+
+    /**
+     * Builds the snapshot from the rows of <code>c</code>, which holds at least the columns of
+     * CACHE_PROJECTION, and closes it. Plain numbers are normalized the way the numbers they
+     * are matched against are; regex entries are kept as stored, since normalizing would drop
+     * their wildcards.
+     *
+     * @return the snapshot, or null if it can't be built
+     */
+    static BlacklistCache loadCache(Cursor c, String countryIso) {
+        BlacklistCache cache = new BlacklistCache(countryIso);
+        try {
+            int numberColumnIndex = c.getColumnIndexOrThrow(Blacklist.NUMBER);
+            int regexColumnIndex = c.getColumnIndexOrThrow(Blacklist.IS_REGEX);
+            int phoneColumnIndex = c.getColumnIndexOrThrow(Blacklist.PHONE_MODE);
+            int messageColumnIndex = c.getColumnIndexOrThrow(Blacklist.MESSAGE_MODE);
+            c.moveToPosition(-1);
+            while (c.moveToNext()) {
+                String number = c.getString(numberColumnIndex);
+                if (TextUtils.isEmpty(number)) {
+                    continue;
+                }
+                boolean isRegex = c.getInt(regexColumnIndex) != 0;
+                int flags = 0;
+                if (c.getInt(phoneColumnIndex) != 0) {
+                    flags |= BLOCK_CALLS;
+                }
+                if (c.getInt(messageColumnIndex) != 0) {
+                    flags |= BLOCK_MESSAGES;
+                }
+                cache.add(isRegex ? number : normalizeNumber(number, countryIso),
+                        isRegex, flags);
+            }
+            cache.seal();
+        } catch (IllegalArgumentException e) {
+            // Includes PatternSyntaxException
+            Log.e(TAG, "Unable to load the blacklist, querying it per number", e);
+            return null;
+        } finally {
+            c.close();
+        }
+
+        if (DEBUG) Log.d(TAG, "Loaded " + cache);
+        return cache;
+    }
+
     public static boolean isBlacklistEnabled(Context context) {
         return Settings.System.getIntForUser(context.getContentResolver(),
                 Settings.System.PHONE_BLACKLIST_ENABLED, 1,
@@ -206,6 +330,22 @@ public class BlacklistUtils {
      * - boolean indicating whether the number is a E164 number or not
      */
     public static Pair<String, Boolean> normalizeNumber(Context context, String number) {
+        String normalizedNumber = stripNumber(number);
+        String e164Number = toE164Number(context, normalizedNumber);
+        return Pair.create(e164Number != null ? e164Number : normalizedNumber, e164Number != null);
+    }
+
+    /**
+     * Same as {@link #normalizeNumber(Context, String)} with the country already known,
+     * returning only the normalized number.
+     */
+    static String normalizeNumber(String number, String countryIso) {
+        String normalizedNumber = stripNumber(number);
+        String e164Number = PhoneNumberUtils.formatNumberToE164(normalizedNumber, countryIso);
+        return e164Number != null ? e164Number : normalizedNumber;
+    }
+
+    private static String stripNumber(String number) {
         int len = number.length();
         StringBuilder ret = new StringBuilder(len);
 
@@ -217,7 +357,7 @@ public class BlacklistUtils {
                 ret.append(digit);
             } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
                 String actualNumber = PhoneNumberUtils.convertKeypadLettersToDigits(number);
-                return normalizeNumber(context, actualNumber);
+                return stripNumber(actualNumber);
             } else if (i == 0 && c == '+') {
                 ret.append(c);
             } else if (c == '*') {
@@ -229,12 +369,18 @@ public class BlacklistUtils {
             }
         }
 
-        String normalizedNumber = ret.toString();
-        String e164Number = toE164Number(context, normalizedNumber);
-        return Pair.create(e164Number != null ? e164Number : normalizedNumber, e164Number != null);
+        return ret.toString();
     }
 
     public static String toE164Number(Context context, String src) {
+        return PhoneNumberUtils.formatNumberToE164(src, getCountryIso(context));
+    }
+
+    /**
+     * Returns the country numbers are normalized for: the one of the SIM if known, else the
+     * one of the current locale.
+     */
+    private static String getCountryIso(Context context) {
         // Try to retrieve the current ISO Country code
         TelephonyManager tm = (TelephonyManager)
                 context.getSystemService(Context.TELEPHONY_SERVICE);
@@ -242,8 +388,7 @@ public class BlacklistUtils {
         Locale numberLocale = TextUtils.isEmpty(countryCode)
                 ? context.getResources().getConfiguration().locale
                 : new Locale("", countryCode);
-
-        return PhoneNumberUtils.formatNumberToE164(src, numberLocale.getCountry());
+        return numberLocale.getCountry();
     }
 
     public static boolean isValidPhoneNumber(String address) {
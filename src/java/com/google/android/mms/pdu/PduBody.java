@@ -18,6 +18,7 @@
 package com.google.android.mms.pdu;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Vector;
 
@@ -148,6 +149,25 @@ public class PduBody {
         return mParts.size();
     }
 
+    /**
+     * Get the number of bytes held by the data of the parts. Parts sliced
+     * from the same PDU share its buffer, which is counted once and in full,
+     * since it stays reachable as long as any of them does.
+     *
+     * @return the size of the part data buffers
+     */
+    public int getRetainedDataSize() {
+        IdentityHashMap<byte[], Boolean> buffers = new IdentityHashMap<byte[], Boolean>();
+        int size = 0;
+        for (PduPart part : mParts) {
+            byte[] buffer = part.getDataBuffer();
+            if ((buffer != null) && (buffers.put(buffer, Boolean.TRUE) == null)) {
+                size += buffer.length;
+            }
+        }
+        return size;
+    }
+
     /**
      * Get pdu part by content id.
      *
@@ -19,6 +19,8 @@ package com.google.android.mms.pdu;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
 import android.util.Log;
 import android.text.TextUtils;
 
@@ -26,6 +28,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 
@@ -87,6 +90,17 @@ public class PduComposer {
      */
     protected ByteArrayOutputStream mMessage = null;
 
+    /**
+     * Where part data is written directly when composing with
+     * {@link #make(OutputStream)}, null otherwise.
+     */
+    private OutputStream mOutput = null;
+
+    /**
+     * The first error writing to mOutput.
+     */
+    private IOException mOutputError = null;
+
     /**
      * The PDU.
      */
@@ -149,6 +163,47 @@ public class PduComposer {
      *         the PDU is invalid.
      */
     public byte[] make() {
+        if (makePdu() != PDU_COMPOSE_SUCCESS) {
+            return null;
+        }
+        return mMessage.toByteArray();
+    }
+
+    /**
+     * Make the message and write it to <code>out</code>.
+     *
+     * Unlike {@link #make()}, only headers are buffered: the data of each
+     * part is written straight to <code>out</code>, reading data stored as
+     * a Uri in blocks. The memory needed no longer grows with the size of
+     * the attachments. The length of data stored as a Uri is taken from the
+     * provider, or from a first pass over the data when it is unknown.
+     *
+     * @param out where to write the message, it is not closed
+     * @return false if the PDU is invalid, in which case part of the
+     *         message may already have been written
+     * @throws IOException if writing to <code>out</code> failed
+     */
+    public boolean make(OutputStream out) throws IOException {
+        mOutput = out;
+        mOutputError = null;
+        try {
+            int result = makePdu();
+            if (mOutputError != null) {
+                throw mOutputError;
+            }
+            if (result != PDU_COMPOSE_SUCCESS) {
+                return false;
+            }
+            mMessage.writeTo(out);
+            mMessage.reset();
+            mPosition = 0;
+            return true;
+        } finally {
+            mOutput = null;
+        }
+    }
+
+    private int makePdu() {
         // Get Message-type.
         int type = mPdu.getMessageType();
 
@@ -156,30 +211,16 @@ public class PduComposer {
         switch (type) {
             case PduHeaders.MESSAGE_TYPE_SEND_REQ:
             case PduHeaders.MESSAGE_TYPE_RETRIEVE_CONF:
-                if (makeSendRetrievePdu(type) != PDU_COMPOSE_SUCCESS) {
-                    return null;
-                }
-                break;
+                return makeSendRetrievePdu(type);
             case PduHeaders.MESSAGE_TYPE_NOTIFYRESP_IND:
-                if (makeNotifyResp() != PDU_COMPOSE_SUCCESS) {
-                    return null;
-                }
-                break;
+                return makeNotifyResp();
             case PduHeaders.MESSAGE_TYPE_ACKNOWLEDGE_IND:
-                if (makeAckInd() != PDU_COMPOSE_SUCCESS) {
-                    return null;
-                }
-                break;
+                return makeAckInd();
             case PduHeaders.MESSAGE_TYPE_READ_REC_IND:
-                if (makeReadRecInd() != PDU_COMPOSE_SUCCESS) {
-                    return null;
-                }
-                break;
+                return makeReadRecInd();
             default:
-                return null;
+                return PDU_COMPOSE_FIELD_NOT_SUPPORTED;
         }
-
-        return mMessage.toByteArray();
     }
 
     /**
@@ -998,11 +1039,21 @@ public class PduComposer {
             int headerLength = attachment.getLength();
 
             int dataLength = 0; // Just for safety...
-            byte[] partData = part.getData();
 
-            if (partData != null) {
-                arraycopy(partData, 0, partData.length);
-                dataLength = partData.length;
+            if (mOutput != null) {
+                // The data is written to mOutput after the part headers
+                dataLength = getPartDataLength(part);
+                if (dataLength < 0) {
+                    return PDU_COMPOSE_CONTENT_ERROR;
+                }
+            } else if (part.hasData()) {
+                try {
+                    part.writeData(mMessage);
+                } catch (IOException e) {
+                    return PDU_COMPOSE_CONTENT_ERROR;
+                }
+                dataLength = part.getDataLength();
+                mPosition += dataLength;
             } else {
                 InputStream cr = null;
                 try {
@@ -1030,7 +1081,8 @@ public class PduComposer {
                 }
             }
 
-            if (dataLength != (attachment.getLength() - headerLength)) {
+            int bufferedDataLength = mOutput != null ? 0 : dataLength;
+            if (bufferedDataLength != (attachment.getLength() - headerLength)) {
                 throw new RuntimeException("BUG: Length sanity check failed");
             }
 
@@ -1038,11 +1090,129 @@ public class PduComposer {
             appendUintvarInteger(headerLength);
             appendUintvarInteger(dataLength);
             mStack.copy();
+
+            if (mOutput != null) {
+                int result = writePartData(part, dataLength);
+                if (result != PDU_COMPOSE_SUCCESS) {
+                    return result;
+                }
+            }
         }
 
         return PDU_COMPOSE_SUCCESS;
     }
 
+    /**
+     * Returns the length of the data of a part, or -1 if it can't be read.
+     */
+    private int getPartDataLength(PduPart part) {
+        if (part.hasData()) {
+            return part.getDataLength();
+        }
+
+        Uri dataUri = part.getDataUri();
+        if (dataUri == null) {
+            return -1;
+        }
+        AssetFileDescriptor afd = null;
+        try {
+            afd = mResolver.openAssetFileDescriptor(dataUri, "r");
+            long length = afd != null ? afd.getLength() : AssetFileDescriptor.UNKNOWN_LENGTH;
+            if (length > Integer.MAX_VALUE) {
+                return -1;
+            }
+            if (length >= 0) {
+                return (int) length;
+            }
+        } catch (FileNotFoundException e) {
+            return -1;
+        } catch (RuntimeException e) {
+            // Not a file, count the data below
+        } finally {
+            if (afd != null) {
+                try {
+                    afd.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        // The provider doesn't know the length, read the data once to count it
+        InputStream cr = null;
+        try {
+            byte[] buffer = new byte[PDU_COMPOSER_BLOCK_SIZE];
+            cr = mResolver.openInputStream(dataUri);
+            int dataLength = 0;
+            int len = 0;
+            while ((len = cr.read(buffer)) != -1) {
+                dataLength += len;
+            }
+            return dataLength;
+        } catch (IOException e) {
+            return -1;
+        } catch (RuntimeException e) {
+            return -1;
+        } finally {
+            if (cr != null) {
+                try {
+                    cr.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes what has been composed so far, which ends with the headers of
+     * <code>part</code>, and then the data of the part to mOutput.
+     */
+    private int writePartData(PduPart part, int dataLength) {
+        try {
+            mMessage.writeTo(mOutput);
+            mMessage.reset();
+            mPosition = 0;
+            if (part.writeData(mOutput)) {
+                return PDU_COMPOSE_SUCCESS;
+            }
+        } catch (IOException e) {
+            mOutputError = e;
+            return PDU_COMPOSE_CONTENT_ERROR;
+        }
+
+        InputStream cr = null;
+        try {
+            byte[] buffer = new byte[PDU_COMPOSER_BLOCK_SIZE];
+            cr = mResolver.openInputStream(part.getDataUri());
+            int written = 0;
+            int len = 0;
+            while ((len = cr.read(buffer)) != -1) {
+                if (written + len > dataLength) {
+                    // The data changed since it was measured
+                    return PDU_COMPOSE_CONTENT_ERROR;
+                }
+                try {
+                    mOutput.write(buffer, 0, len);
+                } catch (IOException e) {
+                    mOutputError = e;
+                    return PDU_COMPOSE_CONTENT_ERROR;
+                }
+                written += len;
+            }
+            return written == dataLength ? PDU_COMPOSE_SUCCESS : PDU_COMPOSE_CONTENT_ERROR;
+        } catch (IOException e) {
+            return PDU_COMPOSE_CONTENT_ERROR;
+        } catch (RuntimeException e) {
+            return PDU_COMPOSE_CONTENT_ERROR;
+        } finally {
+            if (cr != null) {
+                try {
+                    cr.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
     /**
      *  Record current message informations.
      */
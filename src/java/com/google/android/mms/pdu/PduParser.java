@@ -25,6 +25,7 @@ import com.google.android.mms.InvalidHeaderValueException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 
@@ -90,14 +91,65 @@ public class PduParser {
      */
     private final boolean mParseContentDisposition;
 
+    /**
+     * A ByteArrayInputStream that can hand out ranges of its buffer, so the
+     * parts of a PDU reference the PDU instead of copies of it.
+     */
+    private static class PduDataStream extends ByteArrayInputStream {
+        PduDataStream(byte[] buf, int offset, int length) {
+            super(buf, offset, length);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        int position() {
+            return pos;
+        }
+
+        /**
+         * Returns a stream over the next <code>length</code> bytes, without
+         * copying them, and skips past them.
+         */
+        PduDataStream slice(int length) {
+            int start = pos;
+            length = (int) skip(length);
+            return new PduDataStream(buf, start, length);
+        }
+    }
+
     /**
      * Constructor.
      *
+     * The parsed parts reference <code>pduDataStream</code> rather than
+     * copies of their data, so it must not be modified afterwards.
+     *
      * @param pduDataStream pdu data to be parsed
      * @param parseContentDisposition whether to parse the Content-Disposition part header
      */
     public PduParser(byte[] pduDataStream, boolean parseContentDisposition) {
-        mPduDataStream = new ByteArrayInputStream(pduDataStream);
+        mPduDataStream = new PduDataStream(pduDataStream, 0, pduDataStream.length);
+        mParseContentDisposition = parseContentDisposition;
+    }
+
+    /**
+     * Constructor for pdu data held in a ByteBuffer, from its position to
+     * its limit. A heap buffer is parsed in place; a direct buffer is
+     * copied once.
+     *
+     * @param pduData pdu data to be parsed, its position is not changed
+     * @param parseContentDisposition whether to parse the Content-Disposition part header
+     */
+    public PduParser(ByteBuffer pduData, boolean parseContentDisposition) {
+        if (pduData.hasArray()) {
+            mPduDataStream = new PduDataStream(pduData.array(),
+                    pduData.arrayOffset() + pduData.position(), pduData.remaining());
+        } else {
+            byte[] data = new byte[pduData.remaining()];
+            pduData.duplicate().get(data);
+            mPduDataStream = new PduDataStream(data, 0, data.length);
+        }
         mParseContentDisposition = parseContentDisposition;
     }
 
@@ -897,34 +949,59 @@ public class PduParser {
 
             /* get part's data */
             if (dataLength > 0) {
-                byte[] partData = new byte[dataLength];
                 String partContentType = new String(part.getContentType());
-                pduDataStream.read(partData, 0, dataLength);
+                // Reference the data in place when the PDU is held in a
+                // PduDataStream rather than copying it out.
+                PduDataStream partStream = null;
+                byte[] partData = null;
+                if (pduDataStream instanceof PduDataStream) {
+                    partStream = ((PduDataStream) pduDataStream).slice(dataLength);
+                } else {
+                    partData = new byte[dataLength];
+                    pduDataStream.read(partData, 0, dataLength);
+                }
                 if (partContentType.equalsIgnoreCase(ContentType.MULTIPART_ALTERNATIVE)) {
                     // parse "multipart/vnd.wap.multipart.alternative".
-                    PduBody childBody = parseParts(new ByteArrayInputStream(partData));
+                    PduBody childBody = parseParts(partStream != null
+                            ? partStream : new ByteArrayInputStream(partData));
                     // take the first part of children.
                     part = childBody.getPart(0);
                 } else {
                     // Check Content-Transfer-Encoding.
                     byte[] partDataEncoding = part.getContentTransferEncoding();
+                    String encoding = null;
                     if (null != partDataEncoding) {
-                        String encoding = new String(partDataEncoding);
-                        if (encoding.equalsIgnoreCase(PduPart.P_BASE64)) {
+                        encoding = new String(partDataEncoding);
+                        if (!encoding.equalsIgnoreCase(PduPart.P_BASE64)
+                                && !encoding.equalsIgnoreCase(PduPart.P_QUOTED_PRINTABLE)) {
+                            // "binary" is the default encoding.
+                            encoding = null;
+                        }
+                    }
+                    if (null == encoding && null != partStream) {
+                        part.setDataSlice(partStream.buffer(), partStream.position(),
+                                partStream.available());
+                    } else {
+                        if (null == partData) {
+                            partData = new byte[partStream.available()];
+                            partStream.read(partData, 0, partData.length);
+                        }
+                        if (null == encoding) {
+                            // Binary data, already a copy.
+                        } else if (encoding.equalsIgnoreCase(PduPart.P_BASE64)) {
                             // Decode "base64" into "binary".
                             partData = Base64.decodeBase64(partData);
-                        } else if (encoding.equalsIgnoreCase(PduPart.P_QUOTED_PRINTABLE)) {
+                        } else {
                             // Decode "quoted-printable" into "binary".
                             partData = QuotedPrintable.decodeQuotedPrintable(partData);
-                        } else {
-                            // "binary" is the default encoding.
                         }
+                        if (null == partData) {
+                            log("Decode part data error!");
+                            return null;
+                        }
+                        // partData is ours alone, no need for setData() to copy it.
+                        part.setDataSlice(partData, 0, partData.length);
                     }
-                    if (null == partData) {
-                        log("Decode part data error!");
-                        return null;
-                    }
-                    part.setData(partData);
                 }
             }
 
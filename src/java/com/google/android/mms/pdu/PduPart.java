@@ -19,6 +19,10 @@ package com.google.android.mms.pdu;
 
 import android.net.Uri;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -115,9 +119,12 @@ public class PduPart {
      private Uri mUri = null;
 
      /**
-      * Part data.
+      * Part data. The data may be a slice of a larger buffer, such as the
+      * PDU it was parsed from, starting at mPartDataOffset.
       */
      private byte[] mPartData = null;
+     private int mPartDataOffset = 0;
+     private int mPartDataLength = 0;
 
      private static final String TAG = "PduPart";
 
@@ -140,6 +147,22 @@ public class PduPart {
 
          mPartData = new byte[data.length];
          System.arraycopy(data, 0, mPartData, 0, data.length);
+         mPartDataOffset = 0;
+         mPartDataLength = data.length;
+     }
+
+     /**
+      * Set part data to a range of <code>buffer</code> without copying it.
+      * The caller must not modify that range afterwards.
+      *
+      * @param buffer the buffer holding the data
+      * @param offset the start of the data in buffer
+      * @param length the length of the data
+      */
+     void setDataSlice(byte[] buffer, int offset, int length) {
+         mPartData = buffer;
+         mPartDataOffset = offset;
+         mPartDataLength = length;
      }
 
      /**
@@ -152,22 +175,62 @@ public class PduPart {
             return null;
          }
 
-         byte[] byteArray = new byte[mPartData.length];
-         System.arraycopy(mPartData, 0, byteArray, 0, mPartData.length);
+         byte[] byteArray = new byte[mPartDataLength];
+         System.arraycopy(mPartData, mPartDataOffset, byteArray, 0, mPartDataLength);
          return byteArray;
      }
 
+     /**
+      * @return The buffer holding the part data, which may be shared with
+      *         other parts parsed from the same PDU, or null if the data
+      *         wasn't set or is stored as Uri.
+      */
+     byte[] getDataBuffer() {
+         return mPartData;
+     }
+
     /**
      * @return The length of the data, if this object have data, else 0.
      */
      public int getDataLength() {
          if(mPartData != null){
-             return mPartData.length;
+             return mPartDataLength;
          } else {
              return 0;
          }
      }
 
+     /**
+      * @return true if the data are stored as byte array, false if the
+      *         data wasn't set or is stored as Uri.
+      */
+     public boolean hasData() {
+         return mPartData != null;
+     }
+
+     /**
+      * @return A stream reading the part data without copying it, or null
+      *         if the data wasn't set or the data is stored as Uri.
+      */
+     public InputStream getDataStream() {
+         if (mPartData == null) {
+             return null;
+         }
+         return new ByteArrayInputStream(mPartData, mPartDataOffset, mPartDataLength);
+     }
+
+     /**
+      * Write the part data to <code>os</code> without copying it.
+      *
+      * @return false if the data wasn't set or the data is stored as Uri.
+      */
+     public boolean writeData(OutputStream os) throws IOException {
+         if (mPartData == null) {
+             return false;
+         }
+         os.write(mPartData, mPartDataOffset, mPartDataLength);
+         return true;
+     }
 
      /**
       * Set data uri. The data are stored as Uri.
@@ -35,6 +35,7 @@ import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteException;
 import android.drm.DrmManagerClient;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore;
 import android.provider.Telephony;
 import android.provider.Telephony.Mms;
@@ -50,17 +51,30 @@ import android.util.Log;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.android.mms.pdu.EncodedStringValue;
 
@@ -282,6 +296,12 @@ public class PduPersister {
     private final DrmManagerClient mDrmManagerClient;
     private final TelephonyManager mTelephonyManager;
 
+    // Idle part writer threads exit after this long
+    private static final long PART_WRITER_KEEP_ALIVE_SECONDS = 10;
+
+    private int mPartWriteThreads = 1;
+    private ThreadPoolExecutor mPartWriter;
+
     private PduPersister(Context context) {
         mContext = context;
         mContentResolver = context.getContentResolver();
@@ -728,6 +748,36 @@ public class PduPersister {
 
     public Uri persistPart(PduPart part, long msgId, HashMap<Uri, InputStream> preOpenedFiles)
             throws MmsException {
+        String contentType = getPersistedContentType(part);
+        Uri res = insertPart(part, msgId, contentType);
+
+        persistData(part, res, contentType, preOpenedFiles);
+        // After successfully store the data, we should update
+        // the dataUri of the part.
+        part.setDataUri(res);
+
+        return res;
+    }
+
+    private static String getPersistedContentType(PduPart part) throws MmsException {
+        String contentType = getPartContentType(part);
+        if (contentType == null) {
+            throw new MmsException("MIME type of the part must be set.");
+        }
+        // There is no "image/jpg" in Android (and it's an invalid mimetype).
+        // Change it to "image/jpeg"
+        if (ContentType.IMAGE_JPG.equals(contentType)) {
+            contentType = ContentType.IMAGE_JPEG;
+        }
+        return contentType;
+    }
+
+    /**
+     * Inserts the row of a part, without its data.
+     *
+     * @return the URI of the part
+     */
+    private Uri insertPart(PduPart part, long msgId, String contentType) throws MmsException {
         Uri uri = Uri.parse("content://mms/" + msgId + "/part");
         ContentValues values = new ContentValues(8);
 
@@ -736,21 +786,10 @@ public class PduPersister {
             values.put(Part.CHARSET, charset);
         }
 
-        String contentType = getPartContentType(part);
-        if (contentType != null) {
-            // There is no "image/jpg" in Android (and it's an invalid mimetype).
-            // Change it to "image/jpeg"
-            if (ContentType.IMAGE_JPG.equals(contentType)) {
-                contentType = ContentType.IMAGE_JPEG;
-            }
-
-            values.put(Part.CONTENT_TYPE, contentType);
-            // To ensure the SMIL part is always the first part.
-            if (ContentType.APP_SMIL.equals(contentType)) {
-                values.put(Part.SEQ, -1);
-            }
-        } else {
-            throw new MmsException("MIME type of the part must be set.");
+        values.put(Part.CONTENT_TYPE, contentType);
+        // To ensure the SMIL part is always the first part.
+        if (ContentType.APP_SMIL.equals(contentType)) {
+            values.put(Part.SEQ, -1);
         }
 
         if (part.getFilename() != null) {
@@ -783,13 +822,124 @@ public class PduPersister {
         if (res == null) {
             throw new MmsException("Failed to persist part, return null.");
         }
+        return res;
+    }
 
-        persistData(part, res, contentType, preOpenedFiles);
-        // After successfully store the data, we should update
-        // the dataUri of the part.
-        part.setDataUri(res);
+    /**
+     * Sets how many parts of a message {@link #persist} may write at the same time.
+     *
+     * With more than one, the rows of the parts are still inserted in order, and their
+     * data is then written concurrently. The message is only inserted, and its parts
+     * moved to it, once all of the data has been written, so a partly written message is
+     * never visible. The default of 1 writes the parts one after another.
+     *
+     * @param threads the maximum number of parts written at the same time
+     */
+    public synchronized void setPartWriteThreads(int threads) {
+        threads = Math.max(threads, 1);
+        if (threads == mPartWriteThreads) {
+            return;
+        }
+        mPartWriteThreads = threads;
+        if (mPartWriter != null) {
+            mPartWriter.shutdown();
+            mPartWriter = null;
+        }
+    }
 
-        return res;
+    private synchronized ThreadPoolExecutor getPartWriter() {
+        if (mPartWriteThreads <= 1) {
+            return null;
+        }
+        if (mPartWriter == null) {
+            mPartWriter = new ThreadPoolExecutor(mPartWriteThreads, mPartWriteThreads,
+                    PART_WRITER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger mCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            return new Thread(r, "PduPersister-" + mCount.incrementAndGet());
+                        }
+                    });
+            mPartWriter.allowCoreThreadTimeOut(true);
+        }
+        return mPartWriter;
+    }
+
+    /**
+     * Persists the parts of a message, writing their data concurrently if
+     * {@link #setPartWriteThreads} allows it. Returns once all the data has been written
+     * or the writing has failed.
+     */
+    private void persistParts(PduBody body, long msgId,
+            final HashMap<Uri, InputStream> preOpenedFiles) throws MmsException {
+        int partsNum = body.getPartsNum();
+        ThreadPoolExecutor writer = partsNum > 1 ? getPartWriter() : null;
+        if (writer == null) {
+            for (int i = 0; i < partsNum; i++) {
+                persistPart(body.getPart(i), msgId, preOpenedFiles);
+            }
+            return;
+        }
+
+        // Stops the writes that haven't started yet once one has failed
+        final AtomicBoolean failed = new AtomicBoolean();
+        ArrayList<Future<Void>> writes = new ArrayList<Future<Void>>(partsNum);
+        MmsException failure = null;
+        try {
+            for (int i = 0; i < partsNum; i++) {
+                final PduPart part = body.getPart(i);
+                final String contentType = getPersistedContentType(part);
+                final Uri res = insertPart(part, msgId, contentType);
+                writes.add(writer.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws MmsException {
+                        if (!failed.get()) {
+                            persistData(part, res, contentType, preOpenedFiles);
+                            part.setDataUri(res);
+                        }
+                        return null;
+                    }
+                }));
+            }
+        } catch (MmsException e) {
+            failure = e;
+            failed.set(true);
+        } catch (RejectedExecutionException e) {
+            // setPartWriteThreads() shut the writer down
+            failure = new MmsException(e);
+            failed.set(true);
+        }
+
+        // Wait for all the writes, so none is still running once this returns
+        boolean interrupted = false;
+        for (int i = 0; i < writes.size(); ) {
+            try {
+                writes.get(i).get();
+                i++;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                failed.set(true);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (failure == null) {
+                    failure = cause instanceof MmsException
+                            ? (MmsException) cause : new MmsException(cause);
+                }
+                failed.set(true);
+                i++;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (failure == null) {
+                failure = new MmsException("Interrupted while persisting parts.");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     private EncodedStringValue getEncodedStringValue(int charset, byte[] data) {
@@ -826,10 +976,10 @@ public class PduPersister {
         String path = null;
 
         try {
-            byte[] data = part.getData();
             if (ContentType.TEXT_PLAIN.equals(contentType)
                     || ContentType.APP_SMIL.equals(contentType)
                     || ContentType.TEXT_HTML.equals(contentType)) {
+                byte[] data = part.getData();
                 ContentValues cv = new ContentValues();
                 if (data == null) {
                     data = new String("").getBytes(CharacterSets.DEFAULT_CHARSET_NAME);
@@ -882,10 +1032,14 @@ public class PduPersister {
                                 " can not be converted.");
                     }
                 }
+                if (!isDrm && !part.hasData()
+                        && transferData(part.getDataUri(), uri, preOpenedFiles)) {
+                    return;
+                }
                 // uri can look like:
                 // content://mms/part/98
                 os = mContentResolver.openOutputStream(uri);
-                if (data == null) {
+                if (!part.hasData()) {
                     dataUri = part.getDataUri();
                     if ((dataUri == null) || (dataUri == uri)) {
                         Log.w(TAG, "Can't find data for this part.");
@@ -922,9 +1076,12 @@ public class PduPersister {
                         Log.v(TAG, "Saving data to: " + uri);
                     }
                     if (!isDrm) {
-                        os.write(data);
+                        // Straight from the part, which may share its buffer
+                        // with the parsed PDU, without an intermediate copy.
+                        part.writeData(os);
                     } else {
                         dataUri = uri;
+                        byte[] data = part.getData();
                         byte[] convertedData = drmConvertSession.convert(data, data.length);
                         if (convertedData != null) {
                             os.write(convertedData, 0, convertedData.length);
@@ -969,6 +1126,59 @@ public class PduPersister {
         }
     }
 
+    /**
+     * Copies the data of a part from a regular file behind <code>dataUri</code> with a
+     * channel transfer, which lets the kernel copy it without going through a buffer here.
+     *
+     * @return false if the data has to be copied by {@link #persistData} instead, because
+     *     it comes from a pre-opened stream or from a pipe
+     */
+    private boolean transferData(Uri dataUri, Uri uri, HashMap<Uri, InputStream> preOpenedFiles)
+            throws IOException {
+        if (dataUri == null || dataUri.equals(uri)
+                || (preOpenedFiles != null && preOpenedFiles.containsKey(dataUri))) {
+            return false;
+        }
+        ParcelFileDescriptor in = null;
+        ParcelFileDescriptor out = null;
+        try {
+            try {
+                in = mContentResolver.openFileDescriptor(dataUri, "r");
+                if (in == null || in.getStatSize() < 0) {
+                    return false;
+                }
+                out = mContentResolver.openFileDescriptor(uri, "w");
+                if (out == null) {
+                    return false;
+                }
+            } catch (FileNotFoundException e) {
+                // Eg only part of a file, leave it to openInputStream()
+                return false;
+            }
+            if (LOCAL_LOGV) {
+                Log.v(TAG, "Transferring data to: " + uri);
+            }
+            FileChannel src = new FileInputStream(in.getFileDescriptor()).getChannel();
+            FileChannel dst = new FileOutputStream(out.getFileDescriptor()).getChannel();
+            long size = src.size();
+            for (long position = 0; position < size; ) {
+                long transferred = src.transferTo(position, size - position, dst);
+                if (transferred <= 0) {
+                    throw new IOException("Transfer stalled at " + position + " of " + size);
+                }
+                position += transferred;
+            }
+            return true;
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
     /**
      * This method expects uri in the following format
      *     content://media/<table_name>/<row_index> (or)
@@ -1186,7 +1396,7 @@ public class PduPersister {
         // Only update the data when:
         // 1. New binary data supplied or
         // 2. The Uri of the part is different from the current one.
-        if ((part.getData() != null)
+        if (part.hasData()
                 || (uri != part.getDataUri())) {
             persistData(part, uri, contentType, preOpenedFiles);
         }
@@ -1447,10 +1657,10 @@ public class PduPersister {
                     // Otherwise, a slideshow with two text slides would be marked as textOnly.
                     textOnly = false;
                 }
+                persistParts(body, dummyId, preOpenedFiles);
                 for (int i = 0; i < partsNum; i++) {
                     PduPart part = body.getPart(i);
                     messageSize += part.getDataLength();
-                    persistPart(part, dummyId, preOpenedFiles);
 
                     // If we've got anything besides text/plain or SMIL part, then we've got
                     // an mms message with some other type of attachment.
@@ -19,49 +19,119 @@ package com.google.android.mms.util;
 
 import android.util.Log;
 
-import java.util.HashMap;
-
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache bounded by item count and by an estimate of the memory held by
+ * its values. When either bound is reached, the least recently used entries
+ * are evicted to make room and {@link #onEvicted} is called for each of them.
+ *
+ * The map is kept in access order, so even {@link #get} changes it. Every
+ * public method holds the lock of the cache, and {@link #sizeOf} and
+ * {@link #onEvicted} are called with it held. Subclasses that keep their own
+ * state synchronize on the cache too.
+ */
 public abstract class AbstractCache<K, V> {
     private static final String TAG = "AbstractCache";
     private static final boolean DEBUG = false;
     private static final boolean LOCAL_LOGV = false;
 
     private static final int MAX_CACHED_ITEMS  = 500;
+    private static final long MAX_CACHED_BYTES = 4 * 1024 * 1024;
+
+    private final LinkedHashMap<K, CacheEntry<V>> mCacheMap;
+    private final int mMaxItems;
+    private final long mMaxBytes;
+    private long mBytes;
 
-    private final HashMap<K, CacheEntry<V>> mCacheMap;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
 
     protected AbstractCache() {
-        mCacheMap = new HashMap<K, CacheEntry<V>>();
+        this(MAX_CACHED_ITEMS, MAX_CACHED_BYTES);
+    }
+
+    /**
+     * @param maxItems the maximum number of entries
+     * @param maxBytes the maximum sum of {@link #sizeOf} over all entries
+     */
+    protected AbstractCache(int maxItems, long maxBytes) {
+        // Access order, so iteration starts at the least recently used entry
+        mCacheMap = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true);
+        mMaxItems = maxItems;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the estimated memory held by <code>value</code>, in bytes.
+     * The default counts every value as empty, so only the item count
+     * bounds the cache.
+     */
+    protected int sizeOf(K key, V value) {
+        return 0;
     }
 
-    public boolean put(K key, V value) {
+    /**
+     * Called when an entry is evicted to make room for another one. Not
+     * called for entries removed by {@link #purge} or {@link #purgeAll}.
+     */
+    protected void onEvicted(K key, V value) {
+    }
+
+    synchronized public boolean put(K key, V value) {
         if (LOCAL_LOGV) {
             Log.v(TAG, "Trying to put " + key + " into cache.");
         }
 
-        if (mCacheMap.size() >= MAX_CACHED_ITEMS) {
-            // TODO Should remove the oldest or least hit cached entry
-            // and then cache the new one.
+        if (key == null) {
+            return false;
+        }
+
+        int size = Math.max(sizeOf(key, value), 0);
+        if (size > mMaxBytes) {
             if (LOCAL_LOGV) {
-                Log.v(TAG, "Failed! size limitation reached.");
+                Log.v(TAG, "Failed! " + key + " is larger than the cache.");
             }
             return false;
         }
 
-        if (key != null) {
-            CacheEntry<V> cacheEntry = new CacheEntry<V>();
-            cacheEntry.value = value;
-            mCacheMap.put(key, cacheEntry);
+        CacheEntry<V> cacheEntry = new CacheEntry<V>();
+        cacheEntry.value = value;
+        cacheEntry.size = size;
+        CacheEntry<V> previous = mCacheMap.put(key, cacheEntry);
+        if (previous != null) {
+            mBytes -= previous.size;
+        }
+        mBytes += size;
+
+        trimToSize();
+
+        if (LOCAL_LOGV) {
+            Log.v(TAG, key + " cached, " + mCacheMap.size() + " items total.");
+        }
+        return true;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<K, CacheEntry<V>>> it = mCacheMap.entrySet().iterator();
+        while ((mCacheMap.size() > mMaxItems || mBytes > mMaxBytes) && it.hasNext()) {
+            Map.Entry<K, CacheEntry<V>> eldest = it.next();
+            it.remove();
+            mBytes -= eldest.getValue().size;
+            mEvictionCount++;
 
             if (LOCAL_LOGV) {
-                Log.v(TAG, key + " cached, " + mCacheMap.size() + " items total.");
+                Log.v(TAG, "Evicted " + eldest.getKey() + ", hit "
+                        + eldest.getValue().hit + " times.");
             }
-            return true;
+            onEvicted(eldest.getKey(), eldest.getValue().value);
         }
-        return false;
     }
 
-    public V get(K key) {
+    synchronized public V get(K key) {
         if (LOCAL_LOGV) {
             Log.v(TAG, "Trying to get " + key + " from cache.");
         }
@@ -70,21 +140,26 @@ public abstract class AbstractCache<K, V> {
             CacheEntry<V> cacheEntry = mCacheMap.get(key);
             if (cacheEntry != null) {
                 cacheEntry.hit++;
+                mHitCount++;
                 if (LOCAL_LOGV) {
                     Log.v(TAG, key + " hit " + cacheEntry.hit + " times.");
                 }
                 return cacheEntry.value;
             }
         }
+        mMissCount++;
         return null;
     }
 
-    public V purge(K key) {
+    synchronized public V purge(K key) {
         if (LOCAL_LOGV) {
             Log.v(TAG, "Trying to purge " + key);
         }
 
         CacheEntry<V> v = mCacheMap.remove(key);
+        if (v != null) {
+            mBytes -= v.size;
+        }
 
         if (LOCAL_LOGV) {
             Log.v(TAG, mCacheMap.size() + " items cached.");
@@ -93,20 +168,50 @@ public abstract class AbstractCache<K, V> {
         return v != null ? v.value : null;
     }
 
-    public void purgeAll() {
+    synchronized public void purgeAll() {
         if (LOCAL_LOGV) {
             Log.v(TAG, "Purging cache, " + mCacheMap.size()
                     + " items dropped.");
         }
         mCacheMap.clear();
+        mBytes = 0;
     }
 
-    public int size() {
+    synchronized public int size() {
         return mCacheMap.size();
     }
 
+    /**
+     * @return the sum of {@link #sizeOf} over all cached entries
+     */
+    synchronized public long sizeInBytes() {
+        return mBytes;
+    }
+
+    synchronized public long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized public long getMissCount() {
+        return mMissCount;
+    }
+
+    synchronized public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    synchronized public String toString() {
+        long accesses = mHitCount + mMissCount;
+        return getClass().getSimpleName() + "[items=" + mCacheMap.size() + "/" + mMaxItems
+                + " bytes=" + mBytes + "/" + mMaxBytes + " hits=" + mHitCount
+                + " misses=" + mMissCount + " evictions=" + mEvictionCount
+                + " hitRate=" + (accesses == 0 ? 0 : 100 * mHitCount / accesses) + "%]";
+    }
+
     private static class CacheEntry<V> {
         int hit;
+        int size;
         V value;
     }
 }
@@ -23,6 +23,10 @@ import android.net.Uri;
 import android.provider.Telephony.Mms;
 import android.util.Log;
 
+import com.google.android.mms.pdu.GenericPdu;
+import com.google.android.mms.pdu.MultimediaMessagePdu;
+import com.google.android.mms.pdu.PduBody;
+
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -44,6 +48,10 @@ public final class PduCache extends AbstractCache<Uri, PduCacheEntry> {
     private static final int MMS_CONVERSATION    = 10;
     private static final int MMS_CONVERSATION_ID = 11;
 
+    // Rough footprint of the headers of a PDU and of the headers of a part
+    private static final int PDU_OVERHEAD_BYTES  = 1024;
+    private static final int PART_OVERHEAD_BYTES = 256;
+
     private static final UriMatcher URI_MATCHER;
     private static final HashMap<Integer, Integer> MATCH_TO_MSGBOX_ID_MAP;
 
@@ -93,30 +101,66 @@ public final class PduCache extends AbstractCache<Uri, PduCacheEntry> {
 
     @Override
     synchronized public boolean put(Uri uri, PduCacheEntry entry) {
-        int msgBoxId = entry.getMessageBox();
-        HashSet<Uri> msgBox = mMessageBoxes.get(msgBoxId);
-        if (msgBox == null) {
-            msgBox = new HashSet<Uri>();
-            mMessageBoxes.put(msgBoxId, msgBox);
-        }
-
-        long threadId = entry.getThreadId();
-        HashSet<Uri> thread = mThreads.get(threadId);
-        if (thread == null) {
-            thread = new HashSet<Uri>();
-            mThreads.put(threadId, thread);
+        Uri finalKey = normalizeKey(uri);
+        PduCacheEntry previous = finalKey != null ? super.purge(finalKey) : null;
+        if (previous != null) {
+            removeFromThreads(finalKey, previous);
+            removeFromMessageBoxes(finalKey, previous);
         }
 
-        Uri finalKey = normalizeKey(uri);
         boolean result = super.put(finalKey, entry);
         if (result) {
+            int msgBoxId = entry.getMessageBox();
+            HashSet<Uri> msgBox = mMessageBoxes.get(msgBoxId);
+            if (msgBox == null) {
+                msgBox = new HashSet<Uri>();
+                mMessageBoxes.put(msgBoxId, msgBox);
+            }
             msgBox.add(finalKey);
+
+            long threadId = entry.getThreadId();
+            HashSet<Uri> thread = mThreads.get(threadId);
+            if (thread == null) {
+                thread = new HashSet<Uri>();
+                mThreads.put(threadId, thread);
+            }
             thread.add(finalKey);
         }
         setUpdating(uri, false);
         return result;
     }
 
+    @Override
+    synchronized public PduCacheEntry get(Uri uri) {
+        return super.get(normalizeKey(uri));
+    }
+
+    @Override
+    protected void onEvicted(Uri key, PduCacheEntry entry) {
+        removeFromThreads(key, entry);
+        removeFromMessageBoxes(key, entry);
+    }
+
+    /**
+     * Estimates the memory held by a cached PDU from the data of its parts.
+     * Parts sliced from the PDU they were parsed from keep all of it alive,
+     * so its buffer is counted once rather than the length of each slice.
+     * Parts stored as a Uri only count for their fixed overhead.
+     */
+    @Override
+    protected int sizeOf(Uri key, PduCacheEntry entry) {
+        int size = PDU_OVERHEAD_BYTES;
+        GenericPdu pdu = entry.getPdu();
+        if (pdu instanceof MultimediaMessagePdu) {
+            PduBody body = ((MultimediaMessagePdu) pdu).getBody();
+            if (body != null) {
+                size += body.getPartsNum() * PART_OVERHEAD_BYTES
+                        + body.getRetainedDataSize();
+            }
+        }
+        return size;
+    }
+
     synchronized public void setUpdating(Uri uri, boolean updating) {
         if (updating) {
             mUpdating.add(uri);
@@ -232,6 +276,9 @@ public final class PduCache extends AbstractCache<Uri, PduCacheEntry> {
         HashSet<Uri> thread = mThreads.get(entry.getThreadId());
         if (thread != null) {
             thread.remove(key);
+            if (thread.isEmpty()) {
+                mThreads.remove(entry.getThreadId());
+            }
         }
     }
 
@@ -253,9 +300,12 @@ public final class PduCache extends AbstractCache<Uri, PduCacheEntry> {
     }
 
     private void removeFromMessageBoxes(Uri key, PduCacheEntry entry) {
-        HashSet<Uri> msgBox = mThreads.get(Long.valueOf(entry.getMessageBox()));
+        HashSet<Uri> msgBox = mMessageBoxes.get(entry.getMessageBox());
         if (msgBox != null) {
             msgBox.remove(key);
+            if (msgBox.isEmpty()) {
+                mMessageBoxes.remove(entry.getMessageBox());
+            }
         }
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Test cases for the RilRequestPool class.
+ */
+public class RilRequestPoolTest extends TestCase {
+
+    // Roughly the number of iccIO reads in flight while SIMRecords loads
+    private static final int SIM_LOAD_BURST = 30;
+
+    private static void replayBurst(RilRequestPool pool, int burst) {
+        ArrayList<RILRequest> inFlight = new ArrayList<RILRequest>();
+        for (int i = 0; i < burst; i++) {
+            inFlight.add(RILRequest.obtain(pool, RILConstants.RIL_REQUEST_SIM_IO, null));
+        }
+        for (RILRequest rr : inFlight) {
+            rr.mParcel.recycle();
+            rr.mParcel = null;
+            rr.release();
+        }
+    }
+
+    @SmallTest
+    public void testSimLoadBurstIsRecycled() {
+        RilRequestPool pool = new RilRequestPool();
+
+        replayBurst(pool, SIM_LOAD_BURST);
+        assertEquals(SIM_LOAD_BURST, pool.getMisses());
+        assertEquals(SIM_LOAD_BURST, pool.getPeakSize());
+
+        // A fixed pool of MIN_POOL_SIZE would allocate all but four of these again
+        replayBurst(pool, SIM_LOAD_BURST);
+        assertEquals(SIM_LOAD_BURST, pool.getMisses());
+        assertEquals(SIM_LOAD_BURST, pool.getHits());
+    }
+
+    @SmallTest
+    public void testCapacityIsBounded() {
+        RilRequestPool pool = new RilRequestPool();
+
+        replayBurst(pool, 2 * RilRequestPool.MAX_POOL_SIZE);
+        assertEquals(RilRequestPool.MAX_POOL_SIZE, pool.getCapacity());
+        assertEquals(RilRequestPool.MAX_POOL_SIZE, pool.getPeakSize());
+    }
+
+    @SmallTest
+    public void testShrinksWhenBurstsStop() {
+        RilRequestPool pool = new RilRequestPool();
+
+        replayBurst(pool, SIM_LOAD_BURST);
+        // Two quiet windows: the first still remembers the burst
+        for (int i = 0; i < 2 * RilRequestPool.ADAPT_INTERVAL; i++) {
+            replayBurst(pool, 1);
+        }
+        assertEquals(RilRequestPool.MIN_POOL_SIZE, pool.getCapacity());
+    }
+}
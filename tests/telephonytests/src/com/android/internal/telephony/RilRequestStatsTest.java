@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Test cases for the RilRequestStats class.
+ */
+public class RilRequestStatsTest extends TestCase {
+
+    private static void complete(RilRequestStats stats, int request, long latency, int error) {
+        RILRequest rr = RILRequest.obtain(new RilRequestPool(), request, null);
+        rr.mParcel.recycle();
+        rr.mParcel = null;
+        rr.mEnqueueTime = 1000;
+        rr.mSentTime = 1001;
+        stats.onCompleted(rr, error, 1000 + latency);
+    }
+
+    @SmallTest
+    public void testPercentiles() {
+        RilRequestStats stats = new RilRequestStats();
+        for (int i = 0; i < 98; i++) {
+            complete(stats, RILConstants.RIL_REQUEST_SIM_IO, 3, 0);
+        }
+        complete(stats, RILConstants.RIL_REQUEST_SIM_IO, 300, 0);
+        complete(stats, RILConstants.RIL_REQUEST_SIM_IO, 5000, RILConstants.GENERIC_FAILURE);
+
+        List<RilRequestStats.Entry> entries = stats.getSnapshot();
+        assertEquals(1, entries.size());
+        RilRequestStats.Entry e = entries.get(0);
+        assertEquals(100, e.count);
+        assertEquals(1, e.errors);
+        // 3ms falls in the [2, 4) bucket
+        assertEquals(4, e.p50Millis);
+        assertEquals(4, e.p95Millis);
+        // 300ms falls in the [256, 512) bucket
+        assertEquals(512, e.p99Millis);
+        assertEquals(5000, e.maxMillis);
+        assertEquals(1, e.meanQueueMillis);
+    }
+
+    @SmallTest
+    public void testSlowRequestsAreCountedPerType() {
+        RilRequestStats stats = new RilRequestStats();
+        stats.onSlow(RILConstants.RIL_REQUEST_GET_CURRENT_CALLS);
+        stats.onSlow(RILConstants.RIL_REQUEST_GET_CURRENT_CALLS);
+        stats.onSlow(RILConstants.RIL_REQUEST_OPERATOR);
+
+        for (RilRequestStats.Entry e : stats.getSnapshot()) {
+            if (e.request == RILConstants.RIL_REQUEST_GET_CURRENT_CALLS) {
+                assertEquals(2, e.slow);
+            } else {
+                assertEquals(RILConstants.RIL_REQUEST_OPERATOR, e.request);
+                assertEquals(1, e.slow);
+            }
+        }
+    }
+}
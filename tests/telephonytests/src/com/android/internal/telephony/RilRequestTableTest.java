@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Test cases for the RilRequestTable class.
+ */
+public class RilRequestTableTest extends TestCase {
+    private static final int CAPACITY = RilRequestTable.CAPACITY;
+
+    private RilRequestPool mPool;
+    private RilRequestTable mTable;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPool = new RilRequestPool();
+        mTable = new RilRequestTable();
+    }
+
+    private RILRequest put(int serial) {
+        RILRequest rr = RILRequest.obtain(mPool, RILConstants.RIL_REQUEST_SIM_IO, null);
+        rr.mSerial = serial;
+        mTable.put(rr);
+        return rr;
+    }
+
+    @SmallTest
+    public void testPutRemove() {
+        RILRequest rr = put(5);
+        assertEquals(1, mTable.size());
+        assertEquals(0, mTable.getMaxProbe());
+        assertNull(mTable.remove(6));
+        assertSame(rr, mTable.remove(5));
+        assertNull(mTable.remove(5));
+        assertEquals(0, mTable.size());
+    }
+
+    @SmallTest
+    public void testCollidingSerials() {
+        // Same home slot
+        RILRequest first = put(3);
+        RILRequest second = put(3 + CAPACITY);
+        RILRequest third = put(3 - CAPACITY);
+        assertEquals(2, mTable.getMaxProbe());
+        assertEquals(3, mTable.count(RILConstants.RIL_REQUEST_SIM_IO));
+
+        assertSame(third, mTable.remove(3 - CAPACITY));
+        assertSame(first, mTable.remove(3));
+        assertSame(second, mTable.remove(3 + CAPACITY));
+        assertEquals(0, mTable.size());
+        // Nothing is displaced once the table is empty
+        assertEquals(0, mTable.getMaxProbe());
+    }
+
+    @SmallTest
+    public void testRemoveInMiddleOfProbeChain() {
+        RILRequest first = put(10);
+        RILRequest second = put(10 + CAPACITY);
+        RILRequest third = put(10 + 2 * CAPACITY);
+
+        // Empties the slot between the home slot of third and its own slot
+        assertSame(second, mTable.remove(10 + CAPACITY));
+        assertSame(third, mTable.remove(10 + 2 * CAPACITY));
+
+        // A new request reuses the emptied slots and is still found
+        RILRequest fourth = put(10 + 3 * CAPACITY);
+        assertSame(fourth, mTable.remove(10 + 3 * CAPACITY));
+        assertSame(first, mTable.remove(10));
+    }
+
+    @SmallTest
+    public void testMissingSerialProbesOnlyDisplacement() {
+        for (int i = 0; i < 8; i++) {
+            put(i);
+        }
+        // Sequential serials all sit in their home slots
+        assertEquals(0, mTable.getMaxProbe());
+        assertNull(mTable.remove(100));
+        assertEquals(8, mTable.size());
+    }
+
+    @SmallTest
+    public void testOverflow() {
+        ArrayList<RILRequest> requests = new ArrayList<RILRequest>();
+        for (int i = 0; i < CAPACITY + 10; i++) {
+            requests.add(put(i));
+        }
+        assertEquals(CAPACITY + 10, mTable.size());
+        assertEquals(CAPACITY + 10, mTable.snapshot().size());
+
+        // Removed out of order, from the slots and the overflow list
+        for (int i = CAPACITY + 9; i >= 0; i -= 2) {
+            assertSame(requests.get(i), mTable.remove(i));
+        }
+        for (int i = 0; i < CAPACITY + 10; i += 2) {
+            assertSame(requests.get(i), mTable.remove(i));
+        }
+        assertEquals(0, mTable.size());
+    }
+
+    @SmallTest
+    public void testMarkSent() {
+        RILRequest rr = put(9);
+        // Not written to rild yet
+        assertEquals(0, rr.mSentTime);
+        assertEquals(0, rr.getAgeMillis(5000));
+
+        mTable.markSent(9, 1000);
+        assertEquals(4000, rr.getAgeMillis(5000));
+
+        // Its response already arrived
+        mTable.remove(9);
+        mTable.markSent(9, 2000);
+        assertEquals(1000, rr.mSentTime);
+    }
+
+    @SmallTest
+    public void testRemoveAll() {
+        ArrayList<RILRequest> requests = new ArrayList<RILRequest>();
+        for (int i = 0; i < CAPACITY + 2; i++) {
+            requests.add(put(7 + i * CAPACITY / 2));
+        }
+
+        // As on radio reset
+        ArrayList<RILRequest> removed = mTable.removeAll();
+        assertEquals(requests.size(), removed.size());
+        assertTrue(removed.containsAll(requests));
+        assertEquals(0, mTable.size());
+        assertEquals(0, mTable.getMaxProbe());
+        assertNull(mTable.remove(7));
+
+        RILRequest rr = put(7);
+        assertSame(rr, mTable.remove(7));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Test cases for the ShortCodeAutomaton class.
+ */
+public class ShortCodeAutomatonTest extends TestCase {
+
+    // free, standard, premium and short code patterns of a few countries
+    private static final String[][] PATTERNS = new String[][] {
+        { null, null, "15191|55[56]00", "\\d{5}" },
+        { "10[123]", null, "11[2-456]1|3024", "\\d{3,5}" },
+        { "122|87902|611611", "44567|244444",
+                "20433|21(?:344|472)|2[2-4](?:715|333|15)0?|305(?:00|83)", "\\d{5,6}" },
+        { "1[0-9]{2}", null, "[^0-4]\\d{3}|9(?:1|2)*", "\\d+" },
+        { "(1|2)?3.", null, "4\\d{2,}?", "[\\d]{1,3}" },
+    };
+
+    private static int regexMatch(String[] patterns, String number) {
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i] != null && Pattern.compile(patterns[i]).matcher(number).matches()) {
+                return i;
+            }
+        }
+        return ShortCodeAutomaton.NO_MATCH;
+    }
+
+    @SmallTest
+    public void testMatchesLikeRegex() {
+        Random random = new Random(1);
+        for (String[] patterns : PATTERNS) {
+            ShortCodeAutomaton automaton = ShortCodeAutomaton.compile(patterns);
+            assertNotNull(patterns[2], automaton);
+            for (int i = 0; i < 5000; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int len = random.nextInt(8); len > 0; len--) {
+                    sb.append((char) ('0' + random.nextInt(10)));
+                }
+                String number = sb.toString();
+                assertEquals(patterns[2] + " " + number, regexMatch(patterns, number),
+                        automaton.match(number));
+            }
+        }
+    }
+
+    @SmallTest
+    public void testPriority() {
+        ShortCodeAutomaton automaton = ShortCodeAutomaton.compile(
+                new String[] { "122", null, "12[0-9]", "\\d{3}" });
+        assertEquals(0, automaton.match("122"));
+        assertEquals(2, automaton.match("123"));
+        assertEquals(3, automaton.match("999"));
+        assertEquals(ShortCodeAutomaton.NO_MATCH, automaton.match("9999"));
+        assertEquals(ShortCodeAutomaton.NOT_DIGITS, automaton.match("+122"));
+    }
+
+    @SmallTest
+    public void testUnsupportedPatterns() {
+        assertNull(ShortCodeAutomaton.compile(new String[] { "^123$" }));
+        assertNull(ShortCodeAutomaton.compile(new String[] { "(?=1)\\d" }));
+        assertNull(ShortCodeAutomaton.compile(new String[] { "\\w+" }));
+        assertNull(ShortCodeAutomaton.compile(new String[] { "1\\d++" }));
+        assertNull(ShortCodeAutomaton.compile(new String[] { "(12" }));
+        assertNull(ShortCodeAutomaton.compile(new String[] { "12)" }));
+    }
+}
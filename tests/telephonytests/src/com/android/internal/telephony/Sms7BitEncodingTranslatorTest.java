@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.SparseIntArray;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the Sms7BitEncodingTranslator class.
+ */
+public class Sms7BitEncodingTranslatorTest extends TestCase {
+
+    private static char translate(char[][] pages, char c) {
+        char[] page = pages[c >> 8];
+        return page == null ? c : page[c & 0xff];
+    }
+
+    @SmallTest
+    public void testPages() {
+        SparseIntArray common = new SparseIntArray();
+        common.put(0x00e1, 'a');        // a acute
+        SparseIntArray gsm = new SparseIntArray();
+        gsm.put(0x00e7, 0x00c7);        // c cedilla
+        SparseIntArray cdma = new SparseIntArray();
+        cdma.put(0x00e7, 'c');
+
+        char[][] gsmPages = Sms7BitEncodingTranslator.buildPages(common, gsm, false);
+        char[][] cdmaPages = Sms7BitEncodingTranslator.buildPages(common, cdma, true);
+
+        assertEquals('A', translate(gsmPages, 'A'));
+        assertEquals('a', translate(gsmPages, '\u00e1'));
+        assertEquals('a', translate(cdmaPages, '\u00e1'));
+        assertEquals('\u00c7', translate(gsmPages, '\u00e7'));
+        assertEquals('c', translate(cdmaPages, '\u00e7'));
+        // In the GSM alphabet, but not in the ASCII subset used by CDMA
+        assertEquals('\u00e9', translate(gsmPages, '\u00e9'));
+        assertEquals(' ', translate(cdmaPages, '\u00e9'));
+        // Not translatable
+        assertEquals(' ', translate(gsmPages, '\u4e2d'));
+        assertEquals(' ', translate(cdmaPages, '\uffff'));
+
+        // Pages of untranslatable characters are shared
+        assertSame(gsmPages[0x4e], gsmPages[0x4f]);
+    }
+
+    @SmallTest
+    public void testTranslateLeavesGsmTextAlone() {
+        String text = "Hello, world! 1234567890";
+        String translated = Sms7BitEncodingTranslator.translate(text);
+        // Null if there is no translation table in this build
+        if (translated != null) {
+            assertSame(text, translated);
+        }
+    }
+
+    @MediumTest
+    public void testTranslateLongMessage() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("Long multipart message ").append(i).append(". ");
+        }
+        String text = sb.toString();
+        for (int i = 0; i < 100; i++) {
+            String translated = Sms7BitEncodingTranslator.translate(text);
+            if (translated != null) {
+                assertEquals(text, translated);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.net.Uri;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test cases for the SmsDeliveryPendingList class.
+ */
+public class SmsDeliveryPendingListTest extends TestCase {
+    private static final long EXPIRY = 1000;
+
+    private File mJournal;
+
+    @Override
+    protected void setUp() throws IOException {
+        mJournal = File.createTempFile("sms_delivery_pending", null);
+        mJournal.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        mJournal.delete();
+    }
+
+    @SmallTest
+    public void testWrappedReferencesMatchOldestFirst() {
+        SmsDeliveryPendingList list = new SmsDeliveryPendingList(null, EXPIRY);
+        list.add(5, Uri.parse("content://sms/1"), null, 0);
+        list.add(5, Uri.parse("content://sms/2"), null, 10);
+
+        SmsDeliveryPendingList.Pending pending = list.get(5, 20);
+        assertEquals(Uri.parse("content://sms/1"), pending.mMessageUri);
+        list.remove(pending);
+        assertEquals(Uri.parse("content://sms/2"), list.get(5, 20).mMessageUri);
+        assertNull(list.get(6, 20));
+    }
+
+    @SmallTest
+    public void testExpiry() {
+        SmsDeliveryPendingList list = new SmsDeliveryPendingList(null, EXPIRY);
+        list.add(1, null, null, 0);
+        list.add(2, null, null, 500);
+
+        assertNull(list.get(1, EXPIRY));
+        assertNotNull(list.get(2, EXPIRY));
+        assertEquals(1, list.size());
+    }
+
+    @SmallTest
+    public void testJournalSurvivesRestart() {
+        long now = System.currentTimeMillis();
+        SmsDeliveryPendingList list = new SmsDeliveryPendingList(mJournal, EXPIRY);
+        list.add(1, Uri.parse("content://sms/1"), null, now);
+        list.add(2, null, null, now);
+        list.remove(list.get(1, now));
+
+        SmsDeliveryPendingList restored = new SmsDeliveryPendingList(mJournal, EXPIRY);
+        assertEquals(1, restored.size());
+        assertNull(restored.get(1, now));
+        SmsDeliveryPendingList.Pending pending = restored.get(2, now);
+        assertNotNull(pending);
+        assertNull(pending.getTracker());
+
+        // New entries don't reuse the ids of restored ones
+        restored.add(3, null, null, now);
+        restored.remove(pending);
+        SmsDeliveryPendingList again = new SmsDeliveryPendingList(mJournal, EXPIRY);
+        assertEquals(1, again.size());
+        assertNotNull(again.get(3, now));
+    }
+
+    /**
+     * Churn enough to rewrite the journal several times, then check that it restores the
+     * same entries, none of them twice.
+     */
+    @SmallTest
+    public void testJournalCompactionThenRestart() {
+        long now = System.currentTimeMillis();
+        SmsDeliveryPendingList list = new SmsDeliveryPendingList(mJournal, EXPIRY);
+        int[] pendingByRef = new int[256];
+        for (int i = 0; i < 2000; i++) {
+            int messageRef = i % 256;
+            list.add(messageRef, null, null, now);
+            pendingByRef[messageRef]++;
+            if (i % 3 != 0) {
+                list.remove(list.get(messageRef, now));
+                pendingByRef[messageRef]--;
+            }
+        }
+        int size = list.size();
+        assertEquals(667, size);
+        // Less than the 2000 added records alone, each at least 23 bytes
+        assertTrue(mJournal.length() < 23 * 2000);
+
+        SmsDeliveryPendingList restored = new SmsDeliveryPendingList(mJournal, EXPIRY);
+        restored.load();
+        assertEquals(size, restored.size());
+        for (int messageRef = 0; messageRef < pendingByRef.length; messageRef++) {
+            for (int i = 0; i < pendingByRef[messageRef]; i++) {
+                restored.remove(restored.get(messageRef, now));
+            }
+            assertNull(restored.get(messageRef, now));
+        }
+        assertEquals(0, restored.size());
+    }
+}
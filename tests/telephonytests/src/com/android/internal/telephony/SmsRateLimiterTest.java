@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the SmsRateLimiter class.
+ */
+public class SmsRateLimiterTest extends TestCase {
+    private static final int MAX = 30;
+    private static final long PERIOD = 60000;
+
+    @SmallTest
+    public void testLimitWithinPeriod() {
+        SmsRateLimiter limiter = new SmsRateLimiter();
+        for (int i = 0; i < MAX; i++) {
+            assertTrue(limiter.tryAcquire("app", 1, 1000 + i, MAX, PERIOD));
+        }
+        assertFalse(limiter.tryAcquire("app", 1, 2000, MAX, PERIOD));
+        // Other apps have their own limit
+        assertTrue(limiter.tryAcquire("other", 1, 2000, MAX, PERIOD));
+
+        // The first message leaves the window after a period
+        assertFalse(limiter.tryAcquire("app", 1, 1000 + PERIOD, MAX, PERIOD));
+        assertTrue(limiter.tryAcquire("app", 1, 1000 + PERIOD + 1, MAX, PERIOD));
+        assertFalse(limiter.tryAcquire("app", 1, 1000 + PERIOD + 1, MAX, PERIOD));
+    }
+
+    @SmallTest
+    public void testMultipartIsAllOrNothing() {
+        SmsRateLimiter limiter = new SmsRateLimiter();
+        assertTrue(limiter.tryAcquire("app", 25, 1000, MAX, PERIOD));
+        assertFalse(limiter.tryAcquire("app", 6, 1001, MAX, PERIOD));
+        assertTrue(limiter.tryAcquire("app", 5, 1002, MAX, PERIOD));
+        assertFalse(limiter.tryAcquire("app", 1, 1003, MAX, PERIOD));
+        assertFalse(limiter.tryAcquire("new", MAX + 1, 1003, MAX, PERIOD));
+    }
+
+    @SmallTest
+    public void testIdleAppsAreDropped() {
+        SmsRateLimiter limiter = new SmsRateLimiter();
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("app" + i, 1, 1000, MAX, PERIOD);
+        }
+        assertEquals(100, limiter.size());
+
+        // Each stripe is swept on its next check after the period has passed
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("app" + i, 0, 1000 + 2 * PERIOD + 1, MAX, PERIOD);
+        }
+        assertEquals(0, limiter.size());
+    }
+
+    @MediumTest
+    public void testBurstsFromManyApps() {
+        SmsRateLimiter limiter = new SmsRateLimiter();
+        int accepted = 0;
+        // 500 apps sending bursts of 1 to 3 parts every 100ms for two periods
+        for (long now = 0; now < 2 * PERIOD; now += 100) {
+            for (int app = 0; app < 500; app++) {
+                int parts = 1 + (int) ((now / 100 + app) % 3);
+                if (limiter.tryAcquire("com.example.app" + app, parts, now, MAX, PERIOD)) {
+                    accepted += parts;
+                }
+            }
+        }
+        // No app sent more than MAX parts in either period
+        assertTrue(accepted <= 500 * 2 * MAX);
+        assertTrue(accepted > 500 * MAX);
+        assertEquals(500, limiter.size());
+    }
+}
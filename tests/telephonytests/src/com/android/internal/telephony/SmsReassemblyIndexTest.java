@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.SparseArray;
+
+import com.android.internal.telephony.SmsReassemblyIndex.SmsReferenceKey;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+
+/**
+ * Test cases for the SmsReassemblyIndex class.
+ */
+public class SmsReassemblyIndexTest extends TestCase {
+
+    private static InboundSmsTracker segment(int refNumber, int seq, int count) {
+        return new InboundSmsTracker(new byte[] { (byte) seq }, 0, -1, false,
+                "+15555550100", refNumber, seq, count, false);
+    }
+
+    private static SmsReassemblyIndex loadedIndex() {
+        SmsReassemblyIndex index = new SmsReassemblyIndex();
+        assertTrue(index.beginLoad());
+        index.finishLoad(new HashMap<SmsReferenceKey, SparseArray<InboundSmsTracker>>());
+        return index;
+    }
+
+    @SmallTest
+    public void testDuplicateAndComplete() {
+        SmsReassemblyIndex index = loadedIndex();
+        index.add(segment(7, 2, 2));
+
+        assertNotNull(index.getDuplicate(segment(7, 2, 2)));
+        assertNull(index.getDuplicate(segment(7, 1, 2)));
+        assertNull(index.getCompleteMessage(segment(7, 2, 2)));
+
+        index.add(segment(7, 1, 2));
+        InboundSmsTracker[] segments = index.getCompleteMessage(segment(7, 1, 2));
+        assertEquals(2, segments.length);
+        assertEquals(1, segments[0].getSequenceNumber());
+        assertEquals(2, segments[1].getSequenceNumber());
+
+        index.remove(new SmsReferenceKey(segment(7, 1, 2)).getDeleteWhereArgs());
+        assertEquals(0, index.size());
+    }
+
+    @SmallTest
+    public void testLoadSkipsMessagesDeletedWhileLoading() {
+        SmsReassemblyIndex index = new SmsReassemblyIndex();
+        assertFalse(index.isLoaded());
+        assertTrue(index.beginLoad());
+        assertFalse(index.beginLoad());
+
+        HashMap<SmsReferenceKey, SparseArray<InboundSmsTracker>> loaded =
+                new HashMap<SmsReferenceKey, SparseArray<InboundSmsTracker>>();
+        for (int ref : new int[] { 1, 2 }) {
+            SparseArray<InboundSmsTracker> segments = new SparseArray<InboundSmsTracker>();
+            segments.put(1, segment(ref, 1, 3));
+            loaded.put(new SmsReferenceKey(segment(ref, 1, 3)), segments);
+        }
+        // Message 1 is deleted and message 2 gets a new segment during the scan
+        index.remove(new SmsReferenceKey(segment(1, 1, 3)).getDeleteWhereArgs());
+        index.add(segment(2, 2, 3));
+        index.finishLoad(loaded);
+
+        assertTrue(index.isLoaded());
+        assertNull(index.getDuplicate(segment(1, 1, 3)));
+        assertNotNull(index.getDuplicate(segment(2, 1, 3)));
+        assertNotNull(index.getDuplicate(segment(2, 2, 3)));
+    }
+}
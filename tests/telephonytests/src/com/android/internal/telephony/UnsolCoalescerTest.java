@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import static com.android.internal.telephony.RILConstants.RIL_UNSOL_CELL_INFO_LIST;
+import static com.android.internal.telephony.RILConstants.RIL_UNSOL_SIGNAL_STRENGTH;
+
+/**
+ * Test cases for the UnsolCoalescer class.
+ */
+public class UnsolCoalescerTest extends TestCase {
+
+    @SmallTest
+    public void testUnconfiguredTypesAreDelivered() {
+        UnsolCoalescer c = new UnsolCoalescer();
+        assertEquals(UnsolCoalescer.DELIVER, c.offer(RIL_UNSOL_SIGNAL_STRENGTH, "a", 0));
+        assertEquals(UnsolCoalescer.DELIVER, c.offer(RIL_UNSOL_SIGNAL_STRENGTH, "a", 1));
+    }
+
+    @SmallTest
+    public void testDedupe() {
+        UnsolCoalescer c = new UnsolCoalescer();
+        c.configure(RIL_UNSOL_SIGNAL_STRENGTH, 0, true);
+
+        assertEquals(UnsolCoalescer.DELIVER, c.offer(RIL_UNSOL_SIGNAL_STRENGTH, "a", 0));
+        assertEquals(UnsolCoalescer.DROP, c.offer(RIL_UNSOL_SIGNAL_STRENGTH, "a", 10));
+        assertEquals(UnsolCoalescer.DELIVER, c.offer(RIL_UNSOL_SIGNAL_STRENGTH, "b", 20));
+        assertEquals(2, c.getDelivered(RIL_UNSOL_SIGNAL_STRENGTH));
+        assertEquals(1, c.getDropped(RIL_UNSOL_SIGNAL_STRENGTH));
+    }
+
+    @SmallTest
+    public void testWindowDeliversLatest() {
+        UnsolCoalescer c = new UnsolCoalescer();
+        c.configure(RIL_UNSOL_CELL_INFO_LIST, 1000, false);
+
+        assertEquals(UnsolCoalescer.DELIVER, c.offer(RIL_UNSOL_CELL_INFO_LIST, "a", 0));
+        assertEquals(UnsolCoalescer.DEFER, c.offer(RIL_UNSOL_CELL_INFO_LIST, "b", 100));
+        assertEquals(900, c.getFlushDelay(RIL_UNSOL_CELL_INFO_LIST, 100));
+        assertEquals(UnsolCoalescer.DROP, c.offer(RIL_UNSOL_CELL_INFO_LIST, "c", 200));
+
+        assertEquals("c", c.flush(RIL_UNSOL_CELL_INFO_LIST, 1000));
+        assertSame(UnsolCoalescer.NOTHING, c.flush(RIL_UNSOL_CELL_INFO_LIST, 1000));
+        assertEquals(2, c.getDelivered(RIL_UNSOL_CELL_INFO_LIST));
+        assertEquals(1, c.getDropped(RIL_UNSOL_CELL_INFO_LIST));
+
+        // Quiet for a full window, delivered at once again
+        assertEquals(UnsolCoalescer.DELIVER, c.offer(RIL_UNSOL_CELL_INFO_LIST, "d", 2500));
+    }
+
+    @SmallTest
+    public void testConfigureFromString() {
+        UnsolCoalescer c = new UnsolCoalescer();
+        c.configure(RIL_UNSOL_SIGNAL_STRENGTH + ":0:dedupe, bogus, 1:x");
+
+        assertEquals(UnsolCoalescer.DELIVER, c.offer(RIL_UNSOL_SIGNAL_STRENGTH, "a", 0));
+        assertEquals(UnsolCoalescer.DROP, c.offer(RIL_UNSOL_SIGNAL_STRENGTH, "a", 0));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.cat;
+
+import android.os.SystemClock;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for ComprehensionTlvIndex.
+ */
+public class ComprehensionTlvIndexTest extends TestCase {
+    private static final String TAG = "ComprehensionTlvIndexTest";
+
+    private static void writeTlv(ByteArrayOutputStream out, int tag, byte[] value) {
+        out.write(tag);
+        if (value.length >= 0x80) {
+            out.write(0x81);
+        }
+        out.write(value.length);
+        out.write(value, 0, value.length);
+    }
+
+    /**
+     * Makes a SET UP MENU proactive command with <code>items</code> items, each with an
+     * icon, and a title icon.
+     */
+    private static byte[] makeSetUpMenu(int items) {
+        ByteArrayOutputStream tlvs = new ByteArrayOutputStream();
+        // Command details, set up menu
+        writeTlv(tlvs, 0x81, new byte[] {1, 0x25, 0});
+        // Device identities, SIM to ME
+        writeTlv(tlvs, 0x82, new byte[] {(byte) 0x81, (byte) 0x82});
+        writeTlv(tlvs, 0x85, "Operator services".getBytes());
+        for (int i = 0; i < items; i++) {
+            byte[] text = ("Item " + i).getBytes();
+            byte[] item = new byte[text.length + 1];
+            item[0] = (byte) (i + 1);
+            System.arraycopy(text, 0, item, 1, text.length);
+            writeTlv(tlvs, 0x8f, item);
+        }
+        writeTlv(tlvs, 0x9e, new byte[] {0, 1});
+        byte[] icons = new byte[items + 1];
+        for (int i = 0; i < items; i++) {
+            icons[i + 1] = (byte) (i + 2);
+        }
+        writeTlv(tlvs, 0x9f, icons);
+
+        ByteArrayOutputStream command = new ByteArrayOutputStream();
+        writeTlv(command, BerTlv.BER_PROACTIVE_COMMAND_TAG, tlvs.toByteArray());
+        return command.toByteArray();
+    }
+
+    // Index of the first COMPREHENSION-TLV object in a proactive command
+    private static int getStartIndex(byte[] command) {
+        return command[1] == (byte) 0x81 ? 3 : 2;
+    }
+
+    private static void assertSameTlv(ComprehensionTlv expected, ComprehensionTlv actual) {
+        assertEquals(expected.getTag(), actual.getTag());
+        assertEquals(expected.isComprehensionRequired(), actual.isComprehensionRequired());
+        assertEquals(expected.getLength(), actual.getLength());
+        assertEquals(expected.getValueIndex(), actual.getValueIndex());
+        assertSame(expected.getRawValue(), actual.getRawValue());
+    }
+
+    @SmallTest
+    public void testMatchesDecodeMany() throws Exception {
+        byte[] data = makeSetUpMenu(20);
+        int start = getStartIndex(data);
+        List<ComprehensionTlv> list = ComprehensionTlv.decodeMany(data, start);
+        ComprehensionTlvIndex index = ComprehensionTlvIndex.decode(data, start);
+
+        assertEquals(list.size(), index.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.get(i).getTag(), index.getTag(i));
+            assertEquals(list.get(i).getLength(), index.getLength(i));
+            assertSameTlv(list.get(i), index.get(i));
+        }
+        assertEquals(list.size(), index.asList().size());
+    }
+
+    @SmallTest
+    public void testFindByTag() throws Exception {
+        ComprehensionTlvIndex index = BerTlv.decode(makeSetUpMenu(5)).getComprehensionTlvIndex();
+
+        assertEquals(5, index.count(ComprehensionTlvTag.ITEM));
+        for (int i = 0; i < 5; i++) {
+            ComprehensionTlv item = index.find(ComprehensionTlvTag.ITEM, i);
+            assertEquals(ComprehensionTlvTag.ITEM.value(), item.getTag());
+            assertEquals(i + 1, item.getRawValue()[item.getValueIndex()]);
+            assertSame(item, index.get(index.indexOf(ComprehensionTlvTag.ITEM, i)));
+        }
+        assertNull(index.find(ComprehensionTlvTag.ITEM, 5));
+        int position = index.indexOf(ComprehensionTlvTag.ITEM, 0);
+        for (int i = 1; i < 5; i++) {
+            position = index.nextIndexOf(position);
+            assertEquals(index.indexOf(ComprehensionTlvTag.ITEM, i), position);
+        }
+        assertEquals(-1, index.nextIndexOf(position));
+        assertEquals(-1, index.indexOf(ComprehensionTlvTag.ITEM, 5));
+
+        assertEquals(1, index.count(ComprehensionTlvTag.ITEM_ICON_ID_LIST));
+        assertTrue(index.find(ComprehensionTlvTag.ALPHA_ID).isComprehensionRequired());
+        assertNull(index.find(ComprehensionTlvTag.TEXT_STRING));
+        assertEquals(0, index.count(ComprehensionTlvTag.TEXT_STRING));
+    }
+
+    @SmallTest
+    public void testThreeByteTagAndStop() throws Exception {
+        byte[] data = {
+                (byte) 0x81, 3, 1, 0x25, 0,
+                // Three byte tag 0x0f, comprehension required
+                0x7f, (byte) 0x80, 0x0f, 1, 9,
+                // Unexpected tag, stops decoding
+                (byte) 0xff, 1, 0};
+        ComprehensionTlvIndex index = ComprehensionTlvIndex.decode(data, 0);
+        assertEquals(2, index.size());
+        ComprehensionTlv item = index.find(ComprehensionTlvTag.ITEM);
+        assertTrue(item.isComprehensionRequired());
+        assertEquals(9, data[item.getValueIndex()]);
+    }
+
+    @SmallTest
+    public void testBadLength() {
+        byte[] data = {(byte) 0x81, (byte) 0x81, 3, 1, 0x25, 0};
+        try {
+            ComprehensionTlvIndex.decode(data, 0);
+            fail("decode() should have thrown");
+        } catch (ResultException expected) {
+        }
+    }
+
+    private static ComprehensionTlv searchForNextTag(ComprehensionTlvTag tag,
+            Iterator<ComprehensionTlv> iter) {
+        while (iter.hasNext()) {
+            ComprehensionTlv ctlv = iter.next();
+            if (ctlv.getTag() == tag.value()) {
+                return ctlv;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replays SET UP MENU commands as large as a proactive command gets, looking up their
+     * objects the way CommandParamsFactory does, with a list of objects and with the
+     * index. The times are logged, not checked.
+     */
+    @LargeTest
+    public void testSetUpMenuBenchmark() throws Exception {
+        final int runs = 20000;
+        byte[] command = makeSetUpMenu(20);
+        int startIndex = getStartIndex(command);
+        // Still a valid proactive command
+        assertTrue(BerTlv.decode(command).isLengthValid());
+        ComprehensionTlvTag[] lookups = {ComprehensionTlvTag.COMMAND_DETAILS,
+                ComprehensionTlvTag.ALPHA_ID, ComprehensionTlvTag.ITEM_ID,
+                ComprehensionTlvTag.ICON_ID, ComprehensionTlvTag.ITEM_ICON_ID_LIST};
+
+        for (int round = 0; round < 3; round++) {
+            long start = SystemClock.elapsedRealtime();
+            int found = 0;
+            for (int run = 0; run < runs; run++) {
+                List<ComprehensionTlv> ctlvs = ComprehensionTlv.decodeMany(command, startIndex);
+                for (ComprehensionTlvTag tag : lookups) {
+                    if (searchForNextTag(tag, ctlvs.iterator()) != null) found++;
+                }
+                Iterator<ComprehensionTlv> iter = ctlvs.iterator();
+                while (searchForNextTag(ComprehensionTlvTag.ITEM, iter) != null) found++;
+            }
+            long listTime = SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            int indexFound = 0;
+            for (int run = 0; run < runs; run++) {
+                ComprehensionTlvIndex ctlvs = ComprehensionTlvIndex.decode(command, startIndex);
+                for (ComprehensionTlvTag tag : lookups) {
+                    if (ctlvs.find(tag) != null) indexFound++;
+                }
+                for (int i = ctlvs.indexOf(ComprehensionTlvTag.ITEM, 0); i >= 0;
+                        i = ctlvs.nextIndexOf(i)) {
+                    if (ctlvs.get(i) != null) indexFound++;
+                }
+            }
+            long indexTime = SystemClock.elapsedRealtime() - start;
+
+            assertEquals(found, indexFound);
+            Log.i(TAG, runs + " SET UP MENU commands: list " + listTime + "ms, index "
+                    + indexTime + "ms");
+        }
+    }
+}
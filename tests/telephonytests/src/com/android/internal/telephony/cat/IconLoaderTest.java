@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.cat;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.Arrays;
+
+/**
+ * Test cases for decoding icons in IconLoader.
+ */
+public class IconLoaderTest extends AndroidTestCase {
+    // 8x2 black and white icon, alternating pixels
+    private static final byte[] BNW_ICON = {8, 2, (byte) 0xaa, 0x55};
+
+    // 3x1 colour icon, 2 bits per pixel, 3 CLUT entries
+    private static final byte[] RGB_ICON = {3, 1, 2, 3, 0, 0, 0x18};
+    private static final byte[] CLUT = {
+            0x7f, 0, 0,
+            0, 0x7f, 0,
+            0, 0, 0x7f};
+
+    private static void assertSameIcon(Bitmap expected, Bitmap actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+            }
+        }
+    }
+
+    @SmallTest
+    public void testParseToBnW() {
+        Bitmap icon = IconLoader.parseToBnW(BNW_ICON, BNW_ICON.length);
+        assertEquals(8, icon.getWidth());
+        assertEquals(2, icon.getHeight());
+        assertEquals(Color.WHITE, icon.getPixel(0, 0));
+        assertEquals(Color.BLACK, icon.getPixel(1, 0));
+        assertEquals(Color.BLACK, icon.getPixel(0, 1));
+        assertEquals(Color.WHITE, icon.getPixel(1, 1));
+
+        // A dirty buffer, larger than the icon, is reused
+        int[] buffer = new int[64];
+        Arrays.fill(buffer, Color.RED);
+        assertSameIcon(icon, IconLoader.parseToBnW(BNW_ICON, BNW_ICON.length, buffer));
+        // Too small a buffer is not
+        assertSameIcon(icon, IconLoader.parseToBnW(BNW_ICON, BNW_ICON.length, new int[4]));
+    }
+
+    @SmallTest
+    public void testParseToRGB() {
+        Bitmap icon = IconLoader.parseToRGB(RGB_ICON, RGB_ICON.length, false, CLUT.clone());
+        assertEquals(3, icon.getWidth());
+        assertEquals(Color.rgb(0x7f, 0, 0), icon.getPixel(0, 0));
+        assertEquals(Color.rgb(0, 0x7f, 0), icon.getPixel(1, 0));
+        assertEquals(Color.rgb(0, 0, 0x7f), icon.getPixel(2, 0));
+
+        int[] buffer = new int[16];
+        Arrays.fill(buffer, Color.WHITE);
+        assertSameIcon(icon,
+                IconLoader.parseToRGB(RGB_ICON, RGB_ICON.length, false, CLUT.clone(), buffer));
+    }
+
+    @SmallTest
+    public void testCacheKey() {
+        String key = IconLoader.getCacheKey(0, "89014103211118510720", 1);
+        assertEquals(key, IconLoader.getCacheKey(0, "89014103211118510720", 1));
+        assertFalse(key.equals(IconLoader.getCacheKey(1, "89014103211118510720", 1)));
+        assertFalse(key.equals(IconLoader.getCacheKey(0, "89014103211118510721", 1)));
+        assertFalse(key.equals(IconLoader.getCacheKey(0, "89014103211118510720", 11)));
+    }
+}
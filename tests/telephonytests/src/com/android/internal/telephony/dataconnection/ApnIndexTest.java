@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.telephony.ServiceState;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.internal.telephony.PhoneConstants;
+import com.android.internal.telephony.RILConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for ApnIndex and the type bitmask of ApnSetting.
+ */
+public class ApnIndexTest extends TestCase {
+    private static final int LTE = ServiceState.RIL_RADIO_TECHNOLOGY_LTE;
+    private static final int EHRPD = ServiceState.RIL_RADIO_TECHNOLOGY_EHRPD;
+    private static final int UMTS = ServiceState.RIL_RADIO_TECHNOLOGY_UMTS;
+
+    private static final String[] REQUESTED_TYPES = {
+            PhoneConstants.APN_TYPE_DEFAULT, PhoneConstants.APN_TYPE_MMS,
+            PhoneConstants.APN_TYPE_SUPL, PhoneConstants.APN_TYPE_DUN,
+            PhoneConstants.APN_TYPE_HIPRI, PhoneConstants.APN_TYPE_FOTA,
+            PhoneConstants.APN_TYPE_IMS, PhoneConstants.APN_TYPE_CBS,
+            PhoneConstants.APN_TYPE_IA, PhoneConstants.APN_TYPE_EMERGENCY,
+            PhoneConstants.APN_TYPE_ALL, "MMS", "xcap"};
+
+    private static ApnSetting makeApn(int id, String[] types, boolean carrierEnabled,
+            int bearerBitmask) {
+        return new ApnSetting(id, "310260", "carrier" + id, "apn" + id, "", "", "", "", "",
+                "", "", 0, types, RILConstants.SETUP_DATA_PROTOCOL_IP,
+                RILConstants.SETUP_DATA_PROTOCOL_IP, carrierEnabled, 0, bearerBitmask, 0,
+                false, 0, 0, 0, PhoneConstants.UNSET_MTU, "", "");
+    }
+
+    private static ArrayList<ApnSetting> makeApns() {
+        ArrayList<ApnSetting> apns = new ArrayList<ApnSetting>();
+        apns.add(makeApn(1, new String[] {"default", "supl"}, true, 0));
+        apns.add(makeApn(2, new String[] {"MMS"}, true,
+                ServiceState.getBitmaskForTech(LTE)));
+        apns.add(makeApn(3, new String[] {"*"}, true, ServiceState.getBitmaskForTech(EHRPD)));
+        apns.add(makeApn(4, new String[] {"ims", "xcap"}, true, 0));
+        apns.add(makeApn(5, new String[] {"default"}, false, 0));
+        apns.add(makeApn(6, new String[] {"dun"}, true, ServiceState.getBitmaskForTech(LTE)
+                | ServiceState.getBitmaskForTech(UMTS)));
+        return apns;
+    }
+
+    private static List<ApnSetting> walk(List<ApnSetting> apns, String type, int radioTech) {
+        ArrayList<ApnSetting> list = new ArrayList<ApnSetting>();
+        for (ApnSetting apn : apns) {
+            if (apn.canHandleType(type)
+                    && ServiceState.bitmaskHasTech(apn.bearerBitmask, radioTech)) {
+                list.add(apn);
+            }
+        }
+        return list;
+    }
+
+    @SmallTest
+    public void testTypesBitmask() {
+        ApnSetting apn = makeApn(1, new String[] {"Default"}, true, 0);
+        assertTrue(apn.canHandleType(PhoneConstants.APN_TYPE_DEFAULT));
+        assertTrue(apn.canHandleType(PhoneConstants.APN_TYPE_HIPRI));
+        assertTrue(apn.canHandleType("DEFAULT"));
+        assertFalse(apn.canHandleType(PhoneConstants.APN_TYPE_MMS));
+        assertFalse(apn.canHandleType("xcap"));
+
+        apn = makeApn(2, new String[] {"*"}, true, 0);
+        assertEquals(ApnSetting.TYPE_BITMASK_ALL, apn.typesBitmask);
+        assertTrue(apn.canHandleType(PhoneConstants.APN_TYPE_EMERGENCY));
+        assertTrue(apn.canHandleType("xcap"));
+
+        apn = makeApn(3, new String[] {"xcap"}, true, 0);
+        assertEquals(0, apn.typesBitmask);
+        assertTrue(apn.canHandleType("XCAP"));
+        assertFalse(apn.canHandleType(PhoneConstants.APN_TYPE_DEFAULT));
+
+        apn = makeApn(4, new String[] {"*"}, false, 0);
+        assertFalse(apn.canHandleType(PhoneConstants.APN_TYPE_DEFAULT));
+    }
+
+    @SmallTest
+    public void testGetMatchesListWalk() {
+        ArrayList<ApnSetting> apns = makeApns();
+        ApnIndex index = new ApnIndex(apns);
+        int[] techs = {0, UMTS, EHRPD, LTE};
+        for (String type : REQUESTED_TYPES) {
+            for (int tech : techs) {
+                assertEquals(type + " on " + tech, walk(apns, type, tech), index.get(type, tech));
+                // Again, from the per technology cache
+                assertEquals(type + " on " + tech, walk(apns, type, tech), index.get(type, tech));
+            }
+            assertEquals(type, !walk(apns, type, 0).isEmpty()
+                    || !walk(apns, type, LTE).isEmpty()
+                    || !walk(apns, type, EHRPD).isEmpty(), index.hasType(type));
+        }
+    }
+
+    @SmallTest
+    public void testOrder() {
+        ArrayList<ApnSetting> apns = makeApns();
+        List<ApnSetting> list = new ApnIndex(apns).get(PhoneConstants.APN_TYPE_MMS, EHRPD);
+        assertEquals(1, list.size());
+        assertEquals(3, list.get(0).id);
+
+        list = new ApnIndex(apns).get(PhoneConstants.APN_TYPE_HIPRI, UMTS);
+        assertEquals(1, list.size());
+        assertEquals(1, list.get(0).id);
+
+        list = new ApnIndex(apns).get(PhoneConstants.APN_TYPE_DUN, LTE);
+        assertEquals(1, list.size());
+        assertEquals(6, list.get(0).id);
+    }
+
+    @SmallTest
+    public void testIsIndexOf() {
+        ArrayList<ApnSetting> apns = makeApns();
+        ApnIndex index = new ApnIndex(apns);
+        assertTrue(index.isIndexOf(apns));
+        assertFalse(index.isIndexOf(makeApns()));
+
+        apns.add(makeApn(7, new String[] {"cbs"}, true, 0));
+        assertFalse(index.isIndexOf(apns));
+
+        apns.clear();
+        assertFalse(index.isIndexOf(apns));
+
+        index = new ApnIndex(null);
+        assertTrue(index.isIndexOf(null));
+        assertFalse(index.hasType(PhoneConstants.APN_TYPE_DEFAULT));
+        assertTrue(index.get(PhoneConstants.APN_TYPE_DEFAULT, LTE).isEmpty());
+        assertTrue(index.get("xcap", LTE).isEmpty());
+    }
+}
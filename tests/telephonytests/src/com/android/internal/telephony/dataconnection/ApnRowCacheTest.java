@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.dataconnection;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.Telephony;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.internal.telephony.PhoneConstants;
+import com.android.internal.telephony.RILConstants;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for ApnRowCache and the comparison of ApnSettings with their credentials.
+ */
+public class ApnRowCacheTest extends TestCase {
+    private static final String OPERATOR = "310260";
+    private static final String OTHER_OPERATOR = "310410";
+
+    private static final String[] COLUMNS = {
+            Telephony.Carriers._ID, Telephony.Carriers.NUMERIC, Telephony.Carriers.APN,
+            Telephony.Carriers.USER, Telephony.Carriers.PASSWORD};
+
+    private int mApnsMade;
+    private ApnRowCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mApnsMade = 0;
+        mCache = new ApnRowCache(new ApnRowCache.ApnFactory() {
+            @Override
+            public ApnSetting makeApnSetting(Cursor cursor) {
+                mApnsMade++;
+                return makeApn(cursor.getInt(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4));
+            }
+        });
+    }
+
+    private static ApnSetting makeApn(int id, String numeric, String apn, String user,
+            String password) {
+        return new ApnSetting(id, numeric, "carrier" + id, apn, "", "", "", "", "",
+                user, password, 0, new String[] {PhoneConstants.APN_TYPE_DEFAULT},
+                RILConstants.SETUP_DATA_PROTOCOL_IP, RILConstants.SETUP_DATA_PROTOCOL_IP, true,
+                0, 0, 0, false, 0, 0, 0, PhoneConstants.UNSET_MTU, "", "");
+    }
+
+    /**
+     * Runs a refresh over <code>rows</code> the way DcTracker.createAllApnList() does.
+     */
+    private ArrayList<ApnSetting> refresh(String operator, Object[]... rows) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        ArrayList<ApnSetting> apns = new ArrayList<ApnSetting>();
+        mCache.beginRefresh(operator);
+        while (cursor.moveToNext()) {
+            apns.add(mCache.getApnSetting(cursor));
+        }
+        cursor.close();
+        mCache.endRefresh();
+        return apns;
+    }
+
+    private static Uri rowUri(int id) {
+        return ContentUris.withAppendedId(Telephony.Carriers.CONTENT_URI, id);
+    }
+
+    @SmallTest
+    public void testUnchangedRowsAreReused() {
+        ArrayList<ApnSetting> first = refresh(OPERATOR,
+                new Object[] {1, OPERATOR, "internet", "", ""},
+                new Object[] {2, OPERATOR, "mms", "", ""});
+        assertEquals(2, mApnsMade);
+        assertEquals(2, mCache.getRowsRebuilt());
+
+        ArrayList<ApnSetting> second = refresh(OPERATOR,
+                new Object[] {1, OPERATOR, "internet", "", ""},
+                new Object[] {2, OPERATOR, "mms", "", ""});
+        assertEquals(2, mApnsMade);
+        assertEquals(0, mCache.getRowsRebuilt());
+        assertSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+        assertTrue(ApnSetting.equalsWithCredentials(first, second));
+    }
+
+    @SmallTest
+    public void testChangedAndNewRowsAreRebuilt() {
+        ArrayList<ApnSetting> first = refresh(OPERATOR,
+                new Object[] {1, OPERATOR, "internet", "", ""},
+                new Object[] {2, OPERATOR, "mms", "", ""});
+
+        ArrayList<ApnSetting> second = refresh(OPERATOR,
+                new Object[] {1, OPERATOR, "internet", "", ""},
+                new Object[] {2, OPERATOR, "mms2", "", ""},
+                new Object[] {3, OPERATOR, "ims", "", ""});
+        assertEquals(2, mCache.getRowsRebuilt());
+        assertEquals(3, mCache.size());
+        assertSame(first.get(0), second.get(0));
+        assertEquals("mms2", second.get(1).apn);
+
+        // Deleted rows are forgotten
+        refresh(OPERATOR, new Object[] {3, OPERATOR, "ims", "", ""});
+        assertEquals(0, mCache.getRowsRebuilt());
+        assertEquals(1, mCache.size());
+    }
+
+    /**
+     * ApnSetting.equals() leaves out the user and password, an edit of only those is still
+     * a change of the APN list.
+     */
+    @SmallTest
+    public void testCredentialsOnlyEdit() {
+        ArrayList<ApnSetting> first = refresh(OPERATOR,
+                new Object[] {1, OPERATOR, "internet", "user", "secret"});
+        ArrayList<ApnSetting> second = refresh(OPERATOR,
+                new Object[] {1, OPERATOR, "internet", "user", "changed"});
+        assertEquals(1, mCache.getRowsRebuilt());
+        assertNotSame(first.get(0), second.get(0));
+
+        assertTrue(first.get(0).equals(second.get(0)));
+        assertFalse(first.get(0).equalsWithCredentials(second.get(0)));
+        assertFalse(ApnSetting.equalsWithCredentials(first, second));
+        assertFalse(first.get(0).equalsWithCredentials(null));
+    }
+
+    @SmallTest
+    public void testGetRowId() {
+        assertEquals(7, ApnRowCache.getRowId(rowUri(7)));
+        assertEquals(-1, ApnRowCache.getRowId(null));
+        assertEquals(-1, ApnRowCache.getRowId(Telephony.Carriers.CONTENT_URI));
+        assertEquals(-1, ApnRowCache.getRowId(
+                Uri.withAppendedPath(Telephony.Carriers.CONTENT_URI, "preferapn")));
+        assertEquals(-1, ApnRowCache.getRowId(Uri.parse("content://sms/7")));
+    }
+
+    @SmallTest
+    public void testIsChangeRelevant() {
+        final MatrixCursor otherOperatorRow = new MatrixCursor(
+                new String[] {Telephony.Carriers.NUMERIC});
+        otherOperatorRow.addRow(new Object[] {OTHER_OPERATOR});
+        final MatrixCursor newOperatorRow = new MatrixCursor(
+                new String[] {Telephony.Carriers.NUMERIC});
+        newOperatorRow.addRow(new Object[] {OPERATOR});
+        final int[] queries = new int[1];
+        MockContentResolver resolver = new MockContentResolver();
+        resolver.addProvider(Telephony.Carriers.CONTENT_URI.getAuthority(),
+                new MockContentProvider() {
+            @Override
+            public Cursor query(Uri uri, String[] projection, String selection,
+                    String[] selectionArgs, String sortOrder) {
+                queries[0]++;
+                switch ((int) ContentUris.parseId(uri)) {
+                    case 5:
+                        return otherOperatorRow;
+                    case 6:
+                        return newOperatorRow;
+                    default:
+                        // Deleted
+                        return new MatrixCursor(projection);
+                }
+            }
+        });
+
+        refresh(OPERATOR, new Object[] {1, OPERATOR, "internet", "", ""});
+
+        // Not a single row, a row of the list, or the operator changed
+        assertTrue(mCache.isChangeRelevant(null, OPERATOR, resolver));
+        assertTrue(mCache.isChangeRelevant(Telephony.Carriers.CONTENT_URI, OPERATOR,
+                resolver));
+        assertTrue(mCache.isChangeRelevant(rowUri(1), OPERATOR, resolver));
+        assertTrue(mCache.isChangeRelevant(rowUri(5), OTHER_OPERATOR, resolver));
+        assertTrue(mCache.isChangeRelevant(rowUri(5), null, resolver));
+        assertEquals(0, queries[0]);
+
+        // The APN of another operator, or deleted without having been in the list
+        assertFalse(mCache.isChangeRelevant(rowUri(5), OPERATOR, resolver));
+        assertFalse(mCache.isChangeRelevant(rowUri(9), OPERATOR, resolver));
+        // A new APN of the operator
+        assertTrue(mCache.isChangeRelevant(rowUri(6), OPERATOR, resolver));
+        assertEquals(3, queries[0]);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.gsm;
+
+import android.telephony.SmsCbLocation;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for SmsCbMessageCache.
+ */
+public class SmsCbMessageCacheTest extends TestCase {
+    private static final long EXPIRY = 60 * 1000;
+    private static final long TIMEOUT = 10 * 1000;
+
+    private static final SmsCbLocation sCell = new SmsCbLocation("94040", 1234, 5678);
+    private static final SmsCbLocation sOtherCell = new SmsCbLocation("94040", 1234, 5679);
+
+    private SmsCbMessageCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new SmsCbMessageCache(EXPIRY, TIMEOUT);
+    }
+
+    /**
+     * Makes a GSM format page, cell wide, with a 7 bit default alphabet body.
+     */
+    private static byte[] makePdu(int serial, int messageId, int page, int pages) {
+        byte[] pdu = new byte[88];
+        pdu[0] = (byte) (serial >> 8);
+        pdu[1] = (byte) serial;
+        pdu[2] = (byte) (messageId >> 8);
+        pdu[3] = (byte) messageId;
+        pdu[4] = 0x01;
+        pdu[5] = (byte) ((page << 4) | pages);
+        return pdu;
+    }
+
+    private static SmsCbHeader makeHeader(int serial, int messageId, int page, int pages) {
+        return new SmsCbHeader(makePdu(serial, messageId, page, pages));
+    }
+
+    @SmallTest
+    public void testDuplicate() {
+        SmsCbHeader header = makeHeader(0x3001, 0x0032, 1, 1);
+        assertFalse(mCache.isDuplicate(header, sCell, 0));
+        mCache.addReceived(header, sCell, 0);
+
+        assertTrue(mCache.isDuplicate(makeHeader(0x3001, 0x0032, 1, 1), sCell, 1000));
+        assertEquals(1, mCache.getDuplicateCount());
+        // New update number, message identifier or cell
+        assertFalse(mCache.isDuplicate(makeHeader(0x3002, 0x0032, 1, 1), sCell, 1000));
+        assertFalse(mCache.isDuplicate(makeHeader(0x3001, 0x0033, 1, 1), sCell, 1000));
+        assertFalse(mCache.isDuplicate(header, sOtherCell, 1000));
+        // Expired
+        assertFalse(mCache.isDuplicate(header, sCell, EXPIRY));
+        assertEquals(1, mCache.getDuplicateCount());
+    }
+
+    /**
+     * An ETWS primary notification is followed by a secondary warning message in GSM format
+     * with the same serial number and message identifier, which is not a duplicate.
+     */
+    @SmallTest
+    public void testEtwsPrimaryThenSecondary() {
+        byte[] primaryPdu = new byte[56];
+        primaryPdu[0] = (byte) 0x30;
+        primaryPdu[1] = (byte) 0x01;
+        primaryPdu[2] = (byte) 0x11;
+        primaryPdu[3] = (byte) 0x02;
+        primaryPdu[4] = (byte) 0x05;
+        primaryPdu[5] = (byte) 0x80;
+        SmsCbHeader primary = new SmsCbHeader(primaryPdu);
+        assertTrue(primary.isEtwsPrimaryNotification());
+        assertFalse(mCache.isDuplicate(primary, sCell, 0));
+        mCache.addReceived(primary, sCell, 0);
+
+        SmsCbHeader secondary = makeHeader(0x3001, 0x1102, 1, 1);
+        assertFalse(secondary.isEtwsPrimaryNotification());
+        assertFalse(mCache.isDuplicate(secondary, sCell, 1000));
+        mCache.addReceived(secondary, sCell, 1000);
+
+        // Both are still dropped when repeated
+        assertTrue(mCache.isDuplicate(new SmsCbHeader(primaryPdu), sCell, 2000));
+        assertTrue(mCache.isDuplicate(makeHeader(0x3001, 0x1102, 1, 1), sCell, 2000));
+        assertEquals(2, mCache.getDuplicateCount());
+    }
+
+    @SmallTest
+    public void testReceivedBounded() {
+        SmsCbHeader first = makeHeader(0x3000, 0x0032, 1, 1);
+        mCache.addReceived(first, sCell, 0);
+        for (int i = 1; i <= SmsCbMessageCache.MAX_RECEIVED_MESSAGES; i++) {
+            mCache.addReceived(makeHeader(0x3000 + i, 0x0032, 1, 1), sCell, 0);
+        }
+        assertFalse(mCache.isDuplicate(first, sCell, 0));
+        assertTrue(mCache.isDuplicate(makeHeader(0x3001, 0x0032, 1, 1), sCell, 0));
+    }
+
+    @SmallTest
+    public void testAddPage() {
+        byte[] page2 = makePdu(0x3001, 0x0032, 2, 2);
+        byte[] page1 = makePdu(0x3001, 0x0032, 1, 2);
+        assertNull(mCache.addPage(new SmsCbHeader(page2), sCell, page2, 0));
+        // A page of another message
+        assertNull(mCache.addPage(makeHeader(0x3001, 0x0033, 1, 2), sCell,
+                makePdu(0x3001, 0x0033, 1, 2), 0));
+        assertEquals(2, mCache.getIncompleteCount());
+
+        byte[][] pdus = mCache.addPage(new SmsCbHeader(page1), sCell, page1, 1000);
+        assertEquals(2, pdus.length);
+        assertSame(page1, pdus[0]);
+        assertSame(page2, pdus[1]);
+        assertEquals(1, mCache.getIncompleteCount());
+    }
+
+    @SmallTest
+    public void testPageTimeout() {
+        byte[] page1 = makePdu(0x3001, 0x0032, 1, 2);
+        byte[] page2 = makePdu(0x3001, 0x0032, 2, 2);
+        assertNull(mCache.addPage(new SmsCbHeader(page1), sCell, page1, 0));
+        assertNull(mCache.addPage(new SmsCbHeader(page2), sCell, page2, TIMEOUT));
+        assertEquals(1, mCache.getDroppedIncompleteCount());
+        assertEquals(1, mCache.getIncompleteCount());
+    }
+
+    /**
+     * A message whose page count changed starts over, and times out after the messages
+     * whose first page came before its new one.
+     */
+    @SmallTest
+    public void testReplacedPagesTimeout() {
+        assertNull(mCache.addPage(makeHeader(0x3001, 0x0032, 1, 2), sCell,
+                makePdu(0x3001, 0x0032, 1, 2), 0));
+        assertNull(mCache.addPage(makeHeader(0x3001, 0x0033, 1, 2), sCell,
+                makePdu(0x3001, 0x0033, 1, 2), 1000));
+        assertNull(mCache.addPage(makeHeader(0x3001, 0x0032, 1, 3), sCell,
+                makePdu(0x3001, 0x0032, 1, 3), 2000));
+        assertEquals(2, mCache.getIncompleteCount());
+
+        assertNull(mCache.addPage(makeHeader(0x3001, 0x0032, 2, 3), sCell,
+                makePdu(0x3001, 0x0032, 2, 3), TIMEOUT + 1500));
+        assertEquals(1, mCache.getDroppedIncompleteCount());
+        assertEquals(1, mCache.getIncompleteCount());
+    }
+
+    @SmallTest
+    public void testIncompleteBounded() {
+        for (int i = 0; i <= SmsCbMessageCache.MAX_INCOMPLETE_MESSAGES; i++) {
+            mCache.addPage(makeHeader(0x3000 + i, 0x0032, 1, 2), sCell,
+                    makePdu(0x3000 + i, 0x0032, 1, 2), 0);
+        }
+        assertEquals(SmsCbMessageCache.MAX_INCOMPLETE_MESSAGES, mCache.getIncompleteCount());
+        assertEquals(1, mCache.getDroppedIncompleteCount());
+    }
+
+    @SmallTest
+    public void testRemoveOutOfLocation() {
+        mCache.addPage(makeHeader(0x3001, 0x0032, 1, 2), sCell,
+                makePdu(0x3001, 0x0032, 1, 2), 0);
+        mCache.removeOutOfLocation("94040", 1234, 5678);
+        assertEquals(1, mCache.getIncompleteCount());
+        mCache.removeOutOfLocation("94040", 1234, 5679);
+        assertEquals(0, mCache.getIncompleteCount());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.uicc;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.AtomicFile;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Test cases for SimRecordsSnapshot.
+ */
+public class SimRecordsSnapshotTest extends AndroidTestCase {
+    private static final String ICCID = "89014103211118510720";
+
+    private File mFile;
+    private AtomicFile mAtomicFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(getContext().getCacheDir(), "SimRecordsSnapshotTest");
+        mFile.delete();
+        mAtomicFile = new AtomicFile(mFile);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mAtomicFile.delete();
+        super.tearDown();
+    }
+
+    private static SimRecordsSnapshot makeSnapshot(String imsi, String spn) {
+        return new SimRecordsSnapshot(ICCID, imsi, 3, "+15555550100", "Me", spn, 1,
+                "ff01", null, new ArrayList<String>(Arrays.asList("310260", "310026")),
+                "+15555550111", null);
+    }
+
+    @SmallTest
+    public void testReadWrite() {
+        assertNull(SimRecordsSnapshot.read(mAtomicFile));
+
+        SimRecordsSnapshot snapshot = makeSnapshot("310260000000001", "Carrier");
+        assertTrue(snapshot.write(mAtomicFile));
+        SimRecordsSnapshot read = SimRecordsSnapshot.read(mAtomicFile);
+        assertEquals(snapshot, read);
+        assertEquals(0, snapshot.diff(read));
+        assertEquals(ICCID, read.mIccId);
+        assertEquals(3, read.mMncLength);
+        assertEquals(Arrays.asList("310260", "310026"), read.mSpdiNetworks);
+        assertNull(read.mGid2);
+        assertNull(read.mVoiceMailTag);
+
+        snapshot = new SimRecordsSnapshot(ICCID, null, -1, null, null, null, -1, null, null,
+                null, null, null);
+        assertTrue(snapshot.write(mAtomicFile));
+        read = SimRecordsSnapshot.read(mAtomicFile);
+        assertEquals(snapshot, read);
+        assertNull(read.mSpdiNetworks);
+    }
+
+    @SmallTest
+    public void testCorrupt() throws Exception {
+        assertTrue(makeSnapshot("310260000000001", "Carrier").write(mAtomicFile));
+
+        RandomAccessFile f = new RandomAccessFile(mFile, "rw");
+        try {
+            f.seek(f.length() - 3);
+            int b = f.read();
+            f.seek(f.length() - 3);
+            f.write(b ^ 0x01);
+        } finally {
+            f.close();
+        }
+        assertNull(SimRecordsSnapshot.read(mAtomicFile));
+
+        f = new RandomAccessFile(mFile, "rw");
+        try {
+            f.setLength(f.length() / 2);
+        } finally {
+            f.close();
+        }
+        assertNull(SimRecordsSnapshot.read(mAtomicFile));
+    }
+
+    @SmallTest
+    public void testDiff() {
+        SimRecordsSnapshot snapshot = makeSnapshot("310260000000001", "Carrier");
+        assertEquals(0, snapshot.diff(makeSnapshot("310260000000001", "Carrier")));
+        assertEquals(SimRecordsSnapshot.IMSI,
+                snapshot.diff(makeSnapshot("310260000000002", "Carrier")));
+        assertEquals(SimRecordsSnapshot.IMSI | SimRecordsSnapshot.SPN,
+                snapshot.diff(makeSnapshot(null, null)));
+
+        SimRecordsSnapshot empty = new SimRecordsSnapshot(ICCID, "310260000000001", -1, null,
+                null, "Carrier", -1, null, null, null, null, null);
+        assertEquals(SimRecordsSnapshot.MNC_LENGTH | SimRecordsSnapshot.MSISDN
+                | SimRecordsSnapshot.SPN | SimRecordsSnapshot.GID1 | SimRecordsSnapshot.SPDI
+                | SimRecordsSnapshot.VOICE_MAIL, snapshot.diff(empty));
+        assertFalse(snapshot.equals(empty));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.telephony.util;
+
+import android.database.MatrixCursor;
+import android.provider.Telephony.Blacklist;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the BlacklistCache class.
+ */
+public class BlacklistCacheTest extends TestCase {
+    private static final int BOTH = BlacklistUtils.BLOCK_CALLS | BlacklistUtils.BLOCK_MESSAGES;
+
+    @SmallTest
+    public void testPlainEntries() {
+        BlacklistCache cache = new BlacklistCache("US");
+        cache.add("+16505550100", false, BlacklistUtils.BLOCK_MESSAGES);
+        cache.seal();
+
+        assertEquals(BlacklistUtils.MATCH_LIST,
+                cache.match("+16505550100", BlacklistUtils.BLOCK_MESSAGES, false));
+        // Listed for messages only, so calls from the number are explicitly allowed
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+16505550100", BlacklistUtils.BLOCK_CALLS, false));
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+16505550101", BlacklistUtils.BLOCK_MESSAGES, false));
+    }
+
+    @SmallTest
+    public void testRegexEntries() {
+        BlacklistCache cache = new BlacklistCache("US");
+        cache.add("+1650%", true, BOTH);
+        cache.add("+1212555010_", true, BlacklistUtils.BLOCK_CALLS);
+        cache.add("+1(2)3", true, BOTH);
+        cache.seal();
+
+        assertEquals(BlacklistUtils.MATCH_REGEX,
+                cache.match("+16505550100", BlacklistUtils.BLOCK_MESSAGES, true));
+        assertEquals(BlacklistUtils.MATCH_REGEX,
+                cache.match("+12125550109", BlacklistUtils.BLOCK_CALLS, true));
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+12125550109", BlacklistUtils.BLOCK_MESSAGES, true));
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+121255501099", BlacklistUtils.BLOCK_CALLS, true));
+        // Characters other than the wildcards match literally
+        assertEquals(BlacklistUtils.MATCH_REGEX,
+                cache.match("+1(2)3", BlacklistUtils.BLOCK_CALLS, true));
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+123", BlacklistUtils.BLOCK_CALLS, true));
+        // Regex entries are ignored while regex matching is off
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+16505550100", BlacklistUtils.BLOCK_MESSAGES, false));
+    }
+
+    @SmallTest
+    public void testPlainEntryOverridesRegex() {
+        BlacklistCache cache = new BlacklistCache("US");
+        cache.add("+1650%", true, BOTH);
+        cache.add("+16505550100", false, 0);
+        cache.add("+16505550101", false, BlacklistUtils.BLOCK_CALLS);
+        cache.seal();
+
+        // Whitelisted
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+16505550100", BlacklistUtils.BLOCK_MESSAGES, true));
+        assertEquals(BlacklistUtils.MATCH_LIST,
+                cache.match("+16505550101", BlacklistUtils.BLOCK_CALLS, true));
+        assertEquals(BlacklistUtils.MATCH_NONE,
+                cache.match("+16505550101", BlacklistUtils.BLOCK_MESSAGES, true));
+        assertEquals(BlacklistUtils.MATCH_REGEX,
+                cache.match("+16505550102", BlacklistUtils.BLOCK_MESSAGES, true));
+    }
+
+    /**
+     * Regex rows are loaded as stored, plain numbers are normalized.
+     */
+    @SmallTest
+    public void testLoadCache() {
+        MatrixCursor c = new MatrixCursor(new String[] {
+            Blacklist.NUMBER, Blacklist.IS_REGEX, Blacklist.PHONE_MODE, Blacklist.MESSAGE_MODE
+        });
+        c.addRow(new Object[] { "+1650%", 1, 1, 1 });
+        c.addRow(new Object[] { "+1212555010_", 1, 1, 0 });
+        c.addRow(new Object[] { "(650) 555-0100", 0, 0, 0 });
+        c.addRow(new Object[] { "", 0, 1, 1 });
+        BlacklistCache cache = BlacklistUtils.loadCache(c, "US");
+        assertNotNull(cache);
+        assertTrue(c.isClosed());
+        assertEquals(3, cache.size());
+
+        assertEquals(BlacklistUtils.MATCH_REGEX, cache.match(
+                BlacklistUtils.normalizeNumber("650-555-0123", "US"),
+                BlacklistUtils.BLOCK_MESSAGES, true));
+        assertEquals(BlacklistUtils.MATCH_REGEX, cache.match(
+                BlacklistUtils.normalizeNumber("212-555-0109", "US"),
+                BlacklistUtils.BLOCK_CALLS, true));
+        assertEquals(BlacklistUtils.MATCH_NONE, cache.match(
+                BlacklistUtils.normalizeNumber("212-555-0109", "US"),
+                BlacklistUtils.BLOCK_MESSAGES, true));
+        // Whitelisted, matched once normalized
+        assertEquals(BlacklistUtils.MATCH_NONE, cache.match(
+                BlacklistUtils.normalizeNumber("650 555 0100", "US"),
+                BlacklistUtils.BLOCK_MESSAGES, true));
+    }
+
+    @SmallTest
+    public void testDuplicateEntriesBlockIfAnyDoes() {
+        BlacklistCache cache = new BlacklistCache("US");
+        cache.add("+16505550100", false, 0);
+        cache.add("+16505550100", false, BlacklistUtils.BLOCK_MESSAGES);
+        cache.seal();
+
+        assertEquals(BlacklistUtils.MATCH_LIST,
+                cache.match("+16505550100", BlacklistUtils.BLOCK_MESSAGES, false));
+    }
+
+    @MediumTest
+    public void testLargeBlacklist() {
+        BlacklistCache cache = new BlacklistCache("US");
+        for (int i = 0; i < 5000; i++) {
+            cache.add("+1650555" + (10000 + i), false, BOTH);
+        }
+        for (int i = 0; i < 1000; i++) {
+            cache.add("+1" + (200 + i) + "%", true, BlacklistUtils.BLOCK_MESSAGES);
+        }
+        cache.seal();
+        assertEquals(6000, cache.size());
+
+        // A flood of messages, mostly from numbers not on the list
+        int listed = 0;
+        int regex = 0;
+        for (int i = 0; i < 20000; i++) {
+            String number = (i % 4 == 0) ? "+1650555" + (10000 + i % 5000)
+                    : "+1" + (1000 + i % 9000) + "5550100";
+            switch (cache.match(number, BlacklistUtils.BLOCK_MESSAGES, true)) {
+                case BlacklistUtils.MATCH_LIST:
+                    listed++;
+                    break;
+                case BlacklistUtils.MATCH_REGEX:
+                    regex++;
+                    break;
+            }
+        }
+        assertEquals(5000, listed);
+        assertTrue(regex > 0);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.mms.pdu;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Test cases for the PduComposer class.
+ */
+public class PduComposerTest extends AndroidTestCase {
+
+    private static final int ATTACHMENT_SIZE = 3 * 1024 * 1024;
+
+    private static SendReq makeSendReq() {
+        SendReq req = new SendReq();
+        req.addTo(new EncodedStringValue("+15555550100"));
+
+        PduBody body = new PduBody();
+        PduPart text = new PduPart();
+        text.setContentType("text/plain".getBytes());
+        text.setContentLocation("text.txt".getBytes());
+        text.setData("hello".getBytes());
+        body.addPart(text);
+
+        PduPart video = new PduPart();
+        video.setContentType("video/3gpp".getBytes());
+        video.setContentLocation("video.3gp".getBytes());
+        byte[] data = new byte[ATTACHMENT_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        video.setData(data);
+        body.addPart(video);
+
+        req.setBody(body);
+        return req;
+    }
+
+    @MediumTest
+    public void testStreamingMatchesBuffered() throws IOException {
+        SendReq req = makeSendReq();
+        byte[] buffered = new PduComposer(getContext(), req).make();
+        assertNotNull(buffered);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(new PduComposer(getContext(), req).make(out));
+        assertTrue(Arrays.equals(buffered, out.toByteArray()));
+    }
+
+    /**
+     * Composing a multi-megabyte message only buffers its headers.
+     */
+    @MediumTest
+    public void testStreamingBuffersOnlyHeaders() throws IOException {
+        final PduComposer composer = new PduComposer(getContext(), makeSendReq());
+        final int[] peakBuffered = new int[1];
+        final long[] written = new long[1];
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                peakBuffered[0] = Math.max(peakBuffered[0], composer.mMessage.size());
+                written[0] += len;
+            }
+        };
+
+        assertTrue(composer.make(out));
+        assertTrue(written[0] > ATTACHMENT_SIZE);
+        assertTrue("buffered " + peakBuffered[0] + " bytes", peakBuffered[0] < 1024);
+    }
+}
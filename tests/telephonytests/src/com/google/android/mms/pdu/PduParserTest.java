@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.mms.pdu;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Test cases for the PduParser class.
+ */
+public class PduParserTest extends AndroidTestCase {
+
+    private static final int ATTACHMENT_SIZE = 64 * 1024;
+
+    private byte[] mText;
+    private byte[] mImage;
+    private byte[] mPdu;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mText = "hello".getBytes();
+        mImage = new byte[ATTACHMENT_SIZE];
+        for (int i = 0; i < mImage.length; i++) {
+            mImage[i] = (byte) (i * 7);
+        }
+
+        SendReq req = new SendReq();
+        req.addTo(new EncodedStringValue("+15555550100"));
+        PduBody body = new PduBody();
+        PduPart text = new PduPart();
+        text.setContentType("text/plain".getBytes());
+        text.setContentLocation("text.txt".getBytes());
+        text.setData(mText);
+        body.addPart(text);
+        PduPart image = new PduPart();
+        image.setContentType("image/jpeg".getBytes());
+        image.setContentLocation("image.jpg".getBytes());
+        image.setData(mImage);
+        body.addPart(image);
+        req.setBody(body);
+
+        mPdu = new PduComposer(getContext(), req).make();
+        assertNotNull(mPdu);
+    }
+
+    /**
+     * Parses the body the way the parser did before slicing, copying the
+     * data of each part out of a plain stream.
+     */
+    private PduBody parseCopied() {
+        ByteArrayInputStream in = new ByteArrayInputStream(mPdu);
+        PduParser parser = new PduParser(new byte[0], true);
+        assertNotNull(parser.parseHeaders(in));
+        return parser.parseParts(in);
+    }
+
+    private static PduBody parseSliced(PduParser parser) {
+        GenericPdu pdu = parser.parse();
+        assertTrue(pdu instanceof SendReq);
+        return ((SendReq) pdu).getBody();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertSameData(PduBody expected, PduBody actual) throws IOException {
+        assertEquals(expected.getPartsNum(), actual.getPartsNum());
+        for (int i = 0; i < expected.getPartsNum(); i++) {
+            byte[] data = expected.getPart(i).getData();
+            PduPart part = actual.getPart(i);
+            assertEquals(data.length, part.getDataLength());
+            assertTrue(Arrays.equals(data, part.getData()));
+            assertTrue(Arrays.equals(data, readAll(part.getDataStream())));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(part.writeData(out));
+            assertTrue(Arrays.equals(data, out.toByteArray()));
+        }
+    }
+
+    @SmallTest
+    public void testSlicedPartsMatchCopies() throws IOException {
+        PduBody copied = parseCopied();
+        assertNotNull(copied);
+        assertTrue(Arrays.equals(mText, copied.getPart(0).getData()));
+        assertTrue(Arrays.equals(mImage, copied.getPart(1).getData()));
+
+        assertSameData(copied, parseSliced(new PduParser(mPdu, true)));
+    }
+
+    @SmallTest
+    public void testByteBufferMatchesCopies() throws IOException {
+        PduBody copied = parseCopied();
+
+        byte[] padded = new byte[mPdu.length + 16];
+        System.arraycopy(mPdu, 0, padded, 8, mPdu.length);
+        ByteBuffer heap = ByteBuffer.wrap(padded, 8, mPdu.length).slice();
+        assertSameData(copied, parseSliced(new PduParser(heap, true)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(mPdu.length);
+        direct.put(mPdu).flip();
+        assertSameData(copied, parseSliced(new PduParser(direct, true)));
+        assertEquals(0, direct.position());
+    }
+
+    /**
+     * The parts sliced from a PDU keep all of it alive, so it is counted
+     * once and in full; copied parts count their own data.
+     */
+    @SmallTest
+    public void testRetainedDataSize() {
+        assertEquals(mText.length + mImage.length, parseCopied().getRetainedDataSize());
+        assertEquals(mPdu.length, parseSliced(new PduParser(mPdu, true)).getRetainedDataSize());
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.mms.pdu;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.Telephony.Mms;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.MediumTest;
+import android.util.Log;
+
+import com.google.android.mms.MmsException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test cases for persisting message parts in PduPersister.
+ */
+public class PduPersisterTest extends AndroidTestCase {
+    private static final String TAG = "PduPersisterTest";
+
+    private static final int PART_SIZE = 256 * 1024;
+
+    /**
+     * Keeps the part rows of the MMS provider in memory and their data in files.
+     */
+    private static class FakeMmsProvider extends MockContentProvider {
+        final File mDir;
+        final ContentValues[] mParts = new ContentValues[64];
+        int mPartCount;
+        long mMsgId = 100;
+        // Bytes of part data written when the message was inserted
+        long mBytesAtMessageInsert = -1;
+
+        FakeMmsProvider(File dir) {
+            mDir = dir;
+        }
+
+        File getPartFile(long id) {
+            return new File(mDir, "part" + id);
+        }
+
+        @Override
+        public synchronized Uri insert(Uri uri, ContentValues values) {
+            List<String> segments = uri.getPathSegments();
+            if (segments.size() == 2 && "part".equals(segments.get(1))) {
+                int id = mPartCount++;
+                values = new ContentValues(values);
+                values.put(Mms.Part.MSG_ID, Long.parseLong(segments.get(0)));
+                mParts[id] = values;
+                return Uri.parse("content://mms/part/" + id);
+            } else if (segments.size() == 2 && "addr".equals(segments.get(1))) {
+                return Uri.withAppendedPath(uri, "1");
+            } else if (segments.size() == 1) {
+                mBytesAtMessageInsert = 0;
+                for (int i = 0; i < mPartCount; i++) {
+                    mBytesAtMessageInsert += getPartFile(i).length();
+                }
+                return Uri.parse("content://mms/" + mMsgId);
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized int update(Uri uri, ContentValues values, String selection,
+                String[] selectionArgs) {
+            List<String> segments = uri.getPathSegments();
+            if (segments.size() == 2 && "part".equals(segments.get(0))) {
+                // Text of a text part
+                return 1;
+            } else if (segments.size() == 2 && "part".equals(segments.get(1))) {
+                long dummyId = Long.parseLong(segments.get(0));
+                int count = 0;
+                for (int i = 0; i < mPartCount; i++) {
+                    if (mParts[i].getAsLong(Mms.Part.MSG_ID) == dummyId) {
+                        mParts[i].put(Mms.Part.MSG_ID, values.getAsLong(Mms.Part.MSG_ID));
+                        count++;
+                    }
+                }
+                return count;
+            }
+            return 0;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public ParcelFileDescriptor openFile(Uri uri, String mode)
+                throws FileNotFoundException {
+            long id = Long.parseLong(uri.getLastPathSegment());
+            return ParcelFileDescriptor.open(getPartFile(id), ParcelFileDescriptor.parseMode(mode));
+        }
+    }
+
+    private File mDir;
+    private FakeMmsProvider mProvider;
+    private PduPersister mPersister;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDir = new File(getContext().getCacheDir(), TAG);
+        deleteDir();
+        assertTrue(mDir.mkdirs());
+        mProvider = new FakeMmsProvider(mDir);
+        final MockContentResolver resolver = new MockContentResolver();
+        resolver.addProvider("mms", mProvider);
+        Context context = new ContextWrapper(getContext()) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return resolver;
+            }
+        };
+        mPersister = PduPersister.getPduPersister(context);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPersister.setPartWriteThreads(1);
+        deleteDir();
+        super.tearDown();
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    private static byte[] makeData(int seed) {
+        byte[] data = new byte[PART_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    /**
+     * Makes a message of a SMIL part, a text part and <code>images</code> images, every
+     * other of them given by the URI of a file.
+     */
+    private SendReq makeSendReq(int images) throws IOException {
+        SendReq req = new SendReq();
+        req.addTo(new EncodedStringValue("+15555550100"));
+
+        PduBody body = new PduBody();
+        PduPart smil = new PduPart();
+        smil.setContentType("application/smil".getBytes());
+        smil.setData("<smil/>".getBytes());
+        body.addPart(smil);
+
+        PduPart text = new PduPart();
+        text.setContentType("text/plain".getBytes());
+        text.setData("hello".getBytes());
+        body.addPart(text);
+
+        for (int i = 0; i < images; i++) {
+            PduPart image = new PduPart();
+            image.setContentType("image/jpeg".getBytes());
+            image.setContentLocation(("image" + i + ".jpg").getBytes());
+            byte[] data = makeData(i);
+            if (i % 2 == 0) {
+                image.setData(data);
+            } else {
+                File source = new File(mDir, "source" + i);
+                FileOutputStream os = new FileOutputStream(source);
+                try {
+                    os.write(data);
+                } finally {
+                    os.close();
+                }
+                image.setDataUri(Uri.fromFile(source));
+            }
+            body.addPart(image);
+        }
+        req.setBody(body);
+        return req;
+    }
+
+    private void checkPersisted(SendReq req, Uri res) throws IOException {
+        assertEquals(Uri.parse(Mms.Draft.CONTENT_URI + "/" + mProvider.mMsgId), res);
+        PduBody body = req.getBody();
+        assertEquals(body.getPartsNum(), mProvider.mPartCount);
+
+        long total = 0;
+        for (int i = 0; i < mProvider.mPartCount; i++) {
+            assertEquals(mProvider.mMsgId,
+                    (long) mProvider.mParts[i].getAsLong(Mms.Part.MSG_ID));
+            total += mProvider.getPartFile(i).length();
+        }
+        // The message is only inserted once all the parts are written
+        assertEquals(total, mProvider.mBytesAtMessageInsert);
+
+        for (int i = 2; i < body.getPartsNum(); i++) {
+            Uri dataUri = body.getPart(i).getDataUri();
+            assertEquals("part", dataUri.getPathSegments().get(0));
+            File file = mProvider.getPartFile(Long.parseLong(dataUri.getLastPathSegment()));
+            byte[] data = new byte[(int) file.length()];
+            RandomAccessFile f = new RandomAccessFile(file, "r");
+            try {
+                f.readFully(data);
+            } finally {
+                f.close();
+            }
+            assertTrue("part " + i, Arrays.equals(makeData(i - 2), data));
+        }
+    }
+
+    @MediumTest
+    public void testPersistSequential() throws Exception {
+        SendReq req = makeSendReq(6);
+        checkPersisted(req, mPersister.persist(req, Mms.Draft.CONTENT_URI, false, false, null));
+    }
+
+    @MediumTest
+    public void testPersistConcurrent() throws Exception {
+        mPersister.setPartWriteThreads(4);
+        SendReq req = makeSendReq(12);
+        checkPersisted(req, mPersister.persist(req, Mms.Draft.CONTENT_URI, false, false, null));
+    }
+
+    @MediumTest
+    public void testPersistConcurrentFailure() throws Exception {
+        mPersister.setPartWriteThreads(4);
+        SendReq req = makeSendReq(8);
+        // The source of one part is missing
+        new File(mDir, "source3").delete();
+        try {
+            mPersister.persist(req, Mms.Draft.CONTENT_URI, false, false, null);
+            fail("persist() should have failed");
+        } catch (MmsException expected) {
+        }
+        // The message was never inserted
+        assertEquals(-1, mProvider.mBytesAtMessageInsert);
+    }
+
+    /**
+     * Compares the time it takes to persist messages of 10 and 20 parts with and without
+     * concurrent part writes. The times are logged, not checked.
+     */
+    @LargeTest
+    public void testPersistBenchmark() throws Exception {
+        for (int images : new int[] {8, 18}) {
+            for (int threads : new int[] {1, 4}) {
+                long best = Long.MAX_VALUE;
+                for (int run = 0; run < 5; run++) {
+                    tearDown();
+                    setUp();
+                    mPersister.setPartWriteThreads(threads);
+                    SendReq req = makeSendReq(images);
+                    long start = SystemClock.elapsedRealtime();
+                    Uri res = mPersister.persist(req, Mms.Draft.CONTENT_URI, false, false, null);
+                    best = Math.min(best, SystemClock.elapsedRealtime() - start);
+                    checkPersisted(req, res);
+                }
+                Log.i(TAG, "persist " + (images + 2) + " parts with " + threads
+                        + " threads: " + best + "ms");
+            }
+        }
+    }
+}
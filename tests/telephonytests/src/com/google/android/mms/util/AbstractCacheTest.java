@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.mms.util;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Test cases for the AbstractCache class.
+ */
+public class AbstractCacheTest extends TestCase {
+
+    private static class TestCache extends AbstractCache<String, String> {
+        final ArrayList<String> mEvicted = new ArrayList<String>();
+
+        TestCache(int maxItems, long maxBytes) {
+            super(maxItems, maxBytes);
+        }
+
+        @Override
+        protected int sizeOf(String key, String value) {
+            return value.length();
+        }
+
+        @Override
+        protected void onEvicted(String key, String value) {
+            mEvicted.add(key);
+        }
+    }
+
+    @SmallTest
+    public void testEvictsLeastRecentlyUsed() {
+        TestCache cache = new TestCache(3, 100);
+        assertTrue(cache.put("a", "1"));
+        assertTrue(cache.put("b", "2"));
+        assertTrue(cache.put("c", "3"));
+        assertEquals("1", cache.get("a"));
+
+        assertTrue(cache.put("d", "4"));
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("b", cache.mEvicted.get(0));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @SmallTest
+    public void testEvictsByBytes() {
+        TestCache cache = new TestCache(100, 10);
+        assertTrue(cache.put("a", "xxxx"));
+        assertTrue(cache.put("b", "xxxx"));
+        assertTrue(cache.put("c", "xxxx"));
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.sizeInBytes());
+        assertNull(cache.get("a"));
+
+        // Larger than the whole cache, never cached
+        assertFalse(cache.put("d", "xxxxxxxxxxx"));
+        assertEquals(2, cache.size());
+    }
+
+    @SmallTest
+    public void testReplaceAndPurgeKeepSizeInBytes() {
+        TestCache cache = new TestCache(10, 100);
+        cache.put("a", "xxxx");
+        cache.put("a", "xx");
+        assertEquals(2, cache.sizeInBytes());
+        cache.purge("a");
+        assertEquals(0, cache.sizeInBytes());
+        assertEquals(0, cache.getEvictionCount());
+    }
+}